@@ -1,7 +1,17 @@
 package com.github.acs.file.batch;
 
+import java.util.Collection;
+
 public interface BatchTrigger {
 
     void triggerBatch() throws BatchProcessException;
 
+    /**
+     * Launches a new job instance that transfers the given files.
+     *
+     * @param fileNames the names of the files relative to the source directory
+     * @throws BatchProcessException if the job could not be launched
+     */
+    void triggerBatch(Collection<String> fileNames) throws BatchProcessException;
+
 }
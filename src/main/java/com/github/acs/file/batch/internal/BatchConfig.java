@@ -1,22 +1,333 @@
 package com.github.acs.file.batch.internal;
 
+import com.github.acs.file.batch.internal.partition.JdbcPartitionHandler;
+import com.github.acs.file.batch.internal.partition.PartitionAssignments;
+import com.github.acs.file.batch.internal.partition.PartitionWorker;
+import com.github.acs.file.batch.internal.remote.RemoteClientPools;
+import com.github.acs.file.batch.internal.remote.RemoteFetchTasklet;
+import com.github.acs.file.batch.internal.remote.RemotePushTasklet;
+import com.github.acs.file.batch.internal.transfer.ContentIndex;
+import com.github.acs.file.batch.internal.transfer.DeltaTransfer;
+import com.github.acs.file.batch.internal.transfer.FileDeduplicator;
+import com.github.acs.file.batch.internal.transfer.FileRange;
+import com.github.acs.file.batch.internal.transfer.FileRangeItemReader;
+import com.github.acs.file.batch.internal.transfer.FileRangeItemWriter;
+import com.github.acs.file.batch.internal.transfer.FileSizePartitioner;
+import com.github.acs.file.batch.internal.transfer.MappedTransferVerifier;
+import com.github.acs.file.batch.internal.transfer.SourceFiles;
+import com.github.acs.file.batch.internal.transfer.StreamedTransferVerifier;
+import com.github.acs.file.batch.internal.transfer.TransferCodec;
+import com.github.acs.file.batch.internal.transfer.TransferManifest;
+import com.github.acs.file.batch.internal.transfer.TransferVerifier;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.batch.core.Job;
 import org.springframework.batch.core.Step;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.configuration.annotation.StepScope;
+import org.springframework.batch.core.explore.JobExplorer;
 import org.springframework.batch.core.job.builder.JobBuilder;
+import org.springframework.batch.core.launch.JobLauncher;
+import org.springframework.batch.core.partition.PartitionHandler;
+import org.springframework.batch.core.partition.support.TaskExecutorPartitionHandler;
 import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.step.builder.StepBuilder;
+import org.springframework.batch.repeat.CompletionPolicy;
+import org.springframework.batch.repeat.policy.SimpleCompletionPolicy;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.util.StringUtils;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
 
 @Configuration
-public final class BatchConfig {
+public class BatchConfig {
+
+    static final String FILE_NAME_PARAMETER = "fileName";
+    static final String FILE_LIST_PARAMETER = "fileList";
+    static final String RANGE_SIZE_PARAMETER = "rangeSize";
+    static final String RANGE_CONCURRENCY_PARAMETER = "rangeConcurrency";
+    static final String CODEC_PARAMETER = "codec";
+    static final String CODEC_DIRECTION_PARAMETER = "codecDirection";
+    static final String TRANSFER_STRATEGY_PARAMETER = "transferStrategy";
+
+    /**
+     * Transfers the source files, fetching them from the remote source first and pushing them to the remote
+     * destination afterwards when those are configured.
+     */
+    @Bean
+    public Job fileTransferBatchJob(JobRepository jobRepository, Step fileTransferPartitionStep, Step remoteFetchStep, Step remotePushStep,
+                                    JobNotificationListener listener, FileTransferProperties properties) {
+        var job = new JobBuilder("fileTransferBatchJob", jobRepository).listener(listener);
+        var steps = properties.getRemoteSource() == null
+                ? job.start(fileTransferPartitionStep)
+                : job.start(remoteFetchStep).next(fileTransferPartitionStep);
+        if (properties.getRemoteDestination() != null) {
+            steps.next(remotePushStep);
+        }
+        return steps.build();
+    }
+
+    @Bean
+    public RemoteClientPools remoteClientPools() {
+        return new RemoteClientPools();
+    }
+
+    @Bean
+    public Step remoteFetchStep(JobRepository jobRepository, PlatformTransactionManager transactionManager, RemoteFetchTasklet remoteFetchTasklet) {
+        return new StepBuilder("remoteFetchStep", jobRepository)
+                .tasklet(remoteFetchTasklet, transactionManager)
+                .build();
+    }
+
+    @Bean
+    @StepScope
+    public RemoteFetchTasklet remoteFetchTasklet(FileTransferProperties properties, RemoteClientPools remoteClientPools,
+                                                 @Value("#{jobParameters['" + FILE_NAME_PARAMETER + "']}") String fileName,
+                                                 @Value("#{jobParameters['" + FILE_LIST_PARAMETER + "']}") String fileList) throws IOException {
+        return new RemoteFetchTasklet(remoteClientPools.pool(properties.getRemoteSource()), properties.getSourceDirectory(),
+                fileNames(fileName, fileList));
+    }
+
+    @Bean
+    public Step remotePushStep(JobRepository jobRepository, PlatformTransactionManager transactionManager, RemotePushTasklet remotePushTasklet) {
+        return new StepBuilder("remotePushStep", jobRepository)
+                .tasklet(remotePushTasklet, transactionManager)
+                .build();
+    }
+
+    /**
+     * Pushes the destination files of the source files, named after the codec they were transferred with.
+     */
+    @Bean
+    @StepScope
+    public RemotePushTasklet remotePushTasklet(FileTransferProperties properties, RemoteClientPools remoteClientPools,
+                                               @Value("#{jobParameters['" + FILE_NAME_PARAMETER + "']}") String fileName,
+                                               @Value("#{jobParameters['" + FILE_LIST_PARAMETER + "']}") String fileList,
+                                               @Value("#{jobParameters['" + CODEC_PARAMETER + "']}") String codec,
+                                               @Value("#{jobParameters['" + CODEC_DIRECTION_PARAMETER + "']}") String codecDirection) throws IOException {
+        var sourceDirectory = properties.getSourceDirectory();
+        var destinationDirectory = properties.getDestinationDirectory();
+        var transferCodec = transferCodec(properties, codec);
+        var direction = codecDirection(properties, codecDirection);
+        var destinationNames = SourceFiles.resolve(sourceDirectory, fileNames(fileName, fileList)).stream()
+                .map(source -> {
+                    var destination = destinationDirectory.resolve(sourceDirectory.relativize(source).toString());
+                    if (transferCodec != TransferCodec.NONE) {
+                        destination = transferCodec.destinationOf(destination, direction);
+                    }
+                    return destinationDirectory.relativize(destination).toString();
+                })
+                .toList();
+        return new RemotePushTasklet(remoteClientPools.pool(properties.getRemoteDestination()), destinationDirectory, destinationNames);
+    }
+
+    /**
+     * The manager step, which splits the source files into size-balanced partitions and transfers
+     * every partition with its own execution of the {@code fileTransferStep}.
+     */
+    @Bean
+    public Step fileTransferPartitionStep(JobRepository jobRepository,
+                                          FileSizePartitioner fileSizePartitioner,
+                                          PartitionHandler fileTransferPartitionHandler) {
+        return new StepBuilder("fileTransferPartitionStep", jobRepository)
+                .partitioner("fileTransferStep", fileSizePartitioner)
+                .partitionHandler(fileTransferPartitionHandler)
+                .build();
+    }
+
+    /**
+     * Transfers the partitions on this node, or hands them out to the partition workers of every node in the
+     * remote partition mode.
+     */
+    @Bean
+    public PartitionHandler fileTransferPartitionHandler(Step fileTransferStep, FileTransferProperties properties, JobExplorer jobExplorer,
+                                                         DataSource dataSource) {
+        if (properties.getPartitionMode() == FileTransferProperties.PartitionMode.REMOTE) {
+            var partitionHandler = new JdbcPartitionHandler(new PartitionAssignments(new JdbcTemplate(dataSource)), jobExplorer,
+                    fileTransferStep.getName(), properties.getPartitionPollInterval(), properties.getPartitionTimeout());
+            partitionHandler.setGridSize(properties.getGridSize());
+            return partitionHandler;
+        }
+        var taskExecutor = new SimpleAsyncTaskExecutor("file-transfer-");
+        taskExecutor.setConcurrencyLimit(properties.getPartitionConcurrency());
+
+        var partitionHandler = new TaskExecutorPartitionHandler();
+        partitionHandler.setStep(fileTransferStep);
+        partitionHandler.setTaskExecutor(taskExecutor);
+        partitionHandler.setGridSize(properties.getGridSize());
+        return partitionHandler;
+    }
+
+    @Bean
+    public PartitionWorker partitionWorker(Step fileTransferStep, FileTransferProperties properties, JobExplorer jobExplorer,
+                                           JobRepository jobRepository, DataSource dataSource) {
+        return new PartitionWorker(new PartitionAssignments(new JdbcTemplate(dataSource)), jobExplorer, jobRepository, fileTransferStep, properties);
+    }
 
     @Bean
-    public Job fileTransferBatchJob(JobRepository jobRepository, Step step, JobNotificationListener listener) {
-        return new JobBuilder("fileTransferBatchJob", jobRepository)
-                //.listner()
-                .start(step)
-                .next(step)
+    @Primary
+    public FileTransferBatchTrigger fileTransferBatchTrigger(JobLauncher jobLauncher, JobExplorer jobExplorer, Job fileTransferBatchJob,
+                                                             FileTransferProperties properties) {
+        return new FileTransferBatchTrigger(jobLauncher, jobExplorer, fileTransferBatchJob, properties);
+    }
+
+    @Bean
+    public WatchServiceBatchTrigger watchServiceBatchTrigger(FileTransferBatchTrigger fileTransferBatchTrigger, FileTransferProperties properties,
+                                                             MeterRegistry registry) {
+        return new WatchServiceBatchTrigger(fileTransferBatchTrigger, properties, registry);
+    }
+
+    /**
+     * Partitions the files named by the comma-delimited {@code fileName} parameter, or listed one per line in the
+     * file of the {@code fileList} parameter.
+     */
+    @Bean
+    @StepScope
+    public FileSizePartitioner fileSizePartitioner(FileTransferProperties properties,
+                                                   @Value("#{jobParameters['" + FILE_NAME_PARAMETER + "']}") String fileName,
+                                                   @Value("#{jobParameters['" + FILE_LIST_PARAMETER + "']}") String fileList) throws IOException {
+        return new FileSizePartitioner(properties.getSourceDirectory(), fileNames(fileName, fileList));
+    }
+
+    /**
+     * The worker step, which transfers the files of a single partition.
+     */
+    @Bean
+    public Step fileTransferStep(JobRepository jobRepository,
+                                 PlatformTransactionManager transactionManager,
+                                 CompletionPolicy fileTransferCompletionPolicy,
+                                 FileRangeItemReader fileRangeItemReader,
+                                 FileRangeItemWriter fileRangeItemWriter) {
+        return new StepBuilder("fileTransferStep", jobRepository)
+                .<FileRange, FileRange>chunk(fileTransferCompletionPolicy, transactionManager)
+                .reader(fileRangeItemReader)
+                .writer(fileRangeItemWriter)
                 .build();
     }
 
+    /**
+     * Completes a chunk after the commit interval, or after as many ranges as are copied in parallel if that is
+     * larger, so every concurrent range has work within the chunk.
+     */
+    @Bean
+    @StepScope
+    public CompletionPolicy fileTransferCompletionPolicy(FileTransferProperties properties,
+                                                         @Value("#{jobParameters['" + RANGE_CONCURRENCY_PARAMETER + "']}") Long rangeConcurrency) {
+        int concurrency = rangeConcurrency == null ? properties.getRangeConcurrency() : rangeConcurrency.intValue();
+        return new SimpleCompletionPolicy(Math.max(properties.getCommitInterval(), concurrency));
+    }
+
+    /**
+     * The index of transferred file contents, shared by every partition so they deduplicate against one filter.
+     */
+    @Bean
+    public ContentIndex contentIndex(DataSource dataSource, FileTransferProperties properties) {
+        return new ContentIndex(new JdbcTemplate(dataSource), properties.getDeduplicationExpectedFiles(), properties.getDeduplicationFalsePositiveProbability());
+    }
+
+    @Bean
+    @StepScope
+    public FileRangeItemReader fileRangeItemReader(FileTransferProperties properties,
+                                                   ContentIndex contentIndex,
+                                                   @Value("#{stepExecutionContext['" + FileSizePartitioner.FILE_NAMES_KEY + "']}") List<String> fileNames,
+                                                   @Value("#{jobParameters['" + RANGE_SIZE_PARAMETER + "']}") Long rangeSize,
+                                                   @Value("#{jobParameters['" + CODEC_PARAMETER + "']}") String codec,
+                                                   @Value("#{jobParameters['" + CODEC_DIRECTION_PARAMETER + "']}") String codecDirection,
+                                                   @Value("#{jobParameters['" + TRANSFER_STRATEGY_PARAMETER + "']}") String transferStrategy) {
+        long effectiveRangeSize = rangeSize == null ? properties.getChunkSize().toBytes() : rangeSize;
+        var reader = new FileRangeItemReader(
+                properties.getSourceDirectory(),
+                properties.getDestinationDirectory(),
+                fileNames,
+                effectiveRangeSize
+        );
+        var transferCodec = transferCodec(properties, codec);
+        reader.setCodec(transferCodec, codecDirection(properties, codecDirection));
+        reader.setWholeFiles(isDeltaTransfer(properties, transferStrategy, transferCodec));
+        if (isDeduplicating(properties, transferCodec)) {
+            reader.setDeduplicator(new FileDeduplicator(contentIndex, properties.getDeduplicationMode(), effectiveRangeSize));
+        }
+        return reader;
+    }
+
+    /**
+     * Writes the ranges of a partition, recording the digests of its files in the manifest of the job instance
+     * when checksums are enabled.
+     */
+    @Bean
+    @StepScope
+    public FileRangeItemWriter fileRangeItemWriter(FileTransferProperties properties,
+                                                   ContentIndex contentIndex,
+                                                   @Value("#{stepExecution}") StepExecution stepExecution,
+                                                   @Value("#{jobParameters['" + RANGE_CONCURRENCY_PARAMETER + "']}") Long rangeConcurrency,
+                                                   @Value("#{jobParameters['" + CODEC_PARAMETER + "']}") String codec,
+                                                   @Value("#{jobParameters['" + CODEC_DIRECTION_PARAMETER + "']}") String codecDirection,
+                                                   @Value("#{jobParameters['" + TRANSFER_STRATEGY_PARAMETER + "']}") String transferStrategy) {
+        int concurrency = rangeConcurrency == null ? properties.getRangeConcurrency() : rangeConcurrency.intValue();
+        TransferManifest manifest = null;
+        if (properties.isChecksumEnabled()) {
+            var manifestDirectory = properties.getManifestDirectory() == null
+                    ? properties.getDestinationDirectory().resolve(".manifests")
+                    : properties.getManifestDirectory();
+            var jobInstance = stepExecution.getJobExecution().getJobInstance();
+            manifest = new TransferManifest(manifestDirectory.resolve(jobInstance.getJobName() + "-" + jobInstance.getInstanceId() + ".csv"));
+        }
+        var writer = new FileRangeItemWriter(concurrency, properties.isForceOnCommit(), manifest);
+        writer.setVerifier(transferVerifier(properties));
+        var transferCodec = transferCodec(properties, codec);
+        writer.setCodec(transferCodec, codecDirection(properties, codecDirection));
+        if (isDeltaTransfer(properties, transferStrategy, transferCodec)) {
+            writer.setDeltaTransfer(new DeltaTransfer((int) properties.getDeltaBlockSize().toBytes()));
+        }
+        if (isDeduplicating(properties, transferCodec)) {
+            writer.setContentIndex(contentIndex);
+        }
+        return writer;
+    }
+
+    private static Collection<String> fileNames(String fileName, String fileList) throws IOException {
+        return fileList == null
+                ? StringUtils.commaDelimitedListToSet(fileName)
+                : Files.readAllLines(Path.of(fileList));
+    }
+
+    private static boolean isDeltaTransfer(FileTransferProperties properties, String transferStrategy, TransferCodec codec) {
+        var strategy = transferStrategy == null
+                ? properties.getTransferStrategy()
+                : FileTransferProperties.TransferStrategy.valueOf(transferStrategy.toUpperCase(Locale.ROOT));
+        return strategy == FileTransferProperties.TransferStrategy.DELTA && codec == TransferCodec.NONE;
+    }
+
+    private static boolean isDeduplicating(FileTransferProperties properties, TransferCodec codec) {
+        return properties.getDeduplicationMode() != FileDeduplicator.Mode.NONE && properties.isChecksumEnabled() && codec == TransferCodec.NONE;
+    }
+
+    private static TransferCodec transferCodec(FileTransferProperties properties, String codec) {
+        return codec == null ? properties.getCodec() : TransferCodec.valueOf(codec.toUpperCase(Locale.ROOT));
+    }
+
+    private static TransferCodec.Direction codecDirection(FileTransferProperties properties, String codecDirection) {
+        return codecDirection == null ? properties.getCodecDirection() : TransferCodec.Direction.valueOf(codecDirection.toUpperCase(Locale.ROOT));
+    }
+
+    private static TransferVerifier transferVerifier(FileTransferProperties properties) {
+        var streamed = new StreamedTransferVerifier(FileRangeItemWriter.DEFAULT_BUFFER_SIZE);
+        return switch (properties.getVerificationMode()) {
+            case NONE -> null;
+            case STREAMED -> streamed;
+            case MAPPED -> new MappedTransferVerifier(properties.getVerificationWindowSize().toBytes(), streamed);
+        };
+    }
+
 }
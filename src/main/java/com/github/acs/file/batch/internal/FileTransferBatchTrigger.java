@@ -3,31 +3,137 @@ package com.github.acs.file.batch.internal;
 import com.github.acs.file.batch.BatchProcessException;
 import com.github.acs.file.batch.BatchTrigger;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.BatchStatus;
 import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobInstance;
 import org.springframework.batch.core.JobParameters;
 import org.springframework.batch.core.JobParametersBuilder;
 import org.springframework.batch.core.JobParametersInvalidException;
+import org.springframework.batch.core.explore.JobExplorer;
 import org.springframework.batch.core.launch.JobLauncher;
 import org.springframework.batch.core.repository.JobExecutionAlreadyRunningException;
 import org.springframework.batch.core.repository.JobInstanceAlreadyCompleteException;
 import org.springframework.batch.core.repository.JobRestartException;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.UUID;
 
 @Slf4j
 public final class FileTransferBatchTrigger implements BatchTrigger {
 
+    /**
+     * The number of most recent job instances that are looked at for failed file lists to restart.
+     */
+    static final int RESTART_LOOKBACK = 100;
+
     private final JobLauncher jobLauncher;
+    private final JobExplorer jobExplorer;
     private final Job batchJob;
+    private final FileTransferProperties properties;
 
-    public FileTransferBatchTrigger(JobLauncher jobLauncher, Job batchJob) {
+    public FileTransferBatchTrigger(JobLauncher jobLauncher, JobExplorer jobExplorer, Job batchJob, FileTransferProperties properties) {
         this.jobLauncher = jobLauncher;
+        this.jobExplorer = jobExplorer;
         this.batchJob = batchJob;
+        this.properties = properties;
     }
 
     @Override
     public void triggerBatch() throws BatchProcessException {
-        JobParameters parameters = getParameters(); // Get job parameters
+        JobParameters parameters = this.properties.getTriggerMode() == FileTransferProperties.TriggerMode.RESTART_FAILED
+                ? getRestartParameters().orElseGet(this::getParameters)
+                : getParameters(); // Get job parameters
+        launch(parameters);
+    }
+
+    @Override
+    public void triggerBatch(Collection<String> fileNames) throws BatchProcessException {
+        if (fileNames.isEmpty()) {
+            return;
+        }
+        Path fileList;
+        try {
+            fileList = writeFileList(fileNames);
+        } catch (IOException e) {
+            log.error("Error writing the list of {} files to transfer", fileNames.size(), e);
+            throw new BatchProcessException(e);
+        }
+        if (this.properties.getTriggerMode() == FileTransferProperties.TriggerMode.RESTART_FAILED) {
+            restartFailedFileLists();
+        }
+        launch(parameters()
+                .addString(BatchConfig.FILE_LIST_PARAMETER, fileList.toString())
+                .toJobParameters());
+    }
+
+    /**
+     * Restarts the recent job instances that were launched for a list of files and whose last execution failed or was
+     * stopped, oldest first, before the new files are launched. The file list of an instance that was already
+     * restarted the maximum number of times is deleted instead, as the instance is given up on. An instance that
+     * cannot be restarted is left for the next trigger.
+     */
+    private void restartFailedFileLists() {
+        var instances = new ArrayList<>(this.jobExplorer.getJobInstances(this.batchJob.getName(), 0, RESTART_LOOKBACK));
+        Collections.reverse(instances);
+        for (var instance : instances) {
+            var lastExecution = this.jobExplorer.getLastJobExecution(instance);
+            if (lastExecution == null || !isRestartable(lastExecution)) {
+                continue;
+            }
+            var fileList = lastExecution.getJobParameters().getString(BatchConfig.FILE_LIST_PARAMETER);
+            if (fileList == null || !Files.exists(Path.of(fileList))) {
+                continue;
+            }
+            if (isGivenUp(this.jobExplorer, this.properties, instance)) {
+                log.warn("Job instance {} of job {} was restarted {} times, deleting its file list {}", instance.getInstanceId(),
+                        instance.getJobName(), this.properties.getTriggerMaxRestarts(), fileList);
+                deleteFileList(fileList);
+                continue;
+            }
+            log.info("Restarting job instance {} of job {} for the file list {}", instance.getInstanceId(), instance.getJobName(), fileList);
+            try {
+                launch(lastExecution.getJobParameters());
+            } catch (BatchProcessException e) {
+                log.warn("Could not restart job instance {} of job {}", instance.getInstanceId(), instance.getJobName(), e);
+            }
+        }
+    }
+
+    /**
+     * Whether a job instance is not going to be restarted by a trigger, either because triggers do not restart failed
+     * instances or because it was already restarted the maximum number of times.
+     *
+     * @param jobExplorer the explorer of the executions of the instance
+     * @param properties the properties that hold the trigger mode and the maximum number of restarts
+     * @param instance the job instance
+     * @return whether the instance is given up on
+     */
+    static boolean isGivenUp(JobExplorer jobExplorer, FileTransferProperties properties, JobInstance instance) {
+        return properties.getTriggerMode() != FileTransferProperties.TriggerMode.RESTART_FAILED
+                || jobExplorer.getJobExecutions(instance).size() - 1 >= properties.getTriggerMaxRestarts();
+    }
+
+    private static boolean isRestartable(JobExecution execution) {
+        return execution.getStatus() == BatchStatus.FAILED || execution.getStatus() == BatchStatus.STOPPED;
+    }
+
+    private static void deleteFileList(String fileList) {
+        try {
+            Files.deleteIfExists(Path.of(fileList));
+        } catch (IOException e) {
+            log.warn("Could not delete the file list {}", fileList, e);
+        }
+    }
+
+    private void launch(JobParameters parameters) throws BatchProcessException {
         try{
             this.jobLauncher.run(this.batchJob, parameters);  // Launch the job
         } catch (JobInstanceAlreadyCompleteException e) {
@@ -50,11 +156,62 @@ public final class FileTransferBatchTrigger implements BatchTrigger {
         }
     }
 
+    /**
+     * Finds the parameters of the last job instance if its last execution failed or was stopped. Launching the job
+     * with the same identifying parameters restarts that instance, which resumes every partition from its last
+     * committed range instead of starting the transfer over. An instance that was already restarted the maximum
+     * number of times is given up on, so a permanent failure does not keep new work from running.
+     *
+     * @return the parameters to restart the last job instance with, or empty if it does not need or get a restart
+     */
+    private Optional<JobParameters> getRestartParameters() {
+        JobInstance lastInstance = this.jobExplorer.getLastJobInstance(this.batchJob.getName());
+        if (lastInstance == null) {
+            return Optional.empty();
+        }
+        JobExecution lastExecution = this.jobExplorer.getLastJobExecution(lastInstance);
+        if (lastExecution == null || !isRestartable(lastExecution)) {
+            return Optional.empty();
+        }
+        if (isGivenUp(this.jobExplorer, this.properties, lastInstance)) {
+            log.warn("Job instance {} of job {} failed after {} restarts, launching a new instance instead", lastInstance.getInstanceId(),
+                    lastInstance.getJobName(), this.properties.getTriggerMaxRestarts());
+            return Optional.empty();
+        }
+        log.info("Restarting job instance {} of job {}", lastInstance.getInstanceId(), lastInstance.getJobName());
+        return Optional.of(lastExecution.getJobParameters());
+    }
+
+    /**
+     * Writes the names of the files to transfer to a new file, one per line. The names are passed to the job in a
+     * file rather than as a parameter, as a parameter is limited to a few thousand characters.
+     *
+     * @return the file the names were written to
+     */
+    private Path writeFileList(Collection<String> fileNames) throws IOException {
+        var directory = this.properties.getFileListDirectory() == null
+                ? this.properties.getDestinationDirectory().resolve(".file-lists")
+                : this.properties.getFileListDirectory();
+        Files.createDirectories(directory);
+        var fileList = directory.resolve(System.currentTimeMillis() + "-" + UUID.randomUUID() + ".txt");
+        Files.write(fileList, fileNames);
+        return fileList;
+    }
+
     private JobParameters getParameters() {
-        return new JobParametersBuilder()
-                .addString("fileName", "example.txt") // Add your parameters here
-                .addLong("time", System.currentTimeMillis())
+        return parameters()
+                .addString(BatchConfig.FILE_NAME_PARAMETER, "example.txt") // Add your parameters here
                 .toJobParameters();
     }
 
+    private JobParametersBuilder parameters() {
+        return new JobParametersBuilder()
+                .addLong(BatchConfig.RANGE_SIZE_PARAMETER, this.properties.getChunkSize().toBytes())
+                .addLong(BatchConfig.RANGE_CONCURRENCY_PARAMETER, (long) this.properties.getRangeConcurrency())
+                .addString(BatchConfig.CODEC_PARAMETER, this.properties.getCodec().name())
+                .addString(BatchConfig.CODEC_DIRECTION_PARAMETER, this.properties.getCodecDirection().name())
+                .addString(BatchConfig.TRANSFER_STRATEGY_PARAMETER, this.properties.getTransferStrategy().name())
+                .addLong("time", System.currentTimeMillis());
+    }
+
 }
@@ -0,0 +1,483 @@
+package com.github.acs.file.batch.internal;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.PositiveOrZero;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import com.github.acs.file.batch.internal.transfer.FileDeduplicator;
+import com.github.acs.file.batch.internal.transfer.TransferCodec;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Configuration
+@ConfigurationProperties(prefix = "module.batch")
+@NoArgsConstructor
+@Data
+public class FileTransferProperties {
+
+    /**
+     * The directory the batch picks source files up from.
+     */
+    @NotNull
+    private Path sourceDirectory;
+
+    /**
+     * The directory the batch transfers files to, mirroring the source directory layout.
+     */
+    @NotNull
+    private Path destinationDirectory;
+
+    /**
+     * The default size of a single byte range, the unit of work the transfer step reads and writes.
+     */
+    @NotNull
+    private DataSize chunkSize = DataSize.ofMegabytes(64);
+
+    /**
+     * The number of byte ranges written per transaction, after which progress is committed to the job repository.
+     */
+    @Positive
+    private int commitInterval = 1;
+
+    /**
+     * The default number of byte ranges copied in parallel. With more than one, the ranges of a file are copied
+     * concurrently with positional reads and writes instead of sequentially with zero-copy transfers.
+     */
+    @Positive
+    private int rangeConcurrency = 1;
+
+    /**
+     * Whether written ranges are forced to the storage device before their chunk is committed.
+     */
+    private boolean forceOnCommit = true;
+
+    /**
+     * Whether the CRC32C and SHA-256 of every transferred file are computed while it is copied and recorded in a
+     * manifest. Ranges are still copied with zero-copy transfers, while the source is hashed alongside the copy.
+     */
+    private boolean checksumEnabled = true;
+
+    /**
+     * The directory the manifests of the transferred files are written to, one per job instance. Defaults to the
+     * {@code .manifests} directory of the destination directory.
+     */
+    private Path manifestDirectory;
+
+    /**
+     * The directory the lists of files a job is launched for are written to, one per job instance, so the job reads
+     * the same files when it is restarted. A list is deleted once its job completed. Defaults to the
+     * {@code .file-lists} directory of the destination directory.
+     */
+    private Path fileListDirectory;
+
+    /**
+     * How every transferred file is compared with its source before it is renamed to its destination.
+     */
+    @NotNull
+    private VerificationMode verificationMode = VerificationMode.NONE;
+
+    /**
+     * The size of the windows a file is mapped in when it is verified in {@code mapped} mode, at most 2 GB.
+     */
+    @NotNull
+    private DataSize verificationWindowSize = DataSize.ofMegabytes(64);
+
+    /**
+     * How files are transferred by default. Files transferred with a codec are always transferred in full.
+     */
+    @NotNull
+    private TransferStrategy transferStrategy = TransferStrategy.FULL;
+
+    /**
+     * The size of the blocks of the current destination that a delta transfer looks for in the source.
+     */
+    @NotNull
+    private DataSize deltaBlockSize = DataSize.ofKilobytes(64);
+
+    /**
+     * The default codec files are compressed or decompressed with while they are transferred. Files transferred with
+     * a codec are copied as a single range each.
+     */
+    @NotNull
+    private TransferCodec codec = TransferCodec.NONE;
+
+    /**
+     * Whether files are compressed or decompressed with the codec by default.
+     */
+    @NotNull
+    private TransferCodec.Direction codecDirection = TransferCodec.Direction.COMPRESS;
+
+    /**
+     * Whether files whose content was transferred before are skipped or hard-linked instead of transferred. Requires
+     * checksums, and does not apply to files transferred with a codec.
+     */
+    @NotNull
+    private FileDeduplicator.Mode deduplicationMode = FileDeduplicator.Mode.NONE;
+
+    /**
+     * The number of distinct file contents the deduplication filter is sized for.
+     */
+    @Positive
+    private long deduplicationExpectedFiles = 1_000_000;
+
+    /**
+     * The probability that the deduplication filter sends a file that was never transferred to the database.
+     */
+    @Positive
+    private double deduplicationFalsePositiveProbability = 0.01;
+
+    /**
+     * The number of size-balanced partitions the source files are split into.
+     */
+    @Positive
+    private int gridSize = 4;
+
+    /**
+     * The number of partitions transferred concurrently, by the job or by a partition worker.
+     */
+    @Positive
+    private int partitionConcurrency = 4;
+
+    /**
+     * Whether the partitions of a job are transferred by the job itself or handed out to the partition workers.
+     */
+    @NotNull
+    private PartitionMode partitionMode = PartitionMode.LOCAL;
+
+    /**
+     * Whether this node claims and transfers the partitions handed out by the jobs of any node.
+     */
+    private boolean partitionWorkerEnabled = false;
+
+    /**
+     * The time between two polls of the partition workers for unclaimed partitions, and of a job for the partitions
+     * its workers completed.
+     */
+    @NotNull
+    private Duration partitionPollInterval = Duration.ofSeconds(1);
+
+    /**
+     * The time after which a partition whose worker stopped sending heartbeats is claimed by another worker.
+     */
+    @NotNull
+    private Duration partitionLeaseTimeout = Duration.ofMinutes(1);
+
+    /**
+     * The longest a job waits for the workers to transfer its partitions.
+     */
+    @NotNull
+    private Duration partitionTimeout = Duration.ofHours(12);
+
+    /**
+     * How a trigger chooses the parameters of the job it launches.
+     */
+    @NotNull
+    private TriggerMode triggerMode = TriggerMode.NEW_INSTANCE;
+
+    /**
+     * How many times a trigger restarts a failed job instance in the {@code restart_failed} mode. A trigger launches a
+     * new job instance instead once the instance was restarted this many times, so an instance that keeps failing
+     * does not hold up the files triggered after it. The file list of an instance that is given up on is deleted, and
+     * the files it had picked up from the landing directories are picked up again.
+     */
+    @PositiveOrZero
+    private int triggerMaxRestarts = 3;
+
+    /**
+     * Whether the landing directories are polled for new files, which are transferred by one job per poll.
+     */
+    private boolean ingressEnabled = false;
+
+    /**
+     * The landing directories that are polled for new files, relative to the source directory. The source directory
+     * itself is polled if none are configured.
+     */
+    @NotNull
+    private List<Path> ingressDirectories = new ArrayList<>();
+
+    /**
+     * The time between two polls of a landing directory.
+     */
+    @NotNull
+    private Duration ingressPollInterval = Duration.ofSeconds(10);
+
+    /**
+     * The maximum number of files picked up from a landing directory by a single poll, and so transferred by a
+     * single job. The files left over are picked up by the next polls.
+     */
+    @Positive
+    private int ingressMaxFilesPerPoll = 1000;
+
+    /**
+     * How a file that is still being written to a landing directory is told apart from a complete file.
+     */
+    @NotNull
+    private ReadLock ingressReadLock = ReadLock.CHANGED;
+
+    /**
+     * The time between two checks of the read lock of a file.
+     */
+    @NotNull
+    private Duration ingressReadLockCheckInterval = Duration.ofSeconds(1);
+
+    /**
+     * The longest a poll waits for the read lock of a file, after which the file is left for the next poll.
+     */
+    @NotNull
+    private Duration ingressReadLockTimeout = Duration.ofSeconds(10);
+
+    /**
+     * The maximum number of keys of files that were picked up that are cached, so polls do not look up every file
+     * that is still in a landing directory in the database.
+     */
+    @Positive
+    private int ingressIdempotentCacheSize = 100_000;
+
+    /**
+     * Whether the watch directories are watched for new and changed files, which are transferred by one job per batch
+     * of file events, instead of being polled.
+     */
+    private boolean watchEnabled = false;
+
+    /**
+     * The directories that are watched for new and changed files, with their subdirectories, relative to the source
+     * directory. The source directory itself is watched if none are configured.
+     */
+    @NotNull
+    private List<Path> watchDirectories = new ArrayList<>();
+
+    /**
+     * The time without events after which a file is considered complete, and the batch of pending files is launched
+     * if none of them had events within that time.
+     */
+    @NotNull
+    private Duration watchQuietPeriod = Duration.ofSeconds(2);
+
+    /**
+     * The longest a file event waits for the watch directories to become quiet before the complete files are
+     * launched regardless.
+     */
+    @NotNull
+    private Duration watchMaxBatchDelay = Duration.ofSeconds(30);
+
+    /**
+     * The maximum number of files transferred by a single job launched by the watch trigger.
+     */
+    @Positive
+    private int watchMaxBatchSize = 1000;
+
+    /**
+     * The time between two scans of the watch directories for files whose events were lost. The directories are also
+     * scanned when the event queue overflowed.
+     */
+    @NotNull
+    private Duration watchReconcileInterval = Duration.ofHours(1);
+
+    /**
+     * Whether partners can upload source files and download destination files over HTTP, which also requires the
+     * access token to be set.
+     */
+    private boolean httpEnabled = false;
+
+    /**
+     * The token partners send as {@code Authorization: Bearer <token>} with every HTTP request. The endpoints stay
+     * disabled until it is set, even if HTTP is enabled, so the files are never served without authentication. When
+     * partners are authenticated by a gateway in front of the module, the gateway forwards this token.
+     */
+    private String httpAccessToken;
+
+    /**
+     * The largest file that can be uploaded over HTTP.
+     */
+    @NotNull
+    private DataSize httpMaxUploadSize = DataSize.ofGigabytes(10);
+
+    /**
+     * The size of the buffers a download is read with when the server cannot send the file without copying it.
+     */
+    @NotNull
+    private DataSize httpBufferSize = DataSize.ofKilobytes(64);
+
+    /**
+     * The SFTP or FTP server the source files are fetched from into the source directory before they are transferred,
+     * or {@code null} if the source files are local.
+     */
+    @Valid
+    private Remote remoteSource;
+
+    /**
+     * The SFTP or FTP server the transferred files are pushed to from the destination directory, or {@code null} if
+     * the destination files stay local.
+     */
+    @Valid
+    private Remote remoteDestination;
+
+    @NoArgsConstructor
+    @Data
+    public static class Remote {
+
+        /**
+         * The server and directory, such as {@code sftp://host:22/outbound} or {@code ftp://host/outbound}.
+         */
+        @NotNull
+        private URI uri;
+
+        private String username;
+
+        private String password;
+
+        /**
+         * The private key the SFTP client authenticates with, instead of or in addition to the password.
+         */
+        private Path privateKey;
+
+        /**
+         * Whether the host key of the SFTP server must be listed in the known hosts file.
+         */
+        private boolean strictHostKeyChecking = true;
+
+        /**
+         * The known hosts file the host key of the SFTP server is verified against. Defaults to
+         * {@code ~/.ssh/known_hosts}.
+         */
+        private Path knownHostsFile;
+
+        /**
+         * The number of files transferred to or from the server at once, each over a channel of its own. SFTP
+         * channels share a single SSH session.
+         */
+        @Positive
+        private int channels = 4;
+
+        /**
+         * The time after which an idle channel is closed.
+         */
+        @NotNull
+        private Duration idleTimeout = Duration.ofMinutes(1);
+
+        /**
+         * The time between two keep-alive messages on an idle session, or an idle FTP connection being checked before
+         * it is reused.
+         */
+        @NotNull
+        private Duration keepAliveInterval = Duration.ofSeconds(30);
+
+        /**
+         * The size of a single read or write request.
+         */
+        @NotNull
+        private DataSize bufferSize = DataSize.ofKilobytes(32);
+
+        /**
+         * The number of read requests an SFTP download keeps outstanding, so the latency of the server is paid once
+         * per window instead of once per request.
+         */
+        @Positive
+        private int readAheadRequests = 16;
+
+        /**
+         * The time allowed to connect and authenticate.
+         */
+        @NotNull
+        private Duration connectTimeout = Duration.ofSeconds(30);
+
+    }
+
+    public enum PartitionMode {
+        /**
+         * The partitions are transferred by the node running the job.
+         */
+        LOCAL,
+        /**
+         * The partitions are handed out through the database to the partition workers of every node, which share the
+         * source and destination directories.
+         */
+        REMOTE
+    }
+
+    public enum TransferStrategy {
+        /**
+         * Files are copied in full, in ranges.
+         */
+        FULL,
+        /**
+         * Files are transferred as a single range each, by cloning their current destination and writing only the
+         * bytes of their source that changed into the clone. Only worth it on file systems that clone files without
+         * copying their data, such as Btrfs, XFS or ZFS, as elsewhere the clone writes the whole destination again.
+         */
+        DELTA
+    }
+
+    public enum VerificationMode {
+        /**
+         * Files are not compared with their source.
+         */
+        NONE,
+        /**
+         * Files are compared with their source through direct buffers of the range buffer size.
+         */
+        STREAMED,
+        /**
+         * Files are compared with their source by memory-mapping both in windows, and streamed if they cannot be
+         * mapped.
+         */
+        MAPPED
+    }
+
+    public enum TriggerMode {
+        /**
+         * Every trigger launches a new job instance.
+         */
+        NEW_INSTANCE,
+        /**
+         * A trigger restarts the last job instance with its identifying parameters if its last execution failed
+         * or was stopped and it was restarted fewer than the maximum number of restarts, and launches a new job
+         * instance otherwise. A trigger with a list of files first restarts the recent instances launched for a list
+         * of files that failed or were stopped the same way, and then launches a new instance for its files.
+         */
+        RESTART_FAILED
+    }
+
+    public enum ReadLock {
+        /**
+         * Files are picked up as soon as they are seen.
+         */
+        NONE("none"),
+        /**
+         * Files are picked up once the writer no longer holds a {@code <file>.camelLock} marker file next to them.
+         */
+        MARKER_FILE("markerFile"),
+        /**
+         * Files are picked up once an exclusive file lock can be taken on them, for writers that lock the files they
+         * write.
+         */
+        FILE_LOCK("fileLock"),
+        /**
+         * Files are picked up once their size and last modified time did not change for a check interval.
+         */
+        CHANGED("changed");
+
+        private final String strategy;
+
+        ReadLock(String strategy) {
+            this.strategy = strategy;
+        }
+
+        /**
+         * @return the name of the read lock strategy of the Camel file component
+         */
+        public String strategy() {
+            return this.strategy;
+        }
+    }
+
+}
@@ -1,11 +1,17 @@
 package com.github.acs.file.batch.internal;
 
+import com.github.acs.file.batch.internal.ingress.FileIngressKeys;
 import com.github.acs.file.batch.internal.template.CompletedEmailTemplate;
 import com.github.acs.file.batch.internal.template.CompletedTemplateVariables;
 import com.github.acs.file.batch.internal.template.ErrorEmailTemplate;
 import com.github.acs.file.batch.internal.template.ErrorTemplateVariables;
+import com.github.acs.file.batch.internal.template.PartitionSummary;
+import com.github.acs.file.batch.internal.transfer.FileRangeItemReader;
+import com.github.acs.file.batch.internal.transfer.FileRangeItemWriter;
 import com.github.acs.file.email.EmailRequest;
 import com.github.acs.file.email.EmailService;
+import com.github.acs.file.email.EmailServiceException;
+import io.micrometer.core.instrument.DistributionSummary;
 import io.micrometer.core.instrument.MeterRegistry;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -13,9 +19,17 @@ import org.springframework.batch.core.BatchStatus;
 import org.springframework.batch.core.ExitStatus;
 import org.springframework.batch.core.JobExecution;
 import org.springframework.batch.core.JobExecutionListener;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Set;
 
 @Slf4j
@@ -25,6 +39,9 @@ public class JobNotificationListener implements JobExecutionListener {
 
     private final MeterRegistry registry;
     private final EmailService emailService;
+    private final ObjectProvider<FileIngressKeys> ingressKeys;
+    private final JobExplorer jobExplorer;
+    private final FileTransferProperties properties;
 
     @Override
     public void beforeJob(JobExecution jobExecution) {
@@ -35,20 +52,31 @@ public class JobNotificationListener implements JobExecutionListener {
     public void afterJob(JobExecution jobExecution) {
         if(jobExecution.getExitStatus().getExitCode().equals(ExitStatus.COMPLETED.getExitCode())) {
             this.sendCompletedEmail(jobExecution);
+            this.deleteFileList(jobExecution);
             log.info("Batch process completed successfully with job name: {}", jobExecution.getJobInstance().getJobName());
 
         } else if(jobExecution.getExitStatus().getExitCode().equals(ExitStatus.FAILED.getExitCode())) {
             this.sendFailedEmail(jobExecution);
+            if (FileTransferBatchTrigger.isGivenUp(this.jobExplorer, this.properties, jobExecution.getJobInstance())) {
+                this.releaseIngressFiles(jobExecution);
+                this.deleteFileList(jobExecution);
+            }
             log.error("Batch process failed with job name: {}", jobExecution.getJobInstance().getJobName());
         }
     }
 
     private void sendCompletedEmail(JobExecution jobExecution) {
+        var partitions = summarisePartitions(jobExecution);
         var templateVariables = CompletedTemplateVariables.builder()
                 .timeOfDay(LocalDateTime.now().toString())
                 .jobName(jobExecution.getJobInstance().getJobName())
                 .completedTime(jobExecution.getEndTime())
-                .passedCount(0)
+                .passedCount(partitions.stream().mapToInt(PartitionSummary::verifiedCount).sum())
+                .fileCount(partitions.stream().mapToInt(PartitionSummary::fileCount).sum())
+                .byteCount(partitions.stream().mapToLong(PartitionSummary::byteCount).sum())
+                .skippedCount(partitions.stream().mapToInt(PartitionSummary::skippedCount).sum())
+                .skippedBytes(partitions.stream().mapToLong(PartitionSummary::skippedBytes).sum())
+                .partitions(partitions)
                 .build();
 
         var emailTemplate = CompletedEmailTemplate.builder()
@@ -61,7 +89,122 @@ public class JobNotificationListener implements JobExecutionListener {
                 .template(emailTemplate)
                 .build();
 
-        this.emailService.sendEmail(emailRequest);
+        sendEmail(emailRequest);
+    }
+
+    /**
+     * Deletes the list of files a completed or given up job was launched for. The list is kept while the job instance
+     * can still be restarted.
+     */
+    private void deleteFileList(JobExecution jobExecution) {
+        var fileList = jobExecution.getJobParameters().getString(BatchConfig.FILE_LIST_PARAMETER);
+        if (fileList == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(Path.of(fileList));
+        } catch (IOException e) {
+            log.warn("Could not delete the file list {} of the job", fileList, e);
+        }
+    }
+
+    /**
+     * Releases the files of a failed job that is not going to be restarted, so the next poll of their landing
+     * directory by the ingress picks them up again and launches a new job for them.
+     */
+    private void releaseIngressFiles(JobExecution jobExecution) {
+        var fileList = jobExecution.getJobParameters().getString(BatchConfig.FILE_LIST_PARAMETER);
+        var ingressKeys = this.ingressKeys.getIfAvailable();
+        if (fileList == null || ingressKeys == null) {
+            return;
+        }
+        try {
+            ingressKeys.release(Files.readAllLines(Path.of(fileList)));
+        } catch (IOException e) {
+            log.warn("Could not release the files in the file list {} of the failed job", fileList, e);
+        }
+    }
+
+    /**
+     * Summarises the transfer steps of the job, one per partition, and records their totals in the meter registry.
+     *
+     * @param jobExecution the finished job execution
+     * @return the summary of every step that transferred files
+     */
+    private List<PartitionSummary> summarisePartitions(JobExecution jobExecution) {
+        var jobName = jobExecution.getJobInstance().getJobName();
+        return jobExecution.getStepExecutions().stream()
+                .filter(stepExecution -> stepExecution.getExecutionContext().containsKey(FileRangeItemReader.BYTE_COUNT_KEY))
+                .map(stepExecution -> {
+                    var summary = toPartitionSummary(stepExecution);
+                    this.registry.counter("file.transfer.files", "job", jobName).increment(summary.fileCount());
+                    this.registry.counter("file.transfer.bytes", "job", jobName).increment(summary.byteCount());
+                    this.registry.counter("file.transfer.verified", "job", jobName).increment(summary.verifiedCount());
+                    this.registry.counter("file.transfer.skipped.files", "job", jobName).increment(summary.skippedCount());
+                    this.registry.counter("file.transfer.skipped.bytes", "job", jobName).increment(summary.skippedBytes());
+                    recordCodecMetrics(jobName, stepExecution);
+                    recordDeltaMetrics(jobName, stepExecution);
+                    return summary;
+                })
+                .toList();
+    }
+
+    /**
+     * Records the compression ratio and the throughput of the codec a partition was transferred with, as the number of
+     * uncompressed bytes per compressed byte and per second.
+     */
+    private void recordCodecMetrics(String jobName, StepExecution stepExecution) {
+        var executionContext = stepExecution.getExecutionContext();
+        if (!executionContext.containsKey(FileRangeItemWriter.CODEC_KEY)) {
+            return;
+        }
+        var codec = executionContext.getString(FileRangeItemWriter.CODEC_KEY);
+        long rawBytes = executionContext.getLong(FileRangeItemWriter.CODEC_RAW_BYTES_KEY, 0L);
+        long encodedBytes = executionContext.getLong(FileRangeItemWriter.CODEC_ENCODED_BYTES_KEY, 0L);
+        long nanos = executionContext.getLong(FileRangeItemWriter.CODEC_NANOS_KEY, 0L);
+        this.registry.counter("file.transfer.codec.raw.bytes", "job", jobName, "codec", codec).increment(rawBytes);
+        this.registry.counter("file.transfer.codec.encoded.bytes", "job", jobName, "codec", codec).increment(encodedBytes);
+        if (encodedBytes > 0) {
+            this.registry.summary("file.transfer.codec.ratio", "job", jobName, "codec", codec).record((double) rawBytes / encodedBytes);
+        }
+        if (nanos > 0) {
+            DistributionSummary.builder("file.transfer.codec.throughput")
+                    .baseUnit("bytes.per.second")
+                    .tags("job", jobName, "codec", codec)
+                    .register(this.registry)
+                    .record(rawBytes / (nanos / 1e9));
+        }
+    }
+
+    /**
+     * Records the number of bytes a delta transfer copied from the source, and reused from the destination.
+     */
+    private void recordDeltaMetrics(String jobName, StepExecution stepExecution) {
+        var executionContext = stepExecution.getExecutionContext();
+        if (!executionContext.containsKey(FileRangeItemWriter.DELTA_LITERAL_BYTES_KEY)) {
+            return;
+        }
+        this.registry.counter("file.transfer.delta.literal.bytes", "job", jobName)
+                .increment(executionContext.getLong(FileRangeItemWriter.DELTA_LITERAL_BYTES_KEY));
+        this.registry.counter("file.transfer.delta.matched.bytes", "job", jobName)
+                .increment(executionContext.getLong(FileRangeItemWriter.DELTA_MATCHED_BYTES_KEY));
+    }
+
+    private static PartitionSummary toPartitionSummary(StepExecution stepExecution) {
+        var executionContext = stepExecution.getExecutionContext();
+        var duration = stepExecution.getStartTime() == null || stepExecution.getEndTime() == null
+                ? Duration.ZERO
+                : Duration.between(stepExecution.getStartTime(), stepExecution.getEndTime());
+        return PartitionSummary.builder()
+                .name(stepExecution.getStepName())
+                .status(stepExecution.getStatus().toString())
+                .fileCount(executionContext.getInt(FileRangeItemReader.FILE_COUNT_KEY, 0))
+                .verifiedCount(executionContext.getInt(FileRangeItemWriter.VERIFIED_COUNT_KEY, 0))
+                .byteCount(executionContext.getLong(FileRangeItemReader.BYTE_COUNT_KEY, 0L))
+                .skippedCount(executionContext.getInt(FileRangeItemReader.SKIPPED_COUNT_KEY, 0))
+                .skippedBytes(executionContext.getLong(FileRangeItemReader.SKIPPED_BYTES_KEY, 0L))
+                .durationMillis(duration.toMillis())
+                .build();
     }
 
     private void sendFailedEmail(JobExecution jobExecution) {
@@ -83,6 +226,25 @@ public class JobNotificationListener implements JobExecutionListener {
                 .template(emailTemplate)
                 .build();
 
-        this.emailService.sendEmail(emailRequest);
+        sendEmail(emailRequest);
+    }
+
+    /**
+     * Stores an email in the durable outbox of the email service, so it is neither held up by a slow mail server nor
+     * lost if the mail server is down. If the outbox cannot be written to, the email is sent in the background
+     * instead.
+     */
+    private void sendEmail(EmailRequest emailRequest) {
+        try {
+            this.emailService.enqueueEmail(emailRequest);
+            return;
+        } catch (EmailServiceException e) {
+            log.warn("Could not store the email in the outbox, sending it directly: {}", emailRequest.subject(), e);
+        }
+        this.emailService.sendEmailAsync(emailRequest).whenComplete((result, e) -> {
+            if (e != null) {
+                log.error("Could not send the email: {}", emailRequest.subject(), e);
+            }
+        });
     }
 }
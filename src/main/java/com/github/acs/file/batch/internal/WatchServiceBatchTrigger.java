@@ -0,0 +1,355 @@
+package com.github.acs.file.batch.internal;
+
+import com.github.acs.file.batch.BatchProcessException;
+import com.github.acs.file.batch.BatchTrigger;
+import com.github.acs.file.batch.internal.transfer.SourceFiles;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Launches the transfer of the files created or changed in the watch directories, driven by the events of a
+ * {@link WatchService} instead of listing the directories over and over.
+ * <p>
+ * The events are debounced and coalesced: a file is complete once it had no event for the quiet period, and the
+ * complete files are launched as one job once the watch directories had no event for the quiet period, once the first
+ * event of the batch waited for the maximum batch delay, or once the batch is full. The jobs are launched one after
+ * the other by the {@link FileTransferBatchTrigger} on a thread of their own, which passes the files to the job, so
+ * events keep being drained while a job runs.
+ * <p>
+ * The watch directories are scanned for the files that changed since the previous scan and were not launched when the
+ * event queue overflowed, and every reconcile interval in case events were lost otherwise. Files that were already in
+ * the watch directories when the trigger started are not transferred. Hidden files and {@code .part} files are
+ * ignored, as they are written by downloads and uploads that are not complete yet.
+ * <p>
+ * The time from the first event of a batch to the launch of its job is recorded in the {@code batch.trigger.latency}
+ * timer, and the overflows of the event queue are counted in the {@code batch.trigger.overflows} counter.
+ */
+@Slf4j
+public class WatchServiceBatchTrigger implements BatchTrigger {
+
+    /**
+     * How much earlier than the clock the last modified time of a file may be, as file systems keep it with a coarser
+     * clock or precision.
+     */
+    private static final long TIMESTAMP_SLACK_MILLIS = 2_000;
+
+    private final BatchTrigger delegate;
+    private final FileTransferProperties properties;
+    private final MeterRegistry registry;
+    private final Path sourceDirectory;
+    private final long quietNanos;
+    private final long maxDelayNanos;
+    private final long reconcileNanos;
+    private final Map<WatchKey, Path> directories = new HashMap<>();
+    private final Map<Path, Pending> pending = new LinkedHashMap<>();
+    private final Map<Path, Long> launched = new HashMap<>();
+    private final ExecutorService launcher = Executors.newSingleThreadExecutor(Thread.ofVirtual().name("batch-watch-launcher").factory());
+    private long watermarkMillis = System.currentTimeMillis();
+    private long lastEventNanos;
+    private WatchService watchService;
+    private Thread watcher;
+
+    public WatchServiceBatchTrigger(BatchTrigger delegate, FileTransferProperties properties, MeterRegistry registry) {
+        this.delegate = delegate;
+        this.properties = properties;
+        this.registry = registry;
+        this.sourceDirectory = properties.getSourceDirectory().toAbsolutePath().normalize();
+        this.quietNanos = properties.getWatchQuietPeriod().toNanos();
+        this.maxDelayNanos = properties.getWatchMaxBatchDelay().toNanos();
+        this.reconcileNanos = properties.getWatchReconcileInterval().toNanos();
+    }
+
+    /**
+     * The events of a file that was not launched yet.
+     */
+    private record Pending(long firstEventNanos, long lastEventNanos) {
+    }
+
+    /**
+     * The files of a job, and the time of the first event among them.
+     */
+    private record Batch(List<Path> files, long firstEventNanos) {
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!this.properties.isWatchEnabled()) {
+            return;
+        }
+        this.watchService = FileSystems.getDefault().newWatchService();
+        for (var directory : watchDirectories()) {
+            Files.createDirectories(directory);
+            register(directory);
+        }
+        this.watcher = Thread.ofVirtual().name("batch-watcher").start(this::watch);
+        log.info("Watching {} directories for files to transfer", this.directories.size());
+    }
+
+    @PreDestroy
+    public void close() throws IOException, InterruptedException {
+        if (this.watchService != null) {
+            this.watchService.close();
+            this.watcher.join();
+        }
+        this.launcher.close();
+    }
+
+    /**
+     * Launches the transfer of every pending file, whether it is complete or not.
+     */
+    @Override
+    public void triggerBatch() throws BatchProcessException {
+        var batch = takeBatch(System.nanoTime(), true);
+        if (batch != null) {
+            launch(batch);
+        }
+    }
+
+    @Override
+    public void triggerBatch(Collection<String> fileNames) throws BatchProcessException {
+        this.delegate.triggerBatch(fileNames);
+    }
+
+    private void watch() {
+        long nextReconcileNanos = System.nanoTime() + this.reconcileNanos;
+        long pollMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(this.quietNanos) / 2);
+        try {
+            while (true) {
+                boolean overflow = false;
+                var key = this.watchService.poll(pollMillis, TimeUnit.MILLISECONDS);
+                while (key != null) {
+                    overflow |= handle(key);
+                    key = this.watchService.poll();
+                }
+                long now = System.nanoTime();
+                if (overflow || now - nextReconcileNanos >= 0) {
+                    reconcile();
+                    nextReconcileNanos = System.nanoTime() + this.reconcileNanos;
+                }
+                Batch batch;
+                while ((batch = takeBatch(now, false)) != null) {
+                    var files = batch;
+                    this.launcher.execute(() -> {
+                        try {
+                            launch(files);
+                        } catch (RuntimeException e) {
+                            // Logged, and the files are retried by a later batch
+                        }
+                    });
+                }
+            }
+        } catch (ClosedWatchServiceException e) {
+            log.debug("Stopped watching the directories of files to transfer");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Records the events of a watch key, and watches the directories that were created.
+     *
+     * @return whether events were lost
+     */
+    private boolean handle(WatchKey key) {
+        var directory = this.directories.get(key);
+        boolean overflow = false;
+        long now = System.nanoTime();
+        for (var event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                overflow = true;
+            } else if (directory != null && event.context() instanceof Path name) {
+                var file = directory.resolve(name);
+                if (Files.isDirectory(file)) {
+                    overflow |= event.kind() == StandardWatchEventKinds.ENTRY_CREATE && !registerCreated(file);
+                } else if (!isInternal(file)) {
+                    addEvent(file, now);
+                }
+            }
+        }
+        if (!key.reset()) {
+            this.directories.remove(key);
+        }
+        if (overflow) {
+            this.registry.counter("batch.trigger.overflows").increment();
+            log.warn("Lost events of the watched directories, scanning them for changed files");
+        }
+        return overflow;
+    }
+
+    /**
+     * Watches a directory that was created, and records the files that were created in it before it was watched.
+     *
+     * @return whether the directory could be watched
+     */
+    private boolean registerCreated(Path directory) {
+        try {
+            register(directory);
+        } catch (IOException | UncheckedIOException e) {
+            log.warn("Could not watch the created directory {}", directory, e);
+            return false;
+        }
+        long now = System.nanoTime();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.filter(file -> Files.isRegularFile(file) && !isInternal(file)).forEach(file -> addEvent(file, now));
+        } catch (IOException | UncheckedIOException e) {
+            log.warn("Could not list the created directory {}", directory, e);
+            return false;
+        }
+        return true;
+    }
+
+    private void register(Path directory) throws IOException {
+        try (Stream<Path> subdirectories = Files.walk(directory)) {
+            for (var subdirectory : (Iterable<Path>) subdirectories.filter(Files::isDirectory)::iterator) {
+                var key = subdirectory.register(this.watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+                this.directories.put(key, subdirectory);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Scans the watch directories for the files that were modified since the previous scan and were not launched
+     * since, and records an event for each of them.
+     */
+    synchronized void reconcile() {
+        long scanMillis = System.currentTimeMillis();
+        long now = System.nanoTime();
+        int found = 0;
+        for (var directory : watchDirectories()) {
+            try (Stream<Path> files = Files.walk(directory)) {
+                for (var file : (Iterable<Path>) files::iterator) {
+                    var attributes = readAttributes(file);
+                    if (attributes == null || !attributes.isRegularFile() || isInternal(file)) {
+                        continue;
+                    }
+                    long modifiedMillis = attributes.lastModifiedTime().toMillis();
+                    if (modifiedMillis >= this.watermarkMillis - TIMESTAMP_SLACK_MILLIS && !Long.valueOf(modifiedMillis).equals(this.launched.get(file))
+                            && !this.pending.containsKey(file)) {
+                        addEvent(file, now);
+                        found++;
+                    }
+                }
+            } catch (NoSuchFileException e) {
+                log.debug("The watch directory {} does not exist", directory);
+            } catch (IOException | UncheckedIOException e) {
+                log.warn("Could not scan the watch directory {}", directory, e);
+                return;
+            }
+        }
+        this.watermarkMillis = scanMillis;
+        this.launched.values().removeIf(modifiedMillis -> modifiedMillis < scanMillis - TIMESTAMP_SLACK_MILLIS);
+        log.info("Found {} changed files whose events were lost", found);
+    }
+
+    private synchronized void addEvent(Path file, long now) {
+        var current = this.pending.get(file);
+        this.pending.put(file, new Pending(current == null ? now : current.firstEventNanos(), now));
+        this.lastEventNanos = now;
+    }
+
+    /**
+     * Takes the next batch of files to launch off the pending files.
+     *
+     * @param now the current time
+     * @param all whether every pending file is taken, instead of the complete files once the batch is due
+     * @return the batch, or {@code null} if no batch is due
+     */
+    private synchronized Batch takeBatch(long now, boolean all) {
+        if (this.pending.isEmpty()) {
+            return null;
+        }
+        if (!all) {
+            boolean quiet = now - this.lastEventNanos >= this.quietNanos;
+            long firstEventNanos = this.pending.values().stream().mapToLong(Pending::firstEventNanos).min().orElse(now);
+            long complete = this.pending.values().stream().filter(pending -> now - pending.lastEventNanos() >= this.quietNanos).count();
+            if (complete == 0 || !(quiet || now - firstEventNanos >= this.maxDelayNanos || complete >= this.properties.getWatchMaxBatchSize())) {
+                return null;
+            }
+        }
+        var files = new ArrayList<Path>();
+        long firstEventNanos = now;
+        var iterator = this.pending.entrySet().iterator();
+        while (iterator.hasNext() && (all || files.size() < this.properties.getWatchMaxBatchSize())) {
+            var entry = iterator.next();
+            if (all || now - entry.getValue().lastEventNanos() >= this.quietNanos) {
+                iterator.remove();
+                var attributes = readAttributes(entry.getKey());
+                if (attributes != null && attributes.isRegularFile()) {
+                    files.add(entry.getKey());
+                    firstEventNanos = Math.min(firstEventNanos, entry.getValue().firstEventNanos());
+                    this.launched.put(entry.getKey(), attributes.lastModifiedTime().toMillis());
+                }
+            }
+        }
+        return files.isEmpty() ? null : new Batch(files, firstEventNanos);
+    }
+
+    private void launch(Batch batch) {
+        Timer.builder("batch.trigger.latency")
+                .description("The time from the first file event of a batch to the launch of its job")
+                .tag("trigger", "watch")
+                .register(this.registry)
+                .record(System.nanoTime() - batch.firstEventNanos(), TimeUnit.NANOSECONDS);
+        var fileNames = batch.files().stream().map(file -> this.sourceDirectory.relativize(file).toString()).toList();
+        log.info("Launching the transfer of {} changed files", fileNames.size());
+        try {
+            this.delegate.triggerBatch(fileNames);
+        } catch (RuntimeException e) {
+            log.error("Error launching the transfer of {} changed files, retrying them after the quiet period", fileNames.size(), e);
+            long now = System.nanoTime();
+            batch.files().forEach(file -> addEvent(file, now));
+            throw e;
+        }
+    }
+
+    private List<Path> watchDirectories() {
+        var directories = this.properties.getWatchDirectories();
+        return directories.isEmpty()
+                ? List.of(this.sourceDirectory)
+                : directories.stream().map(directory -> this.sourceDirectory.resolve(directory).normalize()).toList();
+    }
+
+    /**
+     * Whether a file is kept by the module or still being written, such as the {@code .part} file of a download or
+     * an upload, and no event is recorded for it.
+     */
+    private boolean isInternal(Path file) {
+        return SourceFiles.isInternal(this.sourceDirectory.relativize(file));
+    }
+
+    private static BasicFileAttributes readAttributes(Path file) {
+        try {
+            return Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+}
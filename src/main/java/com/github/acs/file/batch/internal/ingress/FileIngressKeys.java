@@ -0,0 +1,68 @@
+package com.github.acs.file.batch.internal.ingress;
+
+import com.github.acs.file.batch.internal.FileTransferProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.camel.component.file.GenericFile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+
+/**
+ * The keys of the files picked up by the ingress, shared by the ingress routes, which add the key of every file they
+ * pick up, and the job listener, which releases the files of a job that failed for good so they are picked up again.
+ * <p>
+ * The key of a file is made of its normalized absolute path, its size and its last modified time, so a file that
+ * changed after it was picked up has a new key and is picked up again anyway.
+ */
+@Slf4j
+@Component
+public class FileIngressKeys {
+
+    private final FileTransferProperties properties;
+    private final JdbcIdempotentRepository repository;
+
+    public FileIngressKeys(FileTransferProperties properties, DataSource dataSource) {
+        this.properties = properties;
+        this.repository = new JdbcIdempotentRepository(new JdbcTemplate(dataSource), FileIngressRoute.PROCESSOR_NAME,
+                properties.getIngressIdempotentCacheSize());
+    }
+
+    JdbcIdempotentRepository getRepository() {
+        return this.repository;
+    }
+
+    /**
+     * Removes the keys of files from the repository, so the next poll of their landing directory picks them up again.
+     * Files that no longer exist are skipped.
+     *
+     * @param fileNames the names of the files relative to the source directory
+     */
+    public void release(Collection<String> fileNames) {
+        if (!this.properties.isIngressEnabled()) {
+            return;
+        }
+        var sourceDirectory = this.properties.getSourceDirectory();
+        for (var fileName : fileNames) {
+            var file = sourceDirectory.resolve(fileName);
+            try {
+                this.repository.remove(key(file.toString(), Files.size(file), Files.getLastModifiedTime(file).toMillis()));
+            } catch (IOException e) {
+                log.debug("Not releasing the file {}, which could not be read", file, e);
+            }
+        }
+    }
+
+    static String key(GenericFile<?> file) {
+        return key(file.getAbsoluteFilePath(), file.getFileLength(), file.getLastModified());
+    }
+
+    private static String key(String path, long size, long lastModified) {
+        return Path.of(path).toAbsolutePath().normalize() + "-" + size + "-" + lastModified;
+    }
+
+}
@@ -0,0 +1,119 @@
+package com.github.acs.file.batch.internal.ingress;
+
+import com.github.acs.file.batch.BatchTrigger;
+import com.github.acs.file.batch.internal.FileTransferProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.camel.Exchange;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.component.file.FileComponent;
+import org.apache.camel.component.file.FileEndpoint;
+import org.apache.camel.component.file.GenericFile;
+import org.apache.camel.support.ExpressionAdapter;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Polls the landing directories for new files, and launches one job per poll that transfers the files the poll found,
+ * instead of one job per file.
+ * <p>
+ * Every landing directory is polled by its own route with a Camel file consumer, which picks up at most the configured
+ * number of files per poll, and only once the read lock shows that they are no longer being written. The files are
+ * left where they are, as the job transfers them from there and reads them again when it is restarted. A file is
+ * picked up again once its size or last modified time changed, as the key of a file in the {@link FileIngressKeys} is
+ * made of its path, size and last modified time.
+ * <p>
+ * The files of a poll are aggregated until the consumer completes the batch of the poll. The jobs of a landing
+ * directory are launched one after the other by the aggregator, while the consumer goes on polling. If a job could not
+ * be launched, the files of its poll are released and picked up by the next poll. A job that was launched but failed
+ * has its files released by the job listener once it is not going to be restarted.
+ */
+@Slf4j
+@Component
+public class FileIngressRoute extends RouteBuilder {
+
+    static final String PROCESSOR_NAME = "file-ingress";
+
+    private final FileTransferProperties properties;
+    private final BatchTrigger batchTrigger;
+    private final FileIngressKeys ingressKeys;
+
+    public FileIngressRoute(FileTransferProperties properties, BatchTrigger batchTrigger, FileIngressKeys ingressKeys) {
+        this.properties = properties;
+        this.batchTrigger = batchTrigger;
+        this.ingressKeys = ingressKeys;
+    }
+
+    @Override
+    public void configure() {
+        if (!this.properties.isIngressEnabled()) {
+            return;
+        }
+        var directories = this.properties.getIngressDirectories().isEmpty()
+                ? List.of(Path.of(""))
+                : this.properties.getIngressDirectories();
+        for (var directory : directories) {
+            var landingDirectory = this.properties.getSourceDirectory().resolve(directory);
+            from(endpoint(landingDirectory))
+                    .routeId(PROCESSOR_NAME + ":" + landingDirectory)
+                    .aggregate(constant(true), FileIngressRoute::aggregate)
+                    .completionFromBatchConsumer()
+                    .process(this::launch);
+            log.info("Polling {} for files to transfer every {}", landingDirectory, this.properties.getIngressPollInterval());
+        }
+    }
+
+    private FileEndpoint endpoint(Path landingDirectory) {
+        var endpoint = getContext().getEndpoint("file:" + landingDirectory, FileEndpoint.class);
+        endpoint.setNoop(true);
+        endpoint.setIdempotent(true);
+        endpoint.setIdempotentRepository(this.ingressKeys.getRepository());
+        endpoint.setIdempotentKey(new ExpressionAdapter() {
+            @Override
+            public Object evaluate(Exchange exchange) {
+                return FileIngressKeys.key(exchange.getProperty(FileComponent.FILE_EXCHANGE_FILE, GenericFile.class));
+            }
+        });
+        endpoint.setMaxMessagesPerPoll(this.properties.getIngressMaxFilesPerPoll());
+        endpoint.setDelay(this.properties.getIngressPollInterval().toMillis());
+        endpoint.setReadLock(this.properties.getIngressReadLock().strategy());
+        endpoint.setReadLockCheckInterval(this.properties.getIngressReadLockCheckInterval().toMillis());
+        endpoint.setReadLockTimeout(this.properties.getIngressReadLockTimeout().toMillis());
+        return endpoint;
+    }
+
+    /**
+     * Collects the files of a poll in the body of the first exchange of the poll.
+     */
+    @SuppressWarnings("unchecked")
+    private static Exchange aggregate(Exchange aggregated, Exchange exchange) {
+        var file = exchange.getProperty(FileComponent.FILE_EXCHANGE_FILE, GenericFile.class);
+        if (aggregated == null) {
+            var files = new ArrayList<GenericFile<?>>();
+            files.add(file);
+            exchange.getIn().setBody(files);
+            return exchange;
+        }
+        aggregated.getIn().getBody(List.class).add(file);
+        return aggregated;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void launch(Exchange exchange) {
+        List<GenericFile<?>> files = exchange.getIn().getBody(List.class);
+        var sourceDirectory = this.properties.getSourceDirectory().toAbsolutePath().normalize();
+        var fileNames = files.stream()
+                .map(file -> sourceDirectory.relativize(Path.of(file.getAbsoluteFilePath()).normalize()).toString())
+                .toList();
+        log.info("Launching the transfer of {} files picked up from {}", fileNames.size(), exchange.getFromRouteId());
+        try {
+            this.batchTrigger.triggerBatch(fileNames);
+        } catch (RuntimeException e) {
+            files.forEach(file -> this.ingressKeys.getRepository().remove(FileIngressKeys.key(file)));
+            throw e;
+        }
+    }
+
+}
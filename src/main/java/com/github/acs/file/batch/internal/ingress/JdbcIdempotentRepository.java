@@ -0,0 +1,121 @@
+package com.github.acs.file.batch.internal.ingress;
+
+import org.apache.camel.spi.IdempotentRepository;
+import org.apache.camel.support.service.ServiceSupport;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An idempotent repository of the keys of the files picked up by the ingress, persisted in the
+ * {@code file_ingress_processed} table, so a file is picked up once across restarts and across the instances that
+ * poll the same landing directories. Adding a key is a single insert, which only one instance can win.
+ * <p>
+ * A poll checks every file of a landing directory against the repository, including the files picked up by earlier
+ * polls that are still there, so the keys that were found are kept in a cache of a bounded size that evicts the least
+ * recently used key first, and only the files the cache does not know are looked up in the database.
+ */
+public class JdbcIdempotentRepository extends ServiceSupport implements IdempotentRepository {
+
+    static final String TABLE_NAME = "file_ingress_processed";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String processorName;
+    private final Map<String, Boolean> known;
+
+    /**
+     * @param jdbcTemplate the template of the database the keys are persisted in
+     * @param processorName the name the keys are persisted under, which separates them from those of other repositories
+     * @param cacheSize the maximum number of keys known to be in the repository that are cached
+     */
+    public JdbcIdempotentRepository(JdbcTemplate jdbcTemplate, String processorName, int cacheSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.processorName = processorName;
+        this.known = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * Creates the table if it does not exist yet.
+     */
+    @Override
+    protected void doStart() {
+        this.jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + TABLE_NAME + " ("
+                + "processor_name VARCHAR(255) NOT NULL, "
+                + "message_id VARCHAR(4200) NOT NULL, "
+                + "created_millis BIGINT NOT NULL, "
+                + "PRIMARY KEY (processor_name, message_id))");
+    }
+
+    @Override
+    public boolean add(String key) {
+        if (isKnown(key)) {
+            return false;
+        }
+        boolean added;
+        try {
+            this.jdbcTemplate.update("INSERT INTO " + TABLE_NAME + " (processor_name, message_id, created_millis) VALUES (?, ?, ?)",
+                    this.processorName, key, System.currentTimeMillis());
+            added = true;
+        } catch (DuplicateKeyException e) {
+            added = false;
+        }
+        setKnown(key);
+        return added;
+    }
+
+    @Override
+    public boolean contains(String key) {
+        if (isKnown(key)) {
+            return true;
+        }
+        Integer count = this.jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + TABLE_NAME + " WHERE processor_name = ? AND message_id = ?",
+                Integer.class, this.processorName, key);
+        if (count == null || count == 0) {
+            return false;
+        }
+        setKnown(key);
+        return true;
+    }
+
+    @Override
+    public boolean remove(String key) {
+        synchronized (this.known) {
+            this.known.remove(key);
+        }
+        return this.jdbcTemplate.update("DELETE FROM " + TABLE_NAME + " WHERE processor_name = ? AND message_id = ?",
+                this.processorName, key) > 0;
+    }
+
+    @Override
+    public boolean confirm(String key) {
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        synchronized (this.known) {
+            this.known.clear();
+        }
+        this.jdbcTemplate.update("DELETE FROM " + TABLE_NAME + " WHERE processor_name = ?", this.processorName);
+    }
+
+    private boolean isKnown(String key) {
+        synchronized (this.known) {
+            return this.known.containsKey(key);
+        }
+    }
+
+    private void setKnown(String key) {
+        synchronized (this.known) {
+            this.known.put(key, Boolean.TRUE);
+        }
+    }
+
+}
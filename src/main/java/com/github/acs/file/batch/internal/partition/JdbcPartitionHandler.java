@@ -0,0 +1,107 @@
+package com.github.acs.file.batch.internal.partition;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.batch.core.partition.support.AbstractPartitionHandler;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+/**
+ * Hands out the partitions of a job to the {@link PartitionWorker}s of every node, instead of transferring them on the
+ * node running the job, so a job is transferred with the disk and network bandwidth of every node.
+ * <p>
+ * The step executions of the partitions are created in the job repository as usual, and added to the
+ * {@link PartitionAssignments}. The workers execute them and save their results in the job repository. The handler
+ * polls the assignments until every partition was marked done by the worker holding its claim, or until the timeout
+ * has passed, rather than polling the status of the step executions, as a worker that lost its claim may stop a step
+ * execution that the worker that took it over is still executing. The results are then copied from the job repository
+ * to the step executions held by the job execution, as those are what the job aggregates and its listeners report.
+ */
+@Slf4j
+public class JdbcPartitionHandler extends AbstractPartitionHandler {
+
+    private final PartitionAssignments assignments;
+    private final JobExplorer jobExplorer;
+    private final String stepName;
+    private final Duration pollInterval;
+    private final Duration timeout;
+
+    /**
+     * @param assignments the partitions handed out to the workers
+     * @param jobExplorer the explorer of the job repository the workers save their results in
+     * @param stepName the name of the step the workers execute the partitions with
+     * @param pollInterval the time between two polls of the job repository
+     * @param timeout the longest to wait for the workers
+     */
+    public JdbcPartitionHandler(PartitionAssignments assignments, JobExplorer jobExplorer, String stepName, Duration pollInterval,
+                                Duration timeout) {
+        this.assignments = assignments;
+        this.jobExplorer = jobExplorer;
+        this.stepName = stepName;
+        this.pollInterval = pollInterval;
+        this.timeout = timeout;
+    }
+
+    @Override
+    protected Set<StepExecution> doHandle(StepExecution managerStepExecution, Set<StepExecution> partitionStepExecutions) throws Exception {
+        if (partitionStepExecutions.isEmpty()) {
+            return partitionStepExecutions;
+        }
+        long jobExecutionId = managerStepExecution.getJobExecutionId();
+        var stepExecutionIds = partitionStepExecutions.stream().map(StepExecution::getId).collect(Collectors.toSet());
+        this.assignments.add(jobExecutionId, this.stepName, stepExecutionIds);
+        log.info("Handed out {} partitions of job execution {} to the partition workers", stepExecutionIds.size(), jobExecutionId);
+        long deadline = System.nanoTime() + this.timeout.toNanos();
+        try {
+            while (true) {
+                var done = this.assignments.findDone(jobExecutionId);
+                done.retainAll(stepExecutionIds);
+                if (done.size() == stepExecutionIds.size()) {
+                    var saved = new HashMap<Long, StepExecution>();
+                    for (var stepExecution : this.jobExplorer.getJobExecution(jobExecutionId).getStepExecutions()) {
+                        saved.put(stepExecution.getId(), stepExecution);
+                    }
+                    partitionStepExecutions.stream()
+                            .filter(stepExecution -> saved.containsKey(stepExecution.getId()))
+                            .forEach(stepExecution -> refresh(stepExecution, saved.get(stepExecution.getId())));
+                    return partitionStepExecutions;
+                }
+                if (System.nanoTime() - deadline > 0) {
+                    throw new TimeoutException("Timed out after " + this.timeout + " waiting for " + (stepExecutionIds.size() - done.size())
+                            + " of " + stepExecutionIds.size() + " partitions to be transferred by the partition workers");
+                }
+                Thread.sleep(this.pollInterval);
+            }
+        } finally {
+            this.assignments.remove(stepExecutionIds);
+        }
+    }
+
+    /**
+     * Copies the results a worker saved in the job repository to the step execution of the job, which the splitter
+     * created and the job execution still holds, so the listeners of the job see the results of the partition.
+     */
+    private static void refresh(StepExecution stepExecution, StepExecution saved) {
+        stepExecution.setStatus(saved.getStatus());
+        stepExecution.setExitStatus(saved.getExitStatus());
+        stepExecution.setStartTime(saved.getStartTime());
+        stepExecution.setEndTime(saved.getEndTime());
+        stepExecution.setLastUpdated(saved.getLastUpdated());
+        stepExecution.setReadCount(saved.getReadCount());
+        stepExecution.setWriteCount(saved.getWriteCount());
+        stepExecution.setFilterCount(saved.getFilterCount());
+        stepExecution.setCommitCount(saved.getCommitCount());
+        stepExecution.setRollbackCount(saved.getRollbackCount());
+        stepExecution.setReadSkipCount(saved.getReadSkipCount());
+        stepExecution.setProcessSkipCount(saved.getProcessSkipCount());
+        stepExecution.setWriteSkipCount(saved.getWriteSkipCount());
+        stepExecution.setExecutionContext(saved.getExecutionContext());
+        stepExecution.setVersion(saved.getVersion());
+    }
+
+}
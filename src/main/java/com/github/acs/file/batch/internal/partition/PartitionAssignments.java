@@ -0,0 +1,162 @@
+package com.github.acs.file.batch.internal.partition;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The partitions handed out to the partition workers, persisted in the {@code batch_partition_assignment} table of
+ * the database the job repository is in, so no message broker is needed between the nodes.
+ * <p>
+ * A partition is pending until a worker claims it, and claimed until the worker completed it. A claim is a single
+ * conditional update, which only one worker can win, so the workers need no lock to take partitions. A worker renews
+ * the lease of its claims with heartbeats, and a claim whose lease expired is pending again, so the partitions of a
+ * worker that died are taken over by the others.
+ */
+public class PartitionAssignments {
+
+    static final String TABLE_NAME = "batch_partition_assignment";
+
+    private static final String CLAIMABLE = "(status = 'PENDING' OR (status = 'CLAIMED' AND heartbeat_millis < ?))";
+
+    private final JdbcTemplate jdbcTemplate;
+    private volatile boolean created;
+
+    /**
+     * A partition claimed by a worker.
+     *
+     * @param jobExecutionId the job execution the partition belongs to
+     * @param stepExecutionId the step execution of the partition
+     */
+    public record Assignment(long jobExecutionId, long stepExecutionId) {
+    }
+
+    public PartitionAssignments(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Hands out partitions to the workers.
+     *
+     * @param jobExecutionId the job execution the partitions belong to
+     * @param stepName the name of the step the workers execute the partitions with
+     * @param stepExecutionIds the step executions of the partitions
+     */
+    public void add(long jobExecutionId, String stepName, Collection<Long> stepExecutionIds) {
+        createTable();
+        var arguments = new ArrayList<Object[]>(stepExecutionIds.size());
+        stepExecutionIds.forEach(stepExecutionId -> arguments.add(new Object[]{stepExecutionId, jobExecutionId, stepName}));
+        this.jdbcTemplate.batchUpdate("INSERT INTO " + TABLE_NAME + " (step_execution_id, job_execution_id, step_name, status) VALUES (?, ?, ?, 'PENDING')",
+                arguments);
+    }
+
+    /**
+     * Claims the oldest partitions that are pending or whose lease expired.
+     *
+     * @param stepName the name of the step the worker executes partitions with
+     * @param worker the name of the worker
+     * @param maxPartitions the maximum number of partitions to claim
+     * @param nowMillis the current time
+     * @param leaseMillis the time after which a claim without heartbeat expires
+     * @return the partitions the worker claimed, which may be fewer than were claimable as other workers claimed them
+     */
+    public List<Assignment> claim(String stepName, String worker, int maxPartitions, long nowMillis, long leaseMillis) {
+        createTable();
+        long expiredMillis = nowMillis - leaseMillis;
+        var candidates = this.jdbcTemplate.query("SELECT job_execution_id, step_execution_id FROM " + TABLE_NAME
+                        + " WHERE step_name = ? AND " + CLAIMABLE + " ORDER BY step_execution_id LIMIT ?",
+                (resultSet, row) -> new Assignment(resultSet.getLong(1), resultSet.getLong(2)),
+                stepName, expiredMillis, maxPartitions);
+        var claimed = new ArrayList<Assignment>(candidates.size());
+        for (var candidate : candidates) {
+            int updated = this.jdbcTemplate.update("UPDATE " + TABLE_NAME + " SET status = 'CLAIMED', worker = ?, heartbeat_millis = ?"
+                            + " WHERE step_execution_id = ? AND " + CLAIMABLE,
+                    worker, nowMillis, candidate.stepExecutionId(), expiredMillis);
+            if (updated == 1) {
+                claimed.add(candidate);
+            }
+        }
+        return claimed;
+    }
+
+    /**
+     * Renews the lease of the partitions a worker claimed.
+     *
+     * @param worker the name of the worker
+     * @param stepExecutionIds the step executions of the partitions the worker is executing
+     * @param nowMillis the current time
+     * @return the step executions whose lease could not be renewed, as another worker took them over after their lease
+     * had expired, or they are no longer handed out
+     */
+    public List<Long> heartbeat(String worker, Collection<Long> stepExecutionIds, long nowMillis) {
+        createTable();
+        var lost = new ArrayList<Long>();
+        for (var stepExecutionId : stepExecutionIds) {
+            int renewed = this.jdbcTemplate.update("UPDATE " + TABLE_NAME + " SET heartbeat_millis = ? WHERE step_execution_id = ? AND worker = ? AND status = 'CLAIMED'",
+                    nowMillis, stepExecutionId, worker);
+            if (renewed == 0) {
+                lost.add(stepExecutionId);
+            }
+        }
+        return lost;
+    }
+
+    /**
+     * Marks a partition as completed by a worker, so it is not claimed again.
+     *
+     * @param worker the name of the worker
+     * @param stepExecutionId the step execution of the partition
+     */
+    public void complete(String worker, long stepExecutionId) {
+        createTable();
+        this.jdbcTemplate.update("UPDATE " + TABLE_NAME + " SET status = 'DONE' WHERE step_execution_id = ? AND worker = ?",
+                stepExecutionId, worker);
+    }
+
+    /**
+     * Finds the partitions of a job execution that were completed by the worker holding their claim. A partition
+     * whose step execution finished but is still claimed is not done, as its step execution may have been stopped by
+     * a worker that lost the partition to another worker that is still executing it.
+     *
+     * @param jobExecutionId the job execution the partitions belong to
+     * @return the step executions of the partitions that are done
+     */
+    public Set<Long> findDone(long jobExecutionId) {
+        createTable();
+        return new HashSet<>(this.jdbcTemplate.queryForList("SELECT step_execution_id FROM " + TABLE_NAME + " WHERE job_execution_id = ? AND status = 'DONE'",
+                Long.class, jobExecutionId));
+    }
+
+    /**
+     * Removes partitions once their job no longer waits for them.
+     *
+     * @param stepExecutionIds the step executions of the partitions
+     */
+    public void remove(Collection<Long> stepExecutionIds) {
+        createTable();
+        var arguments = stepExecutionIds.stream().map(stepExecutionId -> new Object[]{stepExecutionId}).toList();
+        this.jdbcTemplate.batchUpdate("DELETE FROM " + TABLE_NAME + " WHERE step_execution_id = ?", arguments);
+    }
+
+    /**
+     * Creates the table if it does not exist yet.
+     */
+    private void createTable() {
+        if (this.created) {
+            return;
+        }
+        this.jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + TABLE_NAME + " ("
+                + "step_execution_id BIGINT NOT NULL PRIMARY KEY, "
+                + "job_execution_id BIGINT NOT NULL, "
+                + "step_name VARCHAR(100) NOT NULL, "
+                + "status VARCHAR(10) NOT NULL, "
+                + "worker VARCHAR(255), "
+                + "heartbeat_millis BIGINT)");
+        this.created = true;
+    }
+
+}
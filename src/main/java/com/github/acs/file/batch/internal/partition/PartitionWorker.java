@@ -0,0 +1,171 @@
+package com.github.acs.file.batch.internal.partition;
+
+import com.github.acs.file.batch.internal.FileTransferProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobInterruptedException;
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.batch.core.repository.JobRepository;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Claims the partitions handed out by the {@link JdbcPartitionHandler} of any node, and executes them with the worker
+ * step, as many at once as the partition concurrency allows.
+ * <p>
+ * The step executions of the partitions are read from the job repository, and their results saved there by the
+ * step, so the handler learns that a partition finished from the job repository. While a partition is executed, the
+ * worker renews its lease with a heartbeat every quarter of the lease timeout, so the partition is only taken over by
+ * another worker once this worker stopped. A partition that is taken over is restarted from the last chunk committed
+ * to its step execution. Should a worker still be executing a partition whose lease it lost, for instance after a long
+ * pause, the partition is told to stop at its next chunk, so two workers do not keep writing the same file.
+ */
+@Slf4j
+public class PartitionWorker {
+
+    private final PartitionAssignments assignments;
+    private final JobExplorer jobExplorer;
+    private final JobRepository jobRepository;
+    private final Step step;
+    private final FileTransferProperties properties;
+    private final String name;
+    private final Semaphore slots;
+    private final Set<Long> running = ConcurrentHashMap.newKeySet();
+    private final Map<Long, StepExecution> executions = new ConcurrentHashMap<>();
+    private final Set<Long> lost = ConcurrentHashMap.newKeySet();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private ScheduledExecutorService scheduler;
+
+    public PartitionWorker(PartitionAssignments assignments, JobExplorer jobExplorer, JobRepository jobRepository, Step step,
+                           FileTransferProperties properties) {
+        this.assignments = assignments;
+        this.jobExplorer = jobExplorer;
+        this.jobRepository = jobRepository;
+        this.step = step;
+        this.properties = properties;
+        this.name = ManagementFactory.getRuntimeMXBean().getName() + "-" + UUID.randomUUID().toString().substring(0, 8);
+        this.slots = new Semaphore(properties.getPartitionConcurrency());
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!this.properties.isPartitionWorkerEnabled()) {
+            return;
+        }
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().name("partition-worker").factory());
+        long pollMillis = this.properties.getPartitionPollInterval().toMillis();
+        long heartbeatMillis = Math.max(1, this.properties.getPartitionLeaseTimeout().toMillis() / 4);
+        this.scheduler.scheduleWithFixedDelay(this::poll, 0, pollMillis, TimeUnit.MILLISECONDS);
+        this.scheduler.scheduleWithFixedDelay(this::heartbeat, heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS);
+        log.info("Partition worker {} is claiming up to {} partitions of {} at once", this.name, this.slots.availablePermits(), this.step.getName());
+    }
+
+    /**
+     * Stops claiming partitions and renewing the leases of the partitions being executed, which are taken over by the
+     * other workers once their lease expired unless they complete before the node stops. They are not interrupted, as
+     * an interrupted partition would fail instead.
+     */
+    @PreDestroy
+    public void close() {
+        if (this.scheduler != null) {
+            this.scheduler.shutdownNow();
+        }
+        this.executor.shutdown();
+    }
+
+    /**
+     * Claims as many partitions as there are free slots, and executes them.
+     */
+    void poll() {
+        try {
+            int free = this.slots.availablePermits();
+            if (free == 0) {
+                return;
+            }
+            var claimed = this.assignments.claim(this.step.getName(), this.name, free, System.currentTimeMillis(),
+                    this.properties.getPartitionLeaseTimeout().toMillis());
+            for (var assignment : claimed) {
+                this.slots.acquireUninterruptibly();
+                this.running.add(assignment.stepExecutionId());
+                this.executor.execute(() -> execute(assignment));
+            }
+        } catch (RuntimeException e) {
+            log.warn("Could not claim partitions", e);
+        }
+    }
+
+    /**
+     * Renews the leases of the partitions being executed, and stops the partitions whose lease was lost.
+     */
+    void heartbeat() {
+        try {
+            var leased = this.running.stream().filter(stepExecutionId -> !this.lost.contains(stepExecutionId)).toList();
+            if (leased.isEmpty()) {
+                return;
+            }
+            var takenOver = this.assignments.heartbeat(this.name, leased, System.currentTimeMillis());
+            if (!takenOver.isEmpty()) {
+                log.warn("{} of the {} partitions of worker {} were taken over by other workers, stopping them", takenOver.size(), leased.size(), this.name);
+            }
+            for (var stepExecutionId : takenOver) {
+                this.lost.add(stepExecutionId);
+                var stepExecution = this.executions.get(stepExecutionId);
+                if (stepExecution != null) {
+                    stepExecution.setTerminateOnly();
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warn("Could not renew the lease of {} partitions", this.running.size(), e);
+        }
+    }
+
+    private void execute(PartitionAssignments.Assignment assignment) {
+        try {
+            var stepExecution = this.jobExplorer.getStepExecution(assignment.jobExecutionId(), assignment.stepExecutionId());
+            if (stepExecution == null) {
+                log.warn("The step execution {} of job execution {} no longer exists", assignment.stepExecutionId(), assignment.jobExecutionId());
+            } else if (stepExecution.getStatus().isRunning()) {
+                this.executions.put(assignment.stepExecutionId(), stepExecution);
+                if (this.lost.contains(assignment.stepExecutionId())) {
+                    stepExecution.setTerminateOnly();
+                }
+                log.debug("Executing partition {}", stepExecution.getStepName());
+                try {
+                    this.step.execute(stepExecution);
+                } catch (JobInterruptedException e) {
+                    log.info("Partition {} was interrupted", stepExecution.getStepName());
+                } catch (Throwable e) {
+                    stepExecution.addFailureException(e);
+                    stepExecution.setStatus(BatchStatus.FAILED);
+                    this.jobRepository.update(stepExecution);
+                }
+            }
+            if (this.lost.contains(assignment.stepExecutionId())) {
+                log.info("Stopped partition {}, which was taken over by another worker", assignment.stepExecutionId());
+            } else {
+                this.assignments.complete(this.name, assignment.stepExecutionId());
+            }
+        } catch (RuntimeException e) {
+            log.error("Error executing the partition of step execution {}", assignment.stepExecutionId(), e);
+        } finally {
+            this.running.remove(assignment.stepExecutionId());
+            this.executions.remove(assignment.stepExecutionId());
+            this.lost.remove(assignment.stepExecutionId());
+            this.slots.release();
+        }
+    }
+
+}
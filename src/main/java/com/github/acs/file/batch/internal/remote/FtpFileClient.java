@@ -0,0 +1,138 @@
+package com.github.acs.file.batch.internal.remote;
+
+import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.net.ftp.FTPFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A client of an FTP server over one control connection, logged in, in binary and passive mode.
+ * <p>
+ * FTP transfers a file over a data connection of its own and has no requests to pipeline, so the buffer size is the
+ * only tuning of a transfer. Listings use {@code MLSD} when the server supports it, as its modification times are
+ * precise to the second, while the times of {@code LIST} are not.
+ */
+class FtpFileClient implements RemoteFileClient {
+
+    private final FTPClient client;
+    private final boolean machineListing;
+
+    FtpFileClient(FTPClient client) throws IOException {
+        this.client = client;
+        this.machineListing = client.hasFeature("MLST");
+    }
+
+    @Override
+    public List<Entry> list(String directory) throws IOException {
+        var files = this.machineListing ? this.client.mlistDir(directory) : this.client.listFiles(directory);
+        check(files != null, "list " + directory);
+        var entries = new ArrayList<Entry>(files.length);
+        for (var file : files) {
+            if (file != null && !file.getName().equals(".") && !file.getName().equals("..")) {
+                entries.add(entry(file.getName(), file));
+            }
+        }
+        return entries;
+    }
+
+    @Override
+    public Entry stat(String path) throws IOException {
+        var name = path.substring(path.lastIndexOf('/') + 1);
+        if (this.machineListing) {
+            var file = this.client.mlistFile(path);
+            return file == null ? null : entry(name, file);
+        }
+        var parent = RemoteFileClient.parentOf(path);
+        var siblings = !parent.isEmpty() ? this.client.listFiles(parent)
+                : path.startsWith("/") ? this.client.listFiles("/") : this.client.listFiles();
+        if (siblings != null) {
+            for (var sibling : siblings) {
+                if (sibling != null && sibling.getName().equals(name)) {
+                    return entry(name, sibling);
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void download(String path, Path file) throws IOException {
+        var entry = stat(path);
+        check(entry != null && !entry.directory(), "find " + path);
+        var part = file.resolveSibling(file.getFileName() + PART_SUFFIX);
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        try (var out = Files.newOutputStream(part)) {
+            check(this.client.retrieveFile(path, out), "download " + path);
+        }
+        if (entry.modifiedMillis() > 0) {
+            Files.setLastModifiedTime(part, FileTime.fromMillis(entry.modifiedMillis()));
+        }
+        Files.move(part, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public void upload(Path file, String path) throws IOException {
+        createDirectories(RemoteFileClient.parentOf(path));
+        var part = path + PART_SUFFIX;
+        try (var in = Files.newInputStream(file)) {
+            check(this.client.storeFile(part, in), "upload " + path);
+        }
+        if (stat(path) != null) {
+            check(this.client.deleteFile(path), "replace " + path);
+        }
+        check(this.client.rename(part, path), "rename " + part);
+    }
+
+    @Override
+    public boolean isConnected() {
+        return this.client.isConnected();
+    }
+
+    @Override
+    public boolean isAlive() {
+        try {
+            return this.client.sendNoOp();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (this.client.isConnected()) {
+                this.client.logout();
+            }
+        } finally {
+            this.client.disconnect();
+        }
+    }
+
+    private void createDirectories(String directory) throws IOException {
+        if (directory.isEmpty() || stat(directory) != null) {
+            return;
+        }
+        createDirectories(RemoteFileClient.parentOf(directory));
+        if (!this.client.makeDirectory(directory)) {
+            check(stat(directory) != null, "create " + directory);
+        }
+    }
+
+    private void check(boolean success, String action) throws IOException {
+        if (!success) {
+            throw new IOException("Could not " + action + ": " + this.client.getReplyString().strip());
+        }
+    }
+
+    private static Entry entry(String name, FTPFile file) {
+        var timestamp = file.getTimestamp();
+        return new Entry(name, file.isDirectory(), file.getSize(), timestamp == null ? 0 : timestamp.getTimeInMillis());
+    }
+
+}
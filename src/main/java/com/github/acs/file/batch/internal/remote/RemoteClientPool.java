@@ -0,0 +1,342 @@
+package com.github.acs.file.batch.internal.remote;
+
+import com.github.acs.file.batch.internal.FileTransferProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.net.ftp.FTP;
+import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.net.ftp.FTPReply;
+import org.apache.sshd.client.SshClient;
+import org.apache.sshd.client.config.hosts.KnownHostEntry;
+import org.apache.sshd.client.keyverifier.AcceptAllServerKeyVerifier;
+import org.apache.sshd.client.keyverifier.KnownHostsServerKeyVerifier;
+import org.apache.sshd.client.keyverifier.RejectAllServerKeyVerifier;
+import org.apache.sshd.client.session.ClientSession;
+import org.apache.sshd.common.keyprovider.FileKeyPairProvider;
+import org.apache.sshd.core.CoreModuleProperties;
+import org.apache.sshd.sftp.client.SftpClientFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * A pool of clients of one SFTP or FTP server, so a transfer of many small files pays for the handshake with the
+ * server once instead of once per file.
+ * <p>
+ * At most as many clients are in use at once as the server has channels configured. A client is returned to the pool
+ * once its call completed, reused by later calls, and closed once it has been idle for the idle timeout. SFTP clients
+ * are channels of a single SSH session to the server, which is kept alive with heartbeats and opened again if the
+ * server closed it. FTP clients are connections of their own, and one that has been idle for the keep-alive interval
+ * is checked with a {@code NOOP} before it is reused.
+ */
+@Slf4j
+public class RemoteClientPool implements Closeable {
+
+    /**
+     * A call made with a client of the pool.
+     */
+    @FunctionalInterface
+    public interface Call<T> {
+
+        T call(RemoteFileClient client) throws IOException;
+
+    }
+
+    /**
+     * A call made with a client of the pool for one of many items.
+     */
+    @FunctionalInterface
+    public interface ItemCall<I, T> {
+
+        T call(RemoteFileClient client, I item) throws IOException;
+
+    }
+
+    private final Connector connector;
+    private final String directory;
+    private final Semaphore channels;
+    private final long idleTimeoutNanos;
+    private final long keepAliveNanos;
+    private final ConcurrentLinkedDeque<Idle> idle = new ConcurrentLinkedDeque<>();
+
+    public RemoteClientPool(FileTransferProperties.Remote remote) {
+        this.connector = switch (remote.getUri().getScheme().toLowerCase(Locale.ROOT)) {
+            case "sftp" -> new SftpConnector(remote);
+            case "ftp" -> new FtpConnector(remote);
+            default -> throw new IllegalArgumentException("Unsupported remote scheme: " + remote.getUri());
+        };
+        var path = remote.getUri().getPath();
+        this.directory = path == null ? "" : path;
+        this.channels = new Semaphore(remote.getChannels());
+        this.idleTimeoutNanos = remote.getIdleTimeout().toNanos();
+        this.keepAliveNanos = remote.getKeepAliveInterval().toNanos();
+    }
+
+    /**
+     * @return the remote directory of the server, from the path of its URI
+     */
+    public String directory() {
+        return this.directory;
+    }
+
+    /**
+     * Makes a call with a client of the pool, waiting for a channel to be free. The client is returned to the pool
+     * unless the call failed and the client no longer works. A call that failed as its pooled client no longer works,
+     * such as one the server closed while it was idle, is made again with a new client, so calls must be idempotent.
+     *
+     * @param call the call
+     * @return the result of the call
+     */
+    public <T> T execute(Call<T> call) throws IOException {
+        try {
+            this.channels.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a channel to " + this.connector);
+        }
+        try {
+            while (true) {
+                var client = pollIdle();
+                boolean reused = client != null;
+                if (!reused) {
+                    client = this.connector.connect();
+                }
+                boolean reusable = false;
+                try {
+                    var result = call.call(client);
+                    reusable = true;
+                    return result;
+                } catch (IOException | RuntimeException e) {
+                    reusable = client.isAlive();
+                    if (reusable || !reused) {
+                        throw e;
+                    }
+                    log.debug("Retrying with a new client of {}, as the pooled client no longer works", this.connector, e);
+                } finally {
+                    if (reusable) {
+                        this.idle.offerLast(new Idle(client, System.nanoTime()));
+                    } else {
+                        disconnect(client);
+                    }
+                }
+            }
+        } finally {
+            this.channels.release();
+        }
+    }
+
+    /**
+     * Makes a call for every item concurrently on virtual threads, each with a client of the pool, so as many items
+     * are transferred at once as the server has channels.
+     *
+     * @param items the items
+     * @param call the call made for every item
+     * @return the results of the calls, in the order of the items
+     * @throws IOException the error of the first failed call, with the errors of the other failed calls suppressed,
+     * once every call completed
+     */
+    public <I, T> List<T> executeAll(Collection<I> items, ItemCall<I, T> call) throws IOException {
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var futures = new ArrayList<Future<T>>(items.size());
+            for (var item : items) {
+                futures.add(executor.submit(() -> execute(client -> call.call(client, item))));
+            }
+            var results = new ArrayList<T>(items.size());
+            IOException error = null;
+            for (var future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    var cause = e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+                    if (error == null) {
+                        error = cause;
+                    } else {
+                        error.addSuppressed(cause);
+                    }
+                } catch (InterruptedException e) {
+                    executor.shutdownNow();
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while transferring files with " + this.connector);
+                }
+            }
+            if (error != null) {
+                throw error;
+            }
+            return results;
+        }
+    }
+
+    @Override
+    public void close() {
+        Idle client;
+        while ((client = this.idle.poll()) != null) {
+            disconnect(client.client());
+        }
+        this.connector.close();
+    }
+
+    @Override
+    public String toString() {
+        return this.connector.toString();
+    }
+
+    private RemoteFileClient pollIdle() {
+        closeIdleClients();
+        Idle client;
+        while ((client = this.idle.pollLast()) != null) {
+            boolean recent = System.nanoTime() - client.releasedNanos() < this.keepAliveNanos;
+            if (recent ? client.client().isConnected() : client.client().isAlive()) {
+                return client.client();
+            }
+            disconnect(client.client());
+        }
+        return null;
+    }
+
+    private void closeIdleClients() {
+        long now = System.nanoTime();
+        Idle client;
+        while ((client = this.idle.peekFirst()) != null && now - client.releasedNanos() > this.idleTimeoutNanos) {
+            if (this.idle.remove(client)) {
+                disconnect(client.client());
+            }
+        }
+    }
+
+    private void disconnect(RemoteFileClient client) {
+        try {
+            client.close();
+        } catch (IOException | RuntimeException e) {
+            log.debug("Could not close the client of {}", this.connector, e);
+        }
+    }
+
+    private record Idle(RemoteFileClient client, long releasedNanos) {
+    }
+
+    private interface Connector {
+
+        RemoteFileClient connect() throws IOException;
+
+        void close();
+
+    }
+
+    private static final class SftpConnector implements Connector {
+
+        private final FileTransferProperties.Remote remote;
+        private final SshClient client;
+        private ClientSession session;
+
+        private SftpConnector(FileTransferProperties.Remote remote) {
+            this.remote = remote;
+            this.client = SshClient.setUpDefaultClient();
+            CoreModuleProperties.HEARTBEAT_INTERVAL.set(this.client, remote.getKeepAliveInterval());
+            // A download keeps as many read requests outstanding as fit in the window of its channel
+            CoreModuleProperties.WINDOW_SIZE.set(this.client, remote.getBufferSize().toBytes() * remote.getReadAheadRequests());
+            if (remote.isStrictHostKeyChecking()) {
+                var knownHostsFile = remote.getKnownHostsFile() != null
+                        ? remote.getKnownHostsFile() : KnownHostEntry.getDefaultKnownHostsFile();
+                this.client.setServerKeyVerifier(new KnownHostsServerKeyVerifier(RejectAllServerKeyVerifier.INSTANCE, knownHostsFile));
+            } else {
+                this.client.setServerKeyVerifier(AcceptAllServerKeyVerifier.INSTANCE);
+            }
+            if (remote.getPrivateKey() != null) {
+                this.client.setKeyIdentityProvider(new FileKeyPairProvider(remote.getPrivateKey()));
+            }
+            this.client.start();
+        }
+
+        @Override
+        public RemoteFileClient connect() throws IOException {
+            var channel = SftpClientFactory.instance().createSftpClient(session());
+            return new SftpFileClient(channel, (int) this.remote.getBufferSize().toBytes());
+        }
+
+        private synchronized ClientSession session() throws IOException {
+            if (this.session == null || !this.session.isOpen()) {
+                var uri = this.remote.getUri();
+                var session = this.client.connect(this.remote.getUsername(), uri.getHost(), uri.getPort() == -1 ? 22 : uri.getPort())
+                        .verify(this.remote.getConnectTimeout())
+                        .getSession();
+                try {
+                    if (this.remote.getPassword() != null) {
+                        session.addPasswordIdentity(this.remote.getPassword());
+                    }
+                    session.auth().verify(this.remote.getConnectTimeout());
+                } catch (IOException | RuntimeException e) {
+                    session.close(true);
+                    throw e;
+                }
+                log.info("Opened an SSH session to {}", this);
+                this.session = session;
+            }
+            return this.session;
+        }
+
+        @Override
+        public synchronized void close() {
+            if (this.session != null) {
+                this.session.close(false);
+            }
+            this.client.stop();
+        }
+
+        @Override
+        public String toString() {
+            return this.remote.getUri().toString();
+        }
+
+    }
+
+    private record FtpConnector(FileTransferProperties.Remote remote) implements Connector {
+
+        @Override
+        public RemoteFileClient connect() throws IOException {
+            var uri = this.remote.getUri();
+            var client = new FTPClient();
+            client.setConnectTimeout((int) this.remote.getConnectTimeout().toMillis());
+            client.setControlKeepAliveTimeout(this.remote.getKeepAliveInterval());
+            client.setBufferSize((int) this.remote.getBufferSize().toBytes());
+            try {
+                client.connect(uri.getHost(), uri.getPort() == -1 ? FTP.DEFAULT_PORT : uri.getPort());
+                if (!FTPReply.isPositiveCompletion(client.getReplyCode())) {
+                    throw new IOException("FTP server refused the connection: " + client.getReplyString().strip());
+                }
+                var username = this.remote.getUsername() != null ? this.remote.getUsername() : "anonymous";
+                var password = this.remote.getPassword() != null ? this.remote.getPassword() : "";
+                if (!client.login(username, password)) {
+                    throw new IOException("FTP server refused the login of " + username + ": " + client.getReplyString().strip());
+                }
+                client.setFileType(FTP.BINARY_FILE_TYPE);
+                client.enterLocalPassiveMode();
+                return new FtpFileClient(client);
+            } catch (IOException | RuntimeException e) {
+                if (client.isConnected()) {
+                    client.disconnect();
+                }
+                throw e;
+            }
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public String toString() {
+            return this.remote.getUri().toString();
+        }
+
+    }
+
+}
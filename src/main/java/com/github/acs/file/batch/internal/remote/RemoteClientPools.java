@@ -0,0 +1,30 @@
+package com.github.acs.file.batch.internal.remote;
+
+import com.github.acs.file.batch.internal.FileTransferProperties;
+import jakarta.annotation.PreDestroy;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The pools of clients of the remote servers, shared by the jobs so their sessions outlive a single job.
+ */
+public class RemoteClientPools {
+
+    private final Map<FileTransferProperties.Remote, RemoteClientPool> pools = new ConcurrentHashMap<>();
+
+    /**
+     * @param remote the remote server
+     * @return the pool of clients of the server, created on first use
+     */
+    public RemoteClientPool pool(FileTransferProperties.Remote remote) {
+        return this.pools.computeIfAbsent(remote, RemoteClientPool::new);
+    }
+
+    @PreDestroy
+    public void close() {
+        this.pools.values().forEach(RemoteClientPool::close);
+        this.pools.clear();
+    }
+
+}
@@ -0,0 +1,89 @@
+package com.github.acs.file.batch.internal.remote;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.repeat.RepeatStatus;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Fetches the source files from a remote server into the source directory, so the transfer reads them from there.
+ * <p>
+ * The named files are fetched, or every file beneath the remote directory when no names are provided, except files
+ * still being uploaded under a {@code .part} name. A file whose local copy has the size and last modified time of the
+ * remote file is not fetched again, so a restarted job only fetches the files it had not fetched yet. The local copy
+ * is given the last modified time of the remote file for this purpose.
+ */
+@Slf4j
+public class RemoteFetchTasklet implements Tasklet {
+
+    private final RemoteClientPool pool;
+    private final Path sourceDirectory;
+    private final Collection<String> fileNames;
+
+    /**
+     * @param pool the pool of clients of the remote server
+     * @param sourceDirectory the local directory the files are fetched into
+     * @param fileNames the file names relative to the remote directory, may be empty
+     */
+    public RemoteFetchTasklet(RemoteClientPool pool, Path sourceDirectory, Collection<String> fileNames) {
+        this.pool = pool;
+        this.sourceDirectory = sourceDirectory;
+        this.fileNames = fileNames;
+    }
+
+    @Override
+    public RepeatStatus execute(StepContribution contribution, ChunkContext chunkContext) throws Exception {
+        Map<String, RemoteFileClient.Entry> files = new LinkedHashMap<>();
+        if (this.fileNames.isEmpty()) {
+            this.pool.execute(client -> {
+                list(client, this.pool.directory(), "", files);
+                return files;
+            });
+        } else {
+            this.fileNames.forEach(fileName -> files.put(fileName, null));
+        }
+        var fetched = this.pool.executeAll(files.entrySet(), (client, file) -> fetch(client, file.getKey(), file.getValue()));
+        long count = fetched.stream().filter(Boolean::booleanValue).count();
+        contribution.incrementWriteCount(count);
+        contribution.incrementFilterCount(files.size() - count);
+        log.info("Fetched {} of {} source files from {}", count, files.size(), this.pool);
+        return RepeatStatus.FINISHED;
+    }
+
+    private boolean fetch(RemoteFileClient client, String fileName, RemoteFileClient.Entry entry) throws IOException {
+        var path = RemoteFileClient.resolve(this.pool.directory(), fileName);
+        if (entry == null) {
+            entry = client.stat(path);
+            if (entry == null || entry.directory()) {
+                throw new FileNotFoundException("Remote source file not found: " + path);
+            }
+        }
+        var file = this.sourceDirectory.resolve(fileName);
+        if (Files.isRegularFile(file) && Files.size(file) == entry.size()
+                && Files.getLastModifiedTime(file).toMillis() == entry.modifiedMillis()) {
+            return false;
+        }
+        client.download(path, file);
+        return true;
+    }
+
+    private static void list(RemoteFileClient client, String directory, String prefix, Map<String, RemoteFileClient.Entry> files) throws IOException {
+        for (var entry : client.list(directory)) {
+            if (entry.directory()) {
+                list(client, RemoteFileClient.resolve(directory, entry.name()), prefix + entry.name() + "/", files);
+            } else if (!entry.name().endsWith(RemoteFileClient.PART_SUFFIX)) {
+                files.put(prefix + entry.name(), entry);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,90 @@
+package com.github.acs.file.batch.internal.remote;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * A connection to an SFTP or FTP server, used by one thread at a time. Remote paths are absolute and separated by
+ * {@code /}.
+ */
+public interface RemoteFileClient extends Closeable {
+
+    /**
+     * The suffix of a file while it is being downloaded or uploaded.
+     */
+    String PART_SUFFIX = ".part";
+
+    /**
+     * A file or directory on the server.
+     *
+     * @param name the name of the entry within its directory
+     * @param directory whether the entry is a directory
+     * @param size the size of the file
+     * @param modifiedMillis the last modified time of the file, as precise as the server reports it
+     */
+    record Entry(String name, boolean directory, long size, long modifiedMillis) {
+    }
+
+    /**
+     * @param directory the remote directory
+     * @return the files and directories of the directory
+     */
+    List<Entry> list(String directory) throws IOException;
+
+    /**
+     * @param path the remote path
+     * @return the file or directory, or {@code null} if it does not exist
+     */
+    Entry stat(String path) throws IOException;
+
+    /**
+     * Downloads a file, replacing the local file.
+     *
+     * @param path the remote file
+     * @param file the local file
+     */
+    void download(String path, Path file) throws IOException;
+
+    /**
+     * Uploads a file under a temporary name, creating its parent directories, and renames it once it is complete.
+     *
+     * @param file the local file
+     * @param path the remote file
+     */
+    void upload(Path file, String path) throws IOException;
+
+    /**
+     * @return whether the connection is open, as far as the client knows without asking the server
+     */
+    boolean isConnected();
+
+    /**
+     * @return whether the connection still works, asking the server if need be
+     */
+    boolean isAlive();
+
+    /**
+     * @param directory the remote directory
+     * @param name the relative name of a file, separated by {@code /} or the local separator
+     * @return the remote path of the file
+     */
+    static String resolve(String directory, String name) {
+        var relative = name.replace('\\', '/');
+        if (directory.isEmpty()) {
+            return relative;
+        }
+        return directory.endsWith("/") ? directory + relative : directory + "/" + relative;
+    }
+
+    /**
+     * @param path the remote path
+     * @return the parent directory of the path, or the empty string if it has none
+     */
+    static String parentOf(String path) {
+        int index = path.lastIndexOf('/');
+        return index <= 0 ? "" : path.substring(0, index);
+    }
+
+}
@@ -0,0 +1,65 @@
+package com.github.acs.file.batch.internal.remote;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.repeat.RepeatStatus;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+
+/**
+ * Pushes the transferred files from the destination directory to a remote server.
+ * <p>
+ * A file is uploaded under a {@code .part} name and renamed once it is complete, so the server never shows a partial
+ * file under its final name. A file the server already has with the same size and a last modified time no older than
+ * the local file is not uploaded again, so a restarted job only pushes the files it had not pushed yet.
+ */
+@Slf4j
+public class RemotePushTasklet implements Tasklet {
+
+    private final RemoteClientPool pool;
+    private final Path destinationDirectory;
+    private final Collection<String> fileNames;
+
+    /**
+     * @param pool the pool of clients of the remote server
+     * @param destinationDirectory the local directory the files are pushed from
+     * @param fileNames the file names relative to the destination directory
+     */
+    public RemotePushTasklet(RemoteClientPool pool, Path destinationDirectory, Collection<String> fileNames) {
+        this.pool = pool;
+        this.destinationDirectory = destinationDirectory;
+        this.fileNames = fileNames;
+    }
+
+    @Override
+    public RepeatStatus execute(StepContribution contribution, ChunkContext chunkContext) throws Exception {
+        var pushed = this.pool.executeAll(this.fileNames, this::push);
+        long count = pushed.stream().filter(Boolean::booleanValue).count();
+        contribution.incrementWriteCount(count);
+        contribution.incrementFilterCount(this.fileNames.size() - count);
+        log.info("Pushed {} of {} destination files to {}", count, this.fileNames.size(), this.pool);
+        return RepeatStatus.FINISHED;
+    }
+
+    private boolean push(RemoteFileClient client, String fileName) throws IOException {
+        var file = this.destinationDirectory.resolve(fileName);
+        if (!Files.isRegularFile(file)) {
+            throw new FileNotFoundException("Destination file not found: " + file);
+        }
+        var path = RemoteFileClient.resolve(this.pool.directory(), fileName);
+        var entry = client.stat(path);
+        if (entry != null && !entry.directory() && entry.size() == Files.size(file)
+                && entry.modifiedMillis() >= Files.getLastModifiedTime(file).toMillis() / 1000 * 1000) {
+            return false;
+        }
+        client.upload(file, path);
+        return true;
+    }
+
+}
@@ -0,0 +1,138 @@
+package com.github.acs.file.batch.internal.remote;
+
+import org.apache.sshd.sftp.client.SftpClient;
+import org.apache.sshd.sftp.client.extensions.openssh.OpenSSHPosixRenameExtension;
+import org.apache.sshd.sftp.common.SftpConstants;
+import org.apache.sshd.sftp.common.SftpException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A client of an SFTP server over one channel of a shared SSH session.
+ * <p>
+ * Downloads keep as many read requests outstanding as fit in the window of the channel, and uploads send their write
+ * requests without waiting for each to be acknowledged, so the round trips to the server overlap. An upload replaces
+ * its destination atomically where the server allows it.
+ */
+class SftpFileClient implements RemoteFileClient {
+
+    private final SftpClient client;
+    private final int bufferSize;
+
+    SftpFileClient(SftpClient client, int bufferSize) {
+        this.client = client;
+        this.bufferSize = bufferSize;
+    }
+
+    @Override
+    public List<Entry> list(String directory) throws IOException {
+        var entries = new ArrayList<Entry>();
+        for (var dirEntry : this.client.readDir(directory)) {
+            var name = dirEntry.getFilename();
+            if (!name.equals(".") && !name.equals("..")) {
+                entries.add(entry(name, dirEntry.getAttributes()));
+            }
+        }
+        return entries;
+    }
+
+    @Override
+    public Entry stat(String path) throws IOException {
+        try {
+            return entry(path.substring(path.lastIndexOf('/') + 1), this.client.stat(path));
+        } catch (SftpException e) {
+            if (e.getStatus() == SftpConstants.SSH_FX_NO_SUCH_FILE) {
+                return null;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public void download(String path, Path file) throws IOException {
+        var modifyTime = this.client.stat(path).getModifyTime();
+        var part = file.resolveSibling(file.getFileName() + PART_SUFFIX);
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        try (var in = this.client.read(path, this.bufferSize); var out = Files.newOutputStream(part)) {
+            in.transferTo(out);
+        }
+        if (modifyTime != null) {
+            Files.setLastModifiedTime(part, modifyTime);
+        }
+        Files.move(part, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public void upload(Path file, String path) throws IOException {
+        createDirectories(RemoteFileClient.parentOf(path));
+        var part = path + PART_SUFFIX;
+        try (var out = this.client.write(part, this.bufferSize)) {
+            Files.copy(file, out);
+        }
+        this.client.setStat(part, new SftpClient.Attributes().modifyTime(Files.getLastModifiedTime(file)));
+        replace(part, path);
+    }
+
+    @Override
+    public boolean isConnected() {
+        return this.client.isOpen();
+    }
+
+    @Override
+    public boolean isAlive() {
+        return this.client.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.client.close();
+    }
+
+    /**
+     * Renames an uploaded file over its destination in one step, so readers of the destination see either the old or
+     * the new file: with the overwrite flag of SFTP 5 and later, or with the {@code posix-rename@openssh.com}
+     * extension of OpenSSH, which speaks SFTP 3. Only a server supporting neither has the destination removed
+     * before the rename, leaving it missing in between.
+     */
+    private void replace(String part, String path) throws IOException {
+        if (this.client.getVersion() >= SftpConstants.SFTP_V5) {
+            this.client.rename(part, path, SftpClient.CopyMode.Overwrite);
+            return;
+        }
+        var posixRename = this.client.getExtension(OpenSSHPosixRenameExtension.class);
+        if (posixRename != null && posixRename.isSupported()) {
+            posixRename.posixRename(part, path);
+            return;
+        }
+        if (stat(path) != null) {
+            this.client.remove(path);
+        }
+        this.client.rename(part, path);
+    }
+
+    private void createDirectories(String directory) throws IOException {
+        if (directory.isEmpty() || stat(directory) != null) {
+            return;
+        }
+        createDirectories(RemoteFileClient.parentOf(directory));
+        try {
+            this.client.mkdir(directory);
+        } catch (SftpException e) {
+            if (stat(directory) == null) {
+                throw e;
+            }
+        }
+    }
+
+    private static Entry entry(String name, SftpClient.Attributes attributes) {
+        FileTime modifyTime = attributes.getModifyTime();
+        return new Entry(name, attributes.isDirectory(), attributes.getSize(), modifyTime == null ? 0 : modifyTime.toMillis());
+    }
+
+}
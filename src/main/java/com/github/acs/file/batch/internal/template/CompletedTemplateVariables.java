@@ -4,12 +4,18 @@ import com.github.acs.file.email.TemplateVariables;
 import lombok.Builder;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 @Builder
 public record CompletedTemplateVariables(
         String timeOfDay,
         String jobName,
         LocalDateTime completedTime,
-        int passedCount
+        int passedCount,
+        int fileCount,
+        long byteCount,
+        int skippedCount,
+        long skippedBytes,
+        List<PartitionSummary> partitions
 ) implements TemplateVariables {
 }
@@ -0,0 +1,16 @@
+package com.github.acs.file.batch.internal.template;
+
+import lombok.Builder;
+
+@Builder
+public record PartitionSummary(
+        String name,
+        String status,
+        int fileCount,
+        int verifiedCount,
+        long byteCount,
+        int skippedCount,
+        long skippedBytes,
+        long durationMillis
+) {
+}
@@ -0,0 +1,84 @@
+package com.github.acs.file.batch.internal.transfer;
+
+import org.springframework.util.Assert;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A thread-safe Bloom filter of strings, which answers whether a key might have been added, or was definitely not.
+ * <p>
+ * The filter is sized for an expected number of keys and false positive probability, and derives the bit positions
+ * of a key from two 64-bit hashes of its UTF-8 bytes. Bits are set with atomic updates, so keys can be added and
+ * queried concurrently without locking.
+ */
+public class BloomFilter {
+
+    private final AtomicLongArray words;
+    private final long bitCount;
+    private final int hashCount;
+
+    public BloomFilter(long expectedKeys, double falsePositiveProbability) {
+        Assert.isTrue(expectedKeys > 0, "The expected number of keys must be positive");
+        Assert.isTrue(falsePositiveProbability > 0 && falsePositiveProbability < 1, "The false positive probability must be between 0 and 1");
+        long bits = (long) Math.ceil(-expectedKeys * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2)));
+        int wordCount = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, (bits + 63) / 64));
+        this.words = new AtomicLongArray(wordCount);
+        this.bitCount = wordCount * 64L;
+        this.hashCount = Math.max(1, (int) Math.round((double) this.bitCount / expectedKeys * Math.log(2)));
+    }
+
+    /**
+     * @param key the key to add
+     */
+    public void add(String key) {
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        long hash1 = hash(bytes, 0);
+        long hash2 = hash(bytes, hash1);
+        for (int i = 0; i < this.hashCount; i++) {
+            long bit = Math.floorMod(hash1 + i * hash2, this.bitCount);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current = this.words.get(word);
+            while ((current & mask) == 0 && !this.words.compareAndSet(word, current, current | mask)) {
+                current = this.words.get(word);
+            }
+        }
+    }
+
+    /**
+     * @param key the key to look up
+     * @return {@code false} if the key was never added, {@code true} if it probably was
+     */
+    public boolean mightContain(String key) {
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        long hash1 = hash(bytes, 0);
+        long hash2 = hash(bytes, hash1);
+        for (int i = 0; i < this.hashCount; i++) {
+            long bit = Math.floorMod(hash1 + i * hash2, this.bitCount);
+            if ((this.words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Hashes bytes with 64-bit FNV-1a seeded with {@code seed}, finalised with the MurmurHash3 mixer so every bit of
+     * the input affects every bit of the hash.
+     */
+    private static long hash(byte[] bytes, long seed) {
+        long hash = 0xcbf29ce484222325L ^ seed;
+        for (byte b : bytes) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash | 1;
+    }
+
+}
@@ -0,0 +1,137 @@
+package com.github.acs.file.batch.internal.transfer;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * An index of the content of transferred files, keyed by the digest and size of the content, and persisted in the
+ * {@code file_transfer_content} table.
+ * <p>
+ * The digest is the SHA-256 of the range digests recorded in the {@link TransferManifest}, so it also depends on the
+ * range size the file was transferred with. A {@link BloomFilter} of every indexed content and every indexed size is
+ * loaded from the table on first use and kept up to date as content is added, so files whose size or content was
+ * never transferred are neither hashed nor looked up in the database.
+ */
+@Slf4j
+public class ContentIndex {
+
+    static final String TABLE_NAME = "file_transfer_content";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final long expectedFiles;
+    private final double falsePositiveProbability;
+    private volatile BloomFilter filter;
+
+    public ContentIndex(JdbcTemplate jdbcTemplate, long expectedFiles, double falsePositiveProbability) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.expectedFiles = expectedFiles;
+        this.falsePositiveProbability = falsePositiveProbability;
+    }
+
+    /**
+     * A file whose content is indexed.
+     *
+     * @param path the path of the file
+     * @param modifiedMillis the last modified time of the file when it was indexed
+     */
+    public record IndexedFile(Path path, long modifiedMillis) {
+    }
+
+    /**
+     * @param size the size of a file
+     * @return {@code false} if no content of that size was indexed, {@code true} if some probably was
+     */
+    public boolean mightContainSize(long size) {
+        return filter().mightContain(sizeKey(size));
+    }
+
+    /**
+     * Looks up a file with the given content.
+     *
+     * @param rangeSha256Tree the hex encoded range SHA-256 tree of the content
+     * @param size the size of the content
+     * @param rangeSize the range size the digest was computed with
+     * @return the last file the content was transferred to, if any
+     */
+    public Optional<IndexedFile> find(String rangeSha256Tree, long size, long rangeSize) {
+        if (!filter().mightContain(contentKey(rangeSha256Tree, size, rangeSize))) {
+            return Optional.empty();
+        }
+        return this.jdbcTemplate.query(
+                "SELECT path, modified_millis FROM " + TABLE_NAME + " WHERE sha256 = ? AND size = ? AND range_size = ?",
+                (resultSet, rowNum) -> new IndexedFile(Path.of(resultSet.getString(1)), resultSet.getLong(2)),
+                rangeSha256Tree, size, rangeSize
+        ).stream().findFirst();
+    }
+
+    /**
+     * Records the file a content was transferred to, replacing the file previously recorded for it.
+     *
+     * @param entry the manifest entry of the transferred file
+     * @param modifiedMillis the last modified time of the transferred file
+     */
+    public void add(ManifestEntry entry, long modifiedMillis) {
+        var filter = filter();
+        var path = entry.file().toAbsolutePath().toString();
+        String update = "UPDATE " + TABLE_NAME + " SET path = ?, modified_millis = ? WHERE sha256 = ? AND size = ? AND range_size = ?";
+        if (this.jdbcTemplate.update(update, path, modifiedMillis, entry.rangeSha256Tree(), entry.size(), entry.rangeSize()) == 0) {
+            try {
+                this.jdbcTemplate.update("INSERT INTO " + TABLE_NAME + " (sha256, size, range_size, path, modified_millis) VALUES (?, ?, ?, ?, ?)",
+                        entry.rangeSha256Tree(), entry.size(), entry.rangeSize(), path, modifiedMillis);
+            } catch (DuplicateKeyException e) {
+                this.jdbcTemplate.update(update, path, modifiedMillis, entry.rangeSha256Tree(), entry.size(), entry.rangeSize());
+            }
+        }
+        filter.add(sizeKey(entry.size()));
+        filter.add(contentKey(entry.rangeSha256Tree(), entry.size(), entry.rangeSize()));
+    }
+
+    private BloomFilter filter() {
+        var filter = this.filter;
+        if (filter == null) {
+            synchronized (this) {
+                filter = this.filter;
+                if (filter == null) {
+                    filter = load();
+                    this.filter = filter;
+                }
+            }
+        }
+        return filter;
+    }
+
+    /**
+     * Creates the index table if it does not exist yet, and loads every indexed content into a new filter.
+     */
+    private BloomFilter load() {
+        this.jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + TABLE_NAME + " ("
+                + "sha256 VARCHAR(64) NOT NULL, "
+                + "size BIGINT NOT NULL, "
+                + "range_size BIGINT NOT NULL, "
+                + "path VARCHAR(4096) NOT NULL, "
+                + "modified_millis BIGINT NOT NULL, "
+                + "PRIMARY KEY (sha256, size, range_size))");
+        var filter = new BloomFilter(this.expectedFiles, this.falsePositiveProbability);
+        long[] count = {0};
+        this.jdbcTemplate.query("SELECT sha256, size, range_size FROM " + TABLE_NAME, resultSet -> {
+            filter.add(sizeKey(resultSet.getLong(2)));
+            filter.add(contentKey(resultSet.getString(1), resultSet.getLong(2), resultSet.getLong(3)));
+            count[0]++;
+        });
+        log.info("Loaded {} indexed file contents into the deduplication filter", count[0]);
+        return filter;
+    }
+
+    private static String sizeKey(long size) {
+        return "size:" + size;
+    }
+
+    private static String contentKey(String sha256, long size, long rangeSize) {
+        return sha256 + ":" + size + ":" + rangeSize;
+    }
+
+}
@@ -0,0 +1,303 @@
+package com.github.acs.file.batch.internal.transfer;
+
+import org.springframework.util.Assert;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/**
+ * Transfers a file against the previous version of its destination, the basis, in the way rsync does, patching a
+ * copy of the basis so that only the parts of the source that changed are written.
+ * <p>
+ * The output starts as a copy of the basis made with {@link Files#copy}, which clones the file without copying its
+ * data on file systems that support it (reflinks on Btrfs and XFS, block cloning on ZFS, clonefile on APFS). On other
+ * file systems the copy is made by the kernel, but still writes every byte of the basis, so the strategy only pays off
+ * where files can be cloned.
+ * <p>
+ * The basis is split into blocks of {@code blockSize} bytes, each with a weak rolling checksum and a strong SHA-256
+ * signature. The source is then scanned once with a window of one block, whose weak checksum is rolled forward one
+ * byte at a time. A window whose weak and strong checksums match a block of the basis at the same offset is left as it
+ * is in the output, a window that matches a block at another offset is copied from the basis with
+ * {@link FileChannel#transferTo}, and the bytes in between, the literals, are written from the scan buffer at their
+ * offset. The output is finally truncated to the size of the source. The basis itself is left untouched until the
+ * output replaces it.
+ * <p>
+ * The scan reads every byte of the source exactly once and keeps at most a few blocks of it in memory, so the CRC32C
+ * and SHA-256 of the source can be computed during the scan.
+ */
+public class DeltaTransfer {
+
+    private static final int MODULUS = 1 << 16;
+
+    private final int blockSize;
+
+    public DeltaTransfer(int blockSize) {
+        Assert.isTrue(blockSize > 0 && blockSize <= 64 * 1024 * 1024, "The block size must be between 1 byte and 64 MB");
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * The bytes written by a delta transfer.
+     *
+     * @param literalBytes the number of bytes written from the source
+     * @param matchedBytes the number of bytes reused from the basis
+     * @param copiedBytes the number of bytes reused from the basis that moved, and were copied to their new offset
+     */
+    public record Result(long literalBytes, long matchedBytes, long copiedBytes) {
+
+        /**
+         * @return the number of bytes written to the output after it was copied from the basis
+         */
+        public long writtenBytes() {
+            return literalBytes + copiedBytes;
+        }
+    }
+
+    private record Block(long offset, int length, byte[] strong) {
+    }
+
+    /**
+     * Writes the content of a source file to an output file, reusing the blocks of a basis file.
+     *
+     * @param source the source file
+     * @param basis the previous version of the file, or {@code null} if there is none
+     * @param output the file to write the content of the source to, which is replaced with a copy of the basis first
+     * @param crc32c the checksum to update with the content of the source, or {@code null}
+     * @param sha256 the digest to update with the content of the source, or {@code null}
+     * @param force whether to force the output to the storage device once it is written
+     * @return the number of bytes written from the source and reused from the basis
+     * @throws IOException if any of the files could not be read or written
+     */
+    public Result transfer(Path source, Path basis, Path output, CRC32C crc32c, MessageDigest sha256, boolean force) throws IOException {
+        if (basis != null) {
+            Files.copy(basis, output, StandardCopyOption.REPLACE_EXISTING);
+        }
+        try (var sourceChannel = FileChannel.open(source, StandardOpenOption.READ);
+             var basisChannel = basis == null ? null : FileChannel.open(basis, StandardOpenOption.READ);
+             var outputChannel = basis == null
+                     ? FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)
+                     : FileChannel.open(output, StandardOpenOption.WRITE)) {
+            var blocks = basisChannel == null ? Map.<Integer, List<Block>>of() : signatures(basisChannel);
+            var result = new Scan(sourceChannel, basisChannel, blocks, outputChannel, crc32c, sha256).run();
+            outputChannel.truncate(result.literalBytes() + result.matchedBytes());
+            if (force) {
+                outputChannel.force(false);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Computes the signature of every block of the basis, keyed by the weak checksum of the block.
+     */
+    Map<Integer, List<Block>> signatures(FileChannel basis) throws IOException {
+        Map<Integer, List<Block>> blocks = new HashMap<>();
+        var buffer = ByteBuffer.allocate(blockSize);
+        var strong = ManifestEntry.newSha256();
+        long size = basis.size();
+        for (long offset = 0; offset < size; offset += blockSize) {
+            int length = (int) Math.min(blockSize, size - offset);
+            buffer.clear().limit(length);
+            while (buffer.hasRemaining()) {
+                if (basis.read(buffer, offset + buffer.position()) <= 0) {
+                    throw new IOException("The basis ended at byte " + (offset + buffer.position()) + ", expected " + size + " bytes");
+                }
+            }
+            int weak = weakChecksum(buffer.array(), 0, length);
+            strong.update(buffer.array(), 0, length);
+            blocks.computeIfAbsent(weak, key -> new ArrayList<>(1)).add(new Block(offset, length, strong.digest()));
+        }
+        return blocks;
+    }
+
+    static int weakChecksum(byte[] bytes, int offset, int length) {
+        int a = 0;
+        int b = 0;
+        for (int i = 0; i < length; i++) {
+            int value = bytes[offset + i] & 0xff;
+            a += value;
+            b += (length - i) * value;
+        }
+        return (a & (MODULUS - 1)) | ((b & (MODULUS - 1)) << 16);
+    }
+
+    /**
+     * A single scan of the source, which holds the bytes of the source from the first pending literal to the end
+     * of the window in its buffer.
+     */
+    private final class Scan {
+
+        private final FileChannel source;
+        private final FileChannel basis;
+        private final Map<Integer, List<Block>> blocks;
+        private final FileChannel output;
+        private final CRC32C crc32c;
+        private final MessageDigest sha256;
+        private final MessageDigest strong = ManifestEntry.newSha256();
+        private final byte[] buffer = new byte[Math.max(4 * blockSize, 1024 * 1024)];
+        private long sourcePosition;
+        private int start;
+        private int window;
+        private int end;
+        private long outputPosition;
+        private long literalBytes;
+        private long matchedBytes;
+        private long copiedBytes;
+
+        private Scan(FileChannel source, FileChannel basis, Map<Integer, List<Block>> blocks, FileChannel output, CRC32C crc32c, MessageDigest sha256) {
+            this.source = source;
+            this.basis = basis;
+            this.blocks = blocks;
+            this.output = output;
+            this.crc32c = crc32c;
+            this.sha256 = sha256;
+        }
+
+        private Result run() throws IOException {
+            boolean rolling = false;
+            int a = 0;
+            int b = 0;
+            while (!blocks.isEmpty() && ensure(blockSize)) {
+                if (!rolling) {
+                    int weak = weakChecksum(buffer, window, blockSize);
+                    a = weak & (MODULUS - 1);
+                    b = weak >>> 16;
+                    rolling = true;
+                }
+                var block = match(a | (b << 16), blockSize);
+                if (block != null) {
+                    writeLiteral(window);
+                    copyBlock(block);
+                    window += blockSize;
+                    start = window;
+                    rolling = false;
+                } else if (ensure(blockSize + 1)) {
+                    int out = buffer[window] & 0xff;
+                    int in = buffer[window + blockSize] & 0xff;
+                    a = (a - out + in) & (MODULUS - 1);
+                    b = (b - blockSize * out + a) & (MODULUS - 1);
+                    window++;
+                } else {
+                    break;
+                }
+            }
+            finishTail();
+            return new Result(literalBytes, matchedBytes, copiedBytes);
+        }
+
+        /**
+         * Reads the rest of the source, matches its last bytes against the last block of the basis, and writes
+         * whatever is left of the source as literals.
+         */
+        private void finishTail() throws IOException {
+            while (ensure(blockSize + 1)) {
+                window = end - blockSize;
+            }
+            int length = end - window;
+            if (length > 0) {
+                var block = match(weakChecksum(buffer, window, length), length);
+                if (block != null) {
+                    writeLiteral(window);
+                    copyBlock(block);
+                    start = end;
+                }
+            }
+            writeLiteral(end);
+        }
+
+        private Block match(int weak, int length) {
+            var candidates = blocks.get(weak);
+            if (candidates == null) {
+                return null;
+            }
+            strong.update(buffer, window, length);
+            byte[] digest = strong.digest();
+            for (Block block : candidates) {
+                if (block.length() == length && Arrays.equals(block.strong(), digest)) {
+                    return block;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Reads more of the source until the buffer holds {@code length} bytes from the start of the window, writing
+         * the pending literals and moving the window to the start of the buffer when the buffer is full.
+         *
+         * @return whether the buffer holds {@code length} bytes from the start of the window
+         */
+        private boolean ensure(int length) throws IOException {
+            while (window + length > end) {
+                if (end == buffer.length) {
+                    writeLiteral(window);
+                    System.arraycopy(buffer, window, buffer, 0, end - window);
+                    end -= window;
+                    start = 0;
+                    window = 0;
+                }
+                int read = source.read(ByteBuffer.wrap(buffer, end, buffer.length - end), sourcePosition);
+                if (read <= 0) {
+                    return false;
+                }
+                if (crc32c != null) {
+                    crc32c.update(buffer, end, read);
+                }
+                if (sha256 != null) {
+                    sha256.update(buffer, end, read);
+                }
+                sourcePosition += read;
+                end += read;
+            }
+            return true;
+        }
+
+        private void writeLiteral(int until) throws IOException {
+            if (until <= start) {
+                return;
+            }
+            var literal = ByteBuffer.wrap(buffer, start, until - start);
+            while (literal.hasRemaining()) {
+                outputPosition += output.write(literal, outputPosition);
+            }
+            literalBytes += until - start;
+            start = until;
+        }
+
+        /**
+         * Leaves a block of the basis where it is in the output if it did not move, or copies it from the basis to
+         * its new offset.
+         */
+        private void copyBlock(Block block) throws IOException {
+            if (block.offset() != outputPosition) {
+                output.position(outputPosition);
+                long position = block.offset();
+                long remaining = block.length();
+                while (remaining > 0) {
+                    long transferred = basis.transferTo(position, remaining, output);
+                    if (transferred <= 0) {
+                        throw new IOException("The basis ended at byte " + position);
+                    }
+                    position += transferred;
+                    remaining -= transferred;
+                }
+                copiedBytes += block.length();
+            }
+            outputPosition += block.length();
+            matchedBytes += block.length();
+        }
+
+    }
+
+}
@@ -0,0 +1,138 @@
+package com.github.acs.file.batch.internal.transfer;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.util.Assert;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HexFormat;
+
+/**
+ * Decides whether a source file has to be transferred, by looking its content up in the {@link ContentIndex}.
+ * <p>
+ * Only files of a size that was indexed before are hashed, with the same range digests the {@link TransferManifest}
+ * records. A file whose content is indexed is not transferred if the indexed file is unchanged since it was indexed,
+ * and either is the destination of the file already, or can be hard-linked to it in {@link Mode#LINK} mode. A
+ * hard-linked destination shares its storage with the indexed file, so neither must be modified in place.
+ */
+@Slf4j
+public class FileDeduplicator {
+
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    private final ContentIndex index;
+    private final Mode mode;
+    private final long rangeSize;
+
+    public FileDeduplicator(ContentIndex index, Mode mode, long rangeSize) {
+        Assert.notNull(index, "The content index is required");
+        Assert.isTrue(mode != Mode.NONE, "The deduplication mode must not be none");
+        Assert.isTrue(rangeSize > 0, "The range size must be positive");
+        this.index = index;
+        this.mode = mode;
+        this.rangeSize = rangeSize;
+    }
+
+    /**
+     * Deduplicates a source file against the files transferred before it.
+     *
+     * @param source the source file
+     * @param destination the destination of the file
+     * @param size the size of the source file
+     * @return {@code true} if the destination holds the content of the source and the file does not have to be
+     * transferred, {@code false} otherwise
+     * @throws IOException if the source could not be hashed or the destination could not be linked
+     */
+    public boolean deduplicate(Path source, Path destination, long size) throws IOException {
+        if (size == 0 || !this.index.mightContainSize(size)) {
+            return false;
+        }
+        long effectiveRangeSize = Math.min(this.rangeSize, size);
+        var indexed = this.index.find(digest(source, size, effectiveRangeSize), size, effectiveRangeSize);
+        if (indexed.isEmpty()) {
+            return false;
+        }
+        var existing = indexed.get().path();
+        if (!Files.isRegularFile(existing) || Files.size(existing) != size
+                || Files.getLastModifiedTime(existing).toMillis() != indexed.get().modifiedMillis()) {
+            return false;
+        }
+        if (Files.exists(destination) && Files.isSameFile(existing, destination)) {
+            log.debug("Skipping {}, its content is already at {}", source, destination);
+            return true;
+        }
+        return this.mode == Mode.LINK && link(existing, destination);
+    }
+
+    /**
+     * Links the destination to an indexed file through its {@code .part} file, so the destination is replaced
+     * atomically, and falls back to a transfer if the file system does not support hard links between the files.
+     */
+    private static boolean link(Path existing, Path destination) throws IOException {
+        Path parent = destination.getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        var part = FileRangeItemWriter.partOf(destination);
+        Files.deleteIfExists(part);
+        try {
+            Files.createLink(part, existing);
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            log.debug("Unable to link {} to {}, transferring it instead", destination, existing, e);
+            return false;
+        }
+        Files.move(part, destination, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        log.debug("Linked {} to {} with the same content", destination, existing);
+        return true;
+    }
+
+    /**
+     * Computes the range SHA-256 tree of a file, as recorded in the {@link ManifestEntry} of the file.
+     */
+    static String digest(Path file, long size, long rangeSize) throws IOException {
+        var fileDigest = ManifestEntry.newSha256();
+        var rangeDigest = ManifestEntry.newSha256();
+        var buffer = ByteBuffer.allocateDirect((int) Math.min(BUFFER_SIZE, rangeSize));
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long position = 0;
+            while (position < size) {
+                long rangeEnd = Math.min(size, position + rangeSize);
+                while (position < rangeEnd) {
+                    buffer.clear().limit((int) Math.min(buffer.capacity(), rangeEnd - position));
+                    int read = channel.read(buffer, position);
+                    if (read <= 0) {
+                        throw new IOException("The file " + file + " ended at byte " + position + ", expected " + size + " bytes");
+                    }
+                    buffer.flip();
+                    rangeDigest.update(buffer);
+                    position += read;
+                }
+                fileDigest.update(rangeDigest.digest());
+            }
+        }
+        return HexFormat.of().formatHex(fileDigest.digest());
+    }
+
+    public enum Mode {
+        /**
+         * Every file is transferred.
+         */
+        NONE,
+        /**
+         * A file is skipped if its destination already holds its content.
+         */
+        SKIP,
+        /**
+         * A file is skipped if its destination already holds its content, and hard-linked to another transferred
+         * file with the same content otherwise.
+         */
+        LINK
+    }
+
+}
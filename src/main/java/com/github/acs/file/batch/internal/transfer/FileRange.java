@@ -0,0 +1,29 @@
+package com.github.acs.file.batch.internal.transfer;
+
+import java.nio.file.Path;
+
+/**
+ * A contiguous byte range of a source file and the destination it is transferred to.
+ *
+ * @param source the source file
+ * @param destination the destination file
+ * @param offset the position of the first byte of the range
+ * @param length the number of bytes in the range
+ * @param fileSize the total size of the source file
+ */
+public record FileRange(
+        Path source,
+        Path destination,
+        long offset,
+        long length,
+        long fileSize
+) {
+
+    /**
+     * @return {@code true} if this range ends at the end of the source file
+     */
+    public boolean isLast() {
+        return offset + length >= fileSize;
+    }
+
+}
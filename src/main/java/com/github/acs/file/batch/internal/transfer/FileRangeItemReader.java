@@ -0,0 +1,208 @@
+package com.github.acs.file.batch.internal.transfer;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.util.Assert;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Splits the files of a transfer into {@link FileRange} items of at most {@code rangeSize} bytes.
+ * <p>
+ * The reader keeps track of the file and offset of the next range, and stores it in the step
+ * execution context whenever a chunk is committed, so a restarted step continues with the first
+ * range that has not been committed yet.
+ * <p>
+ * Before a restarted step resumes a file that was only partly transferred, the reader verifies the
+ * {@link RangeCheckpoint}s the {@link FileRangeItemWriter} committed for it against the {@code .part} file,
+ * and resumes from the end of the last range that still matches. The verified checkpoints replace the
+ * committed ones in the execution context, so the reader must be opened before the writer.
+ * <p>
+ * When no file names are provided, every regular file beneath the source directory is transferred.
+ * Files are read in path order, so their position in the transfer stays stable across restarts.
+ * <p>
+ * The number of files and bytes read is stored alongside the position, which makes them the committed
+ * totals of the step once it completes.
+ * <p>
+ * When files are transferred with a {@link TransferCodec}, every file is read as a single range, because a
+ * compressed stream cannot be written at an offset, and its destination is named after the codec. Files can also be
+ * read as a single range each without a codec, for writers that transfer whole files.
+ * <p>
+ * When the reader is given a {@link FileDeduplicator}, every file is offered to it before its first range is read,
+ * and a file the deduplicator finds at its destination is skipped. The number of skipped files and bytes is stored
+ * alongside the totals.
+ */
+@Slf4j
+public class FileRangeItemReader implements ItemStreamReader<FileRange> {
+
+    public static final String FILE_INDEX_KEY = "fileRange.fileIndex";
+    public static final String OFFSET_KEY = "fileRange.offset";
+    public static final String FILE_COUNT_KEY = "fileRange.fileCount";
+    public static final String BYTE_COUNT_KEY = "fileRange.byteCount";
+    public static final String SKIPPED_COUNT_KEY = "fileRange.skippedCount";
+    public static final String SKIPPED_BYTES_KEY = "fileRange.skippedBytes";
+    private static final int VERIFY_BUFFER_SIZE = 1024 * 1024;
+
+    private final Path sourceDirectory;
+    private final Path destinationDirectory;
+    private final Collection<String> fileNames;
+    private final long rangeSize;
+
+    private List<Path> sourceFiles;
+    private int fileIndex;
+    private long offset;
+    private long fileSize = -1;
+    private int fileCount;
+    private long byteCount;
+    private TransferCodec codec = TransferCodec.NONE;
+    private TransferCodec.Direction codecDirection = TransferCodec.Direction.COMPRESS;
+    private boolean wholeFiles;
+    private FileDeduplicator deduplicator;
+    private int skippedCount;
+    private long skippedBytes;
+
+    public FileRangeItemReader(Path sourceDirectory, Path destinationDirectory, Collection<String> fileNames, long rangeSize) {
+        Assert.notNull(sourceDirectory, "The source directory is required");
+        Assert.notNull(destinationDirectory, "The destination directory is required");
+        Assert.isTrue(rangeSize > 0, "The range size must be positive");
+        this.sourceDirectory = sourceDirectory;
+        this.destinationDirectory = destinationDirectory;
+        this.fileNames = fileNames == null ? List.of() : List.copyOf(fileNames);
+        this.rangeSize = rangeSize;
+    }
+
+    /**
+     * @param codec the codec the files are transferred with
+     * @param direction whether the files are compressed or decompressed
+     */
+    public void setCodec(TransferCodec codec, TransferCodec.Direction direction) {
+        Assert.notNull(codec, "The codec is required");
+        Assert.notNull(direction, "The codec direction is required");
+        this.codec = codec;
+        this.codecDirection = direction;
+    }
+
+    /**
+     * @param wholeFiles whether every file is read as a single range, whatever the range size
+     */
+    public void setWholeFiles(boolean wholeFiles) {
+        this.wholeFiles = wholeFiles;
+    }
+
+    /**
+     * @param deduplicator the deduplicator to offer every file to before it is read, or {@code null} to read every file
+     */
+    public void setDeduplicator(FileDeduplicator deduplicator) {
+        this.deduplicator = deduplicator;
+    }
+
+    @Override
+    public void open(ExecutionContext executionContext) throws ItemStreamException {
+        try {
+            this.sourceFiles = SourceFiles.resolve(this.sourceDirectory, this.fileNames);
+        } catch (IOException e) {
+            throw new ItemStreamException("Unable to list the source files in " + this.sourceDirectory, e);
+        }
+        this.fileIndex = executionContext.getInt(FILE_INDEX_KEY, 0);
+        this.offset = executionContext.getLong(OFFSET_KEY, 0L);
+        this.fileCount = executionContext.getInt(FILE_COUNT_KEY, 0);
+        this.byteCount = executionContext.getLong(BYTE_COUNT_KEY, 0L);
+        this.skippedCount = executionContext.getInt(SKIPPED_COUNT_KEY, 0);
+        this.skippedBytes = executionContext.getLong(SKIPPED_BYTES_KEY, 0L);
+        this.fileSize = -1;
+        try {
+            resumeFromVerifiedCheckpoint(executionContext);
+        } catch (IOException e) {
+            throw new ItemStreamException("Unable to verify the checkpoints of the partly transferred file", e);
+        }
+    }
+
+    @Override
+    public FileRange read() throws IOException {
+        while (this.fileIndex < this.sourceFiles.size()) {
+            Path source = this.sourceFiles.get(this.fileIndex);
+            if (this.fileSize < 0) {
+                this.fileSize = Files.size(source);
+                if (this.offset == 0 && this.deduplicator != null && this.deduplicator.deduplicate(source, destinationOf(source), this.fileSize)) {
+                    this.skippedCount++;
+                    this.skippedBytes += this.fileSize;
+                    nextFile();
+                    continue;
+                }
+            }
+            if (this.offset < this.fileSize || this.offset == 0) {
+                long length = this.codec == TransferCodec.NONE && !this.wholeFiles
+                        ? Math.min(this.rangeSize, this.fileSize - this.offset)
+                        : this.fileSize - this.offset;
+                var range = new FileRange(source, destinationOf(source), this.offset, length, this.fileSize);
+                this.offset += length;
+                this.byteCount += length;
+                if (this.offset >= this.fileSize) {
+                    this.fileCount++;
+                    nextFile();
+                }
+                return range;
+            }
+            nextFile();
+        }
+        return null;
+    }
+
+    @Override
+    public void update(ExecutionContext executionContext) throws ItemStreamException {
+        executionContext.putInt(FILE_INDEX_KEY, this.fileIndex);
+        executionContext.putLong(OFFSET_KEY, this.offset);
+        executionContext.putInt(FILE_COUNT_KEY, this.fileCount);
+        executionContext.putLong(BYTE_COUNT_KEY, this.byteCount);
+        executionContext.putInt(SKIPPED_COUNT_KEY, this.skippedCount);
+        executionContext.putLong(SKIPPED_BYTES_KEY, this.skippedBytes);
+    }
+
+    /**
+     * Resolves the destination of a source file, keeping its path relative to the source directory.
+     *
+     * @param source the source file
+     * @return the destination file
+     */
+    Path destinationOf(Path source) {
+        var destination = this.destinationDirectory.resolve(this.sourceDirectory.relativize(source).toString());
+        return this.codec == TransferCodec.NONE ? destination : this.codec.destinationOf(destination, this.codecDirection);
+    }
+
+    /**
+     * Moves the offset of a partly transferred file back to the end of its last verified checkpoint.
+     */
+    private void resumeFromVerifiedCheckpoint(ExecutionContext executionContext) throws IOException {
+        var checkpoints = FileRangeItemWriter.checkpoints(executionContext);
+        if (this.offset == 0 || this.fileIndex >= this.sourceFiles.size() || checkpoints.isEmpty()) {
+            return;
+        }
+        var destination = destinationOf(this.sourceFiles.get(this.fileIndex));
+        if (!destination.toString().equals(executionContext.getString(FileRangeItemWriter.CHECKPOINT_FILE_KEY, null))) {
+            return;
+        }
+        var verified = RangeCheckpoint.verify(FileRangeItemWriter.partOf(destination), checkpoints, ByteBuffer.allocateDirect(VERIFY_BUFFER_SIZE));
+        long verifiedOffset = verified.isEmpty() ? 0 : verified.getLast().end();
+        if (verifiedOffset < this.offset) {
+            log.warn("Resuming {} from byte {} instead of {}, the ranges after it no longer match their checkpoints", destination, verifiedOffset, this.offset);
+            this.byteCount -= this.offset - verifiedOffset;
+            this.offset = verifiedOffset;
+        }
+        executionContext.put(FileRangeItemWriter.CHECKPOINTS_KEY, new ArrayList<>(verified));
+    }
+
+    private void nextFile() {
+        this.fileIndex++;
+        this.offset = 0;
+        this.fileSize = -1;
+    }
+
+}
@@ -0,0 +1,713 @@
+package com.github.acs.file.batch.internal.transfer;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.ChunkListener;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamWriter;
+import org.springframework.util.Assert;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32C;
+
+/**
+ * Writes {@link FileRange} items to a {@code .part} file next to their destination, which is renamed to the
+ * destination once every range of the file has been committed.
+ * <p>
+ * With a concurrency of one, every range is copied with {@link FileChannel#transferTo}, so the bytes are copied by
+ * the kernel without passing through a buffer on the heap. The digests of such a range are computed by a virtual
+ * thread that reads the range of the source through a direct buffer while it is copied, so the hashing overlaps the
+ * copy and is served by the page cache the copy reads from. With a higher concurrency, the ranges of a chunk are
+ * copied in parallel with positional reads and writes through a pool of direct buffers, one per concurrent range,
+ * and their digests are computed from the bytes as they pass through the buffer.
+ * <p>
+ * The {@code .part} file is preallocated to the size of the source when it is created, and every range is written
+ * at its own offset, so a range can be rewritten safely when its chunk is retried or the step is restarted. When the
+ * last range of a file is written, the size of the {@code .part} file is checked and the file is staged. Staged files
+ * are stored in the step execution context with the chunk, and atomically renamed to their destination once the
+ * chunk is committed. A step that fails between the commit and the rename finishes the rename when it is restarted.
+ * <p>
+ * For a file that spans more than one chunk, the writer stores a {@link RangeCheckpoint} of every written range in
+ * the step execution context, so a restarted step can verify the committed ranges before it resumes the file.
+ * <p>
+ * When the writer is given a {@link TransferManifest}, the CRC32C and SHA-256 of every range are computed while it
+ * is copied, instead of in a second read of the source or the destination after it. Reading the written file back
+ * to compare it with its source is left to the {@link TransferVerifier}. The digests of every range of a file are kept until its
+ * last range is written, and combined into the {@link ManifestEntry} of the file, which is appended to the manifest
+ * just before the file is renamed. With a concurrency of one, the ranges of a file are also hashed in order into a
+ * running SHA-256 of the whole file. A running digest cannot be stored in the step execution context, so when a
+ * chunk is retried or the step is restarted in the middle of a file, the digest is rebuilt from the committed ranges
+ * in the {@code .part} file. A file whose rename is finished by a restarted step is appended again, so the
+ * manifest lists every transferred file at least once.
+ * <p>
+ * When the writer is given a {@link TransferVerifier}, every fully written {@code .part} file is compared with its
+ * source before it is staged, and a file that differs fails the write.
+ * <p>
+ * When the writer is given a {@link TransferCodec}, every file must be written as a single range, which is streamed
+ * through the codec into the {@code .part} file. The checksums of such a file are computed over its uncompressed
+ * content, and it is neither read back nor verified, as its bytes differ from the source by design. The number of
+ * uncompressed and compressed bytes and the time spent in the codec are stored in the step execution context.
+ * <p>
+ * When the writer is given a {@link DeltaTransfer}, every file must be written as a single range. Its {@code .part}
+ * file starts as a clone of the current destination, into which only the parts of the source that changed are
+ * written. The number of bytes written from the source and reused from the destination is stored in the step
+ * execution context.
+ * <p>
+ * When the writer is given a {@link ContentIndex}, the manifest entry of every renamed file is added to the index,
+ * so later transfers of the same content can be deduplicated against it.
+ */
+@Slf4j
+public class FileRangeItemWriter implements ItemStreamWriter<FileRange>, ChunkListener {
+
+    public static final String STAGED_FILES_KEY = "fileRange.stagedFiles";
+    public static final String CHECKPOINT_FILE_KEY = "fileRange.checkpointFile";
+    public static final String CHECKPOINTS_KEY = "fileRange.checkpoints";
+    public static final String MANIFEST_ENTRIES_KEY = "fileRange.manifestEntries";
+    public static final String VERIFIED_COUNT_KEY = "fileRange.verifiedCount";
+    public static final String CODEC_KEY = "fileRange.codec";
+    public static final String CODEC_RAW_BYTES_KEY = "fileRange.codecRawBytes";
+    public static final String CODEC_ENCODED_BYTES_KEY = "fileRange.codecEncodedBytes";
+    public static final String CODEC_NANOS_KEY = "fileRange.codecNanos";
+    public static final String DELTA_LITERAL_BYTES_KEY = "fileRange.deltaLiteralBytes";
+    public static final String DELTA_MATCHED_BYTES_KEY = "fileRange.deltaMatchedBytes";
+    static final String PART_SUFFIX = ".part";
+    public static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+
+    private final int concurrency;
+    private final boolean forceOnCommit;
+    private final TransferManifest manifest;
+    private final int bufferSize;
+    private final List<Path> stagedFiles = new ArrayList<>();
+    private final Map<String, String> manifestEntries = new LinkedHashMap<>();
+    private final List<ManifestEntry> indexEntries = new ArrayList<>();
+    private final List<RangeCheckpoint> checkpoints = new ArrayList<>();
+    private Path checkpointFile;
+    private Path fileDigestFile;
+    private MessageDigest fileDigest;
+    private long fileDigestEnd;
+    private int verifiedCount;
+    private BlockingQueue<ByteBuffer> buffers;
+    private TransferVerifier verifier;
+    private ContentIndex contentIndex;
+    private TransferCodec codec = TransferCodec.NONE;
+    private TransferCodec.Direction codecDirection = TransferCodec.Direction.COMPRESS;
+    private long codecRawBytes;
+    private long codecEncodedBytes;
+    private long codecNanos;
+    private DeltaTransfer deltaTransfer;
+    private long deltaLiteralBytes;
+    private long deltaMatchedBytes;
+
+    public FileRangeItemWriter(boolean forceOnCommit) {
+        this(1, forceOnCommit);
+    }
+
+    public FileRangeItemWriter(int concurrency, boolean forceOnCommit) {
+        this(concurrency, forceOnCommit, null);
+    }
+
+    /**
+     * @param concurrency the number of ranges of a chunk to copy in parallel
+     * @param forceOnCommit whether to force the written ranges to the storage device before the chunk is committed
+     * @param manifest the manifest to record the digests of the transferred files in, or {@code null} to transfer
+     *                 the files without computing their digests
+     */
+    public FileRangeItemWriter(int concurrency, boolean forceOnCommit, TransferManifest manifest) {
+        this(concurrency, forceOnCommit, manifest, DEFAULT_BUFFER_SIZE);
+    }
+
+    FileRangeItemWriter(int concurrency, boolean forceOnCommit, TransferManifest manifest, int bufferSize) {
+        Assert.isTrue(concurrency > 0, "The concurrency must be positive");
+        Assert.isTrue(bufferSize > 0, "The buffer size must be positive");
+        this.concurrency = concurrency;
+        this.forceOnCommit = forceOnCommit;
+        this.manifest = manifest;
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * @param verifier the verifier to compare every fully written file with its source, or {@code null} to stage
+     *                 files without comparing them
+     */
+    public void setVerifier(TransferVerifier verifier) {
+        this.verifier = verifier;
+    }
+
+    /**
+     * @param contentIndex the index to add the content of every renamed file to, or {@code null} to index nothing
+     */
+    public void setContentIndex(ContentIndex contentIndex) {
+        this.contentIndex = contentIndex;
+    }
+
+    /**
+     * @param deltaTransfer the delta transfer to write every file with, or {@code null} to copy files in full
+     */
+    public void setDeltaTransfer(DeltaTransfer deltaTransfer) {
+        this.deltaTransfer = deltaTransfer;
+    }
+
+    /**
+     * @param codec the codec the files are transferred with
+     * @param direction whether the files are compressed or decompressed
+     */
+    public void setCodec(TransferCodec codec, TransferCodec.Direction direction) {
+        Assert.notNull(codec, "The codec is required");
+        Assert.notNull(direction, "The codec direction is required");
+        this.codec = codec;
+        this.codecDirection = direction;
+    }
+
+    @Override
+    public void open(ExecutionContext executionContext) throws ItemStreamException {
+        this.stagedFiles.clear();
+        this.manifestEntries.clear();
+        this.checkpoints.clear();
+        this.checkpoints.addAll(checkpoints(executionContext));
+        this.checkpointFile = executionContext.containsKey(CHECKPOINT_FILE_KEY) ? Path.of(executionContext.getString(CHECKPOINT_FILE_KEY)) : null;
+        this.verifiedCount = executionContext.getInt(VERIFIED_COUNT_KEY, 0);
+        this.codecRawBytes = executionContext.getLong(CODEC_RAW_BYTES_KEY, 0L);
+        this.codecEncodedBytes = executionContext.getLong(CODEC_ENCODED_BYTES_KEY, 0L);
+        this.codecNanos = executionContext.getLong(CODEC_NANOS_KEY, 0L);
+        this.deltaLiteralBytes = executionContext.getLong(DELTA_LITERAL_BYTES_KEY, 0L);
+        this.deltaMatchedBytes = executionContext.getLong(DELTA_MATCHED_BYTES_KEY, 0L);
+        try {
+            Map<String, String> stagedEntries = manifestEntries(executionContext);
+            List<String> unfinishedEntries = new ArrayList<>();
+            List<Path> unfinishedFiles = new ArrayList<>();
+            for (String stagedFile : stagedFiles(executionContext)) {
+                var destination = Path.of(stagedFile);
+                if (Files.exists(partOf(destination))) {
+                    unfinishedFiles.add(destination);
+                    if (stagedEntries.containsKey(stagedFile)) {
+                        unfinishedEntries.add(stagedEntries.get(stagedFile));
+                    }
+                }
+            }
+            if (this.manifest != null) {
+                this.manifest.append(unfinishedEntries);
+            }
+            for (Path destination : unfinishedFiles) {
+                finish(destination);
+            }
+        } catch (IOException e) {
+            throw new ItemStreamException("Unable to finish the files staged by the previous execution", e);
+        }
+    }
+
+    @Override
+    public void update(ExecutionContext executionContext) throws ItemStreamException {
+        executionContext.put(STAGED_FILES_KEY, new ArrayList<>(this.stagedFiles.stream().map(Path::toString).toList()));
+        if (this.checkpointFile == null) {
+            executionContext.remove(CHECKPOINT_FILE_KEY);
+        } else {
+            executionContext.putString(CHECKPOINT_FILE_KEY, this.checkpointFile.toString());
+        }
+        executionContext.put(CHECKPOINTS_KEY, new ArrayList<>(this.checkpoints));
+        executionContext.put(MANIFEST_ENTRIES_KEY, new HashMap<>(this.manifestEntries));
+        executionContext.putInt(VERIFIED_COUNT_KEY, this.verifiedCount);
+        if (this.codec != TransferCodec.NONE) {
+            executionContext.putString(CODEC_KEY, this.codec.name());
+            executionContext.putLong(CODEC_RAW_BYTES_KEY, this.codecRawBytes);
+            executionContext.putLong(CODEC_ENCODED_BYTES_KEY, this.codecEncodedBytes);
+            executionContext.putLong(CODEC_NANOS_KEY, this.codecNanos);
+        }
+        if (this.deltaTransfer != null) {
+            executionContext.putLong(DELTA_LITERAL_BYTES_KEY, this.deltaLiteralBytes);
+            executionContext.putLong(DELTA_MATCHED_BYTES_KEY, this.deltaMatchedBytes);
+        }
+    }
+
+    @Override
+    public void write(Chunk<? extends FileRange> chunk) throws IOException {
+        List<RangeCheckpoint> rangeCheckpoints;
+        if (this.codec != TransferCodec.NONE) {
+            rangeCheckpoints = new ArrayList<>(chunk.size());
+            for (FileRange range : chunk) {
+                rangeCheckpoints.add(transferEncoded(range));
+            }
+        } else if (this.deltaTransfer != null) {
+            rangeCheckpoints = new ArrayList<>(chunk.size());
+            for (FileRange range : chunk) {
+                rangeCheckpoints.add(transferDelta(range));
+            }
+        } else if (this.concurrency > 1 && chunk.size() > 1) {
+            rangeCheckpoints = transferConcurrently(chunk.getItems());
+        } else {
+            rangeCheckpoints = new ArrayList<>(chunk.size());
+            for (FileRange range : chunk) {
+                rangeCheckpoints.add(transfer(range));
+            }
+        }
+        for (int i = 0; i < chunk.size(); i++) {
+            var range = chunk.getItems().get(i);
+            checkpoint(range, rangeCheckpoints.get(i));
+            if (range.isLast()) {
+                stage(range);
+            }
+        }
+    }
+
+    /**
+     * Records the checkpoint of a written range of a file that is still in progress. Once the last range of a file is
+     * written, the file is staged, and the checkpoints of the file are combined into its manifest entry if checksums
+     * are enabled, and forgotten.
+     */
+    private void checkpoint(FileRange range, RangeCheckpoint checkpoint) throws IOException {
+        if (!range.destination().equals(this.checkpointFile)) {
+            this.checkpoints.clear();
+            this.checkpointFile = null;
+        }
+        if (checkpoint != null) {
+            this.checkpointFile = range.destination();
+            this.checkpoints.add(checkpoint);
+        }
+        if (range.isLast()) {
+            if (this.manifest != null) {
+                var sha256 = range.destination().equals(this.fileDigestFile) && this.fileDigestEnd == range.fileSize()
+                        ? HexFormat.of().formatHex(this.fileDigest.digest())
+                        : null;
+                this.fileDigestFile = null;
+                var entry = this.codec == TransferCodec.NONE
+                        ? ManifestEntry.of(range, this.checkpoints, sha256)
+                        : ManifestEntry.of(range.destination(), checkpoint.end(), this.checkpoints, sha256);
+                this.manifestEntries.put(range.destination().toString(), entry.toLine());
+                this.indexEntries.add(entry);
+                this.verifiedCount++;
+            }
+            this.checkpoints.clear();
+            this.checkpointFile = null;
+        }
+    }
+
+    @Override
+    public void afterChunk(ChunkContext context) {
+        try {
+            if (this.manifest != null) {
+                this.manifest.append(this.manifestEntries.values());
+            }
+            for (Path destination : this.stagedFiles) {
+                finish(destination);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to rename the transferred files to their destination", e);
+        } finally {
+            this.stagedFiles.clear();
+            this.manifestEntries.clear();
+        }
+        try {
+            if (this.contentIndex != null) {
+                for (ManifestEntry entry : this.indexEntries) {
+                    this.contentIndex.add(entry, Files.getLastModifiedTime(entry.file()).toMillis());
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Unable to index the content of the transferred files, they will not be deduplicated", e);
+        } finally {
+            this.indexEntries.clear();
+        }
+    }
+
+    @Override
+    public void afterChunkError(ChunkContext context) {
+        this.fileDigestFile = null;
+        this.stagedFiles.clear();
+        this.manifestEntries.clear();
+        this.indexEntries.clear();
+    }
+
+    /**
+     * Transfers a single range from its source to the {@code .part} file of its destination with
+     * {@link FileChannel#transferTo}, while the digests of the range are computed from the source on a virtual
+     * thread.
+     *
+     * @param range the range to transfer
+     * @return the checkpoint of the range, or {@code null} if the range is the last of its file and checksums are
+     * disabled
+     * @throws IOException if the range could not be read or written
+     */
+    RangeCheckpoint transfer(FileRange range) throws IOException {
+        try (var source = FileChannel.open(range.source(), StandardOpenOption.READ);
+             var part = openPart(range);
+             var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var fileDigest = fileDigest(range);
+            var digests = this.manifest == null && range.isLast() ? null : executor.submit(() -> digest(range, source, fileDigest));
+            part.position(range.offset());
+            long position = range.offset();
+            long remaining = range.length();
+            while (remaining > 0) {
+                long transferred = source.transferTo(position, remaining, part);
+                if (transferred <= 0) {
+                    throw sourceEndedException(range, position);
+                }
+                position += transferred;
+                remaining -= transferred;
+            }
+            if (this.forceOnCommit) {
+                part.force(false);
+            }
+            var checkpoint = digests == null ? null : awaitTransfer(digests);
+            if (fileDigest != null) {
+                this.fileDigestFile = range.destination();
+                this.fileDigestEnd = range.offset() + range.length();
+            }
+            return checkpoint;
+        }
+    }
+
+    /**
+     * Returns the running SHA-256 of the file of a range that is copied in order, rebuilding it from the committed
+     * ranges in the {@code .part} file when the ranges before this one were not hashed by this writer. The file
+     * digest is forgotten until the range has been hashed, so a range that fails leaves no partly updated digest.
+     *
+     * @return the running digest of the file, or {@code null} if checksums are disabled or ranges are copied
+     * concurrently
+     */
+    private MessageDigest fileDigest(FileRange range) throws IOException {
+        if (this.manifest == null || this.concurrency > 1) {
+            return null;
+        }
+        boolean inOrder = range.destination().equals(this.fileDigestFile) && this.fileDigestEnd == range.offset();
+        this.fileDigestFile = null;
+        if (range.offset() == 0) {
+            this.fileDigest = ManifestEntry.newSha256();
+        } else if (!inOrder) {
+            this.fileDigest = ManifestEntry.newSha256();
+            ByteBuffer buffer;
+            try {
+                buffer = takeBuffer();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while hashing the committed ranges of " + range.destination(), e);
+            }
+            try (var part = FileChannel.open(partOf(range.destination()), StandardOpenOption.READ)) {
+                long position = 0;
+                while (position < range.offset()) {
+                    buffer.clear().limit((int) Math.min(buffer.capacity(), range.offset() - position));
+                    int read = part.read(buffer, position);
+                    if (read <= 0) {
+                        throw new IOException("The partly transferred file " + range.destination() + " ended at byte " + position
+                                + ", expected " + range.offset() + " bytes");
+                    }
+                    buffer.flip();
+                    this.fileDigest.update(buffer);
+                    position += read;
+                }
+            } finally {
+                this.buffers.add(buffer);
+            }
+        }
+        return this.fileDigest;
+    }
+
+    /**
+     * Computes the checkpoint of a range from its source, with the SHA-256 of the range if checksums are enabled,
+     * and updates the running digest of the file with the range if there is one.
+     */
+    private RangeCheckpoint digest(FileRange range, FileChannel source, MessageDigest fileDigest) throws IOException, InterruptedException {
+        var buffer = takeBuffer();
+        try {
+            var crc32c = new CRC32C();
+            var sha256 = this.manifest == null ? null : ManifestEntry.newSha256();
+            long position = range.offset();
+            long end = range.offset() + range.length();
+            while (position < end) {
+                buffer.clear().limit((int) Math.min(buffer.capacity(), end - position));
+                int read = source.read(buffer, position);
+                if (read <= 0) {
+                    throw sourceEndedException(range, position);
+                }
+                buffer.flip();
+                if (sha256 != null) {
+                    sha256.update(buffer.duplicate());
+                }
+                if (fileDigest != null) {
+                    fileDigest.update(buffer.duplicate());
+                }
+                crc32c.update(buffer);
+                position += read;
+            }
+            return new RangeCheckpoint(range.offset(), range.length(), crc32c.getValue(), sha256 == null ? null : HexFormat.of().formatHex(sha256.digest()));
+        } finally {
+            this.buffers.add(buffer);
+        }
+    }
+
+    /**
+     * Transfers the ranges of a chunk in parallel, sharing one source and one {@code .part} channel per file
+     * between the ranges of that file.
+     *
+     * @param ranges the ranges to transfer
+     * @return the checkpoints of the ranges, in the same order, with {@code null} for the last range of a file
+     * unless checksums are enabled
+     * @throws IOException if any of the ranges could not be read or written
+     */
+    List<RangeCheckpoint> transferConcurrently(List<? extends FileRange> ranges) throws IOException {
+        Map<Path, FileChannel> sources = new HashMap<>();
+        Map<Path, FileChannel> parts = new HashMap<>();
+        try {
+            for (FileRange range : ranges) {
+                if (!sources.containsKey(range.source())) {
+                    sources.put(range.source(), FileChannel.open(range.source(), StandardOpenOption.READ));
+                    parts.put(range.source(), openPart(range));
+                }
+            }
+            List<Future<RangeCheckpoint>> transfers = new ArrayList<>(ranges.size());
+            List<RangeCheckpoint> rangeCheckpoints = new ArrayList<>(ranges.size());
+            try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (FileRange range : ranges) {
+                    var source = sources.get(range.source());
+                    var part = parts.get(range.source());
+                    transfers.add(executor.submit(() -> transferPositional(range, source, part)));
+                }
+                for (Future<RangeCheckpoint> transfer : transfers) {
+                    rangeCheckpoints.add(awaitTransfer(transfer));
+                }
+            }
+            if (this.forceOnCommit) {
+                for (FileChannel part : parts.values()) {
+                    part.force(false);
+                }
+            }
+            return rangeCheckpoints;
+        } finally {
+            closeAll(sources.values());
+            closeAll(parts.values());
+        }
+    }
+
+    private RangeCheckpoint transferPositional(FileRange range, FileChannel source, FileChannel part) throws IOException, InterruptedException {
+        var buffer = takeBuffer();
+        try {
+            var crc32c = new CRC32C();
+            var sha256 = this.manifest == null ? null : ManifestEntry.newSha256();
+            long position = range.offset();
+            long end = range.offset() + range.length();
+            while (position < end) {
+                buffer.clear().limit((int) Math.min(buffer.capacity(), end - position));
+                int read = source.read(buffer, position);
+                if (read <= 0) {
+                    throw sourceEndedException(range, position);
+                }
+                buffer.flip();
+                crc32c.update(buffer.duplicate());
+                if (sha256 != null) {
+                    sha256.update(buffer.duplicate());
+                }
+                long writePosition = position;
+                while (buffer.hasRemaining()) {
+                    writePosition += part.write(buffer, writePosition);
+                }
+                position += read;
+            }
+            if (sha256 == null) {
+                return range.isLast() ? null : new RangeCheckpoint(range.offset(), range.length(), crc32c.getValue(), null);
+            }
+            return new RangeCheckpoint(range.offset(), range.length(), crc32c.getValue(), HexFormat.of().formatHex(sha256.digest()));
+        } finally {
+            this.buffers.add(buffer);
+        }
+    }
+
+    /**
+     * Streams a whole file from its source through the codec into the {@code .part} file of its destination.
+     *
+     * @param range the single range of the file
+     * @return the checkpoint of the uncompressed content of the file, or {@code null} if checksums are disabled
+     * @throws IOException if the file could not be read, encoded or written
+     */
+    RangeCheckpoint transferEncoded(FileRange range) throws IOException {
+        if (range.offset() != 0 || !range.isLast()) {
+            throw new IOException("The file " + range.source() + " must be transferred as a single range to be encoded with " + this.codec);
+        }
+        Path parent = range.destination().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        var part = partOf(range.destination());
+        var crc32c = this.manifest == null ? null : new CRC32C();
+        var sha256 = this.manifest == null ? null : ManifestEntry.newSha256();
+        var buffer = new byte[TransferCodec.BUFFER_SIZE];
+        long rawBytes = 0;
+        long start = System.nanoTime();
+        boolean compress = this.codecDirection == TransferCodec.Direction.COMPRESS;
+        try (var input = compress ? Files.newInputStream(range.source()) : this.codec.decompress(Files.newInputStream(range.source()));
+             var output = compress ? this.codec.compress(Files.newOutputStream(part)) : Files.newOutputStream(part)) {
+            for (int read = input.read(buffer); read >= 0; read = input.read(buffer)) {
+                if (crc32c != null) {
+                    crc32c.update(buffer, 0, read);
+                    sha256.update(buffer, 0, read);
+                }
+                output.write(buffer, 0, read);
+                rawBytes += read;
+            }
+        }
+        if (this.forceOnCommit) {
+            try (var channel = FileChannel.open(part, StandardOpenOption.WRITE)) {
+                channel.force(false);
+            }
+        }
+        this.codecNanos += System.nanoTime() - start;
+        this.codecRawBytes += rawBytes;
+        this.codecEncodedBytes += compress ? Files.size(part) : range.fileSize();
+        return crc32c == null ? null : new RangeCheckpoint(0, rawBytes, crc32c.getValue(), HexFormat.of().formatHex(sha256.digest()));
+    }
+
+    /**
+     * Assembles a whole file in the {@code .part} file of its destination by patching a copy of the current
+     * destination with the parts of its source that changed.
+     *
+     * @param range the single range of the file
+     * @return the checkpoint of the file if checksums are enabled, or {@code null}
+     * @throws IOException if the file could not be read or written
+     */
+    RangeCheckpoint transferDelta(FileRange range) throws IOException {
+        if (range.offset() != 0 || !range.isLast()) {
+            throw new IOException("The file " + range.source() + " must be transferred as a single range to be delta transferred");
+        }
+        Path parent = range.destination().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        var basis = Files.isRegularFile(range.destination()) ? range.destination() : null;
+        var crc32c = this.manifest == null ? null : new CRC32C();
+        var sha256 = this.manifest == null ? null : ManifestEntry.newSha256();
+        var result = this.deltaTransfer.transfer(range.source(), basis, partOf(range.destination()), crc32c, sha256, this.forceOnCommit);
+        this.deltaLiteralBytes += result.literalBytes();
+        this.deltaMatchedBytes += result.matchedBytes();
+        if (crc32c == null) {
+            return null;
+        }
+        return new RangeCheckpoint(0, range.length(), crc32c.getValue(), HexFormat.of().formatHex(sha256.digest()));
+    }
+
+    private synchronized ByteBuffer takeBuffer() throws InterruptedException {
+        if (this.buffers == null) {
+            this.buffers = new ArrayBlockingQueue<>(this.concurrency);
+            for (int i = 0; i < this.concurrency; i++) {
+                this.buffers.add(ByteBuffer.allocateDirect(this.bufferSize));
+            }
+        }
+        return this.buffers.take();
+    }
+
+    /**
+     * Opens the {@code .part} file of a range, creating it at the size of the source if it does not exist yet.
+     */
+    private static FileChannel openPart(FileRange range) throws IOException {
+        Path parent = range.destination().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        var part = FileChannel.open(partOf(range.destination()), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (part.size() > range.fileSize()) {
+            part.truncate(range.fileSize());
+        } else if (part.size() < range.fileSize()) {
+            part.write(ByteBuffer.allocate(1), range.fileSize() - 1);
+        }
+        return part;
+    }
+
+    /**
+     * Checks that the {@code .part} file of a fully written file has the size of its source, verifies it against its
+     * source if a verifier is set, and stages it to be renamed once the current chunk is committed.
+     */
+    private void stage(FileRange range) throws IOException {
+        if (this.codec != TransferCodec.NONE) {
+            this.stagedFiles.add(range.destination());
+            return;
+        }
+        long size = Files.size(partOf(range.destination()));
+        if (size != range.fileSize()) {
+            throw new IOException("The transferred file " + range.destination() + " has " + size + " bytes, expected " + range.fileSize() + " bytes");
+        }
+        if (this.verifier != null) {
+            this.verifier.verify(range.source(), partOf(range.destination()));
+        }
+        this.stagedFiles.add(range.destination());
+    }
+
+    private static void finish(Path destination) throws IOException {
+        Files.move(partOf(destination), destination, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    static Path partOf(Path destination) {
+        return destination.resolveSibling(destination.getFileName() + PART_SUFFIX);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<String> stagedFiles(ExecutionContext executionContext) {
+        Object stagedFiles = executionContext.get(STAGED_FILES_KEY);
+        return stagedFiles == null ? List.of() : (List<String>) stagedFiles;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, String> manifestEntries(ExecutionContext executionContext) {
+        Object manifestEntries = executionContext.get(MANIFEST_ENTRIES_KEY);
+        return manifestEntries == null ? Map.of() : (Map<String, String>) manifestEntries;
+    }
+
+    @SuppressWarnings("unchecked")
+    static List<RangeCheckpoint> checkpoints(ExecutionContext executionContext) {
+        Object checkpoints = executionContext.get(CHECKPOINTS_KEY);
+        return checkpoints == null ? List.of() : (List<RangeCheckpoint>) checkpoints;
+    }
+
+    private static RangeCheckpoint awaitTransfer(Future<RangeCheckpoint> transfer) throws IOException {
+        try {
+            return transfer.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while transferring file ranges", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw new IOException("Unable to transfer a file range", e.getCause());
+        }
+    }
+
+    private static IOException sourceEndedException(FileRange range, long position) {
+        return new IOException("The source file " + range.source() + " ended at byte " + position + ", expected " + range.fileSize() + " bytes");
+    }
+
+    private static void closeAll(Iterable<FileChannel> channels) throws IOException {
+        IOException failure = null;
+        for (FileChannel channel : channels) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+}
@@ -0,0 +1,114 @@
+package com.github.acs.file.batch.internal.transfer;
+
+import org.springframework.batch.core.partition.support.Partitioner;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.util.Assert;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Groups the source files of a transfer into partitions of roughly equal size.
+ * <p>
+ * Files are assigned largest first to the partition with the fewest bytes so far, which keeps the
+ * largest partition within one file of the average. Ties go to the partition with the fewest files,
+ * so small files are spread evenly as well. Each partition's execution context holds the
+ * names of its files relative to the source directory under {@link #FILE_NAMES_KEY}, and the
+ * number of bytes assigned to it under {@link #PARTITION_BYTES_KEY}.
+ */
+public class FileSizePartitioner implements Partitioner {
+
+    public static final String FILE_NAMES_KEY = "partition.fileNames";
+    public static final String PARTITION_BYTES_KEY = "partition.bytes";
+    static final String PARTITION_PREFIX = "partition";
+
+    private final Path sourceDirectory;
+    private final Collection<String> fileNames;
+
+    public FileSizePartitioner(Path sourceDirectory, Collection<String> fileNames) {
+        Assert.notNull(sourceDirectory, "The source directory is required");
+        this.sourceDirectory = sourceDirectory;
+        this.fileNames = fileNames == null ? List.of() : List.copyOf(fileNames);
+    }
+
+    @Override
+    public Map<String, ExecutionContext> partition(int gridSize) {
+        Assert.isTrue(gridSize > 0, "The grid size must be positive");
+        List<SizedFile> files = listFiles();
+        int partitionCount = Math.min(gridSize, files.size());
+
+        PriorityQueue<Partition> partitions = new PriorityQueue<>(Comparator.comparingLong(Partition::bytes)
+                .thenComparingInt(Partition::fileCount)
+                .thenComparingInt(Partition::index));
+        for (int i = 0; i < partitionCount; i++) {
+            partitions.add(new Partition(i));
+        }
+        files.sort(Comparator.comparingLong(SizedFile::size).reversed());
+        for (SizedFile file : files) {
+            Partition smallest = partitions.poll();
+            smallest.add(file);
+            partitions.add(smallest);
+        }
+
+        Map<String, ExecutionContext> executionContexts = new HashMap<>(partitionCount);
+        for (Partition partition : partitions) {
+            var executionContext = new ExecutionContext();
+            executionContext.put(FILE_NAMES_KEY, partition.fileNames);
+            executionContext.putLong(PARTITION_BYTES_KEY, partition.bytes);
+            executionContexts.put(PARTITION_PREFIX + partition.index, executionContext);
+        }
+        return executionContexts;
+    }
+
+    private List<SizedFile> listFiles() {
+        try {
+            List<SizedFile> files = new ArrayList<>();
+            for (Path file : SourceFiles.resolve(this.sourceDirectory, this.fileNames)) {
+                files.add(new SizedFile(this.sourceDirectory.relativize(file).toString(), Files.size(file)));
+            }
+            return files;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to list the source files in " + this.sourceDirectory, e);
+        }
+    }
+
+    private record SizedFile(String name, long size) { }
+
+    private static final class Partition {
+
+        private final int index;
+        private final ArrayList<String> fileNames = new ArrayList<>();
+        private long bytes;
+
+        private Partition(int index) {
+            this.index = index;
+        }
+
+        private void add(SizedFile file) {
+            this.fileNames.add(file.name());
+            this.bytes += file.size();
+        }
+
+        private int index() {
+            return index;
+        }
+
+        private long bytes() {
+            return bytes;
+        }
+
+        private int fileCount() {
+            return fileNames.size();
+        }
+    }
+
+}
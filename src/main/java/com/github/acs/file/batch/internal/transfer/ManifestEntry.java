@@ -0,0 +1,166 @@
+package com.github.acs.file.batch.internal.transfer;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * A transferred file and the digests of its content, as recorded in the {@link TransferManifest}.
+ * <p>
+ * The SHA-256 is the plain SHA-256 of the whole file, which partners can check with {@code sha256sum}. It is
+ * computed with a single running digest while the ranges of the file are copied in order, so it is empty for a file
+ * of several ranges that were copied concurrently. The range SHA-256 tree is the SHA-256 of the concatenated SHA-256
+ * digests of the ranges of the file, in offset order, which can be computed while the ranges are copied in parallel
+ * and across restarts. It depends on the range size, which is why the manifest records it, and it is what the
+ * {@link ContentIndex} deduplicates files by. The CRC32C is the plain CRC32C of the whole file, combined from the
+ * CRC32C of its ranges. A file transferred with a {@link TransferCodec} is recorded with the size and digests of its
+ * uncompressed content.
+ *
+ * @param file the destination of the file
+ * @param size the size of the file in bytes
+ * @param sha256 the hex encoded SHA-256 of the file, or {@code null} if its ranges were copied concurrently
+ * @param crc32c the CRC32C of the file
+ * @param rangeSize the size of the ranges the range SHA-256 tree was computed over
+ * @param rangeSha256Tree the hex encoded SHA-256 of the range digests
+ */
+public record ManifestEntry(
+        Path file,
+        long size,
+        String sha256,
+        long crc32c,
+        long rangeSize,
+        String rangeSha256Tree
+) {
+
+    private static final long CRC32C_POLYNOMIAL = 0x82F63B78L;
+
+    /**
+     * Creates the manifest entry of a file from the checkpoints of all of its ranges.
+     *
+     * @param lastRange the last range of the file
+     * @param checkpoints the checkpoints of every range of the file
+     * @param sha256 the hex encoded SHA-256 of the whole file, or {@code null} to take it from the checkpoint of a
+     *               file of a single range
+     * @return the manifest entry of the file
+     * @throws IOException if the checkpoints do not cover the file
+     */
+    public static ManifestEntry of(FileRange lastRange, List<RangeCheckpoint> checkpoints, String sha256) throws IOException {
+        return of(lastRange.destination(), lastRange.fileSize(), checkpoints, sha256);
+    }
+
+    /**
+     * Creates the manifest entry of a file from the checkpoints of all of its ranges.
+     *
+     * @param file the destination of the file
+     * @param size the size of the content the checkpoints were computed over
+     * @param checkpoints the checkpoints of every range of the content
+     * @param sha256 the hex encoded SHA-256 of the whole content, or {@code null} to take it from the checkpoint of
+     *               content of a single range
+     * @return the manifest entry of the file
+     * @throws IOException if the checkpoints do not cover the content
+     */
+    public static ManifestEntry of(Path file, long size, List<RangeCheckpoint> checkpoints, String sha256) throws IOException {
+        var ordered = checkpoints.stream().sorted(Comparator.comparingLong(RangeCheckpoint::offset)).toList();
+        var digest = newSha256();
+        var hex = HexFormat.of();
+        long crc32c = 0;
+        long offset = 0;
+        for (RangeCheckpoint checkpoint : ordered) {
+            if (checkpoint.offset() != offset || checkpoint.sha256() == null) {
+                throw new IOException("The checksums of " + file + " do not cover byte " + offset);
+            }
+            digest.update(hex.parseHex(checkpoint.sha256()));
+            crc32c = combineCrc32c(crc32c, checkpoint.crc32c(), checkpoint.length());
+            offset = checkpoint.end();
+        }
+        if (offset != size) {
+            throw new IOException("The checksums of " + file + " do not cover byte " + offset);
+        }
+        long rangeSize = ordered.isEmpty() ? 0 : ordered.getFirst().length();
+        if (sha256 == null && ordered.size() == 1) {
+            sha256 = ordered.getFirst().sha256();
+        } else if (sha256 == null && ordered.isEmpty()) {
+            sha256 = hex.formatHex(newSha256().digest());
+        }
+        return new ManifestEntry(file, size, sha256, crc32c, rangeSize, hex.formatHex(digest.digest()));
+    }
+
+    /**
+     * @return the entry as a line of the manifest
+     */
+    public String toLine() {
+        return "\"" + file.toString().replace("\"", "\"\"") + "\"," + size + "," + (sha256 == null ? "" : sha256) + ","
+                + String.format("%08x", crc32c) + "," + rangeSize + "," + rangeSha256Tree;
+    }
+
+    static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported by this JVM", e);
+        }
+    }
+
+    /**
+     * Combines the CRC32C of two consecutive blocks of bytes into the CRC32C of both blocks, the same way zlib
+     * combines CRC32 values, by applying the CRC of {@code length2} zero bytes to the first CRC.
+     *
+     * @param crc1 the CRC32C of the first block
+     * @param crc2 the CRC32C of the second block
+     * @param length2 the length of the second block
+     * @return the CRC32C of the first block followed by the second block
+     */
+    static long combineCrc32c(long crc1, long crc2, long length2) {
+        if (length2 <= 0) {
+            return crc1;
+        }
+        long[] even = new long[32];
+        long[] odd = new long[32];
+        odd[0] = CRC32C_POLYNOMIAL;
+        long row = 1;
+        for (int n = 1; n < 32; n++) {
+            odd[n] = row;
+            row <<= 1;
+        }
+        gf2MatrixSquare(even, odd);
+        gf2MatrixSquare(odd, even);
+        long length = length2;
+        do {
+            gf2MatrixSquare(even, odd);
+            if ((length & 1) != 0) {
+                crc1 = gf2MatrixTimes(even, crc1);
+            }
+            length >>= 1;
+            if (length == 0) {
+                break;
+            }
+            gf2MatrixSquare(odd, even);
+            if ((length & 1) != 0) {
+                crc1 = gf2MatrixTimes(odd, crc1);
+            }
+            length >>= 1;
+        } while (length != 0);
+        return crc1 ^ crc2;
+    }
+
+    private static long gf2MatrixTimes(long[] matrix, long vector) {
+        long sum = 0;
+        for (int i = 0; vector != 0; i++, vector >>>= 1) {
+            if ((vector & 1) != 0) {
+                sum ^= matrix[i];
+            }
+        }
+        return sum;
+    }
+
+    private static void gf2MatrixSquare(long[] square, long[] matrix) {
+        for (int n = 0; n < 32; n++) {
+            square[n] = gf2MatrixTimes(matrix, matrix[n]);
+        }
+    }
+
+}
@@ -0,0 +1,64 @@
+package com.github.acs.file.batch.internal.transfer;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.util.Assert;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Compares a transferred file with its source by memory-mapping both files one window at a time, so the comparison
+ * reads the page cache directly instead of copying the bytes into buffers.
+ * <p>
+ * A window is at most 2 GB, the largest size {@link FileChannel#map} supports, and a mapped window is released when
+ * its buffer is garbage collected, so the window size bounds the address space used per concurrent verification
+ * rather than the memory used. Files that cannot be mapped, for example on a file system that does not support
+ * {@code mmap}, are verified by the fallback verifier instead.
+ */
+@Slf4j
+public class MappedTransferVerifier implements TransferVerifier {
+
+    private final long windowSize;
+    private final TransferVerifier fallback;
+
+    public MappedTransferVerifier(long windowSize, TransferVerifier fallback) {
+        Assert.isTrue(windowSize > 0 && windowSize <= Integer.MAX_VALUE, "The window size must be between 1 byte and 2 GB");
+        this.windowSize = windowSize;
+        this.fallback = fallback;
+    }
+
+    @Override
+    public void verify(Path source, Path transferred) throws IOException {
+        try (var sourceChannel = FileChannel.open(source, StandardOpenOption.READ);
+             var transferredChannel = FileChannel.open(transferred, StandardOpenOption.READ)) {
+            long size = sourceChannel.size();
+            if (transferredChannel.size() != size) {
+                throw new TransferVerificationException("The transferred file " + transferred + " has " + transferredChannel.size()
+                        + " bytes, expected " + size + " bytes");
+            }
+            long position = 0;
+            while (position < size) {
+                long length = Math.min(windowSize, size - position);
+                MappedByteBuffer sourceWindow;
+                MappedByteBuffer transferredWindow;
+                try {
+                    sourceWindow = sourceChannel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                    transferredWindow = transferredChannel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                } catch (UnsupportedOperationException | IOException e) {
+                    log.debug("Unable to map {}, falling back to streamed verification", transferred, e);
+                    fallback.verify(source, transferred);
+                    return;
+                }
+                int mismatch = sourceWindow.mismatch(transferredWindow);
+                if (mismatch >= 0) {
+                    throw StreamedTransferVerifier.mismatchException(source, transferred, position + mismatch);
+                }
+                position += length;
+            }
+        }
+    }
+
+}
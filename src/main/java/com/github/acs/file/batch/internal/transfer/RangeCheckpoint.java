@@ -0,0 +1,97 @@
+package com.github.acs.file.batch.internal.transfer;
+
+import java.io.IOException;
+import java.io.Serial;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * A committed byte range of a file that is being transferred, and the digests of its bytes.
+ *
+ * @param offset the position of the first byte of the range
+ * @param length the number of bytes in the range
+ * @param crc32c the CRC32C of the bytes in the range
+ * @param sha256 the hex encoded SHA-256 of the bytes in the range, or {@code null} if checksums are disabled
+ */
+public record RangeCheckpoint(
+        long offset,
+        long length,
+        long crc32c,
+        String sha256
+) implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Computes the checkpoint of a range from the bytes written to a channel.
+     *
+     * @param channel the channel the range was written to
+     * @param offset the position of the first byte of the range
+     * @param length the number of bytes in the range
+     * @param buffer the buffer to read the range through
+     * @return the checkpoint of the range, without a SHA-256
+     * @throws IOException if the range could not be read
+     */
+    public static RangeCheckpoint of(FileChannel channel, long offset, long length, ByteBuffer buffer) throws IOException {
+        var crc32c = new CRC32C();
+        long position = offset;
+        long end = offset + length;
+        while (position < end) {
+            buffer.clear().limit((int) Math.min(buffer.capacity(), end - position));
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                throw new IOException("The checkpointed range ended at byte " + position + ", expected " + end + " bytes");
+            }
+            buffer.flip();
+            crc32c.update(buffer);
+            position += read;
+        }
+        return new RangeCheckpoint(offset, length, crc32c.getValue(), null);
+    }
+
+    /**
+     * Verifies the checkpoints of a partially transferred file, in offset order, against the bytes in the file.
+     *
+     * @param file the partially transferred file
+     * @param checkpoints the checkpoints of the file
+     * @param buffer the buffer to read the file through
+     * @return the checkpoints that form a contiguous, verified prefix of the file
+     * @throws IOException if the file could not be read
+     */
+    public static List<RangeCheckpoint> verify(Path file, List<RangeCheckpoint> checkpoints, ByteBuffer buffer) throws IOException {
+        List<RangeCheckpoint> verified = new ArrayList<>(checkpoints.size());
+        if (checkpoints.isEmpty() || !Files.exists(file)) {
+            return verified;
+        }
+        var ordered = checkpoints.stream().sorted(Comparator.comparingLong(RangeCheckpoint::offset)).toList();
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long expectedOffset = 0;
+            for (RangeCheckpoint checkpoint : ordered) {
+                if (checkpoint.offset() != expectedOffset || checkpoint.end() > channel.size()
+                        || checkpoint.crc32c() != of(channel, checkpoint.offset(), checkpoint.length(), buffer).crc32c()) {
+                    break;
+                }
+                verified.add(checkpoint);
+                expectedOffset = checkpoint.end();
+            }
+        }
+        return verified;
+    }
+
+    /**
+     * @return the position after the last byte of the range
+     */
+    public long end() {
+        return offset + length;
+    }
+
+}
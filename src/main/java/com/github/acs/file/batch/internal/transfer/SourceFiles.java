@@ -0,0 +1,65 @@
+package com.github.acs.file.batch.internal.transfer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Resolves the source files of a transfer.
+ */
+public final class SourceFiles {
+
+    private SourceFiles() {
+    }
+
+    /**
+     * Resolves the named files against the source directory, or every regular file beneath the source
+     * directory that is not {@linkplain #isInternal internal} when no names are provided, so uploads and
+     * downloads still being written are left out. The files are returned in path order, so their position
+     * in the transfer stays stable across restarts.
+     *
+     * @param sourceDirectory the source directory
+     * @param fileNames the file names relative to the source directory, may be empty
+     * @return the source files in path order
+     * @throws IOException if the source directory could not be listed
+     */
+    public static List<Path> resolve(Path sourceDirectory, Collection<String> fileNames) throws IOException {
+        if (fileNames != null && !fileNames.isEmpty()) {
+            return fileNames.stream()
+                    .map(sourceDirectory::resolve)
+                    .sorted()
+                    .toList();
+        }
+        try (Stream<Path> files = Files.walk(sourceDirectory)) {
+            return files.filter(Files::isRegularFile)
+                    .filter(file -> !isInternal(sourceDirectory.relativize(file)))
+                    .sorted()
+                    .toList();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Whether a file beneath the source or destination directory is kept there by the module rather than being a
+     * file to transfer or to hand out: a hidden file, a file in a hidden directory such as {@code .manifests}, or the
+     * {@code .part} file of a file that is still being written.
+     *
+     * @param relativePath the path of the file, relative to the directory
+     * @return whether the file is internal to the module
+     */
+    public static boolean isInternal(Path relativePath) {
+        for (var name : relativePath) {
+            if (name.toString().startsWith(".")) {
+                return true;
+            }
+        }
+        var fileName = relativePath.getFileName();
+        return fileName != null && fileName.toString().endsWith(FileRangeItemWriter.PART_SUFFIX);
+    }
+
+}
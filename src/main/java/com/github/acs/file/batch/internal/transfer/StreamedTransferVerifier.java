@@ -0,0 +1,66 @@
+package com.github.acs.file.batch.internal.transfer;
+
+import org.springframework.util.Assert;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Compares a transferred file with its source by reading both through a pair of direct buffers, so the comparison
+ * of a large file does not allocate on the heap.
+ * <p>
+ * The buffers are allocated per verification, so a single instance can be shared between the partitions of a job.
+ */
+public class StreamedTransferVerifier implements TransferVerifier {
+
+    private final int bufferSize;
+
+    public StreamedTransferVerifier(int bufferSize) {
+        Assert.isTrue(bufferSize > 0, "The buffer size must be positive");
+        this.bufferSize = bufferSize;
+    }
+
+    @Override
+    public void verify(Path source, Path transferred) throws IOException {
+        try (var sourceChannel = FileChannel.open(source, StandardOpenOption.READ);
+             var transferredChannel = FileChannel.open(transferred, StandardOpenOption.READ)) {
+            long size = sourceChannel.size();
+            if (transferredChannel.size() != size) {
+                throw new TransferVerificationException("The transferred file " + transferred + " has " + transferredChannel.size()
+                        + " bytes, expected " + size + " bytes");
+            }
+            var sourceBuffer = ByteBuffer.allocateDirect(bufferSize);
+            var transferredBuffer = ByteBuffer.allocateDirect(bufferSize);
+            long position = 0;
+            while (position < size) {
+                int length = (int) Math.min(bufferSize, size - position);
+                readFully(sourceChannel, sourceBuffer, position, length, source);
+                readFully(transferredChannel, transferredBuffer, position, length, transferred);
+                int mismatch = sourceBuffer.mismatch(transferredBuffer);
+                if (mismatch >= 0) {
+                    throw mismatchException(source, transferred, position + mismatch);
+                }
+                position += length;
+            }
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position, int length, Path file) throws IOException {
+        buffer.clear().limit(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) <= 0) {
+                throw new IOException("The file " + file + " ended at byte " + (position + buffer.position()));
+            }
+        }
+        buffer.flip();
+    }
+
+    static TransferVerificationException mismatchException(Path source, Path transferred, long position) {
+        return new TransferVerificationException("The transferred file " + transferred + " differs from the source " + source
+                + " at byte " + position);
+    }
+
+}
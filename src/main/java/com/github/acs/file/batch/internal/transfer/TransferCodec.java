@@ -0,0 +1,129 @@
+package com.github.acs.file.batch.internal.transfer;
+
+import com.github.luben.zstd.ZstdInputStream;
+import com.github.luben.zstd.ZstdOutputStream;
+import net.jpountz.lz4.LZ4FrameInputStream;
+import net.jpountz.lz4.LZ4FrameOutputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The codec files are compressed with while they are transferred, or decompressed with if they were compressed at
+ * the source.
+ * <p>
+ * Every codec streams through a bounded buffer of {@link #BUFFER_SIZE} bytes, so the memory used per transfer does
+ * not depend on the size of the file. A compressed file is stored at its destination with the extension of its
+ * codec, and a decompressed file without it.
+ */
+public enum TransferCodec {
+
+    NONE("") {
+        @Override
+        public OutputStream compress(OutputStream outputStream) {
+            return outputStream;
+        }
+
+        @Override
+        public InputStream decompress(InputStream inputStream) {
+            return inputStream;
+        }
+    },
+    GZIP(".gz") {
+        @Override
+        public OutputStream compress(OutputStream outputStream) throws IOException {
+            return new GZIPOutputStream(outputStream, BUFFER_SIZE);
+        }
+
+        @Override
+        public InputStream decompress(InputStream inputStream) throws IOException {
+            return new GZIPInputStream(inputStream, BUFFER_SIZE);
+        }
+    },
+    ZSTD(".zst") {
+        @Override
+        public OutputStream compress(OutputStream outputStream) throws IOException {
+            return new ZstdOutputStream(outputStream);
+        }
+
+        @Override
+        public InputStream decompress(InputStream inputStream) throws IOException {
+            return new ZstdInputStream(inputStream);
+        }
+    },
+    LZ4(".lz4") {
+        @Override
+        public OutputStream compress(OutputStream outputStream) throws IOException {
+            return new LZ4FrameOutputStream(outputStream, LZ4FrameOutputStream.BLOCKSIZE.SIZE_64KB);
+        }
+
+        @Override
+        public InputStream decompress(InputStream inputStream) throws IOException {
+            return new LZ4FrameInputStream(inputStream);
+        }
+    };
+
+    public static final int BUFFER_SIZE = 64 * 1024;
+
+    private final String extension;
+
+    TransferCodec(String extension) {
+        this.extension = extension;
+    }
+
+    /**
+     * Wraps a stream that compresses the bytes written to it.
+     *
+     * @param outputStream the stream to write the compressed bytes to
+     * @return the compressing stream
+     * @throws IOException if the stream could not be created
+     */
+    public abstract OutputStream compress(OutputStream outputStream) throws IOException;
+
+    /**
+     * Wraps a stream that decompresses the bytes read from it.
+     *
+     * @param inputStream the stream to read the compressed bytes from
+     * @return the decompressing stream
+     * @throws IOException if the stream could not be created
+     */
+    public abstract InputStream decompress(InputStream inputStream) throws IOException;
+
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * Resolves where a file is stored once it has been compressed or decompressed with this codec.
+     *
+     * @param destination the destination of the file without a codec
+     * @param direction whether the file is compressed or decompressed
+     * @return the destination of the file with this codec
+     */
+    public Path destinationOf(Path destination, Direction direction) {
+        String name = destination.getFileName().toString();
+        if (direction == Direction.COMPRESS) {
+            return destination.resolveSibling(name + extension);
+        }
+        if (!extension.isEmpty() && name.endsWith(extension) && name.length() > extension.length()) {
+            return destination.resolveSibling(name.substring(0, name.length() - extension.length()));
+        }
+        return destination;
+    }
+
+    public enum Direction {
+        /**
+         * Files are compressed on their way to the destination.
+         */
+        COMPRESS,
+        /**
+         * Files are decompressed on their way to the destination.
+         */
+        DECOMPRESS
+    }
+
+}
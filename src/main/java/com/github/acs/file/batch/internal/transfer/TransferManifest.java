@@ -0,0 +1,65 @@
+package com.github.acs.file.batch.internal.transfer;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+
+/**
+ * A CSV file that lists every file transferred by a job instance, with its size and digests.
+ * <p>
+ * The partitions of a job append to the same manifest, so the lines of a chunk are appended with a single write to
+ * a channel opened in append mode, while holding a lock that is shared by every manifest of the JVM, and a lock on
+ * the file for the partitions transferred by other nodes.
+ */
+public class TransferManifest {
+
+    static final String HEADER = "file,size,sha256,crc32c,range_size,range_sha256_tree";
+
+    private static final Object LOCK = new Object();
+
+    private final Path file;
+
+    public TransferManifest(Path file) {
+        this.file = file;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Appends lines to the manifest, creating it with a header if it does not exist yet.
+     *
+     * @param lines the lines to append, as returned by {@link ManifestEntry#toLine()}
+     * @throws IOException if the manifest could not be written
+     */
+    public void append(Collection<String> lines) throws IOException {
+        if (lines.isEmpty()) {
+            return;
+        }
+        synchronized (LOCK) {
+            Path parent = file.getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            try (var channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                 var ignored = channel.lock()) {
+                var text = new StringBuilder();
+                if (channel.size() == 0) {
+                    text.append(HEADER).append('\n');
+                }
+                lines.forEach(line -> text.append(line).append('\n'));
+                var buffer = StandardCharsets.UTF_8.encode(CharBuffer.wrap(text));
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+        }
+    }
+
+}
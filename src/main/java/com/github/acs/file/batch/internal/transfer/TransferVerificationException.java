@@ -0,0 +1,14 @@
+package com.github.acs.file.batch.internal.transfer;
+
+import java.io.IOException;
+
+/**
+ * Thrown when the bytes written to a destination do not match the bytes read from the source.
+ */
+public class TransferVerificationException extends IOException {
+
+    public TransferVerificationException(String message) {
+        super(message);
+    }
+
+}
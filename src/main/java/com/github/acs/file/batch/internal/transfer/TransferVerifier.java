@@ -0,0 +1,21 @@
+package com.github.acs.file.batch.internal.transfer;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Compares a transferred file with its source before the file is renamed to its destination.
+ */
+public interface TransferVerifier {
+
+    /**
+     * Verifies that a transferred file has the same content as its source.
+     *
+     * @param source the source file
+     * @param transferred the transferred file
+     * @throws TransferVerificationException if the content of the files differs
+     * @throws IOException if either file could not be read
+     */
+    void verify(Path source, Path transferred) throws IOException;
+
+}
@@ -0,0 +1,230 @@
+package com.github.acs.file.batch.internal.web;
+
+import com.github.acs.file.batch.BatchTrigger;
+import com.github.acs.file.batch.internal.FileTransferProperties;
+import com.github.acs.file.batch.internal.transfer.SourceFiles;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.ZeroCopyHttpOutputMessage;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lets partners upload source files and download destination files over HTTP, without an SFTP hop.
+ * <p>
+ * An upload is streamed from the request to disk as it arrives, so a slow disk slows down the upload instead of
+ * buffering it in memory. It is written to a hidden {@code .part} file next to the source file, which replaces the
+ * source file once the upload completed, so a transfer never reads a partial upload. Transfers of the whole source
+ * directory and the triggers skip such files, see {@link SourceFiles#isInternal}. An upload with {@code trigger=true}
+ * launches a job transferring the uploaded file once it is complete.
+ * <p>
+ * A download sends a single range of the file if the request asks for one, so an interrupted download is resumed
+ * where it stopped. {@code If-Range} is honoured with the {@code ETag} or {@code Last-Modified} time of the file. The
+ * file is sent without copying it through the application when the server supports it, and read asynchronously in
+ * buffers otherwise.
+ * <p>
+ * Every request must carry the configured access token as a bearer token, and the endpoints are not found while no
+ * token is configured. Hidden files, files in hidden directories, such as the manifests and file lists the module
+ * keeps in the destination directory, and {@code .part} files still being written can neither be uploaded nor
+ * downloaded.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/files")
+public class FileTransferController {
+
+    private final FileTransferProperties properties;
+    private final BatchTrigger batchTrigger;
+
+    public FileTransferController(FileTransferProperties properties, BatchTrigger batchTrigger) {
+        this.properties = properties;
+        this.batchTrigger = batchTrigger;
+    }
+
+    /**
+     * Uploads a source file, replacing the file if it exists.
+     *
+     * @param path the path of the file, relative to the source directory
+     * @param trigger whether to launch a job transferring the file once it is uploaded
+     */
+    @PutMapping("/source/{*path}")
+    public Mono<ResponseEntity<Void>> upload(@PathVariable String path,
+                                             @RequestParam(defaultValue = "false") boolean trigger,
+                                             ServerHttpRequest request) {
+        authorize(request);
+        var sourceDirectory = this.properties.getSourceDirectory().toAbsolutePath().normalize();
+        var file = resolve(sourceDirectory, path);
+        var fileName = sourceDirectory.relativize(file).toString();
+        long maxSize = this.properties.getHttpMaxUploadSize().toBytes();
+        if (request.getHeaders().getContentLength() > maxSize) {
+            return Mono.error(new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE));
+        }
+        var part = file.resolveSibling("." + file.getFileName() + "." + UUID.randomUUID() + ".part");
+        return Mono.fromCallable(() -> Files.createDirectories(file.getParent()))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(ignored -> DataBufferUtils.write(limit(request.getBody(), maxSize), part, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)
+                        .then(Mono.fromCallable(() -> Files.move(part, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE))
+                                .subscribeOn(Schedulers.boundedElastic()))
+                        .onErrorResume(e -> Mono.fromCallable(() -> Files.deleteIfExists(part))
+                                .subscribeOn(Schedulers.boundedElastic())
+                                .then(Mono.error(e))))
+                .doOnSuccess(ignored -> {
+                    log.info("Uploaded {}", fileName);
+                    if (trigger) {
+                        launch(fileName);
+                    }
+                })
+                .thenReturn(ResponseEntity.status(HttpStatus.CREATED).build());
+    }
+
+    /**
+     * Downloads a destination file, or a single range of it.
+     *
+     * @param path the path of the file, relative to the destination directory
+     */
+    @GetMapping("/destination/{*path}")
+    public Mono<Void> download(@PathVariable String path, ServerHttpRequest request, ServerHttpResponse response) {
+        authorize(request);
+        var file = resolve(this.properties.getDestinationDirectory().toAbsolutePath().normalize(), path);
+        return Mono.fromCallable(() -> Files.readAttributes(file, BasicFileAttributes.class))
+                .subscribeOn(Schedulers.boundedElastic())
+                .onErrorMap(NoSuchFileException.class, e -> new ResponseStatusException(HttpStatus.NOT_FOUND))
+                .flatMap(attributes -> {
+                    if (!attributes.isRegularFile()) {
+                        return Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND));
+                    }
+                    return download(file, attributes, request.getHeaders(), response);
+                });
+    }
+
+    private Mono<Void> download(Path file, BasicFileAttributes attributes, HttpHeaders requestHeaders, ServerHttpResponse response) {
+        long size = attributes.size();
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        var eTag = "\"" + Long.toHexString(size) + "-" + Long.toHexString(lastModified) + "\"";
+        var headers = response.getHeaders();
+        headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+        headers.setETag(eTag);
+        headers.setLastModified(lastModified);
+
+        long position = 0;
+        long count = size;
+        var range = range(requestHeaders, eTag, lastModified);
+        if (range != null) {
+            position = range.getRangeStart(size);
+            if (position >= size) {
+                response.setStatusCode(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE);
+                headers.set(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+                return response.setComplete();
+            }
+            long end = range.getRangeEnd(size);
+            count = end - position + 1;
+            response.setStatusCode(HttpStatus.PARTIAL_CONTENT);
+            headers.set(HttpHeaders.CONTENT_RANGE, "bytes " + position + "-" + end + "/" + size);
+        }
+        headers.setContentLength(count);
+
+        if (response instanceof ZeroCopyHttpOutputMessage zeroCopy) {
+            return zeroCopy.writeWith(file, position, count);
+        }
+        var buffers = DataBufferUtils.readAsynchronousFileChannel(
+                () -> AsynchronousFileChannel.open(file, StandardOpenOption.READ), position,
+                response.bufferFactory(), (int) this.properties.getHttpBufferSize().toBytes());
+        return response.writeWith(DataBufferUtils.takeUntilByteCount(buffers, count));
+    }
+
+    /**
+     * @return the single range requested, or {@code null} to send the whole file, as the request asks for none, for
+     * several or for a file that has changed since
+     */
+    private static HttpRange range(HttpHeaders requestHeaders, String eTag, long lastModified) {
+        var ifRange = requestHeaders.getFirst(HttpHeaders.IF_RANGE);
+        if (ifRange != null && !ifRange.equals(eTag)) {
+            try {
+                if (requestHeaders.getFirstDate(HttpHeaders.IF_RANGE) / 1000 != lastModified / 1000) {
+                    return null;
+                }
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+        try {
+            var ranges = requestHeaders.getRange();
+            return ranges.size() == 1 ? ranges.getFirst() : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static Flux<DataBuffer> limit(Flux<DataBuffer> body, long maxSize) {
+        var received = new AtomicLong();
+        return body.doOnNext(buffer -> {
+            if (received.addAndGet(buffer.readableByteCount()) > maxSize) {
+                DataBufferUtils.release(buffer);
+                throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE);
+            }
+        });
+    }
+
+    private void launch(String fileName) {
+        Mono.fromRunnable(() -> this.batchTrigger.triggerBatch(List.of(fileName)))
+                .subscribeOn(Schedulers.boundedElastic())
+                .subscribe(null, e -> log.error("Error launching the transfer of uploaded file {}", fileName, e));
+    }
+
+    /**
+     * Checks that the endpoints are enabled, and that the request carries the access token.
+     */
+    private void authorize(ServerHttpRequest request) {
+        var accessToken = this.properties.getHttpAccessToken();
+        if (!this.properties.isHttpEnabled() || accessToken == null || accessToken.isBlank()) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        }
+        var authorization = request.getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+        if (authorization == null || !MessageDigest.isEqual(authorization.getBytes(StandardCharsets.UTF_8),
+                ("Bearer " + accessToken).getBytes(StandardCharsets.UTF_8))) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED);
+        }
+    }
+
+    /**
+     * Resolves a path against a directory, rejecting paths outside of the directory and internal files.
+     */
+    private static Path resolve(Path directory, String path) {
+        var file = directory.resolve(path.startsWith("/") ? path.substring(1) : path).normalize();
+        if (!file.startsWith(directory) || file.equals(directory) || SourceFiles.isInternal(directory.relativize(file))) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid file path: " + path);
+        }
+        return file;
+    }
+
+}
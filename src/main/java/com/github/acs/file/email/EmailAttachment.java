@@ -0,0 +1,33 @@
+package com.github.acs.file.email;
+
+import lombok.Builder;
+
+import java.net.URI;
+import java.nio.file.Path;
+
+/**
+ * A file attached to an email. The file is not read into memory: it is streamed into the message when the message is
+ * written to the mail server.
+ *
+ * @param path the file to attach
+ * @param fileName the name of the attachment, or {@code null} for the name of the file
+ * @param contentType the content type of the file, or {@code null} to guess it from the file name
+ * @param compress whether the file is compressed with gzip while it is streamed, which adds {@code .gz} to its name
+ * @param link where the file can be downloaded, linked from the body instead of attaching the file if it is larger than
+ * the attachment size limit, or {@code null} to link it under the configured attachment link base URL
+ */
+@Builder
+public record EmailAttachment(
+        Path path,
+        String fileName,
+        String contentType,
+        boolean compress,
+        URI link
+) {
+
+    public String name() {
+        var name = fileName != null ? fileName : path.getFileName().toString();
+        return compress ? name + ".gz" : name;
+    }
+
+}
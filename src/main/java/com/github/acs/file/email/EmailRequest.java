@@ -4,6 +4,7 @@ import com.github.acs.file.email.internal.validator.ValidEmailRequest;
 import jakarta.validation.constraints.Email;
 import lombok.Builder;
 
+import java.util.List;
 import java.util.Set;
 
 @Builder
@@ -14,6 +15,7 @@ public record EmailRequest (
         Set<String> bcc,
         String subject,
         String body,
-        EmailTemplate template
+        EmailTemplate template,
+        List<EmailAttachment> attachments
 )
 { }
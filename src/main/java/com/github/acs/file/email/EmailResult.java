@@ -0,0 +1,21 @@
+package com.github.acs.file.email;
+
+import lombok.Builder;
+
+/**
+ * The outcome of one email of a bulk send.
+ *
+ * @param request the email that was sent
+ * @param error why the email could not be rendered or sent, or {@code null} if it was accepted by the mail server
+ */
+@Builder
+public record EmailResult(
+        EmailRequest request,
+        EmailServiceException error
+) {
+
+    public boolean sent() {
+        return error == null;
+    }
+
+}
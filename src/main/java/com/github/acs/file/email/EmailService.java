@@ -1,7 +1,40 @@
 package com.github.acs.file.email;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 public interface EmailService {
 
     void sendEmail(EmailRequest emailRequest) throws EmailServiceException;
 
+    /**
+     * Queues an email to be sent in the background, over a connection to the mail server that is reused between
+     * emails.
+     *
+     * @param emailRequest the email to send
+     * @return a future that completes once the email has been accepted by the mail server, or completes
+     * exceptionally with an {@link EmailServiceException} if it could not be queued or sent
+     */
+    CompletableFuture<Void> sendEmailAsync(EmailRequest emailRequest);
+
+    /**
+     * Stores an email in the durable outbox, from which the relay of any node sends it, retrying with exponential
+     * backoff until the mail server accepts it. The email is stored in the transaction of the caller if there is one,
+     * and is only sent once that transaction commits.
+     *
+     * @param emailRequest the email to send
+     * @throws EmailServiceException if the email could not be rendered or stored
+     */
+    void enqueueEmail(EmailRequest emailRequest) throws EmailServiceException;
+
+    /**
+     * Renders every email first and then sends them all over a single connection to the mail server. An email that
+     * cannot be rendered, or that the server rejects, does not stop the others from being sent.
+     *
+     * @param emailRequests the emails to send
+     * @return the outcome of every email, in the iteration order of the requests
+     */
+    List<EmailResult> sendEmails(Collection<EmailRequest> emailRequests);
+
 }
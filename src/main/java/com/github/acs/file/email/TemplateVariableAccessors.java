@@ -0,0 +1,79 @@
+package com.github.acs.file.email;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.RecordComponent;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The accessors of the variables of a {@link TemplateVariables} class, built once per class from its record
+ * components, or from its instance fields if it is not a record.
+ */
+final class TemplateVariableAccessors {
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    private static final ClassValue<TemplateVariableAccessors> ACCESSORS = new ClassValue<>() {
+        @Override
+        protected TemplateVariableAccessors computeValue(Class<?> type) {
+            return new TemplateVariableAccessors(type);
+        }
+    };
+
+    private final String[] names;
+    private final MethodHandle[] getters;
+
+    private TemplateVariableAccessors(Class<?> type) {
+        List<String> names = new ArrayList<>();
+        List<MethodHandle> getters = new ArrayList<>();
+        try {
+            var lookup = MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+            if (type.isRecord()) {
+                for (RecordComponent component : type.getRecordComponents()) {
+                    names.add(component.getName());
+                    getters.add(lookup.unreflect(component.getAccessor()).asType(GETTER_TYPE));
+                }
+            } else {
+                for (Field field : type.getDeclaredFields()) {
+                    if (!Modifier.isStatic(field.getModifiers()) && !field.isSynthetic()) {
+                        names.add(field.getName());
+                        getters.add(lookup.unreflectGetter(field).asType(GETTER_TYPE));
+                    }
+                }
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("The template variables of " + type.getName() + " are not accessible", e);
+        }
+        this.names = names.toArray(new String[0]);
+        this.getters = getters.toArray(new MethodHandle[0]);
+    }
+
+    static TemplateVariableAccessors of(Class<?> type) {
+        return ACCESSORS.get(type);
+    }
+
+    Map<String, Object> read(Object variables) {
+        if (this.names.length == 0) {
+            return Map.of();
+        }
+        Map<String, Object> values = LinkedHashMap.newLinkedHashMap(this.names.length);
+        for (int i = 0; i < this.names.length; i++) {
+            try {
+                values.put(this.names[i], (Object) this.getters[i].invokeExact(variables));
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException("Could not read the template variable " + this.names[i], e);
+            }
+        }
+        return Collections.unmodifiableMap(values);
+    }
+
+}
@@ -1,21 +1,19 @@
 package com.github.acs.file.email;
 
-import java.lang.reflect.Field;
-import java.util.HashMap;
 import java.util.Map;
 
 public interface TemplateVariables {
 
-    default Map<String, Object> getVariables() throws IllegalAccessException {
-        Field[] fields = this.getClass().getDeclaredFields();
-        if(fields.length < 1) {
-            return Map.of();
-        }
-        Map<String, Object> variables = new HashMap<>();
-        for(Field field : fields) {
-            variables.put(field.getName(), field.get(this));
-        }
-        return variables;
+    /**
+     * Returns the variables of the template, one per record component or, for a class, one per instance field.
+     * <p>
+     * The accessors of each class are looked up once and cached as method handles, so no reflection is done per
+     * call.
+     *
+     * @return an unmodifiable map of the variables, in declaration order, which may contain {@code null} values
+     */
+    default Map<String, Object> getVariables() {
+        return TemplateVariableAccessors.of(this.getClass()).read(this);
     }
 
 }
@@ -0,0 +1,202 @@
+package com.github.acs.file.email.internal;
+
+import com.github.acs.file.email.internal.EmailOutboxRepository.OutboxMessage;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stores emails in the {@link EmailOutboxRepository} and relays them to the mail server from a background thread.
+ * <p>
+ * Every node runs its own relay, which claims due emails in batches and sends each batch over a single connection,
+ * pacing the emails by the rate limits of the {@link SmtpRelayGuard}.
+ * Claimed emails are leased for the claim timeout, so another node only picks them up again if this one died while
+ * sending them, and the claim timeout must therefore be longer than it takes to send a batch. An email the server
+ * rejects is retried with exponential backoff, and given up on after the maximum number of attempts, in which case
+ * it stays in the table with its last error. An email the guard did not let through is retried without counting the
+ * attempt. An email is deleted once the server accepted it, so it is sent at
+ * least once, and more than once only if a node dies between sending it and deleting it.
+ */
+@Slf4j
+@Component
+public class DurableEmailOutbox {
+
+    private final EmailOutboxRepository repository;
+    private final JavaMailSender mailSender;
+    private final EmailProperties emailProperties;
+    private final MeterRegistry registry;
+    private final SmtpRelayGuard smtpRelayGuard;
+    private final Semaphore wakeUp = new Semaphore(0);
+    private Clock clock = Clock.systemUTC();
+    private Thread relay;
+    private volatile boolean closed;
+
+    public DurableEmailOutbox(EmailOutboxRepository repository, JavaMailSender mailSender, EmailProperties emailProperties, MeterRegistry registry, SmtpRelayGuard smtpRelayGuard) {
+        this.repository = repository;
+        this.mailSender = mailSender;
+        this.emailProperties = emailProperties;
+        this.registry = registry;
+        this.smtpRelayGuard = smtpRelayGuard;
+    }
+
+    void setClock(Clock clock) {
+        this.clock = clock;
+    }
+
+    @PostConstruct
+    public synchronized void start() {
+        if (this.emailProperties.isRelayEnabled() && this.relay == null) {
+            this.closed = false;
+            this.relay = Thread.ofVirtual().name("email-outbox-relay").start(this::run);
+        }
+    }
+
+    /**
+     * Stops the relay once it has finished the batch it is sending.
+     */
+    @PreDestroy
+    public synchronized void close() throws InterruptedException {
+        this.closed = true;
+        this.wakeUp.release();
+        if (this.relay != null) {
+            this.relay.join();
+            this.relay = null;
+        }
+    }
+
+    /**
+     * Stores a message in the outbox. If the caller is in a transaction, the message is stored in that transaction
+     * and the relay is woken up once it commits.
+     *
+     * @param message the message to send
+     * @throws MessagingException if the message could not be rendered
+     * @throws IOException if the message could not be rendered
+     */
+    public void add(MimeMessage message) throws MessagingException, IOException {
+        var bytes = new ByteArrayOutputStream();
+        message.writeTo(bytes);
+        this.repository.add(message.getSubject(), bytes.toByteArray(), this.clock.instant());
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    DurableEmailOutbox.this.wakeUp.release();
+                }
+            });
+        } else {
+            this.wakeUp.release();
+        }
+    }
+
+    /**
+     * Claims a batch of due emails, sends them and records the outcome of each.
+     *
+     * @return the number of emails claimed
+     */
+    public int relay() {
+        var now = this.clock.instant();
+        var claimed = this.repository.claim(this.emailProperties.getRelayBatchSize(), now, now.plus(this.emailProperties.getRelayClaimTimeout()));
+        if (claimed.isEmpty()) {
+            return 0;
+        }
+        Map<Long, Exception> errors = new HashMap<>();
+        List<MimeMessage> messages = new ArrayList<>(claimed.size());
+        Map<MimeMessage, OutboxMessage> outboxMessages = new IdentityHashMap<>();
+        for (OutboxMessage outboxMessage : claimed) {
+            try {
+                var message = this.mailSender.createMimeMessage(new ByteArrayInputStream(outboxMessage.message()));
+                messages.add(message);
+                outboxMessages.put(message, outboxMessage);
+            } catch (Exception e) {
+                errors.put(outboxMessage.id(), e);
+            }
+        }
+        this.smtpRelayGuard.sendEach(this.mailSender, messages)
+                .forEach((message, error) -> errors.put(outboxMessages.get(message).id(), error));
+        for (OutboxMessage outboxMessage : claimed) {
+            var error = errors.get(outboxMessage.id());
+            if (error == null) {
+                this.repository.delete(outboxMessage.id());
+                this.registry.counter("email.outbox.relay.sent").increment();
+            } else {
+                reschedule(outboxMessage, error);
+            }
+        }
+        return claimed.size();
+    }
+
+    /**
+     * Schedules the next attempt of an email that was not sent. An email the guard of the relay did not let through,
+     * as its circuit breaker was open or its rate limit was reached, was never offered to the relay, and the claim is
+     * not counted as an attempt.
+     */
+    private void reschedule(OutboxMessage outboxMessage, Exception error) {
+        if (error instanceof SmtpRelayUnavailableException) {
+            log.debug("Deferring email {} of the outbox: {}", outboxMessage.id(), error.getMessage());
+            this.repository.release(outboxMessage.id(), this.clock.instant().plus(this.emailProperties.getRelayInitialBackoff()), error.toString());
+            this.registry.counter("email.outbox.relay.deferred").increment();
+        } else if (outboxMessage.attempts() >= this.emailProperties.getRelayMaxAttempts()) {
+            log.error("Giving up on email {} of the outbox after {} attempts", outboxMessage.id(), outboxMessage.attempts(), error);
+            this.repository.reschedule(outboxMessage.id(), null, error.toString());
+            this.registry.counter("email.outbox.relay.abandoned").increment();
+        } else {
+            var backoff = backoff(outboxMessage.attempts());
+            log.warn("Could not send email {} of the outbox, retrying in {}: {}", outboxMessage.id(), backoff, error.toString());
+            this.repository.reschedule(outboxMessage.id(), this.clock.instant().plus(backoff), error.toString());
+            this.registry.counter("email.outbox.relay.retried").increment();
+        }
+    }
+
+    /**
+     * @param attempts the number of attempts made so far
+     * @return the initial backoff, doubled for every attempt after the first, up to the maximum backoff
+     */
+    Duration backoff(int attempts) {
+        var backoff = this.emailProperties.getRelayInitialBackoff().multipliedBy(1L << Math.min(attempts - 1, 30));
+        return backoff.compareTo(this.emailProperties.getRelayMaxBackoff()) > 0 ? this.emailProperties.getRelayMaxBackoff() : backoff;
+    }
+
+    private void run() {
+        var interval = this.emailProperties.getRelayInterval().toMillis();
+        while (!this.closed) {
+            try {
+                if (relay() < this.emailProperties.getRelayBatchSize()) {
+                    this.wakeUp.tryAcquire(interval, TimeUnit.MILLISECONDS);
+                    this.wakeUp.drainPermits();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.warn("Could not relay the email outbox", e);
+                try {
+                    this.wakeUp.tryAcquire(interval, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,209 @@
+package com.github.acs.file.email.internal;
+
+import com.github.acs.file.email.EmailServiceException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A bounded queue of emails that are sent in the background by a fixed number of virtual-thread workers.
+ * <p>
+ * Each worker keeps its own SMTP {@link Transport} connected between emails and closes it once the outbox has been
+ * empty for the configured idle timeout, so a burst of emails is sent over a few connections instead of one
+ * connection per email. A worker reconnects before sending if the server dropped its connection, and retries an
+ * email once on a new connection if sending it failed for any other reason than a rejected recipient.
+ * <p>
+ * The number of queued emails is exposed as the {@code email.outbox.depth} gauge, and the time from queuing an email
+ * to the server accepting or rejecting it as the {@code email.send.latency} timer.
+ */
+@Slf4j
+@Component
+public class EmailOutbox {
+
+    private static final Delivery STOP = new Delivery(null, null, 0);
+
+    private final JavaMailSender mailSender;
+    private final MeterRegistry registry;
+    private final SmtpRelayGuard smtpRelayGuard;
+    private final BlockingQueue<Delivery> queue;
+    private final int workerCount;
+    private final long idleTimeoutMillis;
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean closed;
+
+    public EmailOutbox(EmailProperties emailProperties, JavaMailSender mailSender, MeterRegistry registry, SmtpRelayGuard smtpRelayGuard) {
+        this.mailSender = mailSender;
+        this.registry = registry;
+        this.smtpRelayGuard = smtpRelayGuard;
+        this.queue = new ArrayBlockingQueue<>(emailProperties.getOutboxCapacity());
+        this.workerCount = emailProperties.getOutboxWorkers();
+        this.idleTimeoutMillis = emailProperties.getConnectionIdleTimeout().toMillis();
+        Gauge.builder("email.outbox.depth", this.queue, BlockingQueue::size)
+                .description("The number of emails waiting in the outbox")
+                .register(registry);
+    }
+
+    private record Delivery(MimeMessage message, CompletableFuture<Void> result, long queuedNanos) {
+    }
+
+    @PostConstruct
+    public synchronized void start() {
+        for (int i = this.workers.size(); i < this.workerCount; i++) {
+            this.workers.add(Thread.ofVirtual().name("email-outbox-", i).start(this::drain));
+        }
+    }
+
+    /**
+     * Queues a message to be sent by one of the workers.
+     *
+     * @param message the message to send
+     * @return a future that completes once the message has been sent, or exceptionally with an
+     * {@link EmailServiceException} if the outbox is full or closed, or the message could not be sent
+     */
+    public CompletableFuture<Void> submit(MimeMessage message) {
+        var delivery = new Delivery(message, new CompletableFuture<>(), System.nanoTime());
+        if (this.closed) {
+            delivery.result().completeExceptionally(new EmailServiceException("The email outbox is closed"));
+        } else if (!this.queue.offer(delivery)) {
+            this.registry.counter("email.outbox.rejected").increment();
+            delivery.result().completeExceptionally(new EmailServiceException("The email outbox is full"));
+        }
+        return delivery.result();
+    }
+
+    /**
+     * Stops accepting messages, waits for the workers to send the messages already queued and closes their
+     * connections.
+     */
+    @PreDestroy
+    public synchronized void close() throws InterruptedException {
+        this.closed = true;
+        for (int i = 0; i < this.workers.size(); i++) {
+            this.queue.put(STOP);
+        }
+        for (Thread worker : this.workers) {
+            worker.join();
+        }
+        this.workers.clear();
+        Delivery delivery;
+        while ((delivery = this.queue.poll()) != null) {
+            if (delivery != STOP) {
+                delivery.result().completeExceptionally(new EmailServiceException("The email outbox is closed"));
+            }
+        }
+    }
+
+    private void drain() {
+        Transport transport = null;
+        try {
+            while (true) {
+                var delivery = this.queue.poll(this.idleTimeoutMillis, TimeUnit.MILLISECONDS);
+                if (delivery == STOP) {
+                    return;
+                }
+                if (delivery == null) {
+                    transport = disconnect(transport);
+                } else {
+                    transport = deliver(delivery, transport);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            disconnect(transport);
+        }
+    }
+
+    private Transport deliver(Delivery delivery, Transport transport) {
+        Exception error = null;
+        try {
+            var messages = new MimeMessage[]{delivery.message()};
+            if (this.mailSender instanceof JavaMailSenderImpl sender) {
+                var connection = new Transport[]{transport};
+                try {
+                    this.smtpRelayGuard.send(messages, () -> connection[0] = sendOverTransport(sender, delivery.message(), connection[0]));
+                } finally {
+                    transport = connection[0];
+                }
+            } else {
+                this.smtpRelayGuard.send(messages, () -> this.mailSender.send(delivery.message()));
+            }
+        } catch (Exception e) {
+            error = e;
+        }
+        Timer.builder("email.send.latency")
+                .description("The time from queuing an email to the mail server accepting or rejecting it")
+                .tag("outcome", error == null ? "success" : "failure")
+                .register(this.registry)
+                .record(System.nanoTime() - delivery.queuedNanos(), TimeUnit.NANOSECONDS);
+        if (error == null) {
+            delivery.result().complete(null);
+        } else {
+            delivery.result().completeExceptionally(new EmailServiceException("Error sending email", error));
+        }
+        return transport;
+    }
+
+    private Transport sendOverTransport(JavaMailSenderImpl sender, MimeMessage message, Transport transport) throws MessagingException {
+        if (message.getSentDate() == null) {
+            message.setSentDate(new Date());
+        }
+        message.saveChanges();
+        if (transport == null || !transport.isConnected()) {
+            disconnect(transport);
+            transport = connect(sender);
+        }
+        try {
+            transport.sendMessage(message, message.getAllRecipients());
+        } catch (SendFailedException e) {
+            throw e;
+        } catch (MessagingException e) {
+            log.debug("Sending email failed, retrying on a new connection", e);
+            disconnect(transport);
+            transport = connect(sender);
+            transport.sendMessage(message, message.getAllRecipients());
+        }
+        return transport;
+    }
+
+    private static Transport connect(JavaMailSenderImpl sender) throws MessagingException {
+        var session = sender.getSession();
+        var protocol = sender.getProtocol() != null ? sender.getProtocol() : session.getProperty("mail.transport.protocol");
+        var transport = session.getTransport(protocol != null ? protocol : JavaMailSenderImpl.DEFAULT_PROTOCOL);
+        var username = StringUtils.hasLength(sender.getUsername()) ? sender.getUsername() : null;
+        var password = StringUtils.hasLength(sender.getPassword()) ? sender.getPassword() : null;
+        transport.connect(sender.getHost(), sender.getPort(), username, password);
+        return transport;
+    }
+
+    private static Transport disconnect(Transport transport) {
+        if (transport != null) {
+            try {
+                transport.close();
+            } catch (MessagingException e) {
+                log.debug("Could not close the connection to the mail server", e);
+            }
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,137 @@
+package com.github.acs.file.email.internal;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * The durable outbox of emails waiting to be sent, persisted in the {@code email_outbox} table.
+ * <p>
+ * Every row holds a fully rendered MIME message, so the relay that sends it needs neither the request nor the
+ * templates it was rendered from. A row is due once its {@code next_attempt_at} has passed. Claiming a row pushes
+ * {@code next_attempt_at} past the claim timeout, which acts as a lease: the row is not claimed again until the
+ * claiming node has either deleted it, rescheduled it, or died without doing either.
+ */
+@Repository
+public class EmailOutboxRepository {
+
+    static final String TABLE_NAME = "email_outbox";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private volatile boolean tableCreated;
+
+    public EmailOutboxRepository(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * A claimed email.
+     *
+     * @param id the id of the row
+     * @param attempts the number of times the email has been claimed, including this time
+     * @param message the MIME message
+     */
+    public record OutboxMessage(long id, int attempts, byte[] message) {
+    }
+
+    /**
+     * Adds an email to the outbox, due immediately. The row is written in the transaction of the caller if there is
+     * one, so it is only sent once that transaction commits.
+     *
+     * @param subject the subject of the email, for troubleshooting
+     * @param message the MIME message
+     * @param now the current time
+     */
+    public void add(String subject, byte[] message, Instant now) {
+        createTable();
+        this.jdbcTemplate.update("INSERT INTO " + TABLE_NAME + " (subject, message, attempts, next_attempt_at, created_at) VALUES (?, ?, 0, ?, ?)",
+                truncate(subject, 998), message, Timestamp.from(now), Timestamp.from(now));
+    }
+
+    /**
+     * Claims a batch of due emails. The rows are selected with {@code FOR UPDATE SKIP LOCKED}, so nodes claiming at
+     * the same time get disjoint batches without waiting for each other, and their lease is taken in the same
+     * transaction.
+     *
+     * @param batchSize the maximum number of emails to claim
+     * @param now the current time
+     * @param leaseUntil the time until which the claimed emails are not claimed again
+     * @return the claimed emails, oldest due first
+     */
+    public List<OutboxMessage> claim(int batchSize, Instant now, Instant leaseUntil) {
+        createTable();
+        return this.transactionTemplate.execute(status -> {
+            var claimed = this.jdbcTemplate.query(
+                    "SELECT id, attempts, message FROM " + TABLE_NAME + " WHERE next_attempt_at <= ? "
+                            + "ORDER BY next_attempt_at, id LIMIT ? FOR UPDATE SKIP LOCKED",
+                    (resultSet, rowNum) -> new OutboxMessage(resultSet.getLong(1), resultSet.getInt(2) + 1, resultSet.getBytes(3)),
+                    Timestamp.from(now), batchSize);
+            if (claimed.isEmpty()) {
+                return claimed;
+            }
+            this.jdbcTemplate.batchUpdate("UPDATE " + TABLE_NAME + " SET attempts = ?, next_attempt_at = ? WHERE id = ?",
+                    claimed.stream().map(message -> new Object[]{message.attempts(), Timestamp.from(leaseUntil), message.id()}).toList());
+            return claimed;
+        });
+    }
+
+    /**
+     * Removes an email that has been sent.
+     */
+    public void delete(long id) {
+        this.jdbcTemplate.update("DELETE FROM " + TABLE_NAME + " WHERE id = ?", id);
+    }
+
+    /**
+     * Records why an email could not be sent and when to try again.
+     *
+     * @param id the id of the email
+     * @param nextAttempt when to try again, or {@code null} to stop trying
+     * @param error why the email could not be sent
+     */
+    public void reschedule(long id, Instant nextAttempt, String error) {
+        this.jdbcTemplate.update("UPDATE " + TABLE_NAME + " SET next_attempt_at = ?, last_error = ? WHERE id = ?",
+                nextAttempt == null ? null : Timestamp.from(nextAttempt), truncate(error, 4000), id);
+    }
+
+    /**
+     * Records why an email could not be sent and when to try again, without counting its claim as an attempt, as the
+     * email was not offered to the server.
+     *
+     * @param id the id of the email
+     * @param nextAttempt when to try again
+     * @param error why the email could not be sent
+     */
+    public void release(long id, Instant nextAttempt, String error) {
+        this.jdbcTemplate.update("UPDATE " + TABLE_NAME + " SET attempts = attempts - 1, next_attempt_at = ?, last_error = ? WHERE id = ?",
+                Timestamp.from(nextAttempt), truncate(error, 4000), id);
+    }
+
+    private void createTable() {
+        if (this.tableCreated) {
+            return;
+        }
+        this.jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + TABLE_NAME + " ("
+                + "id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, "
+                + "subject VARCHAR(998), "
+                + "message BYTEA NOT NULL, "
+                + "attempts INT NOT NULL, "
+                + "next_attempt_at TIMESTAMP, "
+                + "created_at TIMESTAMP NOT NULL, "
+                + "last_error VARCHAR(4000))");
+        this.jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS " + TABLE_NAME + "_next_attempt_at ON " + TABLE_NAME + " (next_attempt_at)");
+        this.tableCreated = true;
+    }
+
+    private static String truncate(String value, int length) {
+        return value == null || value.length() <= length ? value : value.substring(0, length);
+    }
+
+}
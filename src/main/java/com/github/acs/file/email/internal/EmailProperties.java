@@ -2,10 +2,19 @@ package com.github.acs.file.email.internal;
 
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.PositiveOrZero;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
 
 @Configuration
 @ConfigurationProperties(prefix = "module.email")
@@ -16,4 +25,210 @@ public class EmailProperties {
     @NotBlank @Email
     private String fromAddress;
 
+    /**
+     * The number of emails that can wait in the outbox to be sent in the background. Emails sent asynchronously
+     * while the outbox is full are rejected.
+     */
+    @Positive
+    private int outboxCapacity = 1000;
+
+    /**
+     * The number of workers that send the emails of the outbox, each over its own connection to the mail server.
+     */
+    @Positive
+    private int outboxWorkers = 2;
+
+    /**
+     * How long a worker keeps its connection to the mail server open while the outbox is empty.
+     */
+    @NotNull
+    private Duration connectionIdleTimeout = Duration.ofSeconds(30);
+
+    /**
+     * Whether this node relays the emails of the durable outbox to the mail server.
+     */
+    private boolean relayEnabled = true;
+
+    /**
+     * How often the relay looks for due emails when it is not woken up by a new one.
+     */
+    @NotNull
+    private Duration relayInterval = Duration.ofSeconds(5);
+
+    /**
+     * The maximum number of emails the relay claims and sends over one connection.
+     */
+    @Positive
+    private int relayBatchSize = 50;
+
+    /**
+     * How long claimed emails are leased to the relay that claimed them. It must be longer than it takes to send a
+     * batch, or another node may send the same emails.
+     */
+    @NotNull
+    private Duration relayClaimTimeout = Duration.ofMinutes(5);
+
+    /**
+     * The number of times the relay tries to send an email before giving up on it.
+     */
+    @Positive
+    private int relayMaxAttempts = 10;
+
+    /**
+     * How long the relay waits before retrying an email the first time, doubled for every later attempt.
+     */
+    @NotNull
+    private Duration relayInitialBackoff = Duration.ofSeconds(30);
+
+    /**
+     * The longest the relay waits before retrying an email.
+     */
+    @NotNull
+    private Duration relayMaxBackoff = Duration.ofHours(1);
+
+    /**
+     * The maximum number of parsed templates kept in the template cache, least recently used first out.
+     */
+    @Positive
+    private int templateCacheSize = 100;
+
+    /**
+     * Whether every template is parsed at startup, so the first email after a deploy does not pay for it.
+     */
+    private boolean templateWarmUp = true;
+
+    /**
+     * A directory to watch, with every directory under it, for changed templates, which are then evicted from the
+     * cache and parsed again. It must be the directory the Thymeleaf prefix resolves to, such as the directory of a
+     * {@code file:} prefix, or the application does not start.
+     */
+    private Path templateReloadDirectory;
+
+    /**
+     * Whether bodies rendered from the same template with equal variables are cached and shared, for notifications
+     * that are rendered identically for many recipients.
+     */
+    private boolean renderCacheEnabled = false;
+
+    /**
+     * How long a rendered body is cached after it was rendered.
+     */
+    @NotNull
+    private Duration renderCacheTtl = Duration.ofMinutes(5);
+
+    /**
+     * The maximum total size of the cached bodies, counting two bytes per character.
+     */
+    @NotNull
+    private DataSize renderCacheMaxWeight = DataSize.ofMegabytes(16);
+
+    /**
+     * The maximum number of recipient domains whose validation result is cached.
+     */
+    @Positive
+    private int addressDomainCacheSize = 1000;
+
+    /**
+     * A file listing the domains recipients may be in, one per line, such as the domains known to have a mail
+     * exchanger. Addresses in these domains and their subdomains are accepted. Every domain is accepted if it is
+     * not set.
+     */
+    private Path addressDomainsFile;
+
+    /**
+     * The number of recipients from which an email is sent as one delivery per recipient domain instead of one
+     * delivery to every recipient.
+     */
+    @Positive
+    private int fanOutMinRecipients = 50;
+
+    /**
+     * The number of deliveries sent to a recipient domain at once, each over its own connection.
+     */
+    @Positive
+    private int fanOutDomainConcurrency = 2;
+
+    /**
+     * The maximum number of deliveries sent to a recipient domain per second, or {@code 0} for no limit.
+     */
+    @PositiveOrZero
+    private int fanOutDomainRateLimit = 0;
+
+    /**
+     * The concurrency and rate limit of specific recipient domains, by domain.
+     */
+    @NotNull
+    private Map<String, DomainLimits> fanOutDomainLimits = new HashMap<>();
+
+    /**
+     * The maximum number of emails sent to the mail server per second, or {@code 0} for no limit.
+     */
+    @PositiveOrZero
+    private int sendRateLimit = 0;
+
+    /**
+     * The maximum number of emails sent to the mail server per second from one sender address, or {@code 0} for no
+     * limit.
+     */
+    @PositiveOrZero
+    private int senderRateLimit = 0;
+
+    /**
+     * The number of emails that may be sent at once beyond the rate limits, after the mail server was not sent
+     * anything for a while.
+     */
+    @Positive
+    private int sendRateLimitBurst = 10;
+
+    /**
+     * The longest a send waits for the rate limits before it fails.
+     */
+    @NotNull
+    private Duration sendRateLimitTimeout = Duration.ofSeconds(5);
+
+    /**
+     * The number of consecutive sends failing because the mail server could not be reached or did not answer after
+     * which sending is suspended.
+     */
+    @Positive
+    private int circuitBreakerFailureThreshold = 5;
+
+    /**
+     * How long sending is suspended before a single email is sent to probe whether the mail server is back.
+     */
+    @NotNull
+    private Duration circuitBreakerOpenDuration = Duration.ofSeconds(30);
+
+    /**
+     * The largest file that is attached to an email. A larger file is linked from the body instead. The size of a
+     * compressed attachment is the size of the file before it is compressed.
+     */
+    @NotNull
+    private DataSize attachmentMaxSize = DataSize.ofMegabytes(10);
+
+    /**
+     * The URL under which files too large to be attached are linked by their name, when the attachment does not have
+     * a link of its own. Without it, such files are only named in the body.
+     */
+    private String attachmentLinkBaseUrl;
+
+    @NoArgsConstructor
+    @Data
+    public static class DomainLimits {
+
+        /**
+         * The number of deliveries sent to the domain at once, or {@code null} for the default concurrency.
+         */
+        @Positive
+        private Integer concurrency;
+
+        /**
+         * The maximum number of deliveries sent to the domain per second, {@code 0} for no limit, or {@code null}
+         * for the default rate limit.
+         */
+        @PositiveOrZero
+        private Integer rateLimit;
+
+    }
+
 }
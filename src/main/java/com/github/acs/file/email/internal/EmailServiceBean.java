@@ -1,19 +1,42 @@
 package com.github.acs.file.email.internal;
 
+import com.github.acs.file.email.EmailAttachment;
 import com.github.acs.file.email.EmailRequest;
+import com.github.acs.file.email.EmailResult;
 import com.github.acs.file.email.EmailService;
 import com.github.acs.file.email.EmailServiceException;
 import com.github.acs.file.email.internal.template.EmailTemplateProcessor;
 import com.github.acs.file.email.internal.template.EmailTemplateRequest;
+import jakarta.activation.DataHandler;
 import jakarta.mail.MessagingException;
+import jakarta.mail.Part;
+import jakarta.mail.internet.MimeBodyPart;
 import jakarta.mail.internet.MimeMessage;
+import jakarta.mail.internet.MimeUtility;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DataAccessException;
+import org.springframework.mail.MailException;
 import org.springframework.mail.MailSendException;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
 import org.springframework.validation.annotation.Validated;
+import org.springframework.web.util.HtmlUtils;
+import org.springframework.web.util.UriUtils;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @Service
 @Validated
@@ -23,22 +46,95 @@ public class EmailServiceBean implements EmailService {
     private final EmailProperties emailProperties;
     private final JavaMailSender mailSender;
     private final EmailTemplateProcessor emailTemplateProcessor;
+    private final EmailOutbox emailOutbox;
+    private final DurableEmailOutbox durableEmailOutbox;
+    private final RecipientFanOut recipientFanOut;
+    private final SmtpRelayGuard smtpRelayGuard;
 
     @Override
     public void sendEmail(EmailRequest emailRequest) throws EmailServiceException {
         try {
             MimeMessage message = createMimeMessage(emailRequest);
-            this.mailSender.send(message);
+            if (this.recipientFanOut.shouldFanOut(message)) {
+                this.recipientFanOut.send(message).join();
+            } else {
+                this.smtpRelayGuard.send(new MimeMessage[]{message}, () -> this.mailSender.send(message));
+            }
         } catch (MessagingException e) {
             throw new EmailServiceException("Error creating email message", e);
         } catch (MailSendException e) {
             throw new EmailServiceException("Error sending email", e);
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof EmailServiceException cause ? cause : new EmailServiceException("Error sending email", e.getCause());
         } catch (Exception e) {
             throw new EmailServiceException("Unexpected error occurred while sending email", e);
         }
 
     }
 
+    @Override
+    public CompletableFuture<Void> sendEmailAsync(EmailRequest emailRequest) {
+        try {
+            var message = createMimeMessage(emailRequest);
+            return this.recipientFanOut.shouldFanOut(message) ? this.recipientFanOut.send(message) : this.emailOutbox.submit(message);
+        } catch (MessagingException e) {
+            return CompletableFuture.failedFuture(new EmailServiceException("Error creating email message", e));
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(new EmailServiceException("Unexpected error occurred while creating email", e));
+        }
+    }
+
+    @Override
+    public void enqueueEmail(EmailRequest emailRequest) throws EmailServiceException {
+        try {
+            this.durableEmailOutbox.add(createMimeMessage(emailRequest));
+        } catch (MessagingException | IOException e) {
+            throw new EmailServiceException("Error creating email message", e);
+        } catch (DataAccessException e) {
+            throw new EmailServiceException("Error storing email in the outbox", e);
+        } catch (Exception e) {
+            throw new EmailServiceException("Unexpected error occurred while queuing email", e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The messages are sent with {@link SmtpRelayGuard#sendEach(JavaMailSender, List)}, which connects and
+     * authenticates once, sends the messages one after the other as the rate limits allow, and reports the messages
+     * that were not sent instead of giving up on the first one.
+     */
+    @Override
+    public List<EmailResult> sendEmails(Collection<EmailRequest> emailRequests) {
+        var requests = List.copyOf(emailRequests);
+        var errors = new EmailServiceException[requests.size()];
+        var messages = new ArrayList<MimeMessage>(requests.size());
+        Map<MimeMessage, Integer> indexes = new IdentityHashMap<>();
+        for (int i = 0; i < requests.size(); i++) {
+            try {
+                var message = createMimeMessage(requests.get(i));
+                messages.add(message);
+                indexes.put(message, i);
+            } catch (MessagingException e) {
+                errors[i] = new EmailServiceException("Error creating email message", e);
+            } catch (Exception e) {
+                errors[i] = new EmailServiceException("Unexpected error occurred while creating email", e);
+            }
+        }
+        this.smtpRelayGuard.sendEach(this.mailSender, messages).forEach((message, cause) -> errors[indexes.get(message)] =
+                cause instanceof MessagingException || cause instanceof MailException
+                        ? new EmailServiceException("Error sending email", cause)
+                        : new EmailServiceException("Unexpected error occurred while sending email", cause));
+        var results = new ArrayList<EmailResult>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            results.add(EmailResult.builder()
+                    .request(requests.get(i))
+                    .error(errors[i])
+                    .build());
+        }
+        return results;
+    }
+
     String setEmailText(final EmailRequest emailRequest) {
         var request = EmailTemplateRequest.builder()
                 .template(emailRequest.template())
@@ -50,15 +146,80 @@ public class EmailServiceBean implements EmailService {
 
     MimeMessage createMimeMessage(@Valid final EmailRequest emailRequest) throws MessagingException {
         MimeMessage message = this.mailSender.createMimeMessage();
+        List<EmailAttachment> attached = new ArrayList<>();
+        List<EmailAttachment> linked = new ArrayList<>();
+        if (emailRequest.attachments() != null) {
+            for (var attachment : emailRequest.attachments()) {
+                (size(attachment) > this.emailProperties.getAttachmentMaxSize().toBytes() ? linked : attached).add(attachment);
+            }
+        }
 
-        MimeMessageHelper helper = new MimeMessageHelper(message, true);
+        MimeMessageHelper helper = new MimeMessageHelper(message, !attached.isEmpty());
         helper.setFrom(this.emailProperties.getFromAddress());
         helper.setTo(emailRequest.to().toArray(new String[0]));
+        if (emailRequest.cc() != null && !emailRequest.cc().isEmpty()) {
+            helper.setCc(emailRequest.cc().toArray(new String[0]));
+        }
+        if (emailRequest.bcc() != null && !emailRequest.bcc().isEmpty()) {
+            helper.setBcc(emailRequest.bcc().toArray(new String[0]));
+        }
         helper.setSubject(emailRequest.subject());
 
         var body = setEmailText(emailRequest);
-        helper.setText(body, true);
+        helper.setText(linked.isEmpty() ? body : withLinks(body, linked), true);
+        for (var attachment : attached) {
+            helper.getRootMimeMultipart().addBodyPart(attachmentPart(attachment));
+        }
 
         return message;
     }
+
+    /**
+     * Creates the part of an attachment. Its transfer encoding is set up front, so the file is not read to choose it
+     * when the message is saved, but only once, when the message is written.
+     */
+    private static MimeBodyPart attachmentPart(EmailAttachment attachment) throws MessagingException {
+        var part = new MimeBodyPart();
+        part.setDisposition(Part.ATTACHMENT);
+        try {
+            part.setFileName(MimeUtility.encodeText(attachment.name()));
+        } catch (UnsupportedEncodingException e) {
+            throw new MessagingException("Error encoding the name of the attachment " + attachment.name(), e);
+        }
+        part.setDataHandler(new DataHandler(new FileAttachmentDataSource(attachment)));
+        part.setHeader("Content-Transfer-Encoding", "base64");
+        return part;
+    }
+
+    private String withLinks(String body, List<EmailAttachment> attachments) throws MessagingException {
+        var links = new StringBuilder();
+        for (var attachment : attachments) {
+            var name = HtmlUtils.htmlEscape(attachment.name());
+            var link = attachment.link() != null ? attachment.link().toString()
+                    : this.emailProperties.getAttachmentLinkBaseUrl() != null
+                    ? this.emailProperties.getAttachmentLinkBaseUrl() + UriUtils.encodePathSegment(attachment.name(), StandardCharsets.UTF_8)
+                    : null;
+            links.append("<p>")
+                    .append(link != null ? "<a href=\"" + HtmlUtils.htmlEscape(link) + "\">" + name + "</a>" : name)
+                    .append(" (").append(formatSize(size(attachment))).append(")")
+                    .append(" is too large to be attached")
+                    .append(link != null ? ", it can be downloaded from the link." : ".")
+                    .append("</p>");
+        }
+        int end = body.lastIndexOf("</body>");
+        return end < 0 ? body + links : body.substring(0, end) + links + body.substring(end);
+    }
+
+    private static String formatSize(long bytes) {
+        var size = DataSize.ofBytes(bytes);
+        return size.toMegabytes() > 0 ? size.toMegabytes() + " MB" : Math.max(size.toKilobytes(), 1) + " KB";
+    }
+
+    private static long size(EmailAttachment attachment) throws MessagingException {
+        try {
+            return Files.size(attachment.path());
+        } catch (IOException e) {
+            throw new MessagingException("Error reading the attachment " + attachment.path(), e);
+        }
+    }
 }
@@ -0,0 +1,114 @@
+package com.github.acs.file.email.internal;
+
+import com.github.acs.file.email.EmailAttachment;
+import jakarta.activation.DataSource;
+import jakarta.activation.FileTypeMap;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A data source that reads an attached file every time its content is requested, so the file is streamed from disk
+ * into the message as it is written to the mail server instead of being held in memory.
+ * <p>
+ * A compressed attachment is compressed with gzip on the fly, a chunk of the file at a time as its content is read.
+ */
+class FileAttachmentDataSource implements DataSource {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final String GZIP_CONTENT_TYPE = "application/gzip";
+
+    private final EmailAttachment attachment;
+
+    FileAttachmentDataSource(EmailAttachment attachment) {
+        this.attachment = attachment;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        if (!this.attachment.compress()) {
+            return Files.newInputStream(this.attachment.path());
+        }
+        return new GzipInputStream(Files.newInputStream(this.attachment.path()));
+    }
+
+    @Override
+    public OutputStream getOutputStream() throws IOException {
+        throw new IOException("An attachment is read only");
+    }
+
+    @Override
+    public String getContentType() {
+        if (this.attachment.compress()) {
+            return GZIP_CONTENT_TYPE;
+        }
+        if (this.attachment.contentType() != null) {
+            return this.attachment.contentType();
+        }
+        return FileTypeMap.getDefaultFileTypeMap().getContentType(this.attachment.path().getFileName().toString());
+    }
+
+    @Override
+    public String getName() {
+        return this.attachment.name();
+    }
+
+    /**
+     * Compresses a stream while it is read, holding no more than the compressed form of one chunk in memory.
+     */
+    private static final class GzipInputStream extends InputStream {
+
+        private final InputStream in;
+        private final byte[] chunk = new byte[CHUNK_SIZE];
+        private final ByteArrayOutputStream compressed = new ByteArrayOutputStream(CHUNK_SIZE);
+        private final GZIPOutputStream gzip;
+        private byte[] pending = new byte[0];
+        private int position;
+        private boolean finished;
+
+        private GzipInputStream(InputStream in) throws IOException {
+            this.in = in;
+            this.gzip = new GZIPOutputStream(this.compressed, CHUNK_SIZE);
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            while (this.position == this.pending.length) {
+                if (this.finished) {
+                    return -1;
+                }
+                int read = this.in.read(this.chunk);
+                if (read < 0) {
+                    this.gzip.finish();
+                    this.finished = true;
+                } else {
+                    this.gzip.write(this.chunk, 0, read);
+                }
+                this.pending = this.compressed.toByteArray();
+                this.compressed.reset();
+                this.position = 0;
+            }
+            int count = Math.min(length, this.pending.length - this.position);
+            System.arraycopy(this.pending, this.position, buffer, offset, count);
+            this.position += count;
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.in.close();
+        }
+
+    }
+
+}
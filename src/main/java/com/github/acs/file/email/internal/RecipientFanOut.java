@@ -0,0 +1,295 @@
+package com.github.acs.file.email.internal;
+
+import com.github.acs.file.email.EmailServiceException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.Address;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends a message with many recipients as one delivery per recipient domain, so a large distribution list does not
+ * hit the throttles of the providers it is sent to.
+ * <p>
+ * Every delivery carries the same message, with the envelope limited to the recipients of one domain, and the
+ * deliveries of different domains are sent concurrently on virtual threads. Each domain has its own pool of
+ * connections to the mail server, which are reused by later messages to the domain and closed once they have been
+ * idle for the connection idle timeout. A domain is sent at most as many deliveries at once as its concurrency
+ * allows, and at most as many per second as its rate limit allows, both configurable per domain.
+ * <p>
+ * The time from the message being fanned out to a domain's delivery being accepted or rejected is recorded in the
+ * {@code email.fanout.latency} timer, and the deliveries that had to wait for the limits of their domain are counted
+ * in the {@code email.fanout.deferred} counter, both tagged with the domain. Only the first
+ * {@value #MAX_TAGGED_DOMAINS} domains are tagged by name, the others are tagged as {@code other}.
+ */
+@Slf4j
+@Component
+public class RecipientFanOut {
+
+    static final int MAX_TAGGED_DOMAINS = 100;
+    private static final String OTHER_DOMAINS = "other";
+
+    private final JavaMailSender mailSender;
+    private final EmailProperties emailProperties;
+    private final MeterRegistry registry;
+    private final SmtpRelayGuard smtpRelayGuard;
+    private final long idleTimeoutNanos;
+    private final Map<String, Domain> domains = new ConcurrentHashMap<>();
+    private final Set<String> taggedDomains = ConcurrentHashMap.newKeySet();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public RecipientFanOut(JavaMailSender mailSender, EmailProperties emailProperties, MeterRegistry registry, SmtpRelayGuard smtpRelayGuard) {
+        this.mailSender = mailSender;
+        this.emailProperties = emailProperties;
+        this.registry = registry;
+        this.smtpRelayGuard = smtpRelayGuard;
+        this.idleTimeoutNanos = emailProperties.getConnectionIdleTimeout().toNanos();
+    }
+
+    /**
+     * @param message the message to send
+     * @return whether the message has enough recipients to be fanned out per domain
+     */
+    public boolean shouldFanOut(MimeMessage message) throws MessagingException {
+        var recipients = message.getAllRecipients();
+        return recipients != null && recipients.length >= this.emailProperties.getFanOutMinRecipients()
+                && this.mailSender instanceof JavaMailSenderImpl;
+    }
+
+    /**
+     * Sends a message with one delivery per recipient domain.
+     *
+     * @param message the message to send
+     * @return a future that completes once every domain accepted its delivery, or exceptionally with an
+     * {@link EmailServiceException} if the delivery of one or more domains failed, the others being sent regardless
+     */
+    public CompletableFuture<Void> send(MimeMessage message) {
+        long startNanos = System.nanoTime();
+        byte[] content;
+        Map<String, List<Address>> recipientsByDomain;
+        try {
+            if (message.getSentDate() == null) {
+                message.setSentDate(new Date());
+            }
+            message.saveChanges();
+            var bytes = new ByteArrayOutputStream();
+            message.writeTo(bytes);
+            content = bytes.toByteArray();
+            recipientsByDomain = groupByDomain(message.getAllRecipients());
+        } catch (MessagingException | IOException e) {
+            return CompletableFuture.failedFuture(new EmailServiceException("Error creating email message", e));
+        }
+        closeIdleConnections();
+
+        List<Exception> errors = Collections.synchronizedList(new ArrayList<>());
+        var deliveries = new ArrayList<CompletableFuture<Void>>(recipientsByDomain.size());
+        recipientsByDomain.forEach((name, recipients) -> deliveries.add(CompletableFuture.runAsync(() -> {
+            try {
+                deliver(domain(name), content, recipients.toArray(new Address[0]), startNanos);
+            } catch (Exception e) {
+                errors.add(e);
+            }
+        }, this.executor)));
+        return CompletableFuture.allOf(deliveries.toArray(new CompletableFuture[0])).thenCompose(ignored -> {
+            if (errors.isEmpty()) {
+                return CompletableFuture.completedFuture(null);
+            }
+            var error = new EmailServiceException("Error sending email to " + errors.size() + " of "
+                    + recipientsByDomain.size() + " recipient domains", errors.getFirst());
+            errors.subList(1, errors.size()).forEach(error::addSuppressed);
+            return CompletableFuture.failedFuture(error);
+        });
+    }
+
+    @PreDestroy
+    public void close() {
+        this.executor.close();
+        this.domains.values().forEach(domain -> {
+            Connection connection;
+            while ((connection = domain.idle.poll()) != null) {
+                disconnect(connection.transport());
+            }
+        });
+    }
+
+    private void deliver(Domain domain, byte[] content, Address[] recipients, long startNanos) throws MessagingException, InterruptedException {
+        var sender = (JavaMailSenderImpl) this.mailSender;
+        boolean deferred = !domain.permits.tryAcquire();
+        if (deferred) {
+            domain.permits.acquire();
+        }
+        var connection = new Connection[1];
+        Exception error = null;
+        try {
+            long waitNanos = domain.reserve(System.nanoTime());
+            if (waitNanos > 0) {
+                deferred = true;
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            }
+            if (deferred) {
+                this.registry.counter("email.fanout.deferred", "domain", domain.tag).increment();
+            }
+            var message = new MimeMessage(sender.getSession(), new ByteArrayInputStream(content));
+            connection[0] = domain.idle.pollLast();
+            this.smtpRelayGuard.send(new MimeMessage[]{message}, () -> {
+                if (connection[0] == null || !connection[0].transport().isConnected()) {
+                    disconnect(connection[0] == null ? null : connection[0].transport());
+                    connection[0] = null;
+                    connection[0] = new Connection(connect(sender), 0);
+                }
+                connection[0].transport().sendMessage(message, recipients);
+            });
+        } catch (Exception e) {
+            error = e;
+            if (connection[0] != null) {
+                disconnect(connection[0].transport());
+                connection[0] = null;
+            }
+            throw e;
+        } finally {
+            if (connection[0] != null) {
+                domain.idle.offerLast(new Connection(connection[0].transport(), System.nanoTime()));
+            }
+            domain.permits.release();
+            Timer.builder("email.fanout.latency")
+                    .description("The time from fanning out an email to a recipient domain accepting or rejecting it")
+                    .tag("domain", domain.tag)
+                    .tag("outcome", error == null ? "success" : "failure")
+                    .register(this.registry)
+                    .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * @param name the name of a recipient domain
+     * @return how many deliveries to the domain are waiting for its concurrency to allow them
+     */
+    int waitingDeliveries(String name) {
+        var domain = this.domains.get(name);
+        return domain == null ? 0 : domain.permits.getQueueLength();
+    }
+
+    private Domain domain(String name) {
+        return this.domains.computeIfAbsent(name, key -> {
+            var limits = this.emailProperties.getFanOutDomainLimits().get(key);
+            int concurrency = limits != null && limits.getConcurrency() != null
+                    ? limits.getConcurrency() : this.emailProperties.getFanOutDomainConcurrency();
+            int rateLimit = limits != null && limits.getRateLimit() != null
+                    ? limits.getRateLimit() : this.emailProperties.getFanOutDomainRateLimit();
+            return new Domain(tag(key), concurrency, rateLimit);
+        });
+    }
+
+    private String tag(String domain) {
+        if (this.taggedDomains.size() < MAX_TAGGED_DOMAINS) {
+            this.taggedDomains.add(domain);
+        }
+        return this.taggedDomains.contains(domain) ? domain : OTHER_DOMAINS;
+    }
+
+    private void closeIdleConnections() {
+        long now = System.nanoTime();
+        for (var domain : this.domains.values()) {
+            Connection connection;
+            while ((connection = domain.idle.peekFirst()) != null && now - connection.releasedNanos() > this.idleTimeoutNanos) {
+                if (domain.idle.remove(connection)) {
+                    disconnect(connection.transport());
+                }
+            }
+        }
+    }
+
+    static Map<String, List<Address>> groupByDomain(Address[] recipients) {
+        var recipientsByDomain = new LinkedHashMap<String, List<Address>>();
+        if (recipients == null) {
+            return recipientsByDomain;
+        }
+        for (var recipient : recipients) {
+            var address = recipient instanceof InternetAddress internetAddress ? internetAddress.getAddress() : recipient.toString();
+            var domain = address.substring(address.lastIndexOf('@') + 1).toLowerCase(Locale.ROOT);
+            recipientsByDomain.computeIfAbsent(domain, key -> new ArrayList<>()).add(recipient);
+        }
+        return recipientsByDomain;
+    }
+
+    private static Transport connect(JavaMailSenderImpl sender) throws MessagingException {
+        var session = sender.getSession();
+        var protocol = sender.getProtocol() != null ? sender.getProtocol() : session.getProperty("mail.transport.protocol");
+        var transport = session.getTransport(protocol != null ? protocol : JavaMailSenderImpl.DEFAULT_PROTOCOL);
+        var username = StringUtils.hasLength(sender.getUsername()) ? sender.getUsername() : null;
+        var password = StringUtils.hasLength(sender.getPassword()) ? sender.getPassword() : null;
+        transport.connect(sender.getHost(), sender.getPort(), username, password);
+        return transport;
+    }
+
+    private static void disconnect(Transport transport) {
+        if (transport != null) {
+            try {
+                transport.close();
+            } catch (MessagingException e) {
+                log.debug("Could not close the connection to the mail server", e);
+            }
+        }
+    }
+
+    private record Connection(Transport transport, long releasedNanos) {
+    }
+
+    private static final class Domain {
+
+        private final String tag;
+        private final Semaphore permits;
+        private final long intervalNanos;
+        private final ConcurrentLinkedDeque<Connection> idle = new ConcurrentLinkedDeque<>();
+        private long nextSendNanos;
+
+        private Domain(String tag, int concurrency, int rateLimit) {
+            this.tag = tag;
+            this.permits = new Semaphore(concurrency);
+            this.intervalNanos = rateLimit > 0 ? TimeUnit.SECONDS.toNanos(1) / rateLimit : 0;
+        }
+
+        /**
+         * Reserves the next slot of the rate limit.
+         *
+         * @return how long to wait for the slot
+         */
+        private synchronized long reserve(long now) {
+            if (this.intervalNanos == 0) {
+                return 0;
+            }
+            long slot = Math.max(now, this.nextSendNanos);
+            this.nextSendNanos = slot + this.intervalNanos;
+            return slot - now;
+        }
+
+    }
+
+}
@@ -0,0 +1,355 @@
+package com.github.acs.file.email.internal;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.mail.Address;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+
+/**
+ * Guards the SMTP relay against being hammered by this service: every send to the relay goes through
+ * {@link #send(MimeMessage[], Send)}, which takes its permits from a global and a per-sender token bucket and fails
+ * fast while the circuit breaker is open. Batches are sent with {@link #sendEach(JavaMailSender, List)}, which sends
+ * them over a single connection and takes the permits of each message just before it is sent, so a batch is paced
+ * by the rate limits rather than refused by them.
+ * <p>
+ * The circuit breaker opens after a number of consecutive sends failed because the relay could not be reached or did
+ * not answer, fails every send for the configured open duration, and then lets a single send through to probe the
+ * relay, closing again if it succeeds. Recipients rejected by the relay are not failures of the relay. The connect
+ * and read timeouts that bound how long a failing send takes are the {@code mail.smtp.connectiontimeout},
+ * {@code mail.smtp.timeout} and {@code mail.smtp.writetimeout} mail properties.
+ * <p>
+ * The state of the breaker is exposed as the {@code email.relay.circuit.state} gauge, {@code 0} for closed, {@code 1}
+ * for half open and {@code 2} for open, and the sends that were refused are counted in the
+ * {@code email.relay.rejected} counter, tagged with the reason.
+ */
+@Slf4j
+@Component
+public class SmtpRelayGuard {
+
+    public enum State {
+        CLOSED, HALF_OPEN, OPEN
+    }
+
+    /**
+     * A send to the relay.
+     */
+    @FunctionalInterface
+    public interface Send<E extends Exception> {
+        void send() throws E;
+    }
+
+    private record Circuit(State state, int failures, long openedNanos) {
+    }
+
+    private final EmailProperties emailProperties;
+    private final MeterRegistry registry;
+    private final LongSupplier nanoTime;
+    private final AtomicReference<Circuit> circuit = new AtomicReference<>(new Circuit(State.CLOSED, 0, 0));
+    private final TokenBucket globalBucket;
+    private final Map<String, TokenBucket> senderBuckets = new ConcurrentHashMap<>();
+
+    @Autowired
+    public SmtpRelayGuard(EmailProperties emailProperties, MeterRegistry registry) {
+        this(emailProperties, registry, System::nanoTime);
+    }
+
+    SmtpRelayGuard(EmailProperties emailProperties, MeterRegistry registry, LongSupplier nanoTime) {
+        this.emailProperties = emailProperties;
+        this.registry = registry;
+        this.nanoTime = nanoTime;
+        this.globalBucket = emailProperties.getSendRateLimit() > 0
+                ? new TokenBucket(emailProperties.getSendRateLimit(), emailProperties.getSendRateLimitBurst(), nanoTime.getAsLong())
+                : null;
+        Gauge.builder("email.relay.circuit.state", this, guard -> guard.getState().ordinal())
+                .description("The state of the circuit breaker of the SMTP relay: 0 closed, 1 half open, 2 open")
+                .register(registry);
+    }
+
+    /**
+     * @return the current state of the circuit breaker
+     */
+    public State getState() {
+        var current = this.circuit.get();
+        if (current.state() == State.OPEN && this.nanoTime.getAsLong() - current.openedNanos() >= openNanos()) {
+            return State.HALF_OPEN;
+        }
+        return current.state();
+    }
+
+    /**
+     * @return the number of consecutive sends that failed because of the relay
+     */
+    public int getFailures() {
+        return this.circuit.get().failures();
+    }
+
+    /**
+     * Sends messages to the relay once the rate limits allow it and if the circuit breaker is not open, and records
+     * the outcome in the circuit breaker.
+     *
+     * @param messages the messages that are sent
+     * @param send the send to the relay
+     * @throws SmtpRelayUnavailableException if the circuit breaker is open, or the rate limits do not allow the
+     * messages to be sent within the configured timeout
+     * @throws E if the send fails
+     */
+    public <E extends Exception> void send(MimeMessage[] messages, Send<E> send) throws E {
+        boolean probe = enter();
+        try {
+            acquire(messages);
+        } catch (RuntimeException e) {
+            if (probe) {
+                this.circuit.set(new Circuit(State.OPEN, this.circuit.get().failures(), this.nanoTime.getAsLong() - openNanos()));
+            }
+            throw e;
+        }
+        try {
+            send.send();
+        } catch (Exception e) {
+            if (isRelayFailure(e)) {
+                recordFailure(e);
+            } else {
+                recordSuccess();
+            }
+            throw e;
+        }
+        recordSuccess();
+    }
+
+    /**
+     * Checks that the circuit breaker lets a send through.
+     *
+     * @return whether the send is the probe of a half open circuit breaker
+     */
+    private boolean enter() {
+        while (true) {
+            var current = this.circuit.get();
+            if (current.state() == State.CLOSED) {
+                return false;
+            }
+            long now = this.nanoTime.getAsLong();
+            if (current.state() == State.HALF_OPEN || now - current.openedNanos() < openNanos()) {
+                throw reject("circuit_open", "The SMTP relay is unavailable, sending is suspended after "
+                        + current.failures() + " consecutive failures");
+            }
+            if (this.circuit.compareAndSet(current, new Circuit(State.HALF_OPEN, current.failures(), current.openedNanos()))) {
+                log.info("Probing the SMTP relay after {} consecutive failures", current.failures());
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Sends messages one after the other over a single connection to the relay, each through
+     * {@link #send(MimeMessage[], Send)}, so the connection is opened and authenticated once for the whole batch while
+     * every message waits for its own permits. A message the relay failed to take closes the connection, and the next
+     * message is sent over a new one. If the mail sender is not a {@link JavaMailSenderImpl}, which exposes the
+     * settings to connect with, each message is handed to the mail sender on its own.
+     *
+     * @param mailSender the mail sender the messages are sent with
+     * @param messages the messages to send
+     * @return the error of every message that was not sent
+     */
+    public Map<MimeMessage, Exception> sendEach(JavaMailSender mailSender, List<MimeMessage> messages) {
+        Map<MimeMessage, Exception> errors = new IdentityHashMap<>();
+        var connection = new Transport[1];
+        try {
+            for (var message : messages) {
+                try {
+                    if (mailSender instanceof JavaMailSenderImpl sender) {
+                        sendOverTransport(sender, message, connection);
+                    } else {
+                        send(new MimeMessage[]{message}, () -> mailSender.send(message));
+                    }
+                } catch (MailSendException e) {
+                    var cause = e.getFailedMessages().get(message);
+                    errors.put(message, cause != null ? cause : e);
+                } catch (Exception e) {
+                    errors.put(message, e);
+                }
+            }
+        } finally {
+            disconnect(connection[0]);
+        }
+        return errors;
+    }
+
+    private void sendOverTransport(JavaMailSenderImpl sender, MimeMessage message, Transport[] connection) throws MessagingException {
+        if (message.getSentDate() == null) {
+            message.setSentDate(new Date());
+        }
+        message.saveChanges();
+        try {
+            send(new MimeMessage[]{message}, () -> {
+                if (connection[0] == null || !connection[0].isConnected()) {
+                    disconnect(connection[0]);
+                    connection[0] = null;
+                    connection[0] = connect(sender);
+                }
+                connection[0].sendMessage(message, message.getAllRecipients());
+            });
+        } catch (MessagingException e) {
+            if (!(e instanceof SendFailedException)) {
+                disconnect(connection[0]);
+                connection[0] = null;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Takes the permits of the messages from every bucket, and waits until they can be used. If a bucket refuses, the
+     * permits already taken from the other buckets are put back, as the messages are not sent.
+     */
+    private void acquire(MimeMessage[] messages) {
+        long now = this.nanoTime.getAsLong();
+        long maxWaitNanos = this.emailProperties.getSendRateLimitTimeout().toNanos();
+        var reserved = new HashMap<TokenBucket, Integer>();
+        long waitNanos = 0;
+        try {
+            if (this.globalBucket != null) {
+                waitNanos = reserve(this.globalBucket, messages.length, now, maxWaitNanos);
+                reserved.put(this.globalBucket, messages.length);
+            }
+            int senderRateLimit = this.emailProperties.getSenderRateLimit();
+            if (senderRateLimit > 0) {
+                for (var entry : countBySender(messages).entrySet()) {
+                    var bucket = this.senderBuckets.computeIfAbsent(entry.getKey(), sender ->
+                            new TokenBucket(senderRateLimit, this.emailProperties.getSendRateLimitBurst(), now));
+                    waitNanos = Math.max(waitNanos, reserve(bucket, entry.getValue(), now, maxWaitNanos));
+                    reserved.put(bucket, entry.getValue());
+                }
+            }
+            if (waitNanos > 0) {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            }
+        } catch (SmtpRelayUnavailableException e) {
+            reserved.forEach(TokenBucket::release);
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            reserved.forEach(TokenBucket::release);
+            throw new SmtpRelayUnavailableException("Interrupted while waiting for the rate limit of the SMTP relay");
+        }
+    }
+
+    private long reserve(TokenBucket bucket, int permits, long now, long maxWaitNanos) {
+        long waitNanos = bucket.reserve(permits, now, maxWaitNanos);
+        if (waitNanos < 0) {
+            throw reject("rate_limited", "The rate limit of the SMTP relay does not allow sending "
+                    + permits + " emails within " + this.emailProperties.getSendRateLimitTimeout());
+        }
+        return waitNanos;
+    }
+
+    private void recordSuccess() {
+        var current = this.circuit.get();
+        if (current.state() != State.CLOSED || current.failures() > 0) {
+            if (current.state() != State.CLOSED) {
+                log.info("The SMTP relay is available again");
+            }
+            this.circuit.set(new Circuit(State.CLOSED, 0, 0));
+        }
+    }
+
+    private void recordFailure(Exception error) {
+        while (true) {
+            var current = this.circuit.get();
+            int failures = current.failures() + 1;
+            boolean open = current.state() == State.HALF_OPEN
+                    || failures >= this.emailProperties.getCircuitBreakerFailureThreshold();
+            var next = open
+                    ? new Circuit(State.OPEN, failures, this.nanoTime.getAsLong())
+                    : new Circuit(current.state(), failures, current.openedNanos());
+            if (this.circuit.compareAndSet(current, next)) {
+                if (open && current.state() != State.OPEN) {
+                    log.warn("Suspending sending to the SMTP relay for {} after {} consecutive failures",
+                            this.emailProperties.getCircuitBreakerOpenDuration(), failures, error);
+                    this.registry.counter("email.relay.circuit.opened").increment();
+                }
+                return;
+            }
+        }
+    }
+
+    private SmtpRelayUnavailableException reject(String reason, String message) {
+        this.registry.counter("email.relay.rejected", "reason", reason).increment();
+        return new SmtpRelayUnavailableException(message);
+    }
+
+    private long openNanos() {
+        return this.emailProperties.getCircuitBreakerOpenDuration().toNanos();
+    }
+
+    /**
+     * Tells the failures of the relay apart from the recipients or messages the relay rejected, which show that it
+     * is working.
+     */
+    static boolean isRelayFailure(Throwable error) {
+        if (error instanceof SendFailedException) {
+            return false;
+        }
+        if (error instanceof MailSendException e && !e.getFailedMessages().isEmpty()) {
+            return !e.getFailedMessages().values().stream().allMatch(SendFailedException.class::isInstance);
+        }
+        return true;
+    }
+
+    private static Transport connect(JavaMailSenderImpl sender) throws MessagingException {
+        var session = sender.getSession();
+        var protocol = sender.getProtocol() != null ? sender.getProtocol() : session.getProperty("mail.transport.protocol");
+        var transport = session.getTransport(protocol != null ? protocol : JavaMailSenderImpl.DEFAULT_PROTOCOL);
+        var username = StringUtils.hasLength(sender.getUsername()) ? sender.getUsername() : null;
+        var password = StringUtils.hasLength(sender.getPassword()) ? sender.getPassword() : null;
+        transport.connect(sender.getHost(), sender.getPort(), username, password);
+        return transport;
+    }
+
+    private static void disconnect(Transport transport) {
+        if (transport != null) {
+            try {
+                transport.close();
+            } catch (MessagingException e) {
+                log.debug("Could not close the connection to the mail server", e);
+            }
+        }
+    }
+
+    private static Map<String, Integer> countBySender(MimeMessage[] messages) {
+        var counts = new HashMap<String, Integer>();
+        for (var message : messages) {
+            counts.merge(sender(message), 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    private static String sender(MimeMessage message) {
+        try {
+            Address[] from = message.getFrom();
+            return from == null || from.length == 0 ? "" : from[0].toString();
+        } catch (MessagingException e) {
+            return "";
+        }
+    }
+
+}
@@ -0,0 +1,33 @@
+package com.github.acs.file.email.internal;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reports the state of the circuit breaker of the SMTP relay: down while it is open, unknown while it is probing the
+ * relay, and up otherwise.
+ */
+@Component
+@RequiredArgsConstructor
+public class SmtpRelayHealthIndicator implements HealthIndicator {
+
+    private final SmtpRelayGuard smtpRelayGuard;
+
+    @Override
+    public Health health() {
+        var state = this.smtpRelayGuard.getState();
+        var health = switch (state) {
+            case CLOSED -> Health.up();
+            case HALF_OPEN -> Health.status(Status.UNKNOWN);
+            case OPEN -> Health.down();
+        };
+        return health
+                .withDetail("state", state)
+                .withDetail("consecutiveFailures", this.smtpRelayGuard.getFailures())
+                .build();
+    }
+
+}
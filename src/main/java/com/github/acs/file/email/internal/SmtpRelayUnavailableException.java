@@ -0,0 +1,15 @@
+package com.github.acs.file.email.internal;
+
+import org.springframework.mail.MailSendException;
+
+/**
+ * Thrown when an email is not sent to the SMTP relay because its circuit breaker is open or its rate limit does not
+ * allow it, so it fails like any other send the relay could not take.
+ */
+public class SmtpRelayUnavailableException extends MailSendException {
+
+    public SmtpRelayUnavailableException(String message) {
+        super(message);
+    }
+
+}
@@ -0,0 +1,63 @@
+package com.github.acs.file.email.internal;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A lock-free token bucket, implemented as the generic cell rate algorithm: instead of a number of tokens, the bucket
+ * keeps the time at which it will be full again, which is advanced by the emission interval for every permit taken,
+ * so taking permits is a single compare-and-set.
+ * <p>
+ * Permits are reserved rather than refused: a caller is told how long to wait for the permits it took, unless it would
+ * have to wait longer than it is willing to, in which case nothing is taken.
+ */
+final class TokenBucket {
+
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final AtomicLong fullAtNanos;
+
+    /**
+     * @param ratePerSecond the number of permits added to the bucket per second
+     * @param burst the number of permits the bucket holds when full
+     * @param nowNanos the current time, at which the bucket is full
+     */
+    TokenBucket(int ratePerSecond, int burst, long nowNanos) {
+        this.intervalNanos = TimeUnit.SECONDS.toNanos(1) / ratePerSecond;
+        this.burstNanos = this.intervalNanos * burst;
+        this.fullAtNanos = new AtomicLong(nowNanos);
+    }
+
+    /**
+     * Takes permits from the bucket, if they are available within the given time.
+     *
+     * @param permits the number of permits to take
+     * @param nowNanos the current time
+     * @param maxWaitNanos the longest the caller is willing to wait for the permits
+     * @return how long the caller has to wait before using the permits, or {@code -1} if it would have to wait longer
+     * than it is willing to and no permit was taken
+     */
+    long reserve(int permits, long nowNanos, long maxWaitNanos) {
+        while (true) {
+            long fullAt = this.fullAtNanos.get();
+            long next = Math.max(fullAt, nowNanos) + permits * this.intervalNanos;
+            long waitNanos = next - nowNanos - this.burstNanos;
+            if (waitNanos > maxWaitNanos) {
+                return -1;
+            }
+            if (this.fullAtNanos.compareAndSet(fullAt, next)) {
+                return Math.max(waitNanos, 0);
+            }
+        }
+    }
+
+    /**
+     * Puts back permits that were reserved but are not used after all.
+     *
+     * @param permits the number of permits to put back
+     */
+    void release(int permits) {
+        this.fullAtNanos.addAndGet(-permits * this.intervalNanos);
+    }
+
+}
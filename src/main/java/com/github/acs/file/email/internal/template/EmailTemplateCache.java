@@ -0,0 +1,210 @@
+package com.github.acs.file.email.internal.template;
+
+import com.github.acs.file.email.internal.EmailProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.thymeleaf.ThymeleafProperties;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Component;
+import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.context.Context;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Installs the {@link EmailTemplateCacheManager} in the template engine, parses every template at startup so the
+ * first email after a deploy does not pay for it, and optionally reloads templates when they change on disk.
+ * <p>
+ * The templates are found under the Thymeleaf prefix with the Thymeleaf suffix. A template is parsed by processing
+ * it without variables, which puts its parsed form in the cache even if it cannot be rendered without them.
+ * <p>
+ * The reload directory must be the directory the Thymeleaf prefix resolves to, and is watched with every directory
+ * under it, including the directories created after startup.
+ */
+@Slf4j
+@Component
+public class EmailTemplateCache {
+
+    private final TemplateEngine templateEngine;
+    private final String prefix;
+    private final String suffix;
+    private final EmailProperties emailProperties;
+    private final MeterRegistry registry;
+    private final Map<WatchKey, Path> directories = new ConcurrentHashMap<>();
+    private WatchService watchService;
+    private Thread watcher;
+
+    public EmailTemplateCache(TemplateEngine templateEngine, EmailTemplateProcessor templateProcessor, ThymeleafProperties thymeleafProperties, EmailProperties emailProperties, MeterRegistry registry) {
+        this.templateEngine = templateEngine;
+        this.prefix = thymeleafProperties.getPrefix();
+        this.suffix = thymeleafProperties.getSuffix();
+        this.emailProperties = emailProperties;
+        this.registry = registry;
+        if (templateEngine.isInitialized()) {
+            log.warn("The template engine is already initialized, email templates are cached by its default cache manager");
+        } else {
+            templateEngine.setCacheManager(new EmailTemplateCacheManager(emailProperties.getTemplateCacheSize(), templateProcessor.getRenderCache(), registry));
+        }
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (this.emailProperties.isTemplateWarmUp()) {
+            var templateNames = findTemplateNames();
+            templateNames.forEach(this::parse);
+            log.info("Parsed {} email templates", templateNames.size());
+        }
+        var directory = this.emailProperties.getTemplateReloadDirectory();
+        if (directory != null) {
+            var root = checkReloadDirectory(directory);
+            this.watchService = FileSystems.getDefault().newWatchService();
+            register(root);
+            this.watcher = Thread.ofVirtual().name("email-template-watcher").start(() -> watch(root));
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException, InterruptedException {
+        if (this.watchService != null) {
+            this.watchService.close();
+            this.watcher.join();
+        }
+    }
+
+    /**
+     * @return the names of the templates under the Thymeleaf prefix, relative to it and without the suffix
+     */
+    List<String> findTemplateNames() throws IOException {
+        var path = this.prefix.substring(this.prefix.indexOf(':') + 1);
+        var scheme = this.prefix.startsWith("classpath:") ? "classpath*:" : this.prefix.substring(0, this.prefix.length() - path.length());
+        var root = path.startsWith("/") ? path : "/" + path;
+        var names = new ArrayList<String>();
+        for (var resource : new PathMatchingResourcePatternResolver().getResources(scheme + path + "**/*" + this.suffix)) {
+            var url = resource.getURL().toString();
+            int start = url.lastIndexOf(root);
+            if (start >= 0) {
+                var name = url.substring(start + root.length(), url.length() - this.suffix.length());
+                if (!names.contains(name)) {
+                    names.add(name);
+                }
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Evicts a template, and the bodies rendered with it, from the cache and parses it again.
+     *
+     * @param templateName the name of the template
+     */
+    public void reload(String templateName) {
+        this.templateEngine.clearTemplateCacheFor(templateName);
+        parse(templateName);
+        this.registry.counter("email.template.reloads").increment();
+        log.info("Reloaded email template {}", templateName);
+    }
+
+    private void parse(String templateName) {
+        try {
+            this.templateEngine.process(templateName, new Context(), Writer.nullWriter());
+        } catch (RuntimeException e) {
+            log.debug("Email template {} was parsed but could not be rendered without variables", templateName, e);
+        }
+    }
+
+    /**
+     * Checks that the reload directory is the directory the templates are resolved from, as a reloaded template is
+     * parsed again through the template resolver, which would otherwise read an unchanged copy of it.
+     *
+     * @return the real path of the reload directory
+     * @throws IllegalStateException if the templates are not resolved from the reload directory
+     */
+    private Path checkReloadDirectory(Path directory) throws IOException {
+        var root = directory.toRealPath();
+        Path templates;
+        try {
+            templates = new DefaultResourceLoader().getResource(this.prefix).getFile().toPath().toRealPath();
+        } catch (IOException e) {
+            templates = null;
+        }
+        if (!root.equals(templates)) {
+            throw new IllegalStateException("The email template reload directory " + directory + " is not the directory the templates are resolved from with the prefix "
+                    + this.prefix + ", use a file: prefix pointing to it");
+        }
+        return root;
+    }
+
+    /**
+     * Watches a directory and every directory under it.
+     */
+    private void register(Path directory) throws IOException {
+        try (var directories = Files.walk(directory)) {
+            for (var path : directories.filter(Files::isDirectory).toList()) {
+                this.directories.put(path.register(this.watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY), path);
+            }
+        }
+    }
+
+    private void watch(Path root) {
+        try {
+            while (true) {
+                var key = this.watchService.take();
+                var directory = this.directories.get(key);
+                for (var event : key.pollEvents()) {
+                    if (directory != null && event.context() instanceof Path name) {
+                        changed(root, directory.resolve(name), event.kind() == StandardWatchEventKinds.ENTRY_CREATE);
+                    }
+                }
+                if (!key.reset()) {
+                    this.directories.remove(key);
+                    if (this.directories.isEmpty()) {
+                        log.warn("Stopped watching the email template directory {}", root);
+                        return;
+                    }
+                }
+            }
+        } catch (ClosedWatchServiceException e) {
+            log.debug("Stopped watching the email template directory {}", root);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Reloads a changed template, or starts watching a new directory and reloads the templates already in it.
+     */
+    private void changed(Path root, Path path, boolean created) {
+        if (Files.isDirectory(path)) {
+            if (!created) {
+                return;
+            }
+            try {
+                register(path);
+                try (var files = Files.walk(path)) {
+                    files.filter(Files::isRegularFile).forEach(file -> changed(root, file, true));
+                }
+            } catch (IOException e) {
+                log.warn("Could not watch the email template directory {}", path, e);
+            }
+        } else if (path.getFileName().toString().endsWith(this.suffix)) {
+            var name = root.relativize(path).toString().replace(path.getFileSystem().getSeparator(), "/");
+            reload(name.substring(0, name.length() - this.suffix.length()));
+        }
+    }
+
+}
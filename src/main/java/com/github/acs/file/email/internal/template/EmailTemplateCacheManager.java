@@ -0,0 +1,186 @@
+package com.github.acs.file.email.internal.template;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.thymeleaf.cache.AbstractCacheManager;
+import org.thymeleaf.cache.ExpressionCacheKey;
+import org.thymeleaf.cache.ICache;
+import org.thymeleaf.cache.ICacheEntryValidityChecker;
+import org.thymeleaf.cache.StandardCache;
+import org.thymeleaf.cache.StandardCacheManager;
+import org.thymeleaf.cache.TemplateCacheKey;
+import org.thymeleaf.engine.TemplateModel;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cache manager of the template engine of the email module, which keeps the parsed templates in a size-bounded
+ * cache that evicts the least recently used template first.
+ * <p>
+ * The template cache counts its hits, misses and evictions in the {@code email.template.cache.*} counters, and
+ * records the time from a miss to the parsed template being put in the cache, which is the time spent resolving and
+ * parsing the template, in the {@code email.template.parse} timer. The engine parses a template on the thread that
+ * missed it, so only the last miss of every thread is kept, and the miss of a template that is never put, because it
+ * is not cacheable or could not be resolved, is dropped by the next access of its thread. Expressions are cached in the standard
+ * Thymeleaf cache.
+ * <p>
+ * When a template leaves the cache, because it was reloaded, found invalid or evicted, the bodies rendered with it
+ * are evicted from the {@link RenderCache} too, so a reloaded template is never served from a body rendered with
+ * its previous version.
+ */
+public class EmailTemplateCacheManager extends AbstractCacheManager {
+
+    private final int maxSize;
+    private final RenderCache renderCache;
+    private final MeterRegistry registry;
+
+    /**
+     * @param maxSize the maximum number of parsed templates
+     * @param renderCache the cache of the bodies rendered with the templates, or {@code null} if bodies are not cached
+     * @param registry the registry of the template cache meters
+     */
+    public EmailTemplateCacheManager(int maxSize, RenderCache renderCache, MeterRegistry registry) {
+        this.maxSize = maxSize;
+        this.renderCache = renderCache;
+        this.registry = registry;
+    }
+
+    @Override
+    protected ICache<TemplateCacheKey, TemplateModel> initializeTemplateCache() {
+        return new TemplateCache(this.maxSize, this.renderCache, this.registry);
+    }
+
+    @Override
+    protected ICache<ExpressionCacheKey, Object> initializeExpressionCache() {
+        return new StandardCache<>(
+                StandardCacheManager.DEFAULT_EXPRESSION_CACHE_NAME,
+                StandardCacheManager.DEFAULT_EXPRESSION_CACHE_USE_SOFT_REFERENCES,
+                StandardCacheManager.DEFAULT_EXPRESSION_CACHE_INITIAL_SIZE,
+                StandardCacheManager.DEFAULT_EXPRESSION_CACHE_MAX_SIZE,
+                StandardCacheManager.DEFAULT_EXPRESSION_CACHE_VALIDITY_CHECKER,
+                null,
+                StandardCacheManager.DEFAULT_EXPRESSION_CACHE_ENABLE_COUNTERS);
+    }
+
+    static final class TemplateCache implements ICache<TemplateCacheKey, TemplateModel> {
+
+        private final Map<TemplateCacheKey, Entry> templates;
+        private final ThreadLocal<Miss> lastMiss = new ThreadLocal<>();
+        private final RenderCache renderCache;
+        private final Counter hits;
+        private final Counter misses;
+        private final Counter evictions;
+        private final Timer parseTimer;
+
+        private record Entry(TemplateModel template, long createdMillis) {
+        }
+
+        private record Miss(TemplateCacheKey key, long nanos) {
+        }
+
+        TemplateCache(int maxSize, RenderCache renderCache, MeterRegistry registry) {
+            this.renderCache = renderCache;
+            this.hits = registry.counter("email.template.cache.hits");
+            this.misses = registry.counter("email.template.cache.misses");
+            this.evictions = registry.counter("email.template.cache.evictions");
+            this.parseTimer = Timer.builder("email.template.parse")
+                    .description("The time spent resolving and parsing a template that was not cached")
+                    .register(registry);
+            this.templates = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<TemplateCacheKey, Entry> eldest) {
+                    if (size() > maxSize) {
+                        TemplateCache.this.evictions.increment();
+                        evictRendered(eldest.getKey());
+                        return true;
+                    }
+                    return false;
+                }
+            };
+            Gauge.builder("email.template.cache.size", this, TemplateCache::size).register(registry);
+        }
+
+        @Override
+        public void put(TemplateCacheKey key, TemplateModel value) {
+            synchronized (this.templates) {
+                this.templates.put(key, new Entry(value, System.currentTimeMillis()));
+            }
+            var missed = this.lastMiss.get();
+            if (missed != null && missed.key().equals(key)) {
+                this.lastMiss.remove();
+                this.parseTimer.record(System.nanoTime() - missed.nanos(), TimeUnit.NANOSECONDS);
+            }
+        }
+
+        @Override
+        public TemplateModel get(TemplateCacheKey key) {
+            return get(key, null);
+        }
+
+        @Override
+        public TemplateModel get(TemplateCacheKey key, ICacheEntryValidityChecker<? super TemplateCacheKey, ? super TemplateModel> validityChecker) {
+            TemplateModel template = null;
+            synchronized (this.templates) {
+                var entry = this.templates.get(key);
+                if (entry != null && validityChecker != null && !validityChecker.checkIsValueStillValid(key, entry.template(), entry.createdMillis())) {
+                    this.templates.remove(key);
+                    evictRendered(key);
+                } else if (entry != null) {
+                    template = entry.template();
+                }
+            }
+            if (template == null) {
+                this.misses.increment();
+                this.lastMiss.set(new Miss(key, System.nanoTime()));
+            } else {
+                this.hits.increment();
+                this.lastMiss.remove();
+            }
+            return template;
+        }
+
+        @Override
+        public void clear() {
+            synchronized (this.templates) {
+                this.templates.clear();
+            }
+            if (this.renderCache != null) {
+                this.renderCache.clear();
+            }
+        }
+
+        @Override
+        public void clearKey(TemplateCacheKey key) {
+            synchronized (this.templates) {
+                this.templates.remove(key);
+            }
+            evictRendered(key);
+        }
+
+        @Override
+        public Set<TemplateCacheKey> keySet() {
+            synchronized (this.templates) {
+                return Set.copyOf(this.templates.keySet());
+            }
+        }
+
+        private void evictRendered(TemplateCacheKey key) {
+            if (this.renderCache != null) {
+                this.renderCache.evict(key.getTemplate());
+            }
+        }
+
+        int size() {
+            synchronized (this.templates) {
+                return this.templates.size();
+            }
+        }
+
+    }
+
+}
@@ -1,28 +1,47 @@
 package com.github.acs.file.email.internal.template;
 
+import com.github.acs.file.email.internal.EmailProperties;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.validation.Valid;
-import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 import org.springframework.validation.annotation.Validated;
 import org.thymeleaf.TemplateEngine;
 import org.thymeleaf.context.Context;
 
+import java.util.Map;
+
 @Component
-@RequiredArgsConstructor
 @Validated
 public class EmailTemplateProcessor {
 
     private final TemplateEngine templateEngine;
+    private final RenderCache renderCache;
+
+    public EmailTemplateProcessor(TemplateEngine templateEngine, EmailProperties emailProperties, MeterRegistry registry) {
+        this.templateEngine = templateEngine;
+        this.renderCache = emailProperties.isRenderCacheEnabled()
+                ? new RenderCache(emailProperties.getRenderCacheTtl(), emailProperties.getRenderCacheMaxWeight().toBytes(), registry)
+                : null;
+    }
 
     public String setEmailText(@Valid final EmailTemplateRequest templateRequest) {
         String body = templateRequest.body();
         if (body == null || body.isEmpty()) {
             try {
-                var context = new Context();
-                if (templateRequest.template().templateVariables() != null && !templateRequest.template().templateVariables().getVariables().isEmpty()) {
-                    context.setVariables(templateRequest.template().templateVariables().getVariables());
+                var templateName = templateRequest.template().templateName().trim();
+                var templateVariables = templateRequest.template().templateVariables();
+                Map<String, Object> variables = templateVariables == null ? Map.of() : templateVariables.getVariables();
+                body = this.renderCache == null ? null : this.renderCache.get(templateName, variables);
+                if (body == null) {
+                    var context = new Context();
+                    if (!variables.isEmpty()) {
+                        context.setVariables(variables);
+                    }
+                    body = this.templateEngine.process(templateName, context);
+                    if (this.renderCache != null) {
+                        this.renderCache.put(templateName, variables, body);
+                    }
                 }
-                body = this.templateEngine.process(templateRequest.template().templateName().trim(), context);
             }catch (Exception e) {
                 throw new EmailTemplateException("Error processing email template", e);
             }
@@ -30,4 +49,11 @@ public class EmailTemplateProcessor {
         return body;
     }
 
+    /**
+     * @return the cache of rendered bodies, or {@code null} if bodies are not cached
+     */
+    RenderCache getRenderCache() {
+        return this.renderCache;
+    }
+
 }
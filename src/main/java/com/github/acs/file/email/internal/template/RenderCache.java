@@ -0,0 +1,158 @@
+package com.github.acs.file.email.internal.template;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * A cache of rendered email bodies, keyed by the template name and the variables the template was rendered with, so
+ * a template rendered with the same variables for many recipients is rendered once and its body shared.
+ * <p>
+ * Entries expire a fixed time after they were rendered, and the least recently used entries are evicted once the
+ * bodies in the cache weigh more than the maximum weight, counting two bytes per character. The variables are part
+ * of the key, so they are compared with {@code equals} on a hit, and should not be mutated after rendering.
+ * <p>
+ * Hits, misses and the bytes that were not rendered again are counted in the {@code email.render.cache.*} meters.
+ */
+public class RenderCache {
+
+    private final long ttlNanos;
+    private final long maxWeight;
+    private final LongSupplier nanoTime;
+    private final Map<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter bytesSaved;
+    private long weight;
+
+    public RenderCache(Duration ttl, long maxWeight, MeterRegistry registry) {
+        this(ttl, maxWeight, registry, System::nanoTime);
+    }
+
+    RenderCache(Duration ttl, long maxWeight, MeterRegistry registry, LongSupplier nanoTime) {
+        this.ttlNanos = ttl.toNanos();
+        this.maxWeight = maxWeight;
+        this.nanoTime = nanoTime;
+        this.hits = registry.counter("email.render.cache.hits");
+        this.misses = registry.counter("email.render.cache.misses");
+        this.bytesSaved = Counter.builder("email.render.cache.bytes.saved")
+                .baseUnit("bytes")
+                .description("The size of the bodies that were served from the cache instead of being rendered")
+                .register(registry);
+        Gauge.builder("email.render.cache.weight", this, RenderCache::getWeight).baseUnit("bytes").register(registry);
+        Gauge.builder("email.render.cache.hit.ratio", this, RenderCache::hitRatio).register(registry);
+    }
+
+    private record Key(String templateName, Map<String, Object> variables) {
+    }
+
+    private record Entry(String body, long renderedNanos) {
+    }
+
+    /**
+     * @param templateName the name of the template
+     * @param variables the variables the template is rendered with
+     * @return the body rendered with the same template and variables, if it is still cached
+     */
+    public String get(String templateName, Map<String, Object> variables) {
+        var key = new Key(templateName, variables);
+        String body = null;
+        synchronized (this.entries) {
+            var entry = this.entries.get(key);
+            if (entry != null && this.nanoTime.getAsLong() - entry.renderedNanos() > this.ttlNanos) {
+                remove(key);
+            } else if (entry != null) {
+                body = entry.body();
+            }
+        }
+        if (body == null) {
+            this.misses.increment();
+        } else {
+            this.hits.increment();
+            this.bytesSaved.increment(weigh(body));
+        }
+        return body;
+    }
+
+    /**
+     * Caches a rendered body, unless it weighs more than the whole cache may.
+     *
+     * @param templateName the name of the template
+     * @param variables the variables the template was rendered with
+     * @param body the rendered body
+     */
+    public void put(String templateName, Map<String, Object> variables, String body) {
+        long bodyWeight = weigh(body);
+        if (bodyWeight > this.maxWeight) {
+            return;
+        }
+        var key = new Key(templateName, new HashMap<>(variables));
+        synchronized (this.entries) {
+            remove(key);
+            this.entries.put(key, new Entry(body, this.nanoTime.getAsLong()));
+            this.weight += bodyWeight;
+            var iterator = this.entries.entrySet().iterator();
+            while (this.weight > this.maxWeight && iterator.hasNext()) {
+                this.weight -= weigh(iterator.next().getValue().body());
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Evicts the bodies rendered with a template, which are stale once the template changed.
+     *
+     * @param templateName the name of the template
+     */
+    public void evict(String templateName) {
+        synchronized (this.entries) {
+            var iterator = this.entries.entrySet().iterator();
+            while (iterator.hasNext()) {
+                var entry = iterator.next();
+                if (entry.getKey().templateName().equals(templateName)) {
+                    this.weight -= weigh(entry.getValue().body());
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Evicts every body.
+     */
+    public void clear() {
+        synchronized (this.entries) {
+            this.entries.clear();
+            this.weight = 0;
+        }
+    }
+
+    public long getWeight() {
+        synchronized (this.entries) {
+            return this.weight;
+        }
+    }
+
+    private double hitRatio() {
+        double total = this.hits.count() + this.misses.count();
+        return total == 0 ? 0 : this.hits.count() / total;
+    }
+
+    private void remove(Key key) {
+        var entry = this.entries.remove(key);
+        if (entry != null) {
+            this.weight -= weigh(entry.body());
+        }
+    }
+
+    private static long weigh(String body) {
+        return 2L * body.length();
+    }
+
+}
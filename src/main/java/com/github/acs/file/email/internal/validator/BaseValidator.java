@@ -5,74 +5,64 @@ import jakarta.validation.ConstraintValidatorContext;
 
 import java.lang.annotation.Annotation;
 import java.util.Collection;
-import java.util.LinkedHashSet;
 import java.util.Map;
-import java.util.SequencedSet;
 
-public abstract class BaseValidator<A extends Annotation, T> implements ConstraintValidator<A, T> {
+/**
+ * The base of the stateless validators of the email module.
+ * <p>
+ * The validator instances are shared between threads by the validation provider, so a validator keeps no state
+ * between calls: {@link #validate(Object)} returns the rules the entity violates as a bit mask of the ordinals of
+ * the validator's {@link Violation} enum, and the messages of those rules are only formatted and reported when the
+ * mask is not empty. Validating a valid entity therefore reports nothing and formats no message.
+ *
+ * @param <A> the constraint annotation
+ * @param <T> the type of the validated entity
+ * @param <V> the enum of the rules the validator checks, which may have at most 32 constants
+ */
+public abstract class BaseValidator<A extends Annotation, T, V extends Enum<V> & Violation> implements ConstraintValidator<A, T> {
 
     protected static final String DEFAULT_REQUIRED_FIELD_MESSAGE = "The '%s' field is required";
     /**
-     * A set to store validation violation messages.
+     * The rules the validator checks, in the order their violations are reported.
      */
-    private final SequencedSet<String> violations;
+    private final V[] violations;
 
-    protected BaseValidator() {
-        this.violations = new LinkedHashSet<>();
-    }
-
-    protected abstract void validate(T validationEntity);
-
-    @Override
-    public final void initialize(A constraintAnnotation) {
-        this.violations.clear();
-    }
-
-    @Override
-    public final boolean isValid(T validationEntity, ConstraintValidatorContext context) {
-        this.validate(validationEntity);
-        return this.evaluateViolations(context);
-    }
-
-    /**
-     * Adds a violation message to the list of violations.
-     *
-     * @param message the violation message to add
-     */
-    protected final void addViolationMessage(String message) {
-        this.violations.add(message);
+    protected BaseValidator(Class<V> violationType) {
+        this.violations = violationType.getEnumConstants();
+        if (this.violations.length > Integer.SIZE) {
+            throw new IllegalArgumentException("A validator can check at most " + Integer.SIZE + " rules");
+        }
     }
 
     /**
-     * Adds a formatted violation message to the list of violations.
+     * Checks the given entity against the rules of the validator.
      *
-     * @param template the message template
-     * @param args the arguments to format the template
+     * @param validationEntity the entity to validate
+     * @return the rules the entity violates, combined with {@link #violation(Enum)}, or {@code 0} if it is valid
      */
-    @SuppressWarnings("SameParameterValue")
-    protected final void addViolationMessage(String template, Object... args) {
-        this.addViolationMessage(String.format(template, args));
-    }
+    protected abstract int validate(T validationEntity);
 
-    protected final boolean hasViolations() {
-        return !this.violations.isEmpty();
+    @Override
+    public final boolean isValid(T validationEntity, ConstraintValidatorContext context) {
+        int violated = this.validate(validationEntity);
+        if (violated == 0) {
+            return true;
+        }
+        context.disableDefaultConstraintViolation();
+        for (V violation : this.violations) {
+            if ((violated & violation(violation)) != 0) {
+                context.buildConstraintViolationWithTemplate(violation.message()).addConstraintViolation();
+            }
+        }
+        return false;
     }
 
     /**
-     * Evaluates the collected violations and updates the validation context.
-     *
-     * @param context the constraint validator context
-     * @return {@code true} if there are no violations, {@code false} otherwise
+     * @param violation a rule of the validator
+     * @return the bit of the rule in the mask returned by {@link #validate(Object)}
      */
-    protected final boolean evaluateViolations(ConstraintValidatorContext context) {
-        boolean hasNoViolations = !hasViolations();
-        if(!hasNoViolations) {
-            context.disableDefaultConstraintViolation();
-            for(String message : violations) {
-                context.buildConstraintViolationWithTemplate(message).addConstraintViolation();
-            }
-        }
-        return hasNoViolations;
+    protected static int violation(Enum<?> violation) {
+        return 1 << violation.ordinal();
     }
 
     /**
@@ -82,7 +72,7 @@ public abstract class BaseValidator<A extends Annotation, T> implements Constrai
      * @return {@code true} if the collection is valid, {@code false} otherwise
      */
     @SuppressWarnings("BooleanMethodIsAlwaysInverted")
-    protected final boolean isFieldValid(Collection<?> collection) {
+    protected static boolean isFieldValid(Collection<?> collection) {
         return collection != null && !collection.isEmpty();
     }
 
@@ -92,7 +82,7 @@ public abstract class BaseValidator<A extends Annotation, T> implements Constrai
      * @param collection the collection to validate
      * @return {@code true} if the collection is valid, {@code false} otherwise
      */
-    protected final boolean isFieldValid(Map<?, ?> collection) {
+    protected static boolean isFieldValid(Map<?, ?> collection) {
         return collection != null && !collection.isEmpty();
     }
 
@@ -102,7 +92,7 @@ public abstract class BaseValidator<A extends Annotation, T> implements Constrai
      * @param value the string to validate
      * @return {@code true} if the string is valid, {@code false} otherwise
      */
-    protected final boolean isFieldValid(String value) {
+    protected static boolean isFieldValid(String value) {
         return value != null && !value.isBlank();
     }
 
@@ -0,0 +1,289 @@
+package com.github.acs.file.email.internal.validator;
+
+import com.github.acs.file.email.internal.EmailProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Checks email addresses against the {@code Mailbox} syntax of RFC 5321 in a single pass over the address, without
+ * regular expressions.
+ * <p>
+ * The local part is a dot-string of atoms or a quoted string, and the domain is a host name of letter-digit-hyphen
+ * labels or an address literal such as {@code [192.0.2.1]} or {@code [IPv6:2001:db8::1]}. The lengths are limited as
+ * in section 4.5.3.1: 64 characters for the local part, 255 for the domain and 254 for the whole address.
+ * <p>
+ * Distribution lists mostly share a few domains, so the result of checking a domain is kept in a cache of a bounded
+ * size that evicts the least recently used domain first. When a file of domains is configured, only addresses in one
+ * of those domains or in one of their subdomains are accepted. The file is read once, and is meant to hold the
+ * domains known to accept mail, such as an export of the domains with an MX record, so that nothing is looked up
+ * while validating.
+ */
+@Slf4j
+@Component
+public class EmailAddressParser {
+
+    /**
+     * The parser used by validators that are not created by Spring, which checks the syntax only.
+     */
+    static final EmailAddressParser DEFAULT = new EmailAddressParser(1000, null);
+
+    private static final int MAX_LOCAL_PART_LENGTH = 64;
+    private static final int MAX_DOMAIN_LENGTH = 255;
+    private static final int MAX_ADDRESS_LENGTH = 254;
+    private static final int MAX_LABEL_LENGTH = 63;
+    private static final String IPV6_TAG = "IPv6:";
+
+    private final Set<String> allowedDomains;
+    private final Map<String, Boolean> domains;
+
+    @Autowired
+    public EmailAddressParser(EmailProperties emailProperties) {
+        this(emailProperties.getAddressDomainCacheSize(), readDomains(emailProperties.getAddressDomainsFile()));
+    }
+
+    /**
+     * @param domainCacheSize the maximum number of domains whose result is cached
+     * @param allowedDomains the accepted domains, in lower case, or {@code null} to accept every domain
+     */
+    EmailAddressParser(int domainCacheSize, Set<String> allowedDomains) {
+        this.allowedDomains = allowedDomains;
+        this.domains = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > domainCacheSize;
+            }
+        };
+    }
+
+    /**
+     * @param address the address to check
+     * @return {@code true} if the address is a valid mailbox in an accepted domain, {@code false} otherwise
+     */
+    public boolean isValid(String address) {
+        if (address == null || address.isEmpty() || address.length() > MAX_ADDRESS_LENGTH) {
+            return false;
+        }
+        int at = address.charAt(0) == '"' ? parseQuotedString(address) : parseDotString(address);
+        if (at <= 0 || at > MAX_LOCAL_PART_LENGTH || at == address.length() - 1) {
+            return false;
+        }
+        return isValidDomain(address.substring(at + 1));
+    }
+
+    private boolean isValidDomain(String domain) {
+        var key = domain.toLowerCase(Locale.ROOT);
+        Boolean valid;
+        synchronized (this.domains) {
+            valid = this.domains.get(key);
+        }
+        if (valid == null) {
+            valid = parseDomain(domain) && isAllowed(key);
+            synchronized (this.domains) {
+                this.domains.put(key, valid);
+            }
+        }
+        return valid;
+    }
+
+    private boolean isAllowed(String domain) {
+        if (this.allowedDomains == null) {
+            return true;
+        }
+        for (int start = 0; start >= 0; ) {
+            if (this.allowedDomains.contains(domain.substring(start))) {
+                return true;
+            }
+            int dot = domain.indexOf('.', start);
+            start = dot < 0 ? -1 : dot + 1;
+        }
+        return false;
+    }
+
+    /**
+     * @return the index of the {@code @} that ends the dot-string, or {@code -1} if it is not a valid dot-string
+     */
+    private static int parseDotString(String address) {
+        boolean atomStart = true;
+        for (int i = 0; i < address.length(); i++) {
+            char c = address.charAt(i);
+            if (c == '@') {
+                return atomStart ? -1 : i;
+            } else if (c == '.') {
+                if (atomStart) {
+                    return -1;
+                }
+                atomStart = true;
+            } else if (isAtext(c)) {
+                atomStart = false;
+            } else {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the index of the {@code @} that follows the quoted string, or {@code -1} if it is not a valid quoted
+     * string
+     */
+    private static int parseQuotedString(String address) {
+        for (int i = 1; i < address.length(); i++) {
+            char c = address.charAt(i);
+            if (c == '\\') {
+                i++;
+                if (i == address.length() || address.charAt(i) < 32 || address.charAt(i) > 126) {
+                    return -1;
+                }
+            } else if (c == '"') {
+                return i + 1 < address.length() && address.charAt(i + 1) == '@' ? i + 1 : -1;
+            } else if (c < 32 || c > 126) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean parseDomain(String domain) {
+        if (domain.length() > MAX_DOMAIN_LENGTH) {
+            return false;
+        }
+        if (domain.charAt(0) == '[') {
+            return domain.charAt(domain.length() - 1) == ']' && parseAddressLiteral(domain, 1, domain.length() - 1);
+        }
+        int labelStart = 0;
+        for (int i = 0; i <= domain.length(); i++) {
+            char c = i == domain.length() ? '.' : domain.charAt(i);
+            if (c == '.') {
+                int labelLength = i - labelStart;
+                if (labelLength == 0 || labelLength > MAX_LABEL_LENGTH || domain.charAt(i - 1) == '-') {
+                    return false;
+                }
+                labelStart = i + 1;
+            } else if (c == '-') {
+                if (i == labelStart) {
+                    return false;
+                }
+            } else if (!isLetterOrDigit(c)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean parseAddressLiteral(String domain, int start, int end) {
+        if (domain.startsWith(IPV6_TAG, start)) {
+            return parseIpv6(domain, start + IPV6_TAG.length(), end);
+        }
+        return parseIpv4(domain, start, end) == 4;
+    }
+
+    /**
+     * @return the number of dotted decimal octets, or {@code -1} if one of them is not valid
+     */
+    private static int parseIpv4(String domain, int start, int end) {
+        int octets = 0;
+        int value = -1;
+        for (int i = start; i <= end; i++) {
+            char c = i == end ? '.' : domain.charAt(i);
+            if (c == '.') {
+                if (value < 0) {
+                    return -1;
+                }
+                octets++;
+                value = -1;
+            } else if (c >= '0' && c <= '9') {
+                value = (value < 0 ? 0 : value * 10) + (c - '0');
+                if (value > 255) {
+                    return -1;
+                }
+            } else {
+                return -1;
+            }
+        }
+        return octets;
+    }
+
+    private static boolean parseIpv6(String domain, int start, int end) {
+        int groups = 0;
+        boolean compressed = false;
+        int i = start;
+        if (domain.startsWith("::", i)) {
+            compressed = true;
+            i += 2;
+            if (i == end) {
+                return true;
+            }
+        }
+        while (true) {
+            int groupStart = i;
+            while (i < end && Character.digit(domain.charAt(i), 16) >= 0) {
+                i++;
+            }
+            if (i < end && domain.charAt(i) == '.') {
+                // The last two groups may be written as an IPv4 address
+                if (parseIpv4(domain, groupStart, end) != 4) {
+                    return false;
+                }
+                groups += 2;
+                break;
+            }
+            if (i == groupStart || i - groupStart > 4) {
+                return false;
+            }
+            groups++;
+            if (i == end) {
+                break;
+            }
+            if (domain.charAt(i++) != ':' || i == end) {
+                return false;
+            }
+            if (domain.charAt(i) == ':') {
+                if (compressed) {
+                    return false;
+                }
+                compressed = true;
+                if (++i == end) {
+                    break;
+                }
+            }
+        }
+        return compressed ? groups <= 7 : groups == 8;
+    }
+
+    private static boolean isAtext(char c) {
+        return isLetterOrDigit(c) || "!#$%&'*+-/=?^_`{|}~".indexOf(c) >= 0;
+    }
+
+    private static boolean isLetterOrDigit(char c) {
+        return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9';
+    }
+
+    private static Set<String> readDomains(Path file) {
+        if (file == null) {
+            return null;
+        }
+        try (var lines = Files.lines(file)) {
+            var domains = new HashSet<String>();
+            lines.map(String::strip)
+                    .filter(line -> !line.isEmpty() && !line.startsWith("#"))
+                    .map(line -> line.toLowerCase(Locale.ROOT))
+                    .forEach(domains::add);
+            log.info("Accepting email addresses in {} domains listed in {}", domains.size(), file);
+            return domains;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error reading the email domains file " + file, e);
+        }
+    }
+
+}
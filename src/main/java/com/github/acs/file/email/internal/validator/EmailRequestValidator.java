@@ -2,8 +2,10 @@ package com.github.acs.file.email.internal.validator;
 
 import com.github.acs.file.email.EmailRequest;
 
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+
 import java.util.*;
-import java.util.regex.Pattern;
 
 /**
  * Validator for the {@link EmailRequest} class to enforce custom validation rules.
@@ -15,65 +17,122 @@ import java.util.regex.Pattern;
  *     <li>If 'body' is set, 'templateVariables' must be empty.</li>
  *     <li>At least a 'body', 'templateName', or 'templateVariables' must be set.</li>
  *     <li>All email addresses in 'to', 'cc', and 'bcc' must be valid if provided.</li>
+ *     <li>Every attachment must have a file.</li>
  * </ul>
  */
-public final class EmailRequestValidator extends BaseValidator<ValidEmailRequest, EmailRequest> {
+public final class EmailRequestValidator extends BaseValidator<ValidEmailRequest, EmailRequest, EmailRequestValidator.Rule> {
 
-    /**
-     * Regular expression pattern for validating email addresses.
-     */
-    private static final Pattern EMAIL_PATTERN = Pattern.compile(
-            "^[A-Za-z0-9+_.-]+@[A-Za-z0-9.-]+$"
-    );
+    private static final String INVALID_EMAIL_ADDRESS_MESSAGE = "The '%s' recipient field has one or more invalid email(s)";
+
+    enum Rule implements Violation {
+        TO_REQUIRED(DEFAULT_REQUIRED_FIELD_MESSAGE, "to"),
+        TO_EMPTY("At least one valid 'to' recipient is required"),
+        TO_INVALID(INVALID_EMAIL_ADDRESS_MESSAGE, "to"),
+        CC_INVALID(INVALID_EMAIL_ADDRESS_MESSAGE, "cc"),
+        BCC_INVALID(INVALID_EMAIL_ADDRESS_MESSAGE, "bcc"),
+        SUBJECT_REQUIRED(DEFAULT_REQUIRED_FIELD_MESSAGE, "subject"),
+        ATTACHMENT_WITHOUT_FILE("Every attachment requires a file");
+
+        private final String template;
+        private final String field;
+
+        Rule(String message) {
+            this(message, null);
+        }
+
+        Rule(String template, String field) {
+            this.template = template;
+            this.field = field;
+        }
+
+        @Override
+        public String message() {
+            return this.field == null ? this.template : this.template.formatted(this.field);
+        }
+    }
+
+    private final EmailAddressParser emailAddressParser;
+
+    public EmailRequestValidator() {
+        this(EmailAddressParser.DEFAULT);
+    }
+
+    @Autowired
+    public EmailRequestValidator(ObjectProvider<EmailAddressParser> emailAddressParser) {
+        this(emailAddressParser.getIfAvailable(() -> EmailAddressParser.DEFAULT));
+    }
+
+    EmailRequestValidator(EmailAddressParser emailAddressParser) {
+        super(Rule.class);
+        this.emailAddressParser = emailAddressParser;
+    }
 
     /**
      * Validates the given {@link EmailRequest} object against the defined constraints.
      *
      * @param emailRequest the email request to validate
+     * @return the violated rules
      */
     @Override
-    protected void validate(EmailRequest emailRequest) {
-        validateEmailRecipients(emailRequest);
-        validateEmailSubject(emailRequest);
+    protected int validate(EmailRequest emailRequest) {
+        return validateEmailRecipients(emailRequest) | validateEmailSubject(emailRequest) | validateAttachments(emailRequest);
     }
 
     /**
      * Validates the email recipient fields ('to', 'cc', 'bcc') in the email request.
      *
      * @param emailRequest the email request to validate
+     * @return the violated rules
      */
-    private void validateEmailRecipients(EmailRequest emailRequest) {
-        final String invalidEmailAddressMessage = "The '%s' recipient field has one or more invalid email(s)";
+    private int validateEmailRecipients(EmailRequest emailRequest) {
+        int violated = 0;
         if(emailRequest.to() == null) {
-            super.addViolationMessage(DEFAULT_REQUIRED_FIELD_MESSAGE, "to");
+            violated |= violation(Rule.TO_REQUIRED);
         }else if(emailRequest.to().isEmpty()) {
-            super.addViolationMessage("At least one valid 'to' recipient is required");
+            violated |= violation(Rule.TO_EMPTY);
         } else if(isInvalidEmail(emailRequest.to(), true)) {
-            super.addViolationMessage(invalidEmailAddressMessage, "to");
+            violated |= violation(Rule.TO_INVALID);
         }
 
         if(isInvalidEmail(emailRequest.cc(), false)) {
-            super.addViolationMessage(invalidEmailAddressMessage, "cc");
+            violated |= violation(Rule.CC_INVALID);
         }
 
         if(isInvalidEmail(emailRequest.bcc(), false)) {
-            super.addViolationMessage(invalidEmailAddressMessage, "bcc");
+            violated |= violation(Rule.BCC_INVALID);
         }
+        return violated;
     }
 
     /**
      * Validates the 'subject' field in the email request.
      *
      * @param emailRequest the email request to validate
+     * @return the violated rules
      */
-    private void validateEmailSubject(EmailRequest emailRequest) {
-        if(!isFieldValid(emailRequest.subject())) {
-            super.addViolationMessage(DEFAULT_REQUIRED_FIELD_MESSAGE, "subject");
+    private int validateEmailSubject(EmailRequest emailRequest) {
+        return isFieldValid(emailRequest.subject()) ? 0 : violation(Rule.SUBJECT_REQUIRED);
+    }
+
+    /**
+     * Validates the 'attachments' field in the email request.
+     *
+     * @param emailRequest the email request to validate
+     * @return the violated rules
+     */
+    private int validateAttachments(EmailRequest emailRequest) {
+        if (emailRequest.attachments() != null) {
+            for (var attachment : emailRequest.attachments()) {
+                if (attachment == null || attachment.path() == null) {
+                    return violation(Rule.ATTACHMENT_WITHOUT_FILE);
+                }
+            }
         }
+        return 0;
     }
 
     /**
-     * Checks if the given collection of email addresses contains invalid emails.
+     * Checks if the given collection of email addresses contains invalid emails. Every address is checked.
      *
      * @param emailAddressCollection the collection of email addresses to validate
      * @param required whether the field is required
@@ -83,7 +142,12 @@ public final class EmailRequestValidator extends BaseValidator<ValidEmailRequest
         if (!isFieldValid(emailAddressCollection)) {
             return required; // Valid if not required
         }
-        return emailAddressCollection.stream().noneMatch(emailAddress -> EMAIL_PATTERN.matcher(emailAddress).matches());
+        for (String emailAddress : emailAddressCollection) {
+            if (!this.emailAddressParser.isValid(emailAddress)) {
+                return true;
+            }
+        }
+        return false;
     }
 
 }
@@ -4,18 +4,39 @@ import com.github.acs.file.email.internal.template.EmailTemplateRequest;
 import org.springframework.validation.annotation.Validated;
 
 @Validated
-public final class EmailTemplateRequestValidator extends BaseValidator<ValidEmailTemplateRequest, EmailTemplateRequest> {
+public final class EmailTemplateRequestValidator extends BaseValidator<ValidEmailTemplateRequest, EmailTemplateRequest, EmailTemplateRequestValidator.Rule> {
+
+    enum Rule implements Violation {
+        BODY_OR_TEMPLATE_REQUIRED("At least a the 'body' or 'template' field must be set"),
+        BODY_AND_TEMPLATE_SET("Only the 'body' or 'template' can be set, not both");
+
+        private final String message;
+
+        Rule(String message) {
+            this.message = message;
+        }
+
+        @Override
+        public String message() {
+            return this.message;
+        }
+    }
+
+    public EmailTemplateRequestValidator() {
+        super(Rule.class);
+    }
 
     @Override
-    protected void validate(EmailTemplateRequest templateRequest) {
+    protected int validate(EmailTemplateRequest templateRequest) {
         boolean hasBody = isFieldValid(templateRequest.body());
         boolean hasEmailTemplate = templateRequest.template() != null;
 
         if (!(hasBody || hasEmailTemplate)) {
-            super.addViolationMessage("At least a the 'body' or 'template' field must be set");
+            return violation(Rule.BODY_OR_TEMPLATE_REQUIRED);
         } else if (hasBody && hasEmailTemplate) {
-            super.addViolationMessage("Only the 'body' or 'template' can be set, not both");
+            return violation(Rule.BODY_AND_TEMPLATE_SET);
         }
+        return 0;
     }
 
 }
@@ -2,15 +2,38 @@ package com.github.acs.file.email.internal.validator;
 
 import com.github.acs.file.email.EmailTemplate;
 
-public final class EmailTemplateValidator extends BaseValidator<ValidEmailTemplate, EmailTemplate> {
+public final class EmailTemplateValidator extends BaseValidator<ValidEmailTemplate, EmailTemplate, EmailTemplateValidator.Rule> {
+
+    enum Rule implements Violation {
+        TEMPLATE_NAME_REQUIRED("The 'template name' field is required"),
+        TEMPLATE_VARIABLES_REQUIRED("The 'template variable' field is required");
+
+        private final String message;
+
+        Rule(String message) {
+            this.message = message;
+        }
+
+        @Override
+        public String message() {
+            return this.message;
+        }
+    }
+
+    public EmailTemplateValidator() {
+        super(Rule.class);
+    }
+
     @Override
-    protected void validate(EmailTemplate validationEntity) {
+    protected int validate(EmailTemplate validationEntity) {
+        int violated = 0;
         if(!isFieldValid(validationEntity.templateName())) {
-            super.addViolationMessage("The 'template name' field is required");
+            violated |= violation(Rule.TEMPLATE_NAME_REQUIRED);
         }
 
         if(validationEntity.templateVariables() == null) {
-            super.addViolationMessage("The 'template variable' field is required");
+            violated |= violation(Rule.TEMPLATE_VARIABLES_REQUIRED);
         }
+        return violated;
     }
 }
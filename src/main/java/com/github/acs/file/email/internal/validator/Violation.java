@@ -0,0 +1,14 @@
+package com.github.acs.file.email.internal.validator;
+
+/**
+ * A rule a validator checks, implemented by an enum per validator so the violations of a call can be collected as a
+ * bit mask of their ordinals.
+ */
+public interface Violation {
+
+    /**
+     * @return the message reported when the rule is violated, which is only formatted when it is reported
+     */
+    String message();
+
+}
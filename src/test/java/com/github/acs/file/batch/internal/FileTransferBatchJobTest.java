@@ -0,0 +1,207 @@
+package com.github.acs.file.batch.internal;
+
+import com.github.acs.file.batch.internal.transfer.FileDeduplicator;
+import com.github.acs.file.batch.internal.transfer.FileRangeItemReader;
+import com.github.acs.file.batch.internal.transfer.FileRangeItemWriter;
+import com.github.acs.file.batch.internal.transfer.TransferCodec;
+import com.github.acs.file.email.EmailService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.test.JobLauncherTestUtils;
+import org.springframework.batch.test.context.SpringBatchTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.batch.BatchAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceTransactionManagerAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBatchTest
+@SpringBootTest(classes = {
+        BatchConfig.class,
+        FileTransferProperties.class,
+        JobNotificationListener.class,
+        SimpleMeterRegistry.class
+})
+@ImportAutoConfiguration({
+        DataSourceAutoConfiguration.class,
+        DataSourceTransactionManagerAutoConfiguration.class,
+        BatchAutoConfiguration.class
+})
+@ActiveProfiles("test")
+class FileTransferBatchJobTest {
+
+    @Autowired
+    private JobLauncherTestUtils jobLauncherTestUtils;
+
+    @Autowired
+    private FileTransferProperties properties;
+
+    @MockitoBean
+    private EmailService emailService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        FileSystemUtils.deleteRecursively(this.properties.getSourceDirectory());
+        FileSystemUtils.deleteRecursively(this.properties.getDestinationDirectory());
+        Files.createDirectories(this.properties.getSourceDirectory().resolve("nested"));
+    }
+
+    @Test
+    void testJobTransfersEveryFile() throws Exception {
+        var random = new Random(42);
+        for (int i = 0; i < 5; i++) {
+            var content = new byte[(i + 1) * 700_000];
+            random.nextBytes(content);
+            Files.write(this.properties.getSourceDirectory().resolve(i % 2 == 0 ? "file" + i + ".bin" : "nested/file" + i + ".bin"), content);
+        }
+
+        var jobExecution = this.jobLauncherTestUtils.launchJob(new JobParametersBuilder()
+                .addLong("time", System.currentTimeMillis())
+                .toJobParameters());
+
+        assertEquals(BatchStatus.COMPLETED, jobExecution.getStatus());
+        for (int i = 0; i < 5; i++) {
+            var name = i % 2 == 0 ? "file" + i + ".bin" : "nested/file" + i + ".bin";
+            assertEquals(-1, Files.mismatch(
+                    this.properties.getSourceDirectory().resolve(name),
+                    this.properties.getDestinationDirectory().resolve(name)));
+        }
+        var manifest = this.properties.getDestinationDirectory().resolve(".manifests")
+                .resolve("fileTransferBatchJob-" + jobExecution.getJobInstance().getInstanceId() + ".csv");
+        assertEquals(6, Files.readAllLines(manifest).size());
+    }
+
+    @Test
+    void testJobTransfersNamedFile() throws Exception {
+        Files.writeString(this.properties.getSourceDirectory().resolve("example.txt"), "example");
+        Files.writeString(this.properties.getSourceDirectory().resolve("ignored.txt"), "ignored");
+
+        var jobExecution = this.jobLauncherTestUtils.launchJob(new JobParametersBuilder()
+                .addString("fileName", "example.txt")
+                .addLong("time", System.currentTimeMillis())
+                .toJobParameters());
+
+        assertEquals(BatchStatus.COMPLETED, jobExecution.getStatus());
+        assertEquals("example", Files.readString(this.properties.getDestinationDirectory().resolve("example.txt")));
+        assertFalse(Files.exists(this.properties.getDestinationDirectory().resolve("ignored.txt")));
+    }
+
+    @Test
+    void testJobTransfersListedFiles() throws Exception {
+        Files.writeString(this.properties.getSourceDirectory().resolve("first.txt"), "first");
+        Files.writeString(this.properties.getSourceDirectory().resolve("nested/second, with comma.txt"), "second");
+        Files.writeString(this.properties.getSourceDirectory().resolve("ignored.txt"), "ignored");
+        var fileList = Files.write(this.properties.getDestinationDirectory().resolveSibling("files.txt"),
+                List.of("first.txt", "nested/second, with comma.txt"));
+
+        var jobExecution = this.jobLauncherTestUtils.launchJob(new JobParametersBuilder()
+                .addString(BatchConfig.FILE_LIST_PARAMETER, fileList.toString())
+                .addLong("time", System.currentTimeMillis())
+                .toJobParameters());
+
+        assertEquals(BatchStatus.COMPLETED, jobExecution.getStatus());
+        assertEquals("first", Files.readString(this.properties.getDestinationDirectory().resolve("first.txt")));
+        assertEquals("second", Files.readString(this.properties.getDestinationDirectory().resolve("nested/second, with comma.txt")));
+        assertFalse(Files.exists(this.properties.getDestinationDirectory().resolve("ignored.txt")));
+    }
+
+    @Test
+    void testJobSkipsFilesAlreadyAtDestination() throws Exception {
+        var content = new byte[1_500_000];
+        new Random(3).nextBytes(content);
+        Files.write(this.properties.getSourceDirectory().resolve("nightly.bin"), content);
+        this.properties.setDeduplicationMode(FileDeduplicator.Mode.SKIP);
+        try {
+            this.jobLauncherTestUtils.launchJob(new JobParametersBuilder()
+                    .addLong("time", System.currentTimeMillis())
+                    .toJobParameters());
+            var jobExecution = this.jobLauncherTestUtils.launchJob(new JobParametersBuilder()
+                    .addLong("time", System.currentTimeMillis() + 1)
+                    .toJobParameters());
+
+            assertEquals(BatchStatus.COMPLETED, jobExecution.getStatus());
+            assertEquals(1, jobExecution.getStepExecutions().stream()
+                    .mapToInt(stepExecution -> stepExecution.getExecutionContext().getInt(FileRangeItemReader.SKIPPED_COUNT_KEY, 0))
+                    .sum());
+            assertArrayEquals(content, Files.readAllBytes(this.properties.getDestinationDirectory().resolve("nightly.bin")));
+        } finally {
+            this.properties.setDeduplicationMode(FileDeduplicator.Mode.NONE);
+        }
+    }
+
+    @Test
+    void testJobDeltaTransfersChangedFile() throws Exception {
+        var content = new byte[3_000_000];
+        new Random(11).nextBytes(content);
+        var source = Files.write(this.properties.getSourceDirectory().resolve("ledger.bin"), content);
+        this.jobLauncherTestUtils.launchJob(new JobParametersBuilder()
+                .addLong("time", System.currentTimeMillis())
+                .toJobParameters());
+        content[1_000_000]++;
+        Files.write(source, content);
+
+        var jobExecution = this.jobLauncherTestUtils.launchJob(new JobParametersBuilder()
+                .addString(BatchConfig.TRANSFER_STRATEGY_PARAMETER, "delta")
+                .addLong("time", System.currentTimeMillis() + 1)
+                .toJobParameters());
+
+        assertEquals(BatchStatus.COMPLETED, jobExecution.getStatus());
+        assertArrayEquals(content, Files.readAllBytes(this.properties.getDestinationDirectory().resolve("ledger.bin")));
+        assertEquals(64 * 1024, jobExecution.getStepExecutions().stream()
+                .mapToLong(stepExecution -> stepExecution.getExecutionContext().getLong(FileRangeItemWriter.DELTA_LITERAL_BYTES_KEY, 0L))
+                .sum());
+    }
+
+    @Test
+    void testJobCompressesFilesWithCodec() throws Exception {
+        var content = "id,name,amount\n".repeat(100_000);
+        Files.writeString(this.properties.getSourceDirectory().resolve("ledger.csv"), content);
+
+        var jobExecution = this.jobLauncherTestUtils.launchJob(new JobParametersBuilder()
+                .addString(BatchConfig.CODEC_PARAMETER, "zstd")
+                .addLong("time", System.currentTimeMillis())
+                .toJobParameters());
+
+        assertEquals(BatchStatus.COMPLETED, jobExecution.getStatus());
+        var destination = this.properties.getDestinationDirectory().resolve("ledger.csv.zst");
+        try (var input = TransferCodec.ZSTD.decompress(Files.newInputStream(destination))) {
+            assertEquals(content, new String(input.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        assertTrue(Files.size(destination) < content.length() / 5);
+    }
+
+    @Test
+    void testJobTransfersLargeFileInParallelRanges() throws Exception {
+        var content = new byte[5_500_000];
+        new Random(7).nextBytes(content);
+        Files.write(this.properties.getSourceDirectory().resolve("large.bin"), content);
+
+        var jobExecution = this.jobLauncherTestUtils.launchJob(new JobParametersBuilder()
+                .addLong(BatchConfig.RANGE_SIZE_PARAMETER, 1_000_000L)
+                .addLong(BatchConfig.RANGE_CONCURRENCY_PARAMETER, 4L)
+                .addLong("time", System.currentTimeMillis())
+                .toJobParameters());
+
+        assertEquals(BatchStatus.COMPLETED, jobExecution.getStatus());
+        var destination = this.properties.getDestinationDirectory().resolve("large.bin");
+        assertArrayEquals(content, Files.readAllBytes(destination));
+        assertFalse(Files.exists(destination.resolveSibling("large.bin.part")));
+    }
+}
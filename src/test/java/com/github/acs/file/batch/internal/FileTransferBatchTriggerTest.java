@@ -0,0 +1,204 @@
+package com.github.acs.file.batch.internal;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobInstance;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.batch.core.launch.JobLauncher;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ActiveProfiles("test")
+class FileTransferBatchTriggerTest {
+
+    @Mock
+    private JobLauncher jobLauncher;
+
+    @Mock
+    private JobExplorer jobExplorer;
+
+    @Mock
+    private Job job;
+
+    @TempDir
+    private Path fileListDirectory;
+
+    private FileTransferProperties properties;
+
+    private FileTransferBatchTrigger trigger;
+
+    private final JobInstance lastInstance = new JobInstance(1L, "fileTransferBatchJob");
+
+    private final JobParameters lastParameters = new JobParametersBuilder()
+            .addString(BatchConfig.FILE_NAME_PARAMETER, "example.txt")
+            .addLong("time", 1L)
+            .toJobParameters();
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        this.properties = new FileTransferProperties();
+        this.properties.setSourceDirectory(Path.of("in"));
+        this.properties.setDestinationDirectory(Path.of("out"));
+        this.trigger = new FileTransferBatchTrigger(this.jobLauncher, this.jobExplorer, this.job, this.properties);
+
+        when(this.job.getName()).thenReturn("fileTransferBatchJob");
+        when(this.jobExplorer.getLastJobInstance("fileTransferBatchJob")).thenReturn(this.lastInstance);
+    }
+
+    @Test
+    void testRestartFailedModeReusesParametersOfFailedInstance() throws Exception {
+        this.properties.setTriggerMode(FileTransferProperties.TriggerMode.RESTART_FAILED);
+        when(this.jobExplorer.getLastJobExecution(this.lastInstance)).thenReturn(lastExecution(BatchStatus.FAILED));
+
+        this.trigger.triggerBatch();
+
+        verify(this.jobLauncher).run(this.job, this.lastParameters);
+    }
+
+    @Test
+    void testRestartFailedModeGivesUpAfterMaxRestarts() throws Exception {
+        this.properties.setTriggerMode(FileTransferProperties.TriggerMode.RESTART_FAILED);
+        this.properties.setTriggerMaxRestarts(2);
+        var lastExecution = lastExecution(BatchStatus.FAILED);
+        when(this.jobExplorer.getLastJobExecution(this.lastInstance)).thenReturn(lastExecution);
+        when(this.jobExplorer.getJobExecutions(this.lastInstance)).thenReturn(List.of(lastExecution, lastExecution(BatchStatus.FAILED)));
+
+        this.trigger.triggerBatch();
+        when(this.jobExplorer.getJobExecutions(this.lastInstance))
+                .thenReturn(List.of(lastExecution, lastExecution(BatchStatus.FAILED), lastExecution(BatchStatus.FAILED)));
+        this.trigger.triggerBatch();
+
+        var parameters = ArgumentCaptor.forClass(JobParameters.class);
+        verify(this.jobLauncher, times(2)).run(eq(this.job), parameters.capture());
+        assertEquals(this.lastParameters, parameters.getAllValues().get(0));
+        assertNotEquals(this.lastParameters, parameters.getAllValues().get(1));
+    }
+
+    @Test
+    void testRestartFailedModeLaunchesNewInstanceAfterCompletion() throws Exception {
+        this.properties.setTriggerMode(FileTransferProperties.TriggerMode.RESTART_FAILED);
+        when(this.jobExplorer.getLastJobExecution(this.lastInstance)).thenReturn(lastExecution(BatchStatus.COMPLETED));
+
+        this.trigger.triggerBatch();
+
+        var parameters = ArgumentCaptor.forClass(JobParameters.class);
+        verify(this.jobLauncher).run(eq(this.job), parameters.capture());
+        assertNotEquals(this.lastParameters, parameters.getValue());
+        assertEquals(this.properties.getChunkSize().toBytes(), parameters.getValue().getLong(BatchConfig.RANGE_SIZE_PARAMETER));
+    }
+
+    @Test
+    void testNewInstanceModeIgnoresFailedInstance() throws Exception {
+        when(this.jobExplorer.getLastJobExecution(this.lastInstance)).thenReturn(lastExecution(BatchStatus.FAILED));
+
+        this.trigger.triggerBatch();
+
+        var parameters = ArgumentCaptor.forClass(JobParameters.class);
+        verify(this.jobLauncher).run(eq(this.job), parameters.capture());
+        assertNotEquals(this.lastParameters, parameters.getValue());
+    }
+
+    @Test
+    void testTriggerWithFilesWritesFileList() throws Exception {
+        this.properties.setFileListDirectory(this.fileListDirectory);
+        this.properties.setTriggerMode(FileTransferProperties.TriggerMode.RESTART_FAILED);
+        when(this.jobExplorer.getLastJobExecution(this.lastInstance)).thenReturn(lastExecution(BatchStatus.FAILED));
+
+        this.trigger.triggerBatch(List.of("a.txt", "feeds/b,c.txt"));
+
+        var parameters = ArgumentCaptor.forClass(JobParameters.class);
+        verify(this.jobLauncher).run(eq(this.job), parameters.capture());
+        assertNull(parameters.getValue().getString(BatchConfig.FILE_NAME_PARAMETER));
+        var fileList = Path.of(parameters.getValue().getString(BatchConfig.FILE_LIST_PARAMETER));
+        assertEquals(this.fileListDirectory, fileList.getParent());
+        assertEquals(List.of("a.txt", "feeds/b,c.txt"), Files.readAllLines(fileList));
+    }
+
+    @Test
+    void testTriggerWithFilesRestartsFailedFileListsFirst() throws Exception {
+        this.properties.setFileListDirectory(this.fileListDirectory);
+        this.properties.setTriggerMode(FileTransferProperties.TriggerMode.RESTART_FAILED);
+        var failedInstance = new JobInstance(2L, "fileTransferBatchJob");
+        var failedParameters = fileListParameters(Files.writeString(this.fileListDirectory.resolve("2-list.txt"), "a.txt"));
+        var failedExecution = new JobExecution(failedInstance, 2L, failedParameters);
+        failedExecution.setStatus(BatchStatus.FAILED);
+        var completedInstance = new JobInstance(3L, "fileTransferBatchJob");
+        var completedExecution = new JobExecution(completedInstance, 3L, fileListParameters(this.fileListDirectory.resolve("3-list.txt")));
+        completedExecution.setStatus(BatchStatus.COMPLETED);
+        when(this.jobExplorer.getJobInstances("fileTransferBatchJob", 0, FileTransferBatchTrigger.RESTART_LOOKBACK))
+                .thenReturn(List.of(completedInstance, failedInstance));
+        when(this.jobExplorer.getLastJobExecution(failedInstance)).thenReturn(failedExecution);
+        when(this.jobExplorer.getLastJobExecution(completedInstance)).thenReturn(completedExecution);
+        when(this.jobExplorer.getJobExecutions(failedInstance)).thenReturn(List.of(failedExecution));
+
+        this.trigger.triggerBatch(List.of("b.txt"));
+
+        var parameters = ArgumentCaptor.forClass(JobParameters.class);
+        verify(this.jobLauncher, times(2)).run(eq(this.job), parameters.capture());
+        assertEquals(failedParameters, parameters.getAllValues().get(0));
+        var fileList = Path.of(parameters.getAllValues().get(1).getString(BatchConfig.FILE_LIST_PARAMETER));
+        assertEquals(List.of("b.txt"), Files.readAllLines(fileList));
+    }
+
+    @Test
+    void testTriggerWithFilesDeletesFileListOfGivenUpInstance() throws Exception {
+        this.properties.setFileListDirectory(this.fileListDirectory);
+        this.properties.setTriggerMode(FileTransferProperties.TriggerMode.RESTART_FAILED);
+        this.properties.setTriggerMaxRestarts(1);
+        var failedInstance = new JobInstance(2L, "fileTransferBatchJob");
+        var failedList = Files.writeString(this.fileListDirectory.resolve("2-list.txt"), "a.txt");
+        var failedExecution = new JobExecution(failedInstance, 2L, fileListParameters(failedList));
+        failedExecution.setStatus(BatchStatus.FAILED);
+        when(this.jobExplorer.getJobInstances("fileTransferBatchJob", 0, FileTransferBatchTrigger.RESTART_LOOKBACK))
+                .thenReturn(List.of(failedInstance));
+        when(this.jobExplorer.getLastJobExecution(failedInstance)).thenReturn(failedExecution);
+        when(this.jobExplorer.getJobExecutions(failedInstance)).thenReturn(List.of(failedExecution, failedExecution));
+
+        this.trigger.triggerBatch(List.of("b.txt"));
+
+        var parameters = ArgumentCaptor.forClass(JobParameters.class);
+        verify(this.jobLauncher).run(eq(this.job), parameters.capture());
+        assertNotEquals(failedList.toString(), parameters.getValue().getString(BatchConfig.FILE_LIST_PARAMETER));
+        assertFalse(Files.exists(failedList));
+    }
+
+    @Test
+    void testTriggerWithoutFilesLaunchesNothing() {
+        this.trigger.triggerBatch(List.of());
+
+        verifyNoInteractions(this.jobLauncher);
+    }
+
+    private static JobParameters fileListParameters(Path fileList) {
+        return new JobParametersBuilder()
+                .addString(BatchConfig.FILE_LIST_PARAMETER, fileList.toString())
+                .addLong("time", 2L)
+                .toJobParameters();
+    }
+
+    private JobExecution lastExecution(BatchStatus status) {
+        var jobExecution = new JobExecution(this.lastInstance, 1L, this.lastParameters);
+        jobExecution.setStatus(status);
+        return jobExecution;
+    }
+}
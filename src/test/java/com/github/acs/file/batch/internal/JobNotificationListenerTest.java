@@ -1,17 +1,44 @@
 package com.github.acs.file.batch.internal;
 
+import com.github.acs.file.batch.internal.ingress.FileIngressKeys;
+import com.github.acs.file.batch.internal.template.CompletedTemplateVariables;
+import com.github.acs.file.batch.internal.transfer.FileRangeItemReader;
+import com.github.acs.file.batch.internal.transfer.FileRangeItemWriter;
+import com.github.acs.file.email.EmailRequest;
 import com.github.acs.file.email.EmailService;
+import com.github.acs.file.email.EmailServiceException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.batch.core.BatchStatus;
 import org.springframework.batch.core.ExitStatus;
 import org.springframework.batch.core.JobExecution;
 import org.springframework.batch.core.JobInstance;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.test.context.ActiveProfiles;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ActiveProfiles("test")
@@ -23,9 +50,27 @@ class JobNotificationListenerTest {
     @Mock
     private EmailService emailService;
 
+    @Mock
+    private ObjectProvider<FileIngressKeys> ingressKeysProvider;
+
+    @Mock
+    private FileIngressKeys ingressKeys;
+
+    @Mock
+    private JobExplorer jobExplorer;
+
+    @Spy
+    private FileTransferProperties properties = new FileTransferProperties();
+
+    @Spy
+    private MeterRegistry registry = new SimpleMeterRegistry();
+
     @InjectMocks
     private JobNotificationListener jobNotificationListener;
 
+    @TempDir
+    private Path fileListDirectory;
+
     @BeforeEach
     void setUp() {
         var jobInstance = mock(JobInstance.class);
@@ -33,6 +78,9 @@ class JobNotificationListenerTest {
 
         when(jobExecution.getJobInstance()).thenReturn(jobInstance);
         when(jobInstance.getJobName()).thenReturn("Test Batch Job");
+        when(jobExecution.getJobParameters()).thenReturn(new JobParameters());
+        when(emailService.sendEmailAsync(any(EmailRequest.class))).thenReturn(CompletableFuture.completedFuture(null));
+        when(ingressKeysProvider.getIfAvailable()).thenReturn(ingressKeys);
 
 
     }
@@ -61,4 +109,122 @@ class JobNotificationListenerTest {
 
         jobNotificationListener.afterJob(jobExecution);
     }
-}
\ No newline at end of file
+
+    @Test
+    void afterJobCompletedDeletesFileList() throws Exception {
+        var fileList = Files.writeString(this.fileListDirectory.resolve("1-list.txt"), "a.txt");
+        when(jobExecution.getExitStatus()).thenReturn(ExitStatus.COMPLETED);
+        when(jobExecution.getJobParameters()).thenReturn(new JobParametersBuilder()
+                .addString(BatchConfig.FILE_LIST_PARAMETER, fileList.toString())
+                .toJobParameters());
+
+        jobNotificationListener.afterJob(jobExecution);
+
+        assertFalse(Files.exists(fileList));
+    }
+
+    @Test
+    void afterJobFailedKeepsFileListForRestart() throws Exception {
+        properties.setTriggerMode(FileTransferProperties.TriggerMode.RESTART_FAILED);
+        var fileList = Files.writeString(this.fileListDirectory.resolve("1-list.txt"), "a.txt");
+        when(jobExecution.getExitStatus()).thenReturn(ExitStatus.FAILED);
+        when(jobExecution.getJobParameters()).thenReturn(new JobParametersBuilder()
+                .addString(BatchConfig.FILE_LIST_PARAMETER, fileList.toString())
+                .toJobParameters());
+
+        jobNotificationListener.afterJob(jobExecution);
+
+        assertTrue(Files.exists(fileList));
+        verify(ingressKeys, never()).release(any());
+    }
+
+    @Test
+    void afterJobFailedReleasesIngressFiles() throws Exception {
+        var fileList = Files.write(this.fileListDirectory.resolve("1-list.txt"), List.of("feeds/a.txt", "feeds/b.txt"));
+        when(jobExecution.getExitStatus()).thenReturn(ExitStatus.FAILED);
+        when(jobExecution.getJobParameters()).thenReturn(new JobParametersBuilder()
+                .addString(BatchConfig.FILE_LIST_PARAMETER, fileList.toString())
+                .toJobParameters());
+
+        jobNotificationListener.afterJob(jobExecution);
+
+        verify(ingressKeys).release(List.of("feeds/a.txt", "feeds/b.txt"));
+        assertFalse(Files.exists(fileList));
+    }
+
+    @Test
+    void afterJobFailedGivesUpAfterMaxRestarts() throws Exception {
+        properties.setTriggerMode(FileTransferProperties.TriggerMode.RESTART_FAILED);
+        properties.setTriggerMaxRestarts(1);
+        var fileList = Files.write(this.fileListDirectory.resolve("1-list.txt"), List.of("feeds/a.txt"));
+        when(jobExecution.getExitStatus()).thenReturn(ExitStatus.FAILED);
+        when(jobExecution.getJobParameters()).thenReturn(new JobParametersBuilder()
+                .addString(BatchConfig.FILE_LIST_PARAMETER, fileList.toString())
+                .toJobParameters());
+        when(jobExplorer.getJobExecutions(jobExecution.getJobInstance())).thenReturn(List.of(jobExecution, jobExecution));
+
+        jobNotificationListener.afterJob(jobExecution);
+
+        verify(ingressKeys).release(List.of("feeds/a.txt"));
+        assertFalse(Files.exists(fileList));
+    }
+
+    @Test
+    void afterJobCompletedSummarisesPartitions() {
+        when(jobExecution.getExitStatus()).thenReturn(ExitStatus.COMPLETED);
+        when(jobExecution.getStepExecutions()).thenReturn(List.of(
+                partitionStepExecution("fileTransferStep:partition0", 2, 100, 2),
+                partitionStepExecution("fileTransferStep:partition1", 3, 50, 1),
+                new StepExecution("fileTransferPartitionStep", jobExecution)
+        ));
+
+        jobNotificationListener.afterJob(jobExecution);
+
+        var emailRequest = ArgumentCaptor.forClass(EmailRequest.class);
+        verify(emailService).enqueueEmail(emailRequest.capture());
+        var templateVariables = (CompletedTemplateVariables) emailRequest.getValue().template().templateVariables();
+        assertEquals(5, templateVariables.fileCount());
+        assertEquals(3, templateVariables.passedCount());
+        assertEquals(150, templateVariables.byteCount());
+        assertEquals(2, templateVariables.partitions().size());
+        assertEquals("fileTransferStep:partition0", templateVariables.partitions().getFirst().name());
+        assertEquals(150, registry.counter("file.transfer.bytes", "job", "Test Batch Job").count());
+    }
+
+    @Test
+    void afterJobCompletedRecordsCodecMetrics() {
+        var stepExecution = partitionStepExecution("fileTransferStep:partition0", 1, 100, 1);
+        stepExecution.getExecutionContext().putString(FileRangeItemWriter.CODEC_KEY, "GZIP");
+        stepExecution.getExecutionContext().putLong(FileRangeItemWriter.CODEC_RAW_BYTES_KEY, 1000L);
+        stepExecution.getExecutionContext().putLong(FileRangeItemWriter.CODEC_ENCODED_BYTES_KEY, 200L);
+        stepExecution.getExecutionContext().putLong(FileRangeItemWriter.CODEC_NANOS_KEY, 1_000_000_000L);
+        when(jobExecution.getExitStatus()).thenReturn(ExitStatus.COMPLETED);
+        when(jobExecution.getStepExecutions()).thenReturn(List.of(stepExecution));
+
+        jobNotificationListener.afterJob(jobExecution);
+
+        assertEquals(5.0, registry.summary("file.transfer.codec.ratio", "job", "Test Batch Job", "codec", "GZIP").mean());
+        assertEquals(1000.0, registry.find("file.transfer.codec.throughput").summary().mean());
+    }
+
+    @Test
+    void afterJobFailedSendsDirectlyWhenOutboxFails() {
+        when(jobExecution.getExitStatus()).thenReturn(ExitStatus.FAILED);
+        doThrow(new EmailServiceException("Error storing email in the outbox")).when(emailService).enqueueEmail(any(EmailRequest.class));
+
+        jobNotificationListener.afterJob(jobExecution);
+
+        var emailRequest = ArgumentCaptor.forClass(EmailRequest.class);
+        verify(emailService).sendEmailAsync(emailRequest.capture());
+        assertEquals("Batch process failed", emailRequest.getValue().subject());
+    }
+
+    private StepExecution partitionStepExecution(String stepName, int fileCount, long byteCount, int verifiedCount) {
+        var stepExecution = new StepExecution(stepName, jobExecution);
+        stepExecution.setStatus(BatchStatus.COMPLETED);
+        stepExecution.getExecutionContext().putInt(FileRangeItemReader.FILE_COUNT_KEY, fileCount);
+        stepExecution.getExecutionContext().putLong(FileRangeItemReader.BYTE_COUNT_KEY, byteCount);
+        stepExecution.getExecutionContext().putInt(FileRangeItemWriter.VERIFIED_COUNT_KEY, verifiedCount);
+        return stepExecution;
+    }
+}
@@ -0,0 +1,206 @@
+package com.github.acs.file.batch.internal;
+
+import com.github.acs.file.batch.BatchProcessException;
+import com.github.acs.file.batch.BatchTrigger;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+@ActiveProfiles("test")
+class WatchServiceBatchTriggerTest {
+
+    @TempDir
+    private Path sourceDirectory;
+
+    private FileTransferProperties properties;
+
+    private BatchTrigger delegate;
+
+    private SimpleMeterRegistry registry;
+
+    private WatchServiceBatchTrigger trigger;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        this.properties = new FileTransferProperties();
+        this.properties.setSourceDirectory(this.sourceDirectory);
+        this.properties.setWatchEnabled(true);
+        this.properties.setWatchDirectories(List.of(Path.of("feeds")));
+        this.properties.setWatchQuietPeriod(Duration.ofMillis(300));
+        this.delegate = mock(BatchTrigger.class);
+        this.registry = new SimpleMeterRegistry();
+        Files.createDirectories(this.sourceDirectory.resolve("feeds"));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (this.trigger != null) {
+            this.trigger.close();
+        }
+    }
+
+    @Test
+    void testCoalescesEventsIntoOneLaunch() throws Exception {
+        start();
+
+        for (int i = 0; i < 10; i++) {
+            Files.writeString(this.sourceDirectory.resolve("feeds/file" + i + ".txt"), "file" + i);
+        }
+
+        var fileNames = captureLaunches(1);
+        assertEquals(10, fileNames.getFirst().size());
+        assertTrue(fileNames.getFirst().contains("feeds/file0.txt"));
+        awaitLaunchOfMarker();
+        verify(this.delegate, times(2)).triggerBatch(anyCollection());
+        assertEquals(2, this.registry.get("batch.trigger.latency").tag("trigger", "watch").timer().count());
+    }
+
+    @Test
+    void testWaitsForFileToStopChanging() throws Exception {
+        start();
+        var file = this.sourceDirectory.resolve("feeds/growing.csv");
+
+        for (int i = 0; i < 8; i++) {
+            Files.writeString(file, "row" + i + "\n", StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            Thread.sleep(100);
+            verifyNoInteractions(this.delegate);
+        }
+
+        verify(this.delegate, timeout(5_000)).triggerBatch(List.of("feeds/growing.csv"));
+        awaitLaunchOfMarker();
+        verify(this.delegate, times(2)).triggerBatch(anyCollection());
+    }
+
+    @Test
+    void testSplitsBatchesAtMaxSize() throws Exception {
+        this.properties.setWatchMaxBatchSize(2);
+        start();
+
+        for (int i = 0; i < 5; i++) {
+            Files.writeString(this.sourceDirectory.resolve("feeds/file" + i + ".txt"), "file" + i);
+        }
+
+        var fileNames = captureLaunches(3);
+        var launched = new HashSet<String>();
+        fileNames.forEach(names -> {
+            assertTrue(names.size() <= 2);
+            launched.addAll(names);
+        });
+        assertEquals(5, launched.size());
+    }
+
+    @Test
+    void testWatchesCreatedDirectories() throws Exception {
+        start();
+
+        var directory = Files.createDirectories(this.sourceDirectory.resolve("feeds/2026/10"));
+        Files.writeString(directory.resolve("daily.csv"), "daily");
+
+        verify(this.delegate, timeout(5_000)).triggerBatch(List.of("feeds/2026/10/daily.csv"));
+    }
+
+    @Test
+    void testRetriesFilesWhenJobCannotBeLaunched() throws Exception {
+        doThrow(new BatchProcessException(new IllegalStateException("Job repository unavailable")))
+                .doNothing()
+                .when(this.delegate).triggerBatch(anyCollection());
+        start();
+
+        Files.writeString(this.sourceDirectory.resolve("feeds/daily.csv"), "daily");
+
+        verify(this.delegate, timeout(5_000).times(2)).triggerBatch(List.of("feeds/daily.csv"));
+    }
+
+    @Test
+    void testReconcileFindsFilesWithoutEvents() throws Exception {
+        this.properties.setWatchEnabled(false);
+        this.trigger = new WatchServiceBatchTrigger(this.delegate, this.properties, this.registry);
+        this.trigger.start();
+        Files.writeString(this.sourceDirectory.resolve("feeds/missed.csv"), "missed");
+        Files.writeString(this.sourceDirectory.resolve("feeds/missed.csv.part"), "missed");
+
+        this.trigger.reconcile();
+        this.trigger.triggerBatch();
+        this.trigger.reconcile();
+        this.trigger.triggerBatch();
+
+        verify(this.delegate, times(1)).triggerBatch(List.of("feeds/missed.csv"));
+        verify(this.delegate, times(1)).triggerBatch(anyCollection());
+    }
+
+    @Test
+    void testPeriodicReconcileDoesNotLaunchFilesAgain() throws Exception {
+        this.properties.setWatchReconcileInterval(Duration.ofMillis(200));
+        start();
+
+        Files.writeString(this.sourceDirectory.resolve("feeds/daily.csv"), "daily");
+
+        verify(this.delegate, timeout(5_000)).triggerBatch(List.of("feeds/daily.csv"));
+        // Scans right after the launch, besides the periodic ones of the watcher
+        this.trigger.reconcile();
+        this.trigger.reconcile();
+        awaitLaunchOfMarker();
+        verify(this.delegate, times(2)).triggerBatch(anyCollection());
+    }
+
+    @Test
+    void testIgnoresFilesBeingWritten() throws Exception {
+        this.properties.setWatchReconcileInterval(Duration.ofMillis(200));
+        start();
+
+        Files.writeString(this.sourceDirectory.resolve("feeds/daily.csv.part"), "download");
+        Files.writeString(this.sourceDirectory.resolve("feeds/.weekly.csv.0f8fad5b.part"), "upload");
+        Files.writeString(this.sourceDirectory.resolve("feeds/daily.csv"), "daily");
+
+        verify(this.delegate, timeout(5_000)).triggerBatch(List.of("feeds/daily.csv"));
+        awaitLaunchOfMarker();
+        verify(this.delegate, times(2)).triggerBatch(anyCollection());
+    }
+
+    @Test
+    void testTriggerWithoutPendingFilesLaunchesNothing() throws Exception {
+        start();
+
+        this.trigger.triggerBatch();
+
+        verifyNoInteractions(this.delegate);
+    }
+
+    private void start() throws Exception {
+        this.trigger = new WatchServiceBatchTrigger(this.delegate, this.properties, this.registry);
+        this.trigger.start();
+    }
+
+    /**
+     * Writes a marker file and waits until it is launched on its own, by which time any file with an earlier event
+     * would have been launched as well.
+     */
+    private void awaitLaunchOfMarker() throws Exception {
+        Files.writeString(this.sourceDirectory.resolve("feeds/marker.txt"), "marker");
+        verify(this.delegate, timeout(5_000)).triggerBatch(List.of("feeds/marker.txt"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Collection<String>> captureLaunches(int launches) {
+        ArgumentCaptor<Collection<String>> fileNames = ArgumentCaptor.forClass(Collection.class);
+        verify(this.delegate, timeout(5_000).times(launches)).triggerBatch(fileNames.capture());
+        return fileNames.getAllValues();
+    }
+
+}
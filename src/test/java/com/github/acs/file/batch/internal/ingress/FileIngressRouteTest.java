@@ -0,0 +1,144 @@
+package com.github.acs.file.batch.internal.ingress;
+
+import com.github.acs.file.batch.BatchProcessException;
+import com.github.acs.file.batch.BatchTrigger;
+import com.github.acs.file.batch.internal.FileTransferProperties;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+@ActiveProfiles("test")
+class FileIngressRouteTest {
+
+    @TempDir
+    private Path sourceDirectory;
+
+    private EmbeddedDatabase database;
+
+    private FileTransferProperties properties;
+
+    private BatchTrigger batchTrigger;
+
+    private FileIngressKeys ingressKeys;
+
+    private DefaultCamelContext camelContext;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        this.database = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2).generateUniqueName(true).build();
+        this.properties = new FileTransferProperties();
+        this.properties.setSourceDirectory(this.sourceDirectory);
+        this.properties.setIngressEnabled(true);
+        this.properties.setIngressDirectories(List.of(Path.of("feeds")));
+        this.properties.setIngressPollInterval(Duration.ofMillis(100));
+        this.properties.setIngressReadLock(FileTransferProperties.ReadLock.NONE);
+        this.batchTrigger = mock(BatchTrigger.class);
+        this.ingressKeys = new FileIngressKeys(this.properties, this.database);
+        Files.createDirectories(this.sourceDirectory.resolve("feeds"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (this.camelContext != null) {
+            this.camelContext.stop();
+        }
+        this.database.shutdown();
+    }
+
+    @Test
+    void testLaunchesOneJobPerPoll() throws Exception {
+        this.properties.setIngressMaxFilesPerPoll(3);
+        for (int i = 0; i < 5; i++) {
+            Files.writeString(this.sourceDirectory.resolve("feeds/file" + i + ".txt"), "file" + i);
+        }
+
+        start();
+
+        var fileNames = captureLaunches(2);
+        assertEquals(3, fileNames.getFirst().size());
+        assertEquals(2, fileNames.getLast().size());
+        var transferred = new HashSet<String>();
+        fileNames.forEach(transferred::addAll);
+        assertEquals(Set.of("feeds/file0.txt", "feeds/file1.txt", "feeds/file2.txt", "feeds/file3.txt", "feeds/file4.txt"), transferred);
+        // A file written afterwards is launched alone, so the files above were not launched again
+        Files.writeString(this.sourceDirectory.resolve("feeds/marker.txt"), "marker");
+        assertEquals(List.of("feeds/marker.txt"), List.copyOf(captureLaunches(3).getLast()));
+    }
+
+    @Test
+    void testPicksUpChangedFileAgain() throws Exception {
+        var file = Files.writeString(this.sourceDirectory.resolve("feeds/daily.csv"), "monday");
+        start();
+        verify(this.batchTrigger, timeout(5_000)).triggerBatch(List.of("feeds/daily.csv"));
+
+        Files.writeString(file, "monday,tuesday");
+
+        verify(this.batchTrigger, timeout(5_000).times(2)).triggerBatch(List.of("feeds/daily.csv"));
+    }
+
+    @Test
+    void testReleasesFilesWhenJobCannotBeLaunched() throws Exception {
+        Files.writeString(this.sourceDirectory.resolve("feeds/daily.csv"), "monday");
+        doThrow(new BatchProcessException(new IllegalStateException("Job repository unavailable")))
+                .doNothing()
+                .when(this.batchTrigger).triggerBatch(anyCollection());
+
+        start();
+
+        verify(this.batchTrigger, timeout(5_000).times(2)).triggerBatch(List.of("feeds/daily.csv"));
+    }
+
+    @Test
+    void testPicksUpReleasedFilesAgain() throws Exception {
+        Files.writeString(this.sourceDirectory.resolve("feeds/daily.csv"), "monday");
+        start();
+        verify(this.batchTrigger, timeout(5_000)).triggerBatch(List.of("feeds/daily.csv"));
+
+        this.ingressKeys.release(List.of("feeds/daily.csv", "feeds/deleted.csv"));
+
+        verify(this.batchTrigger, timeout(5_000).times(2)).triggerBatch(List.of("feeds/daily.csv"));
+    }
+
+    @Test
+    void testAddsNoRouteWhenDisabled() throws Exception {
+        this.properties.setIngressEnabled(false);
+
+        start();
+
+        assertTrue(this.camelContext.getRoutes().isEmpty());
+    }
+
+    private void start() throws Exception {
+        this.camelContext = new DefaultCamelContext();
+        this.camelContext.addRoutes(new FileIngressRoute(this.properties, this.batchTrigger, this.ingressKeys));
+        this.camelContext.start();
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Collection<String>> captureLaunches(int launches) {
+        ArgumentCaptor<Collection<String>> fileNames = ArgumentCaptor.forClass(Collection.class);
+        verify(this.batchTrigger, timeout(5_000).times(launches)).triggerBatch(fileNames.capture());
+        return fileNames.getAllValues();
+    }
+
+}
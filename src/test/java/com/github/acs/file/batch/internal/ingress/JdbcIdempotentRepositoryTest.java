@@ -0,0 +1,106 @@
+package com.github.acs.file.batch.internal.ingress;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ActiveProfiles("test")
+class JdbcIdempotentRepositoryTest {
+
+    private EmbeddedDatabase database;
+
+    private JdbcIdempotentRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        this.database = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2).generateUniqueName(true).build();
+        this.repository = repository("file-ingress");
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.repository.stop();
+        this.database.shutdown();
+    }
+
+    @Test
+    void testAddsKeyOnce() {
+        assertFalse(this.repository.contains("a"));
+        assertTrue(this.repository.add("a"));
+        assertFalse(this.repository.add("a"));
+        assertTrue(this.repository.contains("a"));
+    }
+
+    @Test
+    void testKeyAddedByOtherInstanceIsNotAddedAgain() {
+        var other = repository("file-ingress");
+
+        assertTrue(other.add("a"));
+
+        assertTrue(this.repository.contains("a"));
+        assertFalse(this.repository.add("a"));
+    }
+
+    @Test
+    void testKeysAreSeparatedByProcessorName() {
+        var other = repository("other");
+
+        assertTrue(this.repository.add("a"));
+
+        assertFalse(other.contains("a"));
+        assertTrue(other.add("a"));
+    }
+
+    @Test
+    void testRemovedKeyIsAddedAgain() {
+        this.repository.add("a");
+        this.repository.add("b");
+
+        assertTrue(this.repository.remove("a"));
+        assertFalse(this.repository.remove("a"));
+
+        assertFalse(this.repository.contains("a"));
+        assertTrue(this.repository.add("a"));
+        assertTrue(this.repository.contains("b"));
+    }
+
+    @Test
+    void testClearRemovesKeysOfProcessorOnly() {
+        var other = repository("other");
+        this.repository.add("a");
+        other.add("a");
+
+        this.repository.clear();
+
+        assertFalse(this.repository.contains("a"));
+        assertTrue(other.contains("a"));
+    }
+
+    @Test
+    void testEvictedKeysAreLookedUp() {
+        var repository = new JdbcIdempotentRepository(new JdbcTemplate(this.database), "small", 2);
+        repository.start();
+        for (int i = 0; i < 10; i++) {
+            assertTrue(repository.add("key" + i));
+        }
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(repository.contains("key" + i));
+            assertFalse(repository.add("key" + i));
+        }
+    }
+
+    private JdbcIdempotentRepository repository(String processorName) {
+        var repository = new JdbcIdempotentRepository(new JdbcTemplate(this.database), processorName, 1_000);
+        repository.start();
+        return repository;
+    }
+
+}
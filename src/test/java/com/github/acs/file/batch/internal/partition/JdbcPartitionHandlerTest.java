@@ -0,0 +1,106 @@
+package com.github.acs.file.batch.internal.partition;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@ActiveProfiles("test")
+class JdbcPartitionHandlerTest {
+
+    private static final String STEP_NAME = "fileTransferStep";
+    private static final long LEASE_MILLIS = 60_000;
+
+    private PartitionAssignments assignments;
+
+    private JdbcPartitionHandler partitionHandler;
+
+    private final JobExecution savedJobExecution = new JobExecution(1L);
+
+    private final StepExecution savedPartition = new StepExecution(STEP_NAME + ":partition0", this.savedJobExecution, 2L);
+
+    @BeforeEach
+    void setUp() {
+        var dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=PostgreSQL;DB_CLOSE_DELAY=-1");
+        this.assignments = new PartitionAssignments(new JdbcTemplate(dataSource));
+        var jobExplorer = mock(JobExplorer.class);
+        this.savedJobExecution.addStepExecutions(List.of(this.savedPartition));
+        this.savedPartition.setStatus(BatchStatus.STARTED);
+        when(jobExplorer.getJobExecution(1L)).thenReturn(this.savedJobExecution);
+        this.partitionHandler = new JdbcPartitionHandler(this.assignments, jobExplorer, STEP_NAME, Duration.ofMillis(10), Duration.ofSeconds(30));
+    }
+
+    @Test
+    void testPartitionCompletedByWorkerIsReturned() throws Exception {
+        var handled = handle();
+        assertEquals(1, claim("first", System.currentTimeMillis()));
+
+        this.savedPartition.setStatus(BatchStatus.COMPLETED);
+        this.assignments.complete("first", 2L);
+
+        assertEquals(BatchStatus.COMPLETED, handled.get(10, TimeUnit.SECONDS).iterator().next().getStatus());
+        assertEquals(List.of(2L), this.assignments.heartbeat("first", List.of(2L), System.currentTimeMillis()));
+    }
+
+    @Test
+    void testPartitionStoppedByWorkerThatLostItIsAwaitedFromWorkerThatTookItOver() throws Exception {
+        var handled = handle();
+        long now = System.currentTimeMillis();
+        assertEquals(1, claim("first", now));
+        assertEquals(1, claim("second", now + LEASE_MILLIS + 1));
+
+        // The first worker is still alive, notices that it lost the partition and stops its step execution
+        this.savedPartition.setStatus(BatchStatus.STOPPED);
+        Thread.sleep(200);
+
+        assertFalse(handled.isDone());
+        assertTrue(this.assignments.heartbeat("second", List.of(2L), now + LEASE_MILLIS + 2).isEmpty());
+
+        this.savedPartition.setStatus(BatchStatus.COMPLETED);
+        this.assignments.complete("second", 2L);
+
+        assertEquals(BatchStatus.COMPLETED, handled.get(10, TimeUnit.SECONDS).iterator().next().getStatus());
+    }
+
+    private CompletableFuture<Set<StepExecution>> handle() {
+        var managerStepExecution = new StepExecution(STEP_NAME, new JobExecution(1L), 1L);
+        var partition = new StepExecution(STEP_NAME + ":partition0", new JobExecution(1L), 2L);
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return this.partitionHandler.doHandle(managerStepExecution, Set.of(partition));
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    /**
+     * Claims the partition as soon as the handler added it.
+     */
+    private int claim(String worker, long nowMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        var claimed = this.assignments.claim(STEP_NAME, worker, 1, nowMillis, LEASE_MILLIS);
+        while (claimed.isEmpty() && System.nanoTime() - deadline < 0) {
+            Thread.sleep(10);
+            claimed = this.assignments.claim(STEP_NAME, worker, 1, nowMillis, LEASE_MILLIS);
+        }
+        return claimed.size();
+    }
+
+}
@@ -0,0 +1,91 @@
+package com.github.acs.file.batch.internal.partition;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ActiveProfiles("test")
+class PartitionAssignmentsTest {
+
+    private static final String STEP_NAME = "fileTransferStep";
+    private static final long LEASE_MILLIS = 60_000;
+
+    private PartitionAssignments assignments;
+
+    @BeforeEach
+    void setUp() {
+        var dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=PostgreSQL;DB_CLOSE_DELAY=-1");
+        this.assignments = new PartitionAssignments(new JdbcTemplate(dataSource));
+    }
+
+    @Test
+    void testPartitionIsClaimedByOneWorker() {
+        this.assignments.add(1, STEP_NAME, List.of(10L, 11L, 12L));
+
+        var first = this.assignments.claim(STEP_NAME, "a", 2, 0, LEASE_MILLIS);
+        var second = this.assignments.claim(STEP_NAME, "b", 2, 0, LEASE_MILLIS);
+
+        assertEquals(List.of(new PartitionAssignments.Assignment(1, 10), new PartitionAssignments.Assignment(1, 11)), first);
+        assertEquals(List.of(new PartitionAssignments.Assignment(1, 12)), second);
+        assertTrue(this.assignments.claim(STEP_NAME, "c", 2, 0, LEASE_MILLIS).isEmpty());
+    }
+
+    @Test
+    void testExpiredClaimIsTakenOver() {
+        this.assignments.add(1, STEP_NAME, List.of(10L));
+        this.assignments.claim(STEP_NAME, "a", 1, 0, LEASE_MILLIS);
+
+        assertTrue(this.assignments.claim(STEP_NAME, "b", 1, LEASE_MILLIS, LEASE_MILLIS).isEmpty());
+        assertEquals(1, this.assignments.claim(STEP_NAME, "b", 1, LEASE_MILLIS + 1, LEASE_MILLIS).size());
+        assertEquals(List.of(10L), this.assignments.heartbeat("a", List.of(10L), LEASE_MILLIS + 2));
+    }
+
+    @Test
+    void testHeartbeatRenewsLease() {
+        this.assignments.add(1, STEP_NAME, List.of(10L));
+        this.assignments.claim(STEP_NAME, "a", 1, 0, LEASE_MILLIS);
+
+        assertTrue(this.assignments.heartbeat("a", List.of(10L), 50_000).isEmpty());
+
+        assertTrue(this.assignments.claim(STEP_NAME, "b", 1, LEASE_MILLIS + 1, LEASE_MILLIS).isEmpty());
+        assertEquals(1, this.assignments.claim(STEP_NAME, "b", 1, 50_000 + LEASE_MILLIS + 1, LEASE_MILLIS).size());
+    }
+
+    @Test
+    void testCompletedPartitionIsNotClaimedAgain() {
+        this.assignments.add(1, STEP_NAME, List.of(10L));
+        this.assignments.claim(STEP_NAME, "a", 1, 0, LEASE_MILLIS);
+
+        this.assignments.complete("a", 10);
+
+        assertTrue(this.assignments.claim(STEP_NAME, "b", 1, 10 * LEASE_MILLIS, LEASE_MILLIS).isEmpty());
+        assertEquals(List.of(10L), this.assignments.heartbeat("a", List.of(10L), LEASE_MILLIS));
+    }
+
+    @Test
+    void testClaimsPartitionsOfStepOnly() {
+        this.assignments.add(1, "otherStep", List.of(10L));
+        this.assignments.add(1, STEP_NAME, List.of(11L));
+
+        var claimed = this.assignments.claim(STEP_NAME, "a", 2, 0, LEASE_MILLIS);
+
+        assertEquals(List.of(new PartitionAssignments.Assignment(1, 11)), claimed);
+    }
+
+    @Test
+    void testRemovedPartitionIsNotClaimed() {
+        this.assignments.add(1, STEP_NAME, List.of(10L, 11L));
+
+        this.assignments.remove(List.of(10L, 11L));
+
+        assertTrue(this.assignments.claim(STEP_NAME, "a", 2, 0, LEASE_MILLIS).isEmpty());
+    }
+
+}
@@ -0,0 +1,123 @@
+package com.github.acs.file.batch.internal.partition;
+
+import com.github.acs.file.batch.internal.FileTransferProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@ActiveProfiles("test")
+class PartitionWorkerTest {
+
+    private static final String STEP_NAME = "fileTransferStep";
+    private static final long LEASE_MILLIS = 60_000;
+
+    private JdbcTemplate jdbcTemplate;
+    private PartitionAssignments assignments;
+    private StepExecution stepExecution;
+    private Step step;
+    private PartitionWorker worker;
+
+    @BeforeEach
+    void setUp() {
+        this.jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource("jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=PostgreSQL;DB_CLOSE_DELAY=-1"));
+        this.assignments = new PartitionAssignments(this.jdbcTemplate);
+        this.assignments.add(1, STEP_NAME, List.of(10L));
+        this.stepExecution = new StepExecution(STEP_NAME + ":partition0", new JobExecution(1L), 10L);
+
+        var jobExplorer = mock(JobExplorer.class);
+        when(jobExplorer.getStepExecution(1L, 10L)).thenReturn(this.stepExecution);
+        this.step = mock(Step.class);
+        when(this.step.getName()).thenReturn(STEP_NAME);
+        var properties = new FileTransferProperties();
+        properties.setPartitionConcurrency(1);
+        properties.setPartitionLeaseTimeout(Duration.ofMillis(LEASE_MILLIS));
+        this.worker = new PartitionWorker(this.assignments, jobExplorer, mock(JobRepository.class), this.step, properties);
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.worker.close();
+    }
+
+    @Test
+    void testExecutedPartitionIsCompleted() throws Exception {
+        var executed = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            executed.countDown();
+            return null;
+        }).when(this.step).execute(any(StepExecution.class));
+
+        this.worker.poll();
+
+        assertTrue(executed.await(10, TimeUnit.SECONDS));
+        awaitAssignment(Map.of("status", "DONE"));
+    }
+
+    @Test
+    void testPartitionIsStoppedWhenLeaseIsTakenOver() throws Exception {
+        var started = new CountDownLatch(1);
+        var stopped = new AtomicBoolean();
+        var finished = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            StepExecution stepExecution = invocation.getArgument(0);
+            started.countDown();
+            // A chunk oriented step checks for termination at every chunk
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (!stepExecution.isTerminateOnly() && System.nanoTime() - deadline < 0) {
+                Thread.sleep(10);
+            }
+            stopped.set(stepExecution.isTerminateOnly());
+            finished.countDown();
+            return null;
+        }).when(this.step).execute(any(StepExecution.class));
+
+        this.worker.poll();
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        // The lease expires while the partition is executed, and another worker takes the partition over
+        long expired = System.currentTimeMillis() + LEASE_MILLIS + 1;
+        assertEquals(1, this.assignments.claim(STEP_NAME, "other", 1, expired, LEASE_MILLIS).size());
+        this.worker.heartbeat();
+
+        assertTrue(finished.await(10, TimeUnit.SECONDS));
+        assertTrue(stopped.get());
+        // The partition is left to the other worker
+        awaitAssignment(Map.of("status", "CLAIMED", "worker", "other"));
+    }
+
+    private void awaitAssignment(Map<String, Object> expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (true) {
+            var actual = this.jdbcTemplate.queryForMap("SELECT status, worker FROM " + PartitionAssignments.TABLE_NAME + " WHERE step_execution_id = 10");
+            if (expected.entrySet().stream().allMatch(entry -> entry.getValue().equals(actual.get(entry.getKey())))) {
+                return;
+            }
+            if (System.nanoTime() - deadline > 0) {
+                fail("Expected the assignment to be " + expected + " but was " + actual);
+            }
+            Thread.sleep(10);
+        }
+    }
+
+}
@@ -0,0 +1,187 @@
+package com.github.acs.file.batch.internal.partition;
+
+import com.github.acs.file.batch.internal.BatchConfig;
+import com.github.acs.file.batch.internal.FileTransferProperties;
+import com.github.acs.file.batch.internal.JobNotificationListener;
+import com.github.acs.file.batch.internal.template.CompletedTemplateVariables;
+import com.github.acs.file.email.EmailRequest;
+import com.github.acs.file.email.EmailService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.batch.core.launch.JobLauncher;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.batch.BatchAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceTransactionManagerAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.sql.DataSource;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Runs a manager node and two worker nodes as application contexts of one JVM, sharing an in-memory database in
+ * PostgreSQL mode, and source and destination directories.
+ */
+@ActiveProfiles("test")
+class RemotePartitioningTest {
+
+    @TempDir
+    private Path sourceDirectory;
+
+    @TempDir
+    private Path destinationDirectory;
+
+    private String databaseUrl;
+
+    private final List<ConfigurableApplicationContext> nodes = new ArrayList<>();
+
+    @Configuration
+    @Import({BatchConfig.class, FileTransferProperties.class, JobNotificationListener.class})
+    @ImportAutoConfiguration({
+            DataSourceAutoConfiguration.class,
+            DataSourceTransactionManagerAutoConfiguration.class,
+            BatchAutoConfiguration.class
+    })
+    static class NodeConfig {
+
+        @Bean
+        SimpleMeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+
+        @Bean
+        EmailService emailService() {
+            return mock(EmailService.class);
+        }
+
+    }
+
+    @BeforeEach
+    void setUp() throws Exception {
+        this.databaseUrl = "jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+        var random = new Random(42);
+        for (int i = 0; i < 8; i++) {
+            var content = new byte[(i + 1) * 300_000];
+            random.nextBytes(content);
+            Files.write(this.sourceDirectory.resolve("file" + i + ".bin"), content);
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.nodes.reversed().forEach(ConfigurableApplicationContext::close);
+    }
+
+    @Test
+    void testWorkersTransferPartitionsOfManager() throws Exception {
+        var manager = start("always", "module.batch.partition_mode=remote");
+        start("never", "module.batch.partition_worker_enabled=true");
+        start("never", "module.batch.partition_worker_enabled=true");
+
+        var jobExecution = manager.getBean(JobLauncher.class).run(manager.getBean("fileTransferBatchJob", Job.class),
+                new JobParametersBuilder().addLong("time", System.currentTimeMillis()).toJobParameters());
+
+        assertEquals(BatchStatus.COMPLETED, jobExecution.getStatus());
+        for (int i = 0; i < 8; i++) {
+            assertArrayEquals(Files.readAllBytes(this.sourceDirectory.resolve("file" + i + ".bin")),
+                    Files.readAllBytes(this.destinationDirectory.resolve("file" + i + ".bin")));
+        }
+        var partitions = manager.getBean(JobExplorer.class).getJobExecution(jobExecution.getId()).getStepExecutions().stream()
+                .filter(stepExecution -> stepExecution.getStepName().startsWith("fileTransferStep:"))
+                .toList();
+        assertEquals(4, partitions.size());
+        assertTrue(partitions.stream().map(StepExecution::getStatus).allMatch(BatchStatus.COMPLETED::equals));
+
+        // The listener of the manager reports what the workers transferred
+        var emailRequest = ArgumentCaptor.forClass(EmailRequest.class);
+        verify(manager.getBean(EmailService.class)).enqueueEmail(emailRequest.capture());
+        var templateVariables = (CompletedTemplateVariables) emailRequest.getValue().template().templateVariables();
+        assertEquals(8, templateVariables.fileCount());
+        assertEquals(36 * 300_000L, templateVariables.byteCount());
+        var registry = manager.getBean(SimpleMeterRegistry.class);
+        assertEquals(8, registry.counter("file.transfer.files", "job", "fileTransferBatchJob").count());
+        assertEquals(36 * 300_000, registry.counter("file.transfer.bytes", "job", "fileTransferBatchJob").count());
+    }
+
+    @Test
+    void testPartitionsOfStoppedWorkerAreTakenOver() throws Exception {
+        var manager = start("always", "module.batch.partition_mode=remote");
+        var assignments = new PartitionAssignments(new JdbcTemplate(manager.getBean(DataSource.class)));
+        var status = new AtomicReference<BatchStatus>();
+        var launcher = new Thread(() -> {
+            try {
+                var jobExecution = manager.getBean(JobLauncher.class).run(manager.getBean("fileTransferBatchJob", Job.class),
+                        new JobParametersBuilder().addLong("time", System.currentTimeMillis()).toJobParameters());
+                status.set(jobExecution.getStatus());
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        launcher.start();
+        // A worker that claimed every partition and stopped before transferring any of them
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        var claimed = assignments.claim("fileTransferStep", "stopped", 4, System.currentTimeMillis(), 500);
+        while (claimed.isEmpty() && System.nanoTime() - deadline < 0) {
+            Thread.sleep(10);
+            claimed = assignments.claim("fileTransferStep", "stopped", 4, System.currentTimeMillis(), 500);
+        }
+        assertEquals(4, claimed.size());
+
+        start("never", "module.batch.partition_worker_enabled=true");
+        launcher.join(30_000);
+
+        assertFalse(launcher.isAlive());
+        assertEquals(BatchStatus.COMPLETED, status.get());
+        for (int i = 0; i < 8; i++) {
+            assertTrue(Files.exists(this.destinationDirectory.resolve("file" + i + ".bin")));
+        }
+    }
+
+    private ConfigurableApplicationContext start(String initializeSchema, String... properties) {
+        var arguments = new ArrayList<>(List.of("--spring.datasource.url=" + this.databaseUrl,
+                "--spring.batch.jdbc.initialize-schema=" + initializeSchema,
+                "--module.batch.source_directory=" + this.sourceDirectory,
+                "--module.batch.destination_directory=" + this.destinationDirectory,
+                "--module.batch.grid_size=4",
+                "--module.batch.partition_concurrency=2",
+                "--module.batch.partition_poll_interval=100ms",
+                "--module.batch.partition_lease_timeout=500ms"));
+        for (var property : properties) {
+            arguments.add("--" + property);
+        }
+        var node = new SpringApplicationBuilder(NodeConfig.class)
+                .web(WebApplicationType.NONE)
+                .profiles("test")
+                .run(arguments.toArray(new String[0]));
+        this.nodes.add(node);
+        return node;
+    }
+
+}
@@ -0,0 +1,152 @@
+package com.github.acs.file.batch.internal.remote;
+
+import com.github.acs.file.batch.internal.FileTransferProperties;
+import org.apache.ftpserver.FtpServer;
+import org.apache.ftpserver.FtpServerFactory;
+import org.apache.ftpserver.ftplet.DefaultFtplet;
+import org.apache.ftpserver.ftplet.FtpSession;
+import org.apache.ftpserver.ftplet.FtpletResult;
+import org.apache.ftpserver.impl.DefaultFtpServer;
+import org.apache.ftpserver.listener.ListenerFactory;
+import org.apache.ftpserver.usermanager.PropertiesUserManagerFactory;
+import org.apache.ftpserver.usermanager.impl.BaseUser;
+import org.apache.ftpserver.usermanager.impl.WritePermission;
+import org.apache.sshd.common.file.virtualfs.VirtualFileSystemFactory;
+import org.apache.sshd.common.session.Session;
+import org.apache.sshd.common.session.SessionListener;
+import org.apache.sshd.server.SshServer;
+import org.apache.sshd.server.keyprovider.SimpleGeneratorHostKeyProvider;
+import org.apache.sshd.sftp.server.SftpSubsystemFactory;
+
+import java.io.Closeable;
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An embedded SFTP or FTP server serving a local directory, which counts the sessions opened to it.
+ */
+abstract class EmbeddedServer implements Closeable {
+
+    static final String USERNAME = "partner";
+    static final String PASSWORD = "secret";
+
+    final AtomicInteger sessions = new AtomicInteger();
+
+    abstract URI uri();
+
+    abstract void closeSessions();
+
+    @Override
+    public abstract void close();
+
+    FileTransferProperties.Remote remote() {
+        var remote = new FileTransferProperties.Remote();
+        remote.setUri(uri());
+        remote.setUsername(USERNAME);
+        remote.setPassword(PASSWORD);
+        remote.setStrictHostKeyChecking(false);
+        return remote;
+    }
+
+    static EmbeddedServer start(String scheme, Path root) throws Exception {
+        return switch (scheme) {
+            case "sftp" -> new Sftp(root);
+            case "ftp" -> new Ftp(root);
+            default -> throw new IllegalArgumentException(scheme);
+        };
+    }
+
+    private static final class Sftp extends EmbeddedServer {
+
+        private final SshServer server;
+
+        private Sftp(Path root) throws Exception {
+            this.server = SshServer.setUpDefaultServer();
+            this.server.setPort(0);
+            this.server.setKeyPairProvider(new SimpleGeneratorHostKeyProvider());
+            this.server.setPasswordAuthenticator((username, password, session) -> USERNAME.equals(username) && PASSWORD.equals(password));
+            this.server.setSubsystemFactories(List.of(new SftpSubsystemFactory()));
+            this.server.setFileSystemFactory(new VirtualFileSystemFactory(root));
+            this.server.addSessionListener(new SessionListener() {
+                @Override
+                public void sessionCreated(Session session) {
+                    Sftp.this.sessions.incrementAndGet();
+                }
+            });
+            this.server.start();
+        }
+
+        @Override
+        URI uri() {
+            return URI.create("sftp://localhost:" + this.server.getPort() + "/");
+        }
+
+        @Override
+        void closeSessions() {
+            this.server.getActiveSessions().forEach(session -> session.close(true));
+        }
+
+        @Override
+        public void close() {
+            try {
+                this.server.stop(true);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+    }
+
+    private static final class Ftp extends EmbeddedServer {
+
+        private final FtpServer server;
+        private final int port;
+
+        private Ftp(Path root) throws Exception {
+            var factory = new FtpServerFactory();
+            var listener = new ListenerFactory();
+            listener.setPort(0);
+            factory.addListener("default", listener.createListener());
+            var user = new BaseUser();
+            user.setName(USERNAME);
+            user.setPassword(PASSWORD);
+            user.setHomeDirectory(root.toString());
+            user.setAuthorities(List.of(new WritePermission()));
+            var userManager = new PropertiesUserManagerFactory().createUserManager();
+            userManager.save(user);
+            factory.setUserManager(userManager);
+            factory.setFtplets(new HashMap<>(Map.of("sessions", new DefaultFtplet() {
+                @Override
+                public FtpletResult onConnect(FtpSession session) {
+                    Ftp.this.sessions.incrementAndGet();
+                    return FtpletResult.DEFAULT;
+                }
+            })));
+            this.server = factory.createServer();
+            this.server.start();
+            this.port = ((DefaultFtpServer) this.server).getListener("default").getPort();
+        }
+
+        @Override
+        URI uri() {
+            return URI.create("ftp://localhost:" + this.port + "/");
+        }
+
+        @Override
+        void closeSessions() {
+            ((DefaultFtpServer) this.server).getListener("default").getActiveSessions()
+                    .forEach(session -> session.close(false));
+        }
+
+        @Override
+        public void close() {
+            this.server.stop();
+        }
+
+    }
+
+}
@@ -0,0 +1,198 @@
+package com.github.acs.file.batch.internal.remote;
+
+import com.github.acs.file.batch.internal.FileTransferProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ActiveProfiles("test")
+class RemoteClientPoolTest {
+
+    @TempDir
+    private Path remoteDirectory;
+
+    @TempDir
+    private Path localDirectory;
+
+    private EmbeddedServer server;
+
+    private RemoteClientPool pool;
+
+    @AfterEach
+    void tearDown() {
+        if (this.pool != null) {
+            this.pool.close();
+        }
+        if (this.server != null) {
+            this.server.close();
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"sftp", "ftp"})
+    void testUploadsAndDownloadsFile(String scheme) throws Exception {
+        start(scheme, 4);
+        var file = Files.writeString(this.localDirectory.resolve("daily.csv"), "a,b,c\n".repeat(50_000));
+        Files.setLastModifiedTime(file, FileTime.from(Instant.parse("2026-10-01T08:00:00Z")));
+
+        this.pool.execute(client -> {
+            client.upload(file, "/outbound/2026/daily.csv");
+            return null;
+        });
+
+        assertEquals(Files.readString(file), Files.readString(this.remoteDirectory.resolve("outbound/2026/daily.csv")));
+        assertFalse(Files.exists(this.remoteDirectory.resolve("outbound/2026/daily.csv.part")));
+        var entries = this.pool.execute(client -> client.list("/outbound/2026"));
+        assertEquals(List.of("daily.csv"), entries.stream().map(RemoteFileClient.Entry::name).toList());
+        assertEquals(Files.size(file), entries.getFirst().size());
+
+        var downloaded = this.localDirectory.resolve("copy/daily.csv");
+        this.pool.execute(client -> {
+            client.download("/outbound/2026/daily.csv", downloaded);
+            return null;
+        });
+
+        assertEquals(Files.readString(file), Files.readString(downloaded));
+        assertEquals(entries.getFirst().modifiedMillis(), Files.getLastModifiedTime(downloaded).toMillis());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"sftp", "ftp"})
+    void testUploadReplacesFile(String scheme) throws Exception {
+        start(scheme, 4);
+        Files.writeString(this.remoteDirectory.resolve("daily.csv"), "monday");
+        var file = Files.writeString(this.localDirectory.resolve("daily.csv"), "monday,tuesday");
+
+        this.pool.execute(client -> {
+            client.upload(file, "/daily.csv");
+            return null;
+        });
+
+        assertEquals("monday,tuesday", Files.readString(this.remoteDirectory.resolve("daily.csv")));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"sftp", "ftp"})
+    void testStatOfMissingFileIsNull(String scheme) throws Exception {
+        start(scheme, 4);
+        Files.writeString(this.remoteDirectory.resolve("daily.csv"), "monday");
+
+        assertNull(this.pool.execute(client -> client.stat("/missing.csv")));
+        assertEquals(6, this.pool.execute(client -> client.stat("/daily.csv")).size());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"sftp", "ftp"})
+    void testReusesSessionAcrossCalls(String scheme) throws Exception {
+        start(scheme, 4);
+        for (int i = 0; i < 20; i++) {
+            Files.writeString(this.remoteDirectory.resolve("file" + i + ".txt"), "file" + i);
+        }
+
+        for (int i = 0; i < 20; i++) {
+            var name = "file" + i + ".txt";
+            this.pool.execute(client -> {
+                client.download("/" + name, this.localDirectory.resolve(name));
+                return null;
+            });
+        }
+
+        assertEquals(1, this.server.sessions.get());
+        assertEquals("file19", Files.readString(this.localDirectory.resolve("file19.txt")));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"sftp", "ftp"})
+    void testReconnectsAfterServerClosedSession(String scheme) throws Exception {
+        start(scheme, 4);
+        Files.writeString(this.remoteDirectory.resolve("daily.csv"), "monday");
+        var pooled = this.pool.execute(client -> {
+            client.stat("/daily.csv");
+            return client;
+        });
+
+        this.server.closeSessions();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (pooled.isAlive()) {
+            assertTrue(System.nanoTime() - deadline < 0, "Expected the pooled client to see its session closed");
+            Thread.sleep(10);
+        }
+
+        assertNotNull(this.pool.execute(client -> client.stat("/daily.csv")));
+        assertEquals(2, this.server.sessions.get());
+    }
+
+    @Test
+    void testLimitsConcurrentChannels() throws Exception {
+        start("sftp", 2);
+        var active = new AtomicInteger();
+        var maxActive = new AtomicInteger();
+        var bothActive = new CountDownLatch(2);
+
+        var results = this.pool.executeAll(IntStream.range(0, 6).boxed().toList(), (client, item) -> {
+            maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+            // The first two calls wait for each other, so both channels are used at once
+            bothActive.countDown();
+            try {
+                assertTrue(bothActive.await(10, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            active.decrementAndGet();
+            return item * 2;
+        });
+
+        assertEquals(List.of(0, 2, 4, 6, 8, 10), results);
+        assertEquals(2, maxActive.get());
+        assertEquals(1, this.server.sessions.get());
+    }
+
+    @Test
+    void testReportsEveryFailedCall() throws Exception {
+        start("sftp", 2);
+
+        var error = assertThrows(IOException.class, () -> this.pool.executeAll(List.of("a", "b", "c"), (client, item) -> {
+            if (item.equals("b")) {
+                return item;
+            }
+            throw new IOException("Could not transfer " + item);
+        }));
+
+        assertEquals("Could not transfer a", error.getMessage());
+        assertEquals(1, error.getSuppressed().length);
+        assertEquals("Could not transfer c", error.getSuppressed()[0].getMessage());
+    }
+
+    @Test
+    void testRejectsUnsupportedScheme() {
+        var remote = new FileTransferProperties.Remote();
+        remote.setUri(URI.create("http://localhost/"));
+
+        assertThrows(IllegalArgumentException.class, () -> new RemoteClientPool(remote));
+    }
+
+    private void start(String scheme, int channels) throws Exception {
+        this.server = EmbeddedServer.start(scheme, this.remoteDirectory);
+        var remote = this.server.remote();
+        remote.setChannels(channels);
+        this.pool = new RemoteClientPool(remote);
+    }
+
+}
@@ -0,0 +1,99 @@
+package com.github.acs.file.batch.internal.remote;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.batch.test.MetaDataInstanceFactory;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.FileNotFoundException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ActiveProfiles("test")
+class RemoteFetchTaskletTest {
+
+    @TempDir
+    private Path remoteDirectory;
+
+    @TempDir
+    private Path sourceDirectory;
+
+    private EmbeddedServer server;
+
+    private RemoteClientPool pool;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Files.createDirectories(this.remoteDirectory.resolve("outbound/2026"));
+        Files.writeString(this.remoteDirectory.resolve("outbound/daily.csv"), "daily");
+        Files.writeString(this.remoteDirectory.resolve("outbound/2026/monthly.csv"), "monthly");
+        Files.writeString(this.remoteDirectory.resolve("outbound/2026/yearly.csv.part"), "year");
+        this.server = EmbeddedServer.start("sftp", this.remoteDirectory);
+        var remote = this.server.remote();
+        remote.setUri(remote.getUri().resolve("/outbound"));
+        this.pool = new RemoteClientPool(remote);
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.pool.close();
+        this.server.close();
+    }
+
+    @Test
+    void testFetchesEveryRemoteFileWithoutNames() throws Exception {
+        var contribution = contribution();
+
+        var status = new RemoteFetchTasklet(this.pool, this.sourceDirectory, List.of()).execute(contribution, null);
+
+        assertEquals(RepeatStatus.FINISHED, status);
+        assertEquals("daily", Files.readString(this.sourceDirectory.resolve("daily.csv")));
+        assertEquals("monthly", Files.readString(this.sourceDirectory.resolve("2026/monthly.csv")));
+        assertFalse(Files.exists(this.sourceDirectory.resolve("2026/yearly.csv.part")));
+        assertEquals(2, contribution.getWriteCount());
+    }
+
+    @Test
+    void testFetchesNamedFiles() throws Exception {
+        new RemoteFetchTasklet(this.pool, this.sourceDirectory, List.of("2026/monthly.csv")).execute(contribution(), null);
+
+        assertEquals("monthly", Files.readString(this.sourceDirectory.resolve("2026/monthly.csv")));
+        assertFalse(Files.exists(this.sourceDirectory.resolve("daily.csv")));
+    }
+
+    @Test
+    void testSkipsFilesFetchedBefore() throws Exception {
+        new RemoteFetchTasklet(this.pool, this.sourceDirectory, List.of()).execute(contribution(), null);
+        Files.writeString(this.remoteDirectory.resolve("outbound/daily.csv"), "daily,weekly");
+        var contribution = contribution();
+
+        new RemoteFetchTasklet(this.pool, this.sourceDirectory, List.of()).execute(contribution, null);
+
+        assertEquals("daily,weekly", Files.readString(this.sourceDirectory.resolve("daily.csv")));
+        assertEquals(1, contribution.getWriteCount());
+        assertEquals(1, contribution.getFilterCount());
+        assertEquals(1, this.server.sessions.get());
+    }
+
+    @Test
+    void testFailsWhenNamedFileIsMissing() {
+        var tasklet = new RemoteFetchTasklet(this.pool, this.sourceDirectory, List.of("daily.csv", "missing.csv"));
+
+        var error = assertThrows(FileNotFoundException.class, () -> tasklet.execute(contribution(), null));
+
+        assertTrue(error.getMessage().endsWith("/outbound/missing.csv"));
+        assertEquals("daily", assertDoesNotThrow(() -> Files.readString(this.sourceDirectory.resolve("daily.csv"))));
+    }
+
+    private static StepContribution contribution() {
+        return new StepContribution(MetaDataInstanceFactory.createStepExecution());
+    }
+
+}
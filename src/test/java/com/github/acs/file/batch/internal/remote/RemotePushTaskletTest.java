@@ -0,0 +1,100 @@
+package com.github.acs.file.batch.internal.remote;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.test.MetaDataInstanceFactory;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.FileNotFoundException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ActiveProfiles("test")
+class RemotePushTaskletTest {
+
+    @TempDir
+    private Path remoteDirectory;
+
+    @TempDir
+    private Path destinationDirectory;
+
+    private EmbeddedServer server;
+
+    private RemoteClientPool pool;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Files.createDirectories(this.destinationDirectory.resolve("2026"));
+        Files.writeString(this.destinationDirectory.resolve("daily.csv"), "daily");
+        Files.writeString(this.destinationDirectory.resolve("2026/monthly.csv"), "monthly");
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (this.pool != null) {
+            this.pool.close();
+        }
+        if (this.server != null) {
+            this.server.close();
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"sftp", "ftp"})
+    void testPushesFiles(String scheme) throws Exception {
+        start(scheme);
+        var contribution = contribution();
+
+        new RemotePushTasklet(this.pool, this.destinationDirectory, List.of("daily.csv", "2026/monthly.csv")).execute(contribution, null);
+
+        assertEquals("daily", Files.readString(this.remoteDirectory.resolve("inbound/daily.csv")));
+        assertEquals("monthly", Files.readString(this.remoteDirectory.resolve("inbound/2026/monthly.csv")));
+        assertEquals(2, contribution.getWriteCount());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"sftp", "ftp"})
+    void testSkipsFilesPushedBefore(String scheme) throws Exception {
+        start(scheme);
+        var fileNames = List.of("daily.csv", "2026/monthly.csv");
+        new RemotePushTasklet(this.pool, this.destinationDirectory, fileNames).execute(contribution(), null);
+        Files.writeString(this.destinationDirectory.resolve("daily.csv"), "daily,weekly");
+        int sessions = this.server.sessions.get();
+        var contribution = contribution();
+
+        new RemotePushTasklet(this.pool, this.destinationDirectory, fileNames).execute(contribution, null);
+
+        assertEquals("daily,weekly", Files.readString(this.remoteDirectory.resolve("inbound/daily.csv")));
+        assertEquals(1, contribution.getWriteCount());
+        assertEquals(1, contribution.getFilterCount());
+        assertEquals(sessions, this.server.sessions.get());
+    }
+
+    @Test
+    void testFailsWhenDestinationFileIsMissing() throws Exception {
+        start("sftp");
+        var tasklet = new RemotePushTasklet(this.pool, this.destinationDirectory, List.of("missing.csv"));
+
+        assertThrows(FileNotFoundException.class, () -> tasklet.execute(contribution(), null));
+    }
+
+    private void start(String scheme) throws Exception {
+        this.server = EmbeddedServer.start(scheme, this.remoteDirectory);
+        var remote = this.server.remote();
+        remote.setUri(remote.getUri().resolve("/inbound"));
+        this.pool = new RemoteClientPool(remote);
+    }
+
+    private static StepContribution contribution() {
+        return new StepContribution(MetaDataInstanceFactory.createStepExecution());
+    }
+
+}
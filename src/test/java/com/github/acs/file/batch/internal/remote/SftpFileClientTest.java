@@ -0,0 +1,96 @@
+package com.github.acs.file.batch.internal.remote;
+
+import org.apache.sshd.client.SshClient;
+import org.apache.sshd.client.session.ClientSession;
+import org.apache.sshd.sftp.client.SftpClient;
+import org.apache.sshd.sftp.client.SftpClientFactory;
+import org.apache.sshd.sftp.client.SftpVersionSelector;
+import org.apache.sshd.sftp.client.extensions.openssh.OpenSSHPosixRenameExtension;
+import org.apache.sshd.sftp.common.SftpConstants;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.mockito.InOrder;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+@ActiveProfiles("test")
+class SftpFileClientTest {
+
+    @TempDir
+    private Path remoteDirectory;
+
+    @TempDir
+    private Path localDirectory;
+
+    private EmbeddedServer server;
+
+    private SshClient sshClient;
+
+    private ClientSession session;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        this.server = EmbeddedServer.start("sftp", this.remoteDirectory);
+        this.sshClient = SshClient.setUpDefaultClient();
+        this.sshClient.start();
+        var uri = this.server.uri();
+        this.session = this.sshClient.connect(EmbeddedServer.USERNAME, uri.getHost(), uri.getPort())
+                .verify(Duration.ofSeconds(10)).getSession();
+        this.session.addPasswordIdentity(EmbeddedServer.PASSWORD);
+        this.session.auth().verify(Duration.ofSeconds(10));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        this.session.close();
+        this.sshClient.stop();
+        this.server.close();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {SftpConstants.SFTP_V3, SftpConstants.SFTP_V6})
+    void testUploadReplacesExistingFile(int version) throws Exception {
+        Files.writeString(this.remoteDirectory.resolve("daily.csv"), "daily");
+        var file = Files.writeString(this.localDirectory.resolve("daily.csv"), "daily,weekly");
+
+        try (var client = new SftpFileClient(SftpClientFactory.instance()
+                .createSftpClient(this.session, SftpVersionSelector.fixedVersionSelector(version)), 32 * 1024)) {
+            client.upload(file, "daily.csv");
+        }
+
+        assertEquals("daily,weekly", Files.readString(this.remoteDirectory.resolve("daily.csv")));
+        assertFalse(Files.exists(this.remoteDirectory.resolve("daily.csv" + RemoteFileClient.PART_SUFFIX)));
+    }
+
+    @Test
+    void testUploadRemovesExistingFileWhenServerCannotRenameOverIt() throws Exception {
+        var file = Files.writeString(this.localDirectory.resolve("daily.csv"), "daily,weekly");
+        var sftpClient = mock(SftpClient.class);
+        var posixRename = mock(OpenSSHPosixRenameExtension.class);
+        when(sftpClient.getVersion()).thenReturn(SftpConstants.SFTP_V3);
+        when(sftpClient.getExtension(OpenSSHPosixRenameExtension.class)).thenReturn(posixRename);
+        when(sftpClient.write(any(String.class), anyInt())).thenReturn(new ByteArrayOutputStream());
+        when(sftpClient.stat(any(String.class))).thenReturn(new SftpClient.Attributes());
+
+        new SftpFileClient(sftpClient, 32 * 1024).upload(file, "daily.csv");
+
+        InOrder inOrder = inOrder(sftpClient);
+        inOrder.verify(sftpClient).remove("daily.csv");
+        inOrder.verify(sftpClient).rename("daily.csv" + RemoteFileClient.PART_SUFFIX, "daily.csv");
+        verify(posixRename, never()).posixRename(any(), any());
+    }
+
+}
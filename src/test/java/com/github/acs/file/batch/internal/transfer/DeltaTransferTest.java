@@ -0,0 +1,174 @@
+package com.github.acs.file.batch.internal.transfer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeltaTransferTest {
+
+    @TempDir
+    private Path directory;
+
+    private final DeltaTransfer deltaTransfer = new DeltaTransfer(1024);
+
+    @Test
+    void testTransferReusesUnchangedBlocks() throws IOException {
+        var basisContent = randomBytes(100_000, 1);
+        var sourceContent = basisContent.clone();
+        sourceContent[50_000]++;
+
+        var result = transfer(sourceContent, basisContent);
+
+        assertEquals(1024, result.literalBytes());
+        assertEquals(sourceContent.length - 1024, result.matchedBytes());
+        assertEquals(0, result.copiedBytes());
+        assertEquals(1024, result.writtenBytes());
+    }
+
+    @Test
+    void testTransferFindsShiftedBlocks() throws IOException {
+        var basisContent = randomBytes(100_000, 2);
+        var sourceContent = new byte[basisContent.length + 10];
+        System.arraycopy(basisContent, 0, sourceContent, 10, basisContent.length);
+
+        var result = transfer(sourceContent, basisContent);
+
+        assertTrue(result.literalBytes() < 2 * 1024, "Literal bytes: " + result.literalBytes());
+        assertEquals(result.matchedBytes(), result.copiedBytes());
+    }
+
+    @Test
+    void testTransferCopiesSourceWithoutBasis() throws IOException {
+        var sourceContent = randomBytes(10_000, 3);
+        var source = Files.write(this.directory.resolve("source.bin"), sourceContent);
+        var output = this.directory.resolve("output.bin");
+
+        Files.write(output, randomBytes(20_000, 4));
+
+        var result = this.deltaTransfer.transfer(source, null, output, null, null, false);
+
+        assertEquals(sourceContent.length, result.literalBytes());
+        assertArrayEquals(sourceContent, Files.readAllBytes(output));
+    }
+
+    @Test
+    void testTransferHandlesTruncatedAndShortFiles() throws IOException {
+        var basisContent = randomBytes(5_000, 4);
+
+        transfer(Arrays.copyOf(basisContent, 3_000), basisContent);
+        transfer(Arrays.copyOf(basisContent, 100), basisContent);
+        transfer(new byte[0], basisContent);
+        transfer(Arrays.copyOf(basisContent, 7_000), basisContent);
+        var result = transfer(basisContent, basisContent);
+
+        assertEquals(0, result.writtenBytes());
+    }
+
+    @Test
+    void testDeltaTransferWritesOnlyChangedBlocks() throws IOException {
+        var random = new Random(5);
+        var basisContent = randomBytes(32 * 1024 * 1024, 5);
+        var sourceContent = basisContent.clone();
+        for (int i = 0; i < 20; i++) {
+            int offset = random.nextInt(sourceContent.length - 4096);
+            for (int j = 0; j < 4096; j++) {
+                sourceContent[offset + j] = (byte) random.nextInt();
+            }
+        }
+        var source = Files.write(this.directory.resolve("source.bin"), sourceContent);
+        var basis = Files.write(this.directory.resolve("basis.bin"), basisContent);
+        var deltaTransfer = new DeltaTransfer(64 * 1024);
+
+        var output = this.directory.resolve("delta.bin");
+
+        var result = deltaTransfer.transfer(source, basis, output, null, null, false);
+
+        assertArrayEquals(sourceContent, Files.readAllBytes(output));
+        assertArrayEquals(basisContent, Files.readAllBytes(basis));
+        assertEquals(sourceContent.length, result.literalBytes() + result.matchedBytes());
+        assertEquals(0, result.copiedBytes());
+        assertTrue(result.writtenBytes() < sourceContent.length / 10, "Written bytes: " + result.writtenBytes());
+    }
+
+    /**
+     * Compares a full copy with a delta transfer of the same changed file. Run it with {@code -Dbenchmark=true}, it
+     * only reports its measurements, which depend on the file system of the temporary directory.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void benchmarkFullCopyAgainstDeltaTransfer() throws IOException {
+        var random = new Random(6);
+        var basisContent = randomBytes(256 * 1024 * 1024, 6);
+        var sourceContent = basisContent.clone();
+        for (int i = 0; i < 20; i++) {
+            int offset = random.nextInt(sourceContent.length - 4096);
+            for (int j = 0; j < 4096; j++) {
+                sourceContent[offset + j] = (byte) random.nextInt();
+            }
+        }
+        var source = Files.write(this.directory.resolve("source.bin"), sourceContent);
+        var basis = Files.write(this.directory.resolve("basis.bin"), basisContent);
+        var output = this.directory.resolve("output.bin");
+        var deltaTransfer = new DeltaTransfer(64 * 1024);
+
+        long fullNanos = Long.MAX_VALUE;
+        long deltaNanos = Long.MAX_VALUE;
+        DeltaTransfer.Result result = null;
+        for (int i = 0; i < 5; i++) {
+            long start = System.nanoTime();
+            try (var sourceChannel = FileChannel.open(source, StandardOpenOption.READ);
+                 var outputChannel = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                long position = 0;
+                while (position < sourceContent.length) {
+                    position += sourceChannel.transferTo(position, sourceContent.length - position, outputChannel);
+                }
+            }
+            fullNanos = Math.min(fullNanos, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            result = deltaTransfer.transfer(source, basis, output, new CRC32C(), null, false);
+            deltaNanos = Math.min(deltaNanos, System.nanoTime() - start);
+        }
+
+        assertArrayEquals(sourceContent, Files.readAllBytes(output));
+        System.out.printf("File system: %s%n", Files.getFileStore(this.directory).type());
+        System.out.printf("Full copy:      %,d bytes read, %,d bytes written, %d ms%n",
+                sourceContent.length, sourceContent.length, TimeUnit.NANOSECONDS.toMillis(fullNanos));
+        System.out.printf("Delta transfer: %,d bytes read, %,d bytes written after cloning the basis, %d ms%n",
+                sourceContent.length + basisContent.length + result.copiedBytes(), result.writtenBytes(), TimeUnit.NANOSECONDS.toMillis(deltaNanos));
+    }
+
+    private DeltaTransfer.Result transfer(byte[] sourceContent, byte[] basisContent) throws IOException {
+        var source = Files.write(this.directory.resolve("source.bin"), sourceContent);
+        var basis = Files.write(this.directory.resolve("basis.bin"), basisContent);
+        var output = this.directory.resolve("output.bin");
+        var crc32c = new CRC32C();
+
+        var result = this.deltaTransfer.transfer(source, basis, output, crc32c, ManifestEntry.newSha256(), false);
+
+        var expected = new CRC32C();
+        expected.update(sourceContent);
+        assertArrayEquals(sourceContent, Files.readAllBytes(output));
+        assertEquals(expected.getValue(), crc32c.getValue());
+        assertEquals(sourceContent.length, result.literalBytes() + result.matchedBytes());
+        return result;
+    }
+
+    private static byte[] randomBytes(int size, long seed) {
+        var bytes = new byte[size];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,101 @@
+package com.github.acs.file.batch.internal.transfer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileDeduplicatorTest {
+
+    @TempDir
+    private Path directory;
+
+    private EmbeddedDatabase database;
+
+    private ContentIndex index;
+
+    @BeforeEach
+    void setUp() {
+        this.database = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2).generateUniqueName(true).build();
+        this.index = new ContentIndex(new JdbcTemplate(this.database), 1_000, 0.01);
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.database.shutdown();
+    }
+
+    @Test
+    void testDigestMatchesManifestEntry() throws IOException {
+        var content = randomBytes(2_500);
+        var file = Files.write(this.directory.resolve("file.bin"), content);
+
+        assertEquals(manifestEntry(file, content, 1_000).rangeSha256Tree(), FileDeduplicator.digest(file, content.length, 1_000));
+    }
+
+    @Test
+    void testDeduplicateSkipsContentAlreadyAtDestination() throws IOException {
+        var content = randomBytes(2_500);
+        var source = Files.write(this.directory.resolve("source.bin"), content);
+        var destination = Files.write(this.directory.resolve("destination.bin"), content);
+        this.index.add(manifestEntry(destination, content, 1_000), Files.getLastModifiedTime(destination).toMillis());
+
+        assertTrue(new FileDeduplicator(this.index, FileDeduplicator.Mode.SKIP, 1_000).deduplicate(source, destination, content.length));
+        assertFalse(new FileDeduplicator(this.index, FileDeduplicator.Mode.SKIP, 1_000)
+                .deduplicate(source, this.directory.resolve("other.bin"), content.length));
+    }
+
+    @Test
+    void testDeduplicateLinksContentTransferredElsewhere() throws IOException {
+        var content = randomBytes(2_500);
+        var source = Files.write(this.directory.resolve("source.bin"), content);
+        var existing = Files.write(this.directory.resolve("existing.bin"), content);
+        var destination = this.directory.resolve("out/destination.bin");
+        this.index.add(manifestEntry(existing, content, 1_000), Files.getLastModifiedTime(existing).toMillis());
+
+        assertTrue(new FileDeduplicator(this.index, FileDeduplicator.Mode.LINK, 1_000).deduplicate(source, destination, content.length));
+        assertTrue(Files.isSameFile(existing, destination));
+    }
+
+    @Test
+    void testDeduplicateTransfersModifiedContent() throws IOException {
+        var content = randomBytes(2_500);
+        var source = Files.write(this.directory.resolve("source.bin"), content);
+        var destination = Files.write(this.directory.resolve("destination.bin"), content);
+        this.index.add(manifestEntry(destination, content, 1_000), Files.getLastModifiedTime(destination).toMillis() - 1);
+
+        assertFalse(new FileDeduplicator(this.index, FileDeduplicator.Mode.LINK, 1_000).deduplicate(source, destination, content.length));
+        assertFalse(new FileDeduplicator(this.index, FileDeduplicator.Mode.LINK, 1_000).deduplicate(source, destination, content.length + 1));
+    }
+
+    private static ManifestEntry manifestEntry(Path file, byte[] content, int rangeSize) throws IOException {
+        List<RangeCheckpoint> checkpoints = new ArrayList<>();
+        for (int offset = 0; offset < content.length; offset += rangeSize) {
+            int length = Math.min(rangeSize, content.length - offset);
+            var digest = ManifestEntry.newSha256();
+            digest.update(content, offset, length);
+            checkpoints.add(new RangeCheckpoint(offset, length, 0, HexFormat.of().formatHex(digest.digest())));
+        }
+        return ManifestEntry.of(file, content.length, checkpoints, null);
+    }
+
+    private static byte[] randomBytes(int size) {
+        var bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return bytes;
+    }
+}
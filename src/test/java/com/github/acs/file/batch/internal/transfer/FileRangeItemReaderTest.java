@@ -0,0 +1,114 @@
+package com.github.acs.file.batch.internal.transfer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ExecutionContext;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileRangeItemReaderTest {
+
+    @TempDir
+    private Path sourceDirectory;
+
+    @TempDir
+    private Path destinationDirectory;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Files.write(this.sourceDirectory.resolve("a.txt"), new byte[25]);
+        Files.createDirectories(this.sourceDirectory.resolve("nested"));
+        Files.write(this.sourceDirectory.resolve("nested/b.txt"), new byte[0]);
+    }
+
+    @Test
+    void testReadSplitsFilesIntoRanges() throws IOException {
+        var reader = new FileRangeItemReader(this.sourceDirectory, this.destinationDirectory, Set.of(), 10);
+        reader.open(new ExecutionContext());
+
+        var ranges = readAll(reader);
+
+        assertEquals(4, ranges.size());
+        assertEquals(new FileRange(this.sourceDirectory.resolve("a.txt"), this.destinationDirectory.resolve("a.txt"), 0, 10, 25), ranges.get(0));
+        assertEquals(new FileRange(this.sourceDirectory.resolve("a.txt"), this.destinationDirectory.resolve("a.txt"), 20, 5, 25), ranges.get(2));
+        assertTrue(ranges.get(2).isLast());
+        assertEquals(new FileRange(this.sourceDirectory.resolve("nested/b.txt"), this.destinationDirectory.resolve("nested/b.txt"), 0, 0, 0), ranges.get(3));
+    }
+
+    @Test
+    void testReadOnlyNamedFiles() throws IOException {
+        var reader = new FileRangeItemReader(this.sourceDirectory, this.destinationDirectory, Set.of("nested/b.txt"), 10);
+        reader.open(new ExecutionContext());
+
+        var ranges = readAll(reader);
+
+        assertEquals(1, ranges.size());
+        assertEquals(this.sourceDirectory.resolve("nested/b.txt"), ranges.getFirst().source());
+    }
+
+    @Test
+    void testReadResumesFromExecutionContext() throws IOException {
+        var executionContext = new ExecutionContext();
+        var reader = new FileRangeItemReader(this.sourceDirectory, this.destinationDirectory, Set.of(), 10);
+        reader.open(executionContext);
+        reader.read();
+        reader.update(executionContext);
+
+        var restartedReader = new FileRangeItemReader(this.sourceDirectory, this.destinationDirectory, Set.of(), 10);
+        restartedReader.open(executionContext);
+        var ranges = readAll(restartedReader);
+
+        assertEquals(3, ranges.size());
+        assertEquals(10, ranges.getFirst().offset());
+    }
+
+    @Test
+    void testReadResumesFromLastVerifiedCheckpoint() throws IOException {
+        var content = new byte[25];
+        new Random(25).nextBytes(content);
+        var source = Files.write(this.sourceDirectory.resolve("a.txt"), content);
+        var executionContext = new ExecutionContext();
+
+        var reader = new FileRangeItemReader(this.sourceDirectory, this.destinationDirectory, Set.of("a.txt"), 10);
+        var writer = new FileRangeItemWriter(false);
+        reader.open(executionContext);
+        writer.open(executionContext);
+        writer.write(Chunk.of(reader.read()));
+        writer.write(Chunk.of(reader.read()));
+        reader.update(executionContext);
+        writer.update(executionContext);
+        assertEquals(2, FileRangeItemWriter.checkpoints(executionContext).size());
+
+        var part = FileRangeItemWriter.partOf(this.destinationDirectory.resolve("a.txt"));
+        try (var channel = FileChannel.open(part, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{(byte) ~content[12]}), 12);
+        }
+
+        var restartedReader = new FileRangeItemReader(this.sourceDirectory, this.destinationDirectory, Set.of("a.txt"), 10);
+        restartedReader.open(executionContext);
+
+        assertEquals(1, FileRangeItemWriter.checkpoints(executionContext).size());
+        assertEquals(new FileRange(source, this.destinationDirectory.resolve("a.txt"), 10, 10, 25), restartedReader.read());
+    }
+
+    private static List<FileRange> readAll(FileRangeItemReader reader) throws IOException {
+        List<FileRange> ranges = new ArrayList<>();
+        for (var range = reader.read(); range != null; range = reader.read()) {
+            ranges.add(range);
+        }
+        return ranges;
+    }
+}
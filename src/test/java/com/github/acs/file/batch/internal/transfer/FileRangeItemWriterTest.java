@@ -0,0 +1,286 @@
+package com.github.acs.file.batch.internal.transfer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.batch.item.Chunk;
+import org.springframework.batch.item.ExecutionContext;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.CRC32C;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileRangeItemWriterTest {
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    void testWriteCopiesRangesToDestination() throws IOException {
+        var content = randomBytes(1000);
+        var source = Files.write(this.directory.resolve("source.bin"), content);
+        var destination = this.directory.resolve("out/destination.bin");
+
+        var writer = new FileRangeItemWriter(false);
+        writer.write(Chunk.of(
+                new FileRange(source, destination, 600, 400, 1000),
+                new FileRange(source, destination, 0, 600, 1000)
+        ));
+        writer.afterChunk(null);
+
+        assertArrayEquals(content, Files.readAllBytes(destination));
+        assertFalse(Files.exists(FileRangeItemWriter.partOf(destination)));
+    }
+
+    @Test
+    void testWriteRenamesOnlyAfterCommit() throws IOException {
+        var content = randomBytes(100);
+        var source = Files.write(this.directory.resolve("source.bin"), content);
+        var destination = Files.write(this.directory.resolve("destination.bin"), randomBytes(500));
+
+        var writer = new FileRangeItemWriter(true);
+        writer.write(Chunk.of(new FileRange(source, destination, 0, 100, 100)));
+
+        assertEquals(500, Files.size(destination));
+        writer.afterChunk(null);
+        assertArrayEquals(content, Files.readAllBytes(destination));
+    }
+
+    @Test
+    void testWriteDiscardsStagedFilesOnError() throws IOException {
+        var source = Files.write(this.directory.resolve("source.bin"), randomBytes(100));
+        var destination = this.directory.resolve("destination.bin");
+
+        var writer = new FileRangeItemWriter(false);
+        writer.write(Chunk.of(new FileRange(source, destination, 0, 100, 100)));
+        writer.afterChunkError(null);
+        writer.afterChunk(null);
+
+        assertFalse(Files.exists(destination));
+    }
+
+    @Test
+    void testOpenFinishesFilesStagedByPreviousExecution() throws IOException {
+        var content = randomBytes(100);
+        var source = Files.write(this.directory.resolve("source.bin"), content);
+        var destination = this.directory.resolve("destination.bin");
+        var executionContext = new ExecutionContext();
+
+        var failedWriter = new FileRangeItemWriter(false);
+        failedWriter.write(Chunk.of(new FileRange(source, destination, 0, 100, 100)));
+        failedWriter.update(executionContext);
+
+        new FileRangeItemWriter(false).open(executionContext);
+
+        assertArrayEquals(content, Files.readAllBytes(destination));
+    }
+
+    @Test
+    void testWriteTransfersRangesConcurrently() throws IOException {
+        var content = randomBytes(10_000);
+        var source = Files.write(this.directory.resolve("source.bin"), content);
+        var destination = this.directory.resolve("destination.bin");
+        List<FileRange> ranges = new ArrayList<>();
+        for (long offset = 0; offset < content.length; offset += 1500) {
+            ranges.add(new FileRange(source, destination, offset, Math.min(1500, content.length - offset), content.length));
+        }
+
+        var writer = new FileRangeItemWriter(3, false, null, 512);
+        writer.write(new Chunk<>(ranges));
+        writer.afterChunk(null);
+
+        assertArrayEquals(content, Files.readAllBytes(destination));
+    }
+
+    @Test
+    void testWriteCheckpointsConcurrentRangesFromWrittenBytes() throws IOException {
+        var content = randomBytes(3000);
+        var source = Files.write(this.directory.resolve("source.bin"), content);
+        var destination = this.directory.resolve("destination.bin");
+        var executionContext = new ExecutionContext();
+
+        var writer = new FileRangeItemWriter(2, false, null, 512);
+        writer.open(executionContext);
+        writer.write(Chunk.of(
+                new FileRange(source, destination, 0, 1000, 3000),
+                new FileRange(source, destination, 1000, 1000, 3000)
+        ));
+        writer.update(executionContext);
+
+        var checkpoints = FileRangeItemWriter.checkpoints(executionContext);
+        assertEquals(2, checkpoints.size());
+        for (RangeCheckpoint checkpoint : checkpoints) {
+            var crc32c = new CRC32C();
+            crc32c.update(content, (int) checkpoint.offset(), (int) checkpoint.length());
+            assertEquals(crc32c.getValue(), checkpoint.crc32c());
+        }
+    }
+
+    @Test
+    void testWriteFailsWhenSourceIsShorterThanExpected() throws IOException {
+        var source = Files.write(this.directory.resolve("source.bin"), randomBytes(10));
+        var destination = this.directory.resolve("destination.bin");
+
+        var chunk = Chunk.of(new FileRange(source, destination, 0, 20, 20));
+
+        assertThrows(IOException.class, () -> new FileRangeItemWriter(false).write(chunk));
+        assertThrows(IOException.class, () -> new FileRangeItemWriter(2, false).write(Chunk.of(
+                new FileRange(source, destination, 0, 10, 20),
+                new FileRange(source, destination, 10, 10, 20)
+        )));
+    }
+
+    @Test
+    void testWriteRecordsChecksumsInManifest() throws Exception {
+        var content = randomBytes(1000);
+        var source = Files.write(this.directory.resolve("source.bin"), content);
+        var destination = this.directory.resolve("destination.bin");
+        var manifest = new TransferManifest(this.directory.resolve("manifests/job-1.csv"));
+        var executionContext = new ExecutionContext();
+
+        var writer = new FileRangeItemWriter(1, false, manifest, 128);
+        writer.open(executionContext);
+        writer.write(Chunk.of(new FileRange(source, destination, 0, 400, 1000)));
+        writer.afterChunk(null);
+        writer.write(Chunk.of(
+                new FileRange(source, destination, 400, 400, 1000),
+                new FileRange(source, destination, 800, 200, 1000)
+        ));
+        writer.update(executionContext);
+        writer.afterChunk(null);
+
+        var crc32c = new CRC32C();
+        crc32c.update(content);
+        var lines = Files.readAllLines(manifest.getFile());
+        assertEquals(List.of(TransferManifest.HEADER), lines.subList(0, 1));
+        var sha256 = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        assertTrue(lines.get(1).startsWith("\"" + destination + "\",1000," + sha256 + String.format(",%08x,400,", crc32c.getValue())));
+        assertEquals(2, lines.size());
+        assertEquals(1, executionContext.getInt(FileRangeItemWriter.VERIFIED_COUNT_KEY));
+        assertArrayEquals(content, Files.readAllBytes(destination));
+    }
+
+    @Test
+    void testRestartedWriterRecordsSha256OfWholeFile() throws Exception {
+        var content = randomBytes(1000);
+        var source = Files.write(this.directory.resolve("source.bin"), content);
+        var destination = this.directory.resolve("destination.bin");
+        var manifest = new TransferManifest(this.directory.resolve("manifests/job-1.csv"));
+        var executionContext = new ExecutionContext();
+
+        var failedWriter = new FileRangeItemWriter(1, false, manifest, 128);
+        failedWriter.open(executionContext);
+        failedWriter.write(Chunk.of(new FileRange(source, destination, 0, 400, 1000)));
+        failedWriter.update(executionContext);
+        failedWriter.afterChunk(null);
+        var writer = new FileRangeItemWriter(1, false, manifest, 128);
+        writer.open(executionContext);
+        writer.write(Chunk.of(
+                new FileRange(source, destination, 400, 400, 1000),
+                new FileRange(source, destination, 800, 200, 1000)
+        ));
+        writer.afterChunk(null);
+
+        var sha256 = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        assertTrue(Files.readAllLines(manifest.getFile()).get(1).startsWith("\"" + destination + "\",1000," + sha256 + ","));
+    }
+
+    @Test
+    void testConcurrentWriteLeavesSha256OfFileEmpty() throws IOException {
+        var content = randomBytes(1000);
+        var source = Files.write(this.directory.resolve("source.bin"), content);
+        var destination = this.directory.resolve("destination.bin");
+        var manifest = new TransferManifest(this.directory.resolve("manifests/job-1.csv"));
+
+        var writer = new FileRangeItemWriter(2, false, manifest, 128);
+        writer.write(Chunk.of(
+                new FileRange(source, destination, 0, 600, 1000),
+                new FileRange(source, destination, 600, 400, 1000)
+        ));
+        writer.afterChunk(null);
+
+        assertTrue(Files.readAllLines(manifest.getFile()).get(1).startsWith("\"" + destination + "\",1000,,"));
+        assertArrayEquals(content, Files.readAllBytes(destination));
+    }
+
+    @Test
+    void testZeroCopyTransferComputesDigestsOfRange() throws Exception {
+        var content = randomBytes(1000);
+        var source = Files.write(this.directory.resolve("source.bin"), content);
+        var destination = this.directory.resolve("destination.bin");
+        var writer = new FileRangeItemWriter(1, false, new TransferManifest(this.directory.resolve("manifests/job-1.csv")), 128);
+
+        var checkpoint = writer.transfer(new FileRange(source, destination, 600, 400, 1000));
+
+        var crc32c = new CRC32C();
+        crc32c.update(content, 600, 400);
+        var sha256 = MessageDigest.getInstance("SHA-256");
+        sha256.update(content, 600, 400);
+        assertEquals(new RangeCheckpoint(600, 400, crc32c.getValue(), HexFormat.of().formatHex(sha256.digest())), checkpoint);
+        assertArrayEquals(Arrays.copyOfRange(content, 600, 1000), Arrays.copyOfRange(Files.readAllBytes(FileRangeItemWriter.partOf(destination)), 600, 1000));
+    }
+
+    @Test
+    void testWriteFailsWhenVerifierRejectsFile() throws IOException {
+        var source = Files.write(this.directory.resolve("source.bin"), randomBytes(100));
+        var destination = this.directory.resolve("destination.bin");
+
+        var writer = new FileRangeItemWriter(false);
+        writer.setVerifier((expected, transferred) -> {
+            throw new TransferVerificationException("The transferred file differs");
+        });
+
+        assertThrows(TransferVerificationException.class, () -> writer.write(Chunk.of(new FileRange(source, destination, 0, 100, 100))));
+        writer.afterChunk(null);
+        assertFalse(Files.exists(destination));
+    }
+
+    @Test
+    void testWriteCompressesFilesWithCodec() throws IOException {
+        var content = "id,name,amount\n".repeat(1_000).getBytes(StandardCharsets.UTF_8);
+        var source = Files.write(this.directory.resolve("source.csv"), content);
+        var destination = this.directory.resolve("source.csv.gz");
+        var manifest = new TransferManifest(this.directory.resolve("manifests/job-1.csv"));
+        var executionContext = new ExecutionContext();
+
+        var writer = new FileRangeItemWriter(1, false, manifest);
+        writer.setCodec(TransferCodec.GZIP, TransferCodec.Direction.COMPRESS);
+        writer.write(Chunk.of(new FileRange(source, destination, 0, content.length, content.length)));
+        writer.update(executionContext);
+        writer.afterChunk(null);
+
+        try (var input = new GZIPInputStream(Files.newInputStream(destination))) {
+            assertArrayEquals(content, input.readAllBytes());
+        }
+        assertEquals(content.length, executionContext.getLong(FileRangeItemWriter.CODEC_RAW_BYTES_KEY));
+        assertEquals(Files.size(destination), executionContext.getLong(FileRangeItemWriter.CODEC_ENCODED_BYTES_KEY));
+        var crc32c = new CRC32C();
+        crc32c.update(content);
+        assertTrue(Files.readAllLines(manifest.getFile()).get(1).contains(String.format(",%08x,%d,", crc32c.getValue(), content.length)));
+    }
+
+    @Test
+    void testWriteRejectsPartialRangesWithCodec() throws IOException {
+        var source = Files.write(this.directory.resolve("source.bin"), randomBytes(100));
+        var writer = new FileRangeItemWriter(false);
+        writer.setCodec(TransferCodec.LZ4, TransferCodec.Direction.COMPRESS);
+
+        assertThrows(IOException.class, () -> writer.write(Chunk.of(new FileRange(source, this.directory.resolve("out.lz4"), 0, 50, 100))));
+    }
+
+    private static byte[] randomBytes(int size) {
+        var bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return bytes;
+    }
+}
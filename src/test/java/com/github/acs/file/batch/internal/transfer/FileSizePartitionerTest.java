@@ -0,0 +1,61 @@
+package com.github.acs.file.batch.internal.transfer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileSizePartitionerTest {
+
+    @TempDir
+    private Path sourceDirectory;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Files.write(this.sourceDirectory.resolve("a.txt"), new byte[70]);
+        Files.write(this.sourceDirectory.resolve("b.txt"), new byte[40]);
+        Files.write(this.sourceDirectory.resolve("c.txt"), new byte[30]);
+        Files.write(this.sourceDirectory.resolve("d.txt"), new byte[0]);
+    }
+
+    @Test
+    void testPartitionBalancesBytes() {
+        var partitions = new FileSizePartitioner(this.sourceDirectory, Set.of()).partition(2);
+
+        assertEquals(2, partitions.size());
+        var first = partitions.get("partition0");
+        var second = partitions.get("partition1");
+        assertEquals(70, first.getLong(FileSizePartitioner.PARTITION_BYTES_KEY));
+        assertEquals(70, second.getLong(FileSizePartitioner.PARTITION_BYTES_KEY));
+        assertEquals(List.of("a.txt", "d.txt"), first.get(FileSizePartitioner.FILE_NAMES_KEY));
+        assertEquals(List.of("b.txt", "c.txt"), second.get(FileSizePartitioner.FILE_NAMES_KEY));
+    }
+
+    @Test
+    void testPartitionNeverCreatesEmptyPartitions() {
+        var partitions = new FileSizePartitioner(this.sourceDirectory, Set.of("a.txt", "b.txt")).partition(8);
+
+        assertEquals(2, partitions.size());
+        partitions.values().forEach(executionContext ->
+                assertEquals(1, ((List<?>) executionContext.get(FileSizePartitioner.FILE_NAMES_KEY)).size()));
+    }
+
+    @Test
+    void testPartitionSkipsFilesBeingWritten() throws IOException {
+        Files.write(this.sourceDirectory.resolve(".e.txt.0f8fad5b.part"), new byte[50]);
+        Files.write(this.sourceDirectory.resolve("f.txt.part"), new byte[50]);
+        Files.createDirectories(this.sourceDirectory.resolve(".file-lists"));
+        Files.write(this.sourceDirectory.resolve(".file-lists/job-1.txt"), new byte[50]);
+
+        var partitions = new FileSizePartitioner(this.sourceDirectory, Set.of()).partition(1);
+
+        assertEquals(List.of("a.txt", "b.txt", "c.txt", "d.txt"), partitions.get("partition0").get(FileSizePartitioner.FILE_NAMES_KEY));
+    }
+}
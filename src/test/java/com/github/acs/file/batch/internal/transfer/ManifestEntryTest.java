@@ -0,0 +1,93 @@
+package com.github.acs.file.batch.internal.transfer;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.CRC32C;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ManifestEntryTest {
+
+    private final Path destination = Path.of("out/file.bin");
+
+    @Test
+    void testCombineCrc32cMatchesCrc32cOfWholeFile() {
+        var content = new byte[10_000];
+        new Random(10).nextBytes(content);
+
+        long combined = 0;
+        for (int offset = 0; offset < content.length; offset += 3_000) {
+            int length = Math.min(3_000, content.length - offset);
+            combined = ManifestEntry.combineCrc32c(combined, crc32c(content, offset, length), length);
+        }
+
+        assertEquals(crc32c(content, 0, content.length), combined);
+    }
+
+    @Test
+    void testOfCombinesDigestsOfRanges() throws IOException {
+        var content = new byte[250];
+        new Random(250).nextBytes(content);
+        var first = checkpoint(content, 0, 200);
+        var second = checkpoint(content, 200, 50);
+
+        var entry = ManifestEntry.of(new FileRange(Path.of("file.bin"), this.destination, 200, 50, 250), List.of(second, first), "file-sha256");
+
+        var digest = ManifestEntry.newSha256();
+        digest.update(HexFormat.of().parseHex(first.sha256()));
+        digest.update(HexFormat.of().parseHex(second.sha256()));
+        assertEquals(HexFormat.of().formatHex(digest.digest()), entry.rangeSha256Tree());
+        assertEquals("file-sha256", entry.sha256());
+        assertEquals(crc32c(content, 0, 250), entry.crc32c());
+        assertEquals(200, entry.rangeSize());
+    }
+
+    @Test
+    void testOfFailsWhenRangesAreMissing() {
+        var content = new byte[250];
+        var lastRange = new FileRange(Path.of("file.bin"), this.destination, 200, 50, 250);
+
+        assertThrows(IOException.class, () -> ManifestEntry.of(lastRange, List.of(checkpoint(content, 200, 50)), null));
+    }
+
+    @Test
+    void testOfTakesSha256OfSingleRangeFile() throws IOException {
+        var content = new byte[250];
+        new Random(250).nextBytes(content);
+        var checkpoint = checkpoint(content, 0, 250);
+
+        var entry = ManifestEntry.of(new FileRange(Path.of("file.bin"), this.destination, 0, 250, 250), List.of(checkpoint), null);
+
+        assertEquals(checkpoint.sha256(), entry.sha256());
+        assertEquals("\"" + this.destination + "\",250," + checkpoint.sha256() + "," + String.format("%08x", checkpoint.crc32c())
+                + ",250," + entry.rangeSha256Tree(), entry.toLine());
+    }
+
+    @Test
+    void testOfLeavesSha256OfConcurrentlyCopiedFileEmpty() throws IOException {
+        var content = new byte[250];
+        var lastRange = new FileRange(Path.of("file.bin"), this.destination, 200, 50, 250);
+
+        var entry = ManifestEntry.of(lastRange, List.of(checkpoint(content, 0, 200), checkpoint(content, 200, 50)), null);
+
+        assertNull(entry.sha256());
+        assertTrue(entry.toLine().startsWith("\"" + this.destination + "\",250,,"));
+    }
+
+    private static RangeCheckpoint checkpoint(byte[] content, int offset, int length) {
+        var digest = ManifestEntry.newSha256();
+        digest.update(content, offset, length);
+        return new RangeCheckpoint(offset, length, crc32c(content, offset, length), HexFormat.of().formatHex(digest.digest()));
+    }
+
+    private static long crc32c(byte[] content, int offset, int length) {
+        var crc32c = new CRC32C();
+        crc32c.update(content, offset, length);
+        return crc32c.getValue();
+    }
+}
@@ -0,0 +1,59 @@
+package com.github.acs.file.batch.internal.transfer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+class MappedTransferVerifierTest {
+
+    @TempDir
+    private Path directory;
+
+    private final TransferVerifier fallback = mock(TransferVerifier.class);
+
+    @Test
+    void testVerifyAcceptsIdenticalFilesAcrossWindows() throws IOException {
+        var content = randomBytes(10_000);
+        var source = Files.write(this.directory.resolve("source.bin"), content);
+        var transferred = Files.write(this.directory.resolve("transferred.bin"), content);
+
+        new MappedTransferVerifier(4096, this.fallback).verify(source, transferred);
+
+        verifyNoInteractions(this.fallback);
+    }
+
+    @Test
+    void testVerifyReportsFirstDifferingByte() throws IOException {
+        var content = randomBytes(10_000);
+        var source = Files.write(this.directory.resolve("source.bin"), content);
+        content[9_000]++;
+        var transferred = Files.write(this.directory.resolve("transferred.bin"), content);
+
+        var exception = assertThrows(TransferVerificationException.class,
+                () -> new MappedTransferVerifier(4096, this.fallback).verify(source, transferred));
+        assertTrue(exception.getMessage().endsWith("at byte 9000"));
+    }
+
+    @Test
+    void testVerifyRejectsFilesOfDifferentSize() throws IOException {
+        var source = Files.write(this.directory.resolve("source.bin"), randomBytes(100));
+        var transferred = Files.write(this.directory.resolve("transferred.bin"), randomBytes(99));
+
+        assertThrows(TransferVerificationException.class,
+                () -> new MappedTransferVerifier(4096, this.fallback).verify(source, transferred));
+    }
+
+    private static byte[] randomBytes(int size) {
+        var bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return bytes;
+    }
+}
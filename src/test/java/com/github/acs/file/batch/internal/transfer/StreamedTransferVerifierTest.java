@@ -0,0 +1,44 @@
+package com.github.acs.file.batch.internal.transfer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamedTransferVerifierTest {
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    void testVerifyAcceptsIdenticalFiles() throws IOException {
+        var content = randomBytes(10_000);
+        var source = Files.write(this.directory.resolve("source.bin"), content);
+        var transferred = Files.write(this.directory.resolve("transferred.bin"), content);
+
+        assertDoesNotThrow(() -> new StreamedTransferVerifier(1024).verify(source, transferred));
+    }
+
+    @Test
+    void testVerifyReportsFirstDifferingByte() throws IOException {
+        var content = randomBytes(10_000);
+        var source = Files.write(this.directory.resolve("source.bin"), content);
+        content[5_000]++;
+        var transferred = Files.write(this.directory.resolve("transferred.bin"), content);
+
+        var exception = assertThrows(TransferVerificationException.class,
+                () -> new StreamedTransferVerifier(1024).verify(source, transferred));
+        assertTrue(exception.getMessage().endsWith("at byte 5000"));
+    }
+
+    private static byte[] randomBytes(int size) {
+        var bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return bytes;
+    }
+}
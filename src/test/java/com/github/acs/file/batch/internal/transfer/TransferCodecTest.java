@@ -0,0 +1,45 @@
+package com.github.acs.file.batch.internal.transfer;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransferCodecTest {
+
+    @ParameterizedTest
+    @EnumSource(TransferCodec.class)
+    void testCompressedContentDecompressesToOriginal(TransferCodec codec) throws IOException {
+        var content = "id,name,amount\n".repeat(10_000).getBytes(StandardCharsets.UTF_8);
+
+        var compressed = new ByteArrayOutputStream();
+        try (var output = codec.compress(compressed)) {
+            output.write(content);
+        }
+        byte[] decompressed;
+        try (var input = codec.decompress(new ByteArrayInputStream(compressed.toByteArray()))) {
+            decompressed = input.readAllBytes();
+        }
+
+        assertArrayEquals(content, decompressed);
+        if (codec != TransferCodec.NONE) {
+            assertTrue(compressed.size() < content.length / 5);
+        }
+    }
+
+    @Test
+    void testDestinationOfAddsAndRemovesExtension() {
+        var destination = Path.of("out/ledger.csv");
+
+        assertEquals(Path.of("out/ledger.csv.zst"), TransferCodec.ZSTD.destinationOf(destination, TransferCodec.Direction.COMPRESS));
+        assertEquals(Path.of("out/ledger.csv"), TransferCodec.GZIP.destinationOf(Path.of("out/ledger.csv.gz"), TransferCodec.Direction.DECOMPRESS));
+        assertEquals(Path.of("out/ledger.csv"), TransferCodec.LZ4.destinationOf(destination, TransferCodec.Direction.DECOMPRESS));
+    }
+}
@@ -0,0 +1,286 @@
+package com.github.acs.file.batch.internal.web;
+
+import com.github.acs.file.batch.BatchTrigger;
+import com.github.acs.file.batch.internal.FileTransferProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ZeroCopyHttpOutputMessage;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ActiveProfiles("test")
+class FileTransferControllerTest {
+
+    private static final String ACCESS_TOKEN = "s3cr3t";
+
+    @TempDir
+    private Path sourceDirectory;
+
+    @TempDir
+    private Path destinationDirectory;
+
+    private FileTransferProperties properties;
+
+    private BatchTrigger batchTrigger;
+
+    private WebTestClient client;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        this.properties = new FileTransferProperties();
+        this.properties.setSourceDirectory(this.sourceDirectory);
+        this.properties.setDestinationDirectory(this.destinationDirectory);
+        this.properties.setHttpEnabled(true);
+        this.properties.setHttpAccessToken(ACCESS_TOKEN);
+        this.properties.setHttpBufferSize(DataSize.ofKilobytes(4));
+        this.batchTrigger = mock(BatchTrigger.class);
+        this.client = WebTestClient.bindToController(new FileTransferController(this.properties, this.batchTrigger))
+                .configureClient()
+                .defaultHeader(HttpHeaders.AUTHORIZATION, "Bearer " + ACCESS_TOKEN)
+                .build();
+        Files.writeString(this.destinationDirectory.resolve("daily.csv"), "0123456789".repeat(10_000));
+    }
+
+    @Test
+    void testUploadWritesSourceFile() throws Exception {
+        var content = new byte[1_000_000];
+        new Random(42).nextBytes(content);
+
+        this.client.put().uri("/files/source/feeds/daily.bin")
+                .bodyValue(content)
+                .exchange()
+                .expectStatus().isCreated();
+
+        assertArrayEquals(content, Files.readAllBytes(this.sourceDirectory.resolve("feeds/daily.bin")));
+        try (var files = Files.list(this.sourceDirectory.resolve("feeds"))) {
+            assertEquals(1, files.count());
+        }
+        verifyNoInteractions(this.batchTrigger);
+    }
+
+    @Test
+    void testUploadReplacesSourceFile() throws Exception {
+        Files.writeString(this.sourceDirectory.resolve("daily.csv"), "monday,tuesday");
+
+        this.client.put().uri("/files/source/daily.csv")
+                .bodyValue("monday")
+                .exchange()
+                .expectStatus().isCreated();
+
+        assertEquals("monday", Files.readString(this.sourceDirectory.resolve("daily.csv")));
+    }
+
+    @Test
+    void testUploadTriggersBatch() {
+        this.client.put().uri("/files/source/feeds/daily.csv?trigger=true")
+                .bodyValue("monday")
+                .exchange()
+                .expectStatus().isCreated();
+
+        verify(this.batchTrigger, timeout(5_000)).triggerBatch(List.of("feeds/daily.csv"));
+    }
+
+    @Test
+    void testRejectsUploadLargerThanMaxSize() throws Exception {
+        this.properties.setHttpMaxUploadSize(DataSize.ofBytes(10));
+
+        this.client.put().uri("/files/source/daily.csv")
+                .bodyValue("0123456789A")
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.PAYLOAD_TOO_LARGE);
+        this.client.put().uri("/files/source/daily.csv")
+                .body(Flux.just("01234", "56789", "A"), String.class)
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.PAYLOAD_TOO_LARGE);
+
+        try (var files = Files.list(this.sourceDirectory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void testRejectsPathOutsideOfDirectory() {
+        this.client.put().uri("/files/source/../escaped.csv")
+                .bodyValue("monday")
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        this.client.get().uri("/files/destination/%2E%2E/%2E%2E/etc/passwd")
+                .exchange()
+                .expectStatus().value(status -> assertTrue(status == 400 || status == 404));
+        assertFalse(Files.exists(this.sourceDirectory.resolveSibling("escaped.csv")));
+    }
+
+    @Test
+    void testDisabledEndpointsAreNotFound() {
+        this.properties.setHttpEnabled(false);
+
+        this.client.get().uri("/files/destination/daily.csv")
+                .exchange()
+                .expectStatus().isNotFound();
+        this.client.put().uri("/files/source/daily.csv")
+                .bodyValue("monday")
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    void testEndpointsWithoutAccessTokenAreNotFound() {
+        this.properties.setHttpAccessToken(null);
+
+        this.client.get().uri("/files/destination/daily.csv")
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    void testRejectsRequestWithoutValidAccessToken() {
+        this.client.get().uri("/files/destination/daily.csv")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer wrong")
+                .exchange()
+                .expectStatus().isUnauthorized();
+        this.client.mutate().defaultHeaders(headers -> headers.remove(HttpHeaders.AUTHORIZATION)).build()
+                .put().uri("/files/source/daily.csv")
+                .bodyValue("monday")
+                .exchange()
+                .expectStatus().isUnauthorized();
+
+        assertFalse(Files.exists(this.sourceDirectory.resolve("daily.csv")));
+    }
+
+    @Test
+    void testRejectsInternalFiles() throws Exception {
+        Files.createDirectories(this.destinationDirectory.resolve(".manifests"));
+        Files.writeString(this.destinationDirectory.resolve(".manifests/job-1.manifest"), "daily.csv");
+        Files.writeString(this.destinationDirectory.resolve("weekly.csv.part"), "monday");
+
+        this.client.get().uri("/files/destination/.manifests/job-1.manifest")
+                .exchange()
+                .expectStatus().isBadRequest();
+        this.client.get().uri("/files/destination/weekly.csv.part")
+                .exchange()
+                .expectStatus().isBadRequest();
+        this.client.put().uri("/files/source/.hidden.csv")
+                .bodyValue("monday")
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        try (var files = Files.list(this.sourceDirectory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void testDownloadsWholeFile() throws Exception {
+        var body = this.client.get().uri("/files/destination/daily.csv")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ACCEPT_RANGES, "bytes")
+                .expectHeader().contentLength(100_000)
+                .expectBody(String.class)
+                .returnResult()
+                .getResponseBody();
+
+        assertEquals(Files.readString(this.destinationDirectory.resolve("daily.csv")), body);
+    }
+
+    @Test
+    void testDownloadsRange() {
+        this.client.get().uri("/files/destination/daily.csv")
+                .header(HttpHeaders.RANGE, "bytes=99995-")
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.PARTIAL_CONTENT)
+                .expectHeader().valueEquals(HttpHeaders.CONTENT_RANGE, "bytes 99995-99999/100000")
+                .expectBody(String.class).isEqualTo("56789");
+
+        this.client.get().uri("/files/destination/daily.csv")
+                .header(HttpHeaders.RANGE, "bytes=-3")
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.PARTIAL_CONTENT)
+                .expectBody(String.class).isEqualTo("789");
+
+        this.client.get().uri("/files/destination/daily.csv")
+                .header(HttpHeaders.RANGE, "bytes=10-14")
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.PARTIAL_CONTENT)
+                .expectHeader().contentLength(5)
+                .expectBody(String.class).isEqualTo("01234");
+    }
+
+    @Test
+    void testRejectsUnsatisfiableRange() {
+        this.client.get().uri("/files/destination/daily.csv")
+                .header(HttpHeaders.RANGE, "bytes=100000-")
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                .expectHeader().valueEquals(HttpHeaders.CONTENT_RANGE, "bytes */100000");
+    }
+
+    @Test
+    void testSendsWholeFileWhenItChangedSinceIfRange() {
+        var eTag = this.client.get().uri("/files/destination/daily.csv")
+                .exchange()
+                .returnResult(String.class)
+                .getResponseHeaders()
+                .getETag();
+
+        this.client.get().uri("/files/destination/daily.csv")
+                .header(HttpHeaders.RANGE, "bytes=10-14")
+                .header(HttpHeaders.IF_RANGE, eTag)
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.PARTIAL_CONTENT);
+        this.client.get().uri("/files/destination/daily.csv")
+                .header(HttpHeaders.RANGE, "bytes=10-14")
+                .header(HttpHeaders.IF_RANGE, "\"stale\"")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentLength(100_000);
+        this.client.get().uri("/files/destination/daily.csv")
+                .header(HttpHeaders.RANGE, "bytes=10-14")
+                .header(HttpHeaders.IF_RANGE, "Sat, 01 Jan 2000 00:00:00 GMT")
+                .exchange()
+                .expectStatus().isOk();
+    }
+
+    @Test
+    void testMissingFileIsNotFound() {
+        this.client.get().uri("/files/destination/missing.csv")
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    void testDownloadsWithoutCopyingWhenServerSupportsIt() {
+        var controller = new FileTransferController(this.properties, this.batchTrigger);
+        var response = mock(ServerHttpResponse.class, withSettings().extraInterfaces(ZeroCopyHttpOutputMessage.class));
+        when(response.getHeaders()).thenReturn(new HttpHeaders());
+        when(((ZeroCopyHttpOutputMessage) response).writeWith(any(Path.class), anyLong(), anyLong())).thenReturn(Mono.empty());
+        var request = MockServerHttpRequest.get("/files/destination/daily.csv")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + ACCESS_TOKEN)
+                .header(HttpHeaders.RANGE, "bytes=10-")
+                .build();
+
+        controller.download("/daily.csv", request, response).block();
+
+        var file = this.destinationDirectory.toAbsolutePath().normalize().resolve("daily.csv");
+        verify((ZeroCopyHttpOutputMessage) response).writeWith(file, 10, 99_990);
+        verify(response, never()).writeWith(any());
+    }
+
+}
@@ -1,29 +1,49 @@
 package com.github.acs.file.email;
 
+import com.github.acs.file.email.internal.DurableEmailOutbox;
+import com.github.acs.file.email.internal.EmailOutbox;
+import com.github.acs.file.email.internal.EmailOutboxRepository;
 import com.github.acs.file.email.internal.EmailServiceBean;
 import com.github.acs.file.email.internal.EmailProperties;
+import com.github.acs.file.email.internal.RecipientFanOut;
+import com.github.acs.file.email.internal.SmtpRelayGuard;
 import com.github.acs.file.email.util.MimeMultipartUtils;
 import com.github.acs.file.email.util.TestEmailTemplate;
 import com.github.acs.file.email.util.TestTemplateVariables;
 import com.icegreen.greenmail.store.FolderException;
 import com.icegreen.greenmail.util.GreenMail;
 import com.icegreen.greenmail.util.ServerSetup;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import jakarta.mail.MessagingException;
 import jakarta.mail.internet.MimeMultipart;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceTransactionManagerAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.JdbcTemplateAutoConfiguration;
 import org.springframework.boot.autoconfigure.thymeleaf.ThymeleafAutoConfiguration;
 import org.springframework.boot.autoconfigure.mail.MailSenderAutoConfiguration;
+import com.github.acs.file.email.internal.template.EmailTemplateCache;
 import com.github.acs.file.email.internal.template.EmailTemplateProcessor;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.ActiveProfiles;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPInputStream;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
@@ -31,7 +51,17 @@ import static org.junit.jupiter.api.Assertions.*;
 @SpringBootTest(classes = {
         EmailServiceBean.class,
         EmailProperties.class,
+        EmailOutbox.class,
+        EmailOutboxRepository.class,
+        DurableEmailOutbox.class,
+        RecipientFanOut.class,
+        SmtpRelayGuard.class,
+        SimpleMeterRegistry.class,
+        DataSourceAutoConfiguration.class,
+        DataSourceTransactionManagerAutoConfiguration.class,
+        JdbcTemplateAutoConfiguration.class,
         EmailTemplateProcessor.class,
+        EmailTemplateCache.class,
         ThymeleafAutoConfiguration.class,
         MailSenderAutoConfiguration.class
 })
@@ -65,6 +95,9 @@ class EmailServiceIntegrationTest {
     @Autowired
     private EmailService emailService;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     @Test
     void testSendEmailWithBody() throws MessagingException, IOException {
         final var subject = "Integration Test Subject with Template";
@@ -81,8 +114,7 @@ class EmailServiceIntegrationTest {
         assertNotNull(smtpServer.getReceivedMessages());
         assertTrue(smtpServer.getReceivedMessages().length > 0);
         var receivedMessage = smtpServer.getReceivedMessages()[0];
-        var receivedMessageBody = (MimeMultipart) receivedMessage.getContent();
-        var body = MimeMultipartUtils.getTextFromMimeMultipart(receivedMessageBody);
+        var body = MimeMultipartUtils.getText(receivedMessage);
 
         assertNotNull(receivedMessage);
         assertEquals(1, receivedMessage.getAllRecipients().length);
@@ -119,8 +151,7 @@ class EmailServiceIntegrationTest {
         assertNotNull(smtpServer.getReceivedMessages());
         assertTrue(smtpServer.getReceivedMessages().length > 0);
         var receivedMessage = smtpServer.getReceivedMessages()[0];
-        var receivedMessageBody = (MimeMultipart) receivedMessage.getContent();
-        var actualMessageText = MimeMultipartUtils.getTextFromMimeMultipart(receivedMessageBody);
+        var actualMessageText = MimeMultipartUtils.getText(receivedMessage);
 
         assertNotNull(receivedMessage);
         assertEquals(1, receivedMessage.getAllRecipients().length);
@@ -129,6 +160,92 @@ class EmailServiceIntegrationTest {
 
     }
 
+    @Test
+    void testSendEmailAsync() {
+        var results = IntStream.range(0, 5)
+                .mapToObj(i -> EmailRequest.builder()
+                        .to(Set.of("recipient@example.com"))
+                        .subject("Integration Test Subject " + i)
+                        .body("This is a test email.")
+                        .build())
+                .map(this.emailService::sendEmailAsync)
+                .toArray(CompletableFuture[]::new);
+
+        CompletableFuture.allOf(results).join();
+
+        assertEquals(5, smtpServer.getReceivedMessages().length);
+    }
+
+    @Test
+    void testSendEmails() {
+        var emailRequests = IntStream.range(0, 3)
+                .mapToObj(i -> EmailRequest.builder()
+                        .to(Set.of("list" + i + "@example.com"))
+                        .subject("Integration Test Subject " + i)
+                        .body("This is a test email.")
+                        .build())
+                .toList();
+
+        List<EmailResult> results = this.emailService.sendEmails(emailRequests);
+
+        assertEquals(3, results.size());
+        assertTrue(results.stream().allMatch(EmailResult::sent));
+        assertEquals(3, smtpServer.getReceivedMessages().length);
+    }
+
+    @Test
+    void testEnqueueEmail() throws MessagingException {
+        var emailRequest = EmailRequest.builder()
+                .to(Set.of("recipient@example.com"))
+                .subject("Integration Test Subject from the outbox")
+                .body("This is a test email.")
+                .build();
+
+        this.emailService.enqueueEmail(emailRequest);
+
+        assertTrue(smtpServer.waitForIncomingEmail(10_000, 1));
+        assertEquals("Integration Test Subject from the outbox", smtpServer.getReceivedMessages()[0].getSubject());
+    }
+
+    @Test
+    void testSendEmailToManyRecipientDomains() throws MessagingException {
+        var recipients = IntStream.range(0, 60)
+                .mapToObj(i -> "recipient" + i + "@domain" + (i % 3) + ".example.com")
+                .collect(Collectors.toSet());
+        var emailRequest = EmailRequest.builder()
+                .to(recipients)
+                .subject("Integration Test Subject for many recipients")
+                .body("This is a test email.")
+                .build();
+
+        this.emailService.sendEmail(emailRequest);
+
+        assertEquals(60, smtpServer.getReceivedMessages().length);
+        assertEquals(3, this.meterRegistry.find("email.fanout.latency").timers().size());
+    }
+
+    @Test
+    void testSendEmailWithCompressedAttachment(@TempDir Path directory) throws MessagingException, IOException {
+        var manifest = Files.writeString(directory.resolve("manifest.csv"), "/data/transfer/outbound/file.dat,1024\n".repeat(1000));
+        var emailRequest = EmailRequest.builder()
+                .to(Set.of("recipient@example.com"))
+                .subject("Integration Test Subject with Attachment")
+                .body("This is a test email.")
+                .attachments(List.of(EmailAttachment.builder().path(manifest).compress(true).build()))
+                .build();
+
+        this.emailService.sendEmail(emailRequest);
+
+        var receivedMessage = smtpServer.getReceivedMessages()[0];
+        var multipart = (MimeMultipart) receivedMessage.getContent();
+        var attachment = multipart.getBodyPart(multipart.getCount() - 1);
+        assertEquals("manifest.csv.gz", attachment.getFileName());
+        try (var content = new GZIPInputStream(attachment.getInputStream())) {
+            assertEquals(Files.readString(manifest), new String(content.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        assertEquals("This is a test email.", MimeMultipartUtils.getTextFromMimeMultipart(multipart));
+    }
+
     @SuppressWarnings("SameParameterValue")
     private static String getTemplateMessageBodyText(String nameVariable, String messageVariable) {
         final var messageTemplate = """
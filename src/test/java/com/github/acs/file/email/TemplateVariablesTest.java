@@ -5,6 +5,12 @@ import jakarta.validation.Validator;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
 class TemplateVariablesTest {
 
     private Validator validator;
@@ -16,5 +22,50 @@ class TemplateVariablesTest {
 
     @Test
     void getVariables() {
+        var time = LocalDateTime.of(2025, 1, 1, 8, 0);
+        var variables = new RecordVariables("Test Batch Job", 3, time).getVariables();
+
+        assertEquals(List.of("jobName", "fileCount", "completedTime"), List.copyOf(variables.keySet()));
+        assertEquals("Test Batch Job", variables.get("jobName"));
+        assertEquals(3, variables.get("fileCount"));
+        assertEquals(time, variables.get("completedTime"));
+    }
+
+    @Test
+    void getVariablesKeepsNullValues() {
+        var variables = new RecordVariables(null, 0, null).getVariables();
+
+        assertEquals(3, variables.size());
+        assertTrue(variables.containsKey("jobName"));
+        assertNull(variables.get("jobName"));
+    }
+
+    @Test
+    void getVariablesIsUnmodifiable() {
+        var variables = new RecordVariables("Test Batch Job", 3, null).getVariables();
+
+        assertThrows(UnsupportedOperationException.class, () -> variables.put("jobName", "Other Job"));
+    }
+
+    @Test
+    void getVariablesOfClassReadsInstanceFields() {
+        assertEquals(Map.of("name", "John Snow"), new ClassVariables("John Snow").getVariables());
+        assertEquals(Map.of(), new EmptyVariables().getVariables());
+    }
+
+    private record RecordVariables(String jobName, int fileCount, LocalDateTime completedTime) implements TemplateVariables {
+        private static final String IGNORED = "ignored";
+    }
+
+    private static final class ClassVariables implements TemplateVariables {
+        private static final String IGNORED = "ignored";
+        private final String name;
+
+        private ClassVariables(String name) {
+            this.name = name;
+        }
+    }
+
+    private record EmptyVariables() implements TemplateVariables {
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,256 @@
+package com.github.acs.file.email.internal;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Session;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ActiveProfiles("test")
+class DurableEmailOutboxTest {
+
+    private static final Instant NOW = Instant.parse("2025-01-01T08:00:00Z");
+
+    private final Session session = Session.getInstance(new Properties());
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private final EmailProperties properties = new EmailProperties();
+
+    private EmbeddedDatabase database;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private DataSourceTransactionManager transactionManager;
+
+    private JavaMailSender mailSender;
+
+    private List<String> sentSubjects;
+
+    @BeforeEach
+    void setUp() {
+        this.database = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2).generateUniqueName(true).build();
+        this.jdbcTemplate = new JdbcTemplate(this.database);
+        this.transactionManager = new DataSourceTransactionManager(this.database);
+        this.properties.setRelayBatchSize(10);
+        this.properties.setRelayMaxAttempts(3);
+        this.properties.setRelayInitialBackoff(Duration.ofSeconds(30));
+        this.properties.setRelayMaxBackoff(Duration.ofMinutes(1));
+        this.sentSubjects = Collections.synchronizedList(new ArrayList<>());
+        this.mailSender = mock(JavaMailSender.class);
+        when(this.mailSender.createMimeMessage(any(InputStream.class)))
+                .thenAnswer(invocation -> new MimeMessage(this.session, invocation.<InputStream>getArgument(0)));
+        doAnswer(invocation -> {
+            this.sentSubjects.add(invocation.<MimeMessage>getArgument(0).getSubject());
+            return null;
+        }).when(this.mailSender).send(any(MimeMessage.class));
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.database.shutdown();
+    }
+
+    @Test
+    void relaySendsAndDeletesStoredMessages() throws Exception {
+        var outbox = outbox(NOW);
+        outbox.add(message("first"));
+        outbox.add(message("second"));
+
+        assertEquals(2, outbox.relay());
+
+        assertEquals(List.of("first", "second"), this.sentSubjects);
+        assertEquals(0, countRows());
+        assertEquals(0, outbox.relay());
+        assertEquals(2.0, this.registry.counter("email.outbox.relay.sent").count());
+    }
+
+    @Test
+    void relayRetriesRejectedMessagesWithBackoff() throws Exception {
+        var outbox = outbox(NOW);
+        outbox.add(message("rejected"));
+        doAnswer(invocation -> {
+            throw new MailSendException(Map.of(invocation.getArgument(0), new SendFailedException("Mailbox unavailable")));
+        }).when(this.mailSender).send(any(MimeMessage.class));
+
+        assertEquals(1, outbox.relay());
+        assertEquals(0, outbox.relay());
+
+        var row = this.jdbcTemplate.queryForMap("SELECT attempts, next_attempt_at, last_error FROM " + EmailOutboxRepository.TABLE_NAME);
+        assertEquals(1, row.get("ATTEMPTS"));
+        assertEquals(NOW.plusSeconds(30), ((java.sql.Timestamp) row.get("NEXT_ATTEMPT_AT")).toInstant());
+        assertTrue(row.get("LAST_ERROR").toString().contains("Mailbox unavailable"));
+
+        outbox.setClock(Clock.fixed(NOW.plusSeconds(30), ZoneOffset.UTC));
+        assertEquals(1, outbox.relay());
+        assertEquals(2.0, this.registry.counter("email.outbox.relay.retried").count());
+    }
+
+    @Test
+    void relayGivesUpAfterMaxAttempts() throws Exception {
+        var outbox = outbox(NOW);
+        outbox.add(message("rejected"));
+        doThrow(new MailSendException("Connection refused")).when(this.mailSender).send(any(MimeMessage.class));
+
+        for (int attempt = 0; attempt < 3; attempt++) {
+            outbox.setClock(Clock.fixed(NOW.plus(Duration.ofHours(attempt)), ZoneOffset.UTC));
+            assertEquals(1, outbox.relay());
+        }
+        outbox.setClock(Clock.fixed(NOW.plus(Duration.ofDays(1)), ZoneOffset.UTC));
+
+        assertEquals(0, outbox.relay());
+        assertEquals(1, countRows());
+        assertNull(this.jdbcTemplate.queryForObject("SELECT next_attempt_at FROM " + EmailOutboxRepository.TABLE_NAME, Object.class));
+        assertEquals(1.0, this.registry.counter("email.outbox.relay.abandoned").count());
+    }
+
+    @Test
+    void relayPacesBatchLargerThanRateLimitBurst() throws Exception {
+        this.properties.setSendRateLimit(1000);
+        this.properties.setSendRateLimitBurst(2);
+        var outbox = outbox(NOW);
+        for (int i = 0; i < 5; i++) {
+            outbox.add(message("message " + i));
+        }
+
+        assertEquals(5, outbox.relay());
+
+        assertEquals(5, this.sentSubjects.size());
+        assertEquals(0, countRows());
+        verify(this.mailSender, times(5)).send(any(MimeMessage.class));
+    }
+
+    @Test
+    void relayDoesNotCountMessagesTheGuardRefusedAsAttempts() throws Exception {
+        this.properties.setCircuitBreakerFailureThreshold(1);
+        var outbox = outbox(NOW);
+        outbox.add(message("refused"));
+        doThrow(new MailSendException("Connection refused")).when(this.mailSender).send(any(MimeMessage.class));
+        assertEquals(1, outbox.relay());
+
+        for (int attempt = 1; attempt <= 5; attempt++) {
+            outbox.setClock(Clock.fixed(NOW.plus(Duration.ofHours(attempt)), ZoneOffset.UTC));
+            assertEquals(1, outbox.relay());
+        }
+
+        var row = this.jdbcTemplate.queryForMap("SELECT attempts, next_attempt_at, last_error FROM " + EmailOutboxRepository.TABLE_NAME);
+        assertEquals(1, row.get("ATTEMPTS"));
+        assertEquals(NOW.plus(Duration.ofHours(5)).plusSeconds(30), ((java.sql.Timestamp) row.get("NEXT_ATTEMPT_AT")).toInstant());
+        assertTrue(row.get("LAST_ERROR").toString().contains("suspended"));
+        assertEquals(5.0, this.registry.counter("email.outbox.relay.deferred").count());
+        assertEquals(0.0, this.registry.counter("email.outbox.relay.abandoned").count());
+        verify(this.mailSender, times(1)).send(any(MimeMessage.class));
+    }
+
+    @Test
+    void messageAddedInRolledBackTransactionIsNotSent() throws Exception {
+        var outbox = outbox(NOW);
+        outbox.add(message("created table"));
+        outbox.relay();
+
+        new TransactionTemplate(this.transactionManager).executeWithoutResult(status -> {
+            try {
+                outbox.add(message("rolled back"));
+            } catch (MessagingException | IOException e) {
+                throw new IllegalStateException(e);
+            }
+            status.setRollbackOnly();
+        });
+
+        assertEquals(0, outbox.relay());
+        assertEquals(List.of("created table"), this.sentSubjects);
+    }
+
+    @Test
+    void concurrentRelaysSendEveryMessageOnce() throws Exception {
+        var writer = outbox(NOW);
+        for (int i = 0; i < 200; i++) {
+            writer.add(message("message " + i));
+        }
+        List<Callable<Integer>> relays = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            var relay = outbox(NOW);
+            relays.add(() -> {
+                int relayed = 0;
+                int claimed;
+                while ((claimed = relay.relay()) > 0) {
+                    relayed += claimed;
+                }
+                return relayed;
+            });
+        }
+
+        try (var executor = Executors.newFixedThreadPool(4)) {
+            int relayed = 0;
+            for (var result : executor.invokeAll(relays)) {
+                relayed += result.get();
+            }
+            assertEquals(200, relayed);
+        }
+
+        assertEquals(200, this.sentSubjects.size());
+        assertEquals(200, new HashSet<>(this.sentSubjects).size());
+        assertEquals(0, countRows());
+    }
+
+    @Test
+    void backoffDoublesUpToMaximum() {
+        var outbox = outbox(NOW);
+
+        assertEquals(Duration.ofSeconds(30), outbox.backoff(1));
+        assertEquals(Duration.ofSeconds(60), outbox.backoff(2));
+        assertEquals(Duration.ofMinutes(1), outbox.backoff(20));
+    }
+
+    private DurableEmailOutbox outbox(Instant now) {
+        var repository = new EmailOutboxRepository(this.jdbcTemplate, this.transactionManager);
+        var outbox = new DurableEmailOutbox(repository, this.mailSender, this.properties, this.registry, new SmtpRelayGuard(this.properties, this.registry));
+        outbox.setClock(Clock.fixed(now, ZoneOffset.UTC));
+        return outbox;
+    }
+
+    private int countRows() {
+        return this.jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + EmailOutboxRepository.TABLE_NAME, Integer.class);
+    }
+
+    private MimeMessage message(String subject) throws MessagingException {
+        var message = new MimeMessage(this.session);
+        message.setFrom("test@acs.com");
+        message.setRecipients(MimeMessage.RecipientType.TO, "recipient@example.com");
+        message.setSubject(subject);
+        message.setText("Test Body");
+        return message;
+    }
+
+}
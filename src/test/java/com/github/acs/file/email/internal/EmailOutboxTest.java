@@ -0,0 +1,160 @@
+package com.github.acs.file.email.internal;
+
+import com.github.acs.file.email.EmailServiceException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.Address;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Session;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Duration;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ActiveProfiles("test")
+class EmailOutboxTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private EmailOutbox outbox;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (this.outbox != null) {
+            this.outbox.close();
+        }
+    }
+
+    @Test
+    void sendsMessagesOverOneReusedConnection() throws MessagingException {
+        var transport = mock(Transport.class);
+        when(transport.isConnected()).thenReturn(true);
+        var mailSender = mailSenderWith(transport);
+        this.outbox = start(mailSender, 10, 1);
+
+        CompletableFuture.allOf(
+                this.outbox.submit(message()),
+                this.outbox.submit(message()),
+                this.outbox.submit(message())
+        ).join();
+
+        verify(transport, times(1)).connect("localhost", 2525, "username", "password");
+        verify(transport, times(3)).sendMessage(any(MimeMessage.class), any(Address[].class));
+        assertEquals(3, this.registry.timer("email.send.latency", "outcome", "success").count());
+    }
+
+    @Test
+    void retriesOnNewConnectionWhenSendingFails() throws MessagingException {
+        var transport = mock(Transport.class);
+        when(transport.isConnected()).thenReturn(true);
+        doThrow(new MessagingException("Connection reset"))
+                .doNothing()
+                .when(transport).sendMessage(any(MimeMessage.class), any(Address[].class));
+        this.outbox = start(mailSenderWith(transport), 10, 1);
+
+        this.outbox.submit(message()).join();
+
+        verify(transport, times(2)).connect("localhost", 2525, "username", "password");
+        verify(transport, times(2)).sendMessage(any(MimeMessage.class), any(Address[].class));
+    }
+
+    @Test
+    void rejectsMessagesWhenFull() throws InterruptedException {
+        var sending = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var mailSender = mock(JavaMailSender.class);
+        doAnswer(invocation -> {
+            sending.countDown();
+            release.await();
+            return null;
+        }).when(mailSender).send(any(MimeMessage.class));
+        this.outbox = start(mailSender, 1, 1);
+
+        var first = this.outbox.submit(message());
+        assertTrue(sending.await(10, TimeUnit.SECONDS));
+        var second = this.outbox.submit(message());
+        var third = this.outbox.submit(message());
+
+        var exception = assertThrows(CompletionException.class, third::join);
+        assertInstanceOf(EmailServiceException.class, exception.getCause());
+        assertEquals(1.0, this.registry.find("email.outbox.depth").gauge().value());
+        release.countDown();
+        CompletableFuture.allOf(first, second).join();
+        assertEquals(1.0, this.registry.counter("email.outbox.rejected").count());
+    }
+
+    @Test
+    void completesExceptionallyWhenSendingFails() {
+        var mailSender = mock(JavaMailSender.class);
+        doThrow(new RuntimeException("Unable to send email")).when(mailSender).send(any(MimeMessage.class));
+        this.outbox = start(mailSender, 10, 1);
+
+        var exception = assertThrows(CompletionException.class, () -> this.outbox.submit(message()).join());
+
+        assertInstanceOf(EmailServiceException.class, exception.getCause());
+        assertEquals(1, this.registry.timer("email.send.latency", "outcome", "failure").count());
+    }
+
+    @Test
+    void rejectsMessagesOnceClosed() throws InterruptedException {
+        this.outbox = start(mock(JavaMailSender.class), 10, 2);
+        this.outbox.close();
+
+        var exception = assertThrows(CompletionException.class, () -> this.outbox.submit(message()).join());
+
+        assertEquals("The email outbox is closed", exception.getCause().getMessage());
+    }
+
+    private EmailOutbox start(JavaMailSender mailSender, int capacity, int workers) {
+        var properties = new EmailProperties();
+        properties.setOutboxCapacity(capacity);
+        properties.setOutboxWorkers(workers);
+        properties.setConnectionIdleTimeout(Duration.ofSeconds(30));
+        var outbox = new EmailOutbox(properties, mailSender, this.registry, new SmtpRelayGuard(properties, this.registry));
+        outbox.start();
+        return outbox;
+    }
+
+    private static JavaMailSenderImpl mailSenderWith(Transport transport) {
+        var session = mock(Session.class);
+        try {
+            when(session.getTransport("smtp")).thenReturn(transport);
+        } catch (MessagingException e) {
+            throw new IllegalStateException(e);
+        }
+        var mailSender = spy(new JavaMailSenderImpl());
+        mailSender.setHost("localhost");
+        mailSender.setPort(2525);
+        mailSender.setUsername("username");
+        mailSender.setPassword("password");
+        doReturn(session).when(mailSender).getSession();
+        return mailSender;
+    }
+
+    private static MimeMessage message() {
+        try {
+            var message = new MimeMessage(Session.getInstance(new Properties()));
+            message.setFrom("test@acs.com");
+            message.setRecipients(MimeMessage.RecipientType.TO, "recipient@example.com");
+            message.setSubject("Test Subject");
+            message.setText("Test Body");
+            return message;
+        } catch (MessagingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
@@ -3,20 +3,35 @@ package com.github.acs.file.email.internal;
 import com.github.acs.file.email.*;
 import com.github.acs.file.email.internal.template.EmailTemplateProcessor;
 import com.github.acs.file.email.internal.template.EmailTemplateRequest;
+import com.github.acs.file.email.util.MimeMultipartUtils;
 import com.github.acs.file.email.util.TestEmailTemplate;
 import com.github.acs.file.email.util.TestTemplateVariables;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.Message;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Session;
 import jakarta.mail.internet.MimeMessage;
+import jakarta.mail.internet.MimeMultipart;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.dao.DataAccessResourceFailureException;
 import org.springframework.mail.MailSendException;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.util.unit.DataSize;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -35,6 +50,18 @@ class EmailServiceBeanTest {
     @Mock
     private EmailProperties emailProperties;
 
+    @Mock
+    private EmailOutbox emailOutbox;
+
+    @Mock
+    private DurableEmailOutbox durableEmailOutbox;
+
+    @Mock
+    private RecipientFanOut recipientFanOut;
+
+    @Spy
+    private SmtpRelayGuard smtpRelayGuard = new SmtpRelayGuard(new EmailProperties(), new SimpleMeterRegistry());
+
     @InjectMocks
     private EmailServiceBean emailService;
 
@@ -63,6 +90,68 @@ class EmailServiceBeanTest {
         verify(mailSender, times(1)).send(this.mimeMessage);
     }
 
+    @Test
+    void testCreateMimeMessageSetsCcAndBccRecipients() throws Exception {
+        when(mailSender.createMimeMessage()).thenReturn(new MimeMessage((Session) null));
+        var emailRequest = EmailRequest.builder()
+                .to(Set.of("recipient@example.com"))
+                .cc(Set.of("first@example.com"))
+                .bcc(Set.of("second@example.com"))
+                .subject("Test Subject")
+                .body("Test Body")
+                .build();
+
+        var message = emailService.createMimeMessage(emailRequest);
+
+        assertEquals("first@example.com", message.getRecipients(Message.RecipientType.CC)[0].toString());
+        assertEquals("second@example.com", message.getRecipients(Message.RecipientType.BCC)[0].toString());
+    }
+
+    @Test
+    void testCreateMimeMessageWithoutAttachmentsIsNotMultipart() throws Exception {
+        when(mailSender.createMimeMessage()).thenReturn(new MimeMessage((Session) null));
+        var emailRequest = EmailRequest.builder()
+                .to(Set.of("recipient@example.com"))
+                .subject("Test Subject")
+                .body("Test Body")
+                .build();
+
+        var message = emailService.createMimeMessage(emailRequest);
+        message.saveChanges();
+
+        assertTrue(message.isMimeType("text/html"));
+    }
+
+    @Test
+    void testCreateMimeMessageAttachesFilesAndLinksLargeOnes(@TempDir Path directory) throws Exception {
+        when(mailSender.createMimeMessage()).thenReturn(new MimeMessage((Session) null));
+        when(emailProperties.getAttachmentMaxSize()).thenReturn(DataSize.ofBytes(10));
+        when(emailProperties.getAttachmentLinkBaseUrl()).thenReturn("https://transfer.acs.com/files/");
+        when(emailTemplateProcessor.setEmailText(any(EmailTemplateRequest.class))).thenReturn("<html><body><p>Done</p></body></html>");
+        var errors = Files.writeString(directory.resolve("errors.log"), "Failed");
+        var manifest = Files.writeString(directory.resolve("manifest.csv"), "a".repeat(2048));
+        var emailRequest = EmailRequest.builder()
+                .to(Set.of("recipient@example.com"))
+                .subject("Test Subject")
+                .body("Test Body")
+                .attachments(List.of(
+                        EmailAttachment.builder().path(errors).build(),
+                        EmailAttachment.builder().path(manifest).build()))
+                .build();
+
+        var message = emailService.createMimeMessage(emailRequest);
+        message.saveChanges();
+
+        var multipart = (MimeMultipart) message.getContent();
+        assertEquals(2, multipart.getCount());
+        var attachment = multipart.getBodyPart(1);
+        assertEquals("errors.log", attachment.getFileName());
+        assertEquals("Failed", new String(attachment.getInputStream().readAllBytes()));
+        var body = MimeMultipartUtils.getTextFromMimeMultipart(multipart);
+        assertTrue(body.contains("<a href=\"https://transfer.acs.com/files/manifest.csv\">manifest.csv</a> (2 KB) is too large to be attached"));
+        assertTrue(body.endsWith("</p></body></html>"));
+    }
+
     @Test
     void testSendEmailWithValidTemplateWithoutVariables() throws EmailServiceException {
 
@@ -139,4 +228,106 @@ class EmailServiceBeanTest {
         assertEquals("Unexpected error occurred while sending email", exception.getMessage());
     }
 
-}
\ No newline at end of file
+    @Test
+    void testSendEmailAsyncQueuesMessage() {
+        var emailRequest = EmailRequest.builder()
+                .to(Set.of("recipient@example.com"))
+                .subject("Test Subject")
+                .body("Test Body")
+                .build();
+        when(emailOutbox.submit(this.mimeMessage)).thenReturn(CompletableFuture.completedFuture(null));
+
+        emailService.sendEmailAsync(emailRequest).join();
+
+        verify(emailOutbox, times(1)).submit(this.mimeMessage);
+        verify(mailSender, never()).send(any(MimeMessage.class));
+    }
+
+    @Test
+    void testSendEmailAsyncCreateMessageException() {
+        var emailRequest = EmailRequest.builder()
+                .to(Set.of("recipient@example.com"))
+                .subject("Test Subject")
+                .body("Test Body")
+                .build();
+        when(emailTemplateProcessor.setEmailText(any(EmailTemplateRequest.class))).thenThrow(new IllegalStateException("Unable to render"));
+
+        var result = emailService.sendEmailAsync(emailRequest);
+
+        var exception = assertThrows(CompletionException.class, result::join);
+        assertInstanceOf(EmailServiceException.class, exception.getCause());
+        verify(emailOutbox, never()).submit(any(MimeMessage.class));
+    }
+
+    @Test
+    void testSendEmailsReportsRejectedMessages() {
+        var accepted = mock(MimeMessage.class);
+        var rejected = mock(MimeMessage.class);
+        when(mailSender.createMimeMessage()).thenReturn(accepted, rejected);
+        var failure = new SendFailedException("Mailbox unavailable");
+        doThrow(new MailSendException(Map.of(rejected, failure))).when(mailSender).send(rejected);
+
+        var results = emailService.sendEmails(List.of(request("first@example.com"), request("second@example.com")));
+
+        verify(mailSender, times(1)).send(accepted);
+        verify(mailSender, times(1)).send(rejected);
+        assertEquals(2, results.size());
+        assertTrue(results.get(0).sent());
+        assertFalse(results.get(1).sent());
+        assertEquals("second@example.com", results.get(1).request().to().iterator().next());
+        assertSame(failure, results.get(1).error().getCause());
+    }
+
+    @Test
+    void testSendEmailsSkipsMessagesThatCannotBeRendered() {
+        var accepted = mock(MimeMessage.class);
+        when(mailSender.createMimeMessage()).thenReturn(mock(MimeMessage.class), accepted);
+        when(emailTemplateProcessor.setEmailText(any(EmailTemplateRequest.class)))
+                .thenThrow(new IllegalStateException("Unable to render"))
+                .thenReturn("This is a test message");
+
+        var results = emailService.sendEmails(List.of(request("first@example.com"), request("second@example.com")));
+
+        verify(mailSender, times(1)).send(accepted);
+        assertFalse(results.get(0).sent());
+        assertTrue(results.get(1).sent());
+    }
+
+    @Test
+    void testSendEmailsFailsEveryMessageWhenConnectionFails() {
+        when(mailSender.createMimeMessage()).thenReturn(mock(MimeMessage.class), mock(MimeMessage.class));
+        doThrow(new RuntimeException("Connection refused")).when(mailSender).send(any(MimeMessage.class));
+
+        var results = emailService.sendEmails(List.of(request("first@example.com"), request("second@example.com")));
+
+        assertTrue(results.stream().noneMatch(EmailResult::sent));
+        assertEquals("Unexpected error occurred while sending email", results.getFirst().error().getMessage());
+    }
+
+    @Test
+    void testEnqueueEmailStoresMessage() throws Exception {
+        emailService.enqueueEmail(request("recipient@example.com"));
+
+        verify(durableEmailOutbox, times(1)).add(this.mimeMessage);
+        verify(mailSender, never()).send(any(MimeMessage.class));
+    }
+
+    @Test
+    void testEnqueueEmailException() throws Exception {
+        doThrow(new DataAccessResourceFailureException("Database unavailable")).when(durableEmailOutbox).add(any(MimeMessage.class));
+
+        var exception = assertThrows(EmailServiceException.class, () ->
+                emailService.enqueueEmail(request("recipient@example.com")));
+
+        assertEquals("Error storing email in the outbox", exception.getMessage());
+    }
+
+    private static EmailRequest request(String to) {
+        return EmailRequest.builder()
+                .to(Set.of(to))
+                .subject("Test Subject")
+                .body("Test Body")
+                .build();
+    }
+
+}
@@ -0,0 +1,68 @@
+package com.github.acs.file.email.internal;
+
+import com.github.acs.file.email.EmailAttachment;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ActiveProfiles("test")
+class FileAttachmentDataSourceTest {
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    void streamsTheFile() throws IOException {
+        var file = Files.writeString(this.directory.resolve("errors.log"), "Transfer failed");
+        var dataSource = new FileAttachmentDataSource(EmailAttachment.builder().path(file).build());
+
+        try (var content = dataSource.getInputStream()) {
+            assertEquals("Transfer failed", new String(content.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        assertEquals("errors.log", dataSource.getName());
+    }
+
+    @Test
+    void compressesTheFileWhileItIsRead() throws IOException {
+        var manifest = new StringBuilder();
+        for (int i = 0; i < 20_000; i++) {
+            manifest.append("/data/transfer/outbound/file-").append(i).append(".dat,").append(i * 31L).append('\n');
+        }
+        var file = Files.writeString(this.directory.resolve("manifest.csv"), manifest);
+        var dataSource = new FileAttachmentDataSource(EmailAttachment.builder()
+                .path(file)
+                .fileName("transfer-manifest.csv")
+                .compress(true)
+                .build());
+
+        byte[] compressed;
+        try (var content = dataSource.getInputStream()) {
+            compressed = content.readAllBytes();
+        }
+
+        assertTrue(compressed.length < Files.size(file));
+        try (var decompressed = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            assertEquals(manifest.toString(), new String(decompressed.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        assertEquals("transfer-manifest.csv.gz", dataSource.getName());
+        assertEquals("application/gzip", dataSource.getContentType());
+    }
+
+    @Test
+    void contentTypeIsGivenOrGuessedFromTheFileName() {
+        var file = this.directory.resolve("report.html");
+
+        assertEquals("text/csv", new FileAttachmentDataSource(EmailAttachment.builder().path(file).contentType("text/csv").build()).getContentType());
+        assertEquals("text/html", new FileAttachmentDataSource(EmailAttachment.builder().path(file).build()).getContentType());
+    }
+
+}
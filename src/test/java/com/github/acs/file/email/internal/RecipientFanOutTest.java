@@ -0,0 +1,199 @@
+package com.github.acs.file.email.internal;
+
+import com.github.acs.file.email.EmailServiceException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.Address;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Session;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ActiveProfiles("test")
+class RecipientFanOutTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private final EmailProperties properties = new EmailProperties();
+
+    private RecipientFanOut fanOut;
+
+    @AfterEach
+    void tearDown() {
+        if (this.fanOut != null) {
+            this.fanOut.close();
+        }
+    }
+
+    @Test
+    void groupsRecipientsByDomain() throws MessagingException {
+        var recipientsByDomain = RecipientFanOut.groupByDomain(InternetAddress.parse(
+                "first@example.com, second@EXAMPLE.com, test@acs.com, \"Third\" <third@example.com>"));
+
+        assertEquals(List.of("example.com", "acs.com"), List.copyOf(recipientsByDomain.keySet()));
+        assertEquals(3, recipientsByDomain.get("example.com").size());
+        assertEquals(1, recipientsByDomain.get("acs.com").size());
+    }
+
+    @Test
+    void sendsOneDeliveryPerDomainWithItsRecipients() throws MessagingException {
+        var transport = mock(Transport.class);
+        when(transport.isConnected()).thenReturn(true);
+        this.fanOut = new RecipientFanOut(mailSenderWith(transport), this.properties, this.registry, new SmtpRelayGuard(this.properties, this.registry));
+
+        this.fanOut.send(message("first@example.com", "second@example.com", "test@acs.com")).join();
+
+        var recipients = ArgumentCaptor.forClass(Address[].class);
+        verify(transport, times(2)).sendMessage(any(MimeMessage.class), recipients.capture());
+        var deliveries = recipients.getAllValues().stream()
+                .map(addresses -> Arrays.stream(addresses).map(Address::toString).collect(Collectors.toSet()))
+                .collect(Collectors.toSet());
+        assertEquals(Set.of(Set.of("first@example.com", "second@example.com"), Set.of("test@acs.com")), deliveries);
+        assertEquals(1, this.registry.timer("email.fanout.latency", "domain", "example.com", "outcome", "success").count());
+        assertEquals(1, this.registry.timer("email.fanout.latency", "domain", "acs.com", "outcome", "success").count());
+    }
+
+    @Test
+    void reusesConnectionsOfADomain() throws MessagingException {
+        var transport = mock(Transport.class);
+        when(transport.isConnected()).thenReturn(true);
+        this.fanOut = new RecipientFanOut(mailSenderWith(transport), this.properties, this.registry, new SmtpRelayGuard(this.properties, this.registry));
+
+        this.fanOut.send(message("first@example.com")).join();
+        this.fanOut.send(message("second@example.com")).join();
+
+        verify(transport, times(1)).connect("localhost", 2525, "username", "password");
+        verify(transport, times(2)).sendMessage(any(MimeMessage.class), any(Address[].class));
+    }
+
+    @Test
+    void limitsConcurrencyAndRateOfADomain() throws MessagingException, InterruptedException {
+        var limits = new EmailProperties.DomainLimits();
+        limits.setConcurrency(1);
+        limits.setRateLimit(20);
+        this.properties.getFanOutDomainLimits().put("example.com", limits);
+        var sending = new AtomicInteger();
+        var maxSending = new AtomicInteger();
+        var firstSending = new CountDownLatch(1);
+        var releaseFirst = new CountDownLatch(1);
+        var transport = mock(Transport.class);
+        when(transport.isConnected()).thenReturn(true);
+        doAnswer(invocation -> {
+            maxSending.accumulateAndGet(sending.incrementAndGet(), Math::max);
+            firstSending.countDown();
+            releaseFirst.await();
+            sending.decrementAndGet();
+            return null;
+        }).when(transport).sendMessage(any(MimeMessage.class), any(Address[].class));
+        this.fanOut = new RecipientFanOut(mailSenderWith(transport), this.properties, this.registry, new SmtpRelayGuard(this.properties, this.registry));
+
+        long start = System.nanoTime();
+        var sends = IntStream.range(0, 5)
+                .mapToObj(i -> this.fanOut.send(message("recipient" + i + "@example.com")))
+                .toArray(CompletableFuture[]::new);
+        // The first delivery is held until every other one waits for it
+        assertTrue(firstSending.await(10, TimeUnit.SECONDS));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (this.fanOut.waitingDeliveries("example.com") < 4) {
+            assertTrue(System.nanoTime() - deadline < 0, "Expected 4 deliveries to wait for the first");
+            Thread.sleep(10);
+        }
+        assertEquals(1, sending.get());
+        releaseFirst.countDown();
+        CompletableFuture.allOf(sends).join();
+
+        assertEquals(1, maxSending.get());
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() >= 200);
+        assertEquals(4, this.registry.counter("email.fanout.deferred", "domain", "example.com").count());
+    }
+
+    @Test
+    void completesExceptionallyWhenADomainFails() throws MessagingException {
+        var transport = mock(Transport.class);
+        when(transport.isConnected()).thenReturn(true);
+        var delivered = ConcurrentHashMap.<String>newKeySet();
+        doAnswer(invocation -> {
+            var recipient = invocation.<Address[]>getArgument(1)[0].toString();
+            if (recipient.endsWith("@example.org")) {
+                throw new SendFailedException("Too many recipients");
+            }
+            delivered.add(recipient);
+            return null;
+        }).when(transport).sendMessage(any(MimeMessage.class), any(Address[].class));
+        this.fanOut = new RecipientFanOut(mailSenderWith(transport), this.properties, this.registry, new SmtpRelayGuard(this.properties, this.registry));
+
+        var exception = assertThrows(CompletionException.class,
+                () -> this.fanOut.send(message("first@example.com", "second@example.org")).join());
+
+        assertInstanceOf(EmailServiceException.class, exception.getCause());
+        assertEquals("Error sending email to 1 of 2 recipient domains", exception.getCause().getMessage());
+        assertEquals(Set.of("first@example.com"), delivered);
+        assertEquals(1, this.registry.timer("email.fanout.latency", "domain", "example.org", "outcome", "failure").count());
+    }
+
+    @Test
+    void fansOutMessagesWithManyRecipients() throws MessagingException {
+        this.properties.setFanOutMinRecipients(2);
+        this.fanOut = new RecipientFanOut(mailSenderWith(mock(Transport.class)), this.properties, this.registry, new SmtpRelayGuard(this.properties, this.registry));
+
+        assertFalse(this.fanOut.shouldFanOut(message("first@example.com")));
+        assertTrue(this.fanOut.shouldFanOut(message("first@example.com", "second@example.org")));
+        assertFalse(new RecipientFanOut(mock(JavaMailSender.class), this.properties, this.registry, new SmtpRelayGuard(this.properties, this.registry))
+                .shouldFanOut(message("first@example.com", "second@example.org")));
+    }
+
+    private static JavaMailSenderImpl mailSenderWith(Transport transport) {
+        var session = spy(Session.getInstance(new Properties()));
+        try {
+            doReturn(transport).when(session).getTransport("smtp");
+        } catch (MessagingException e) {
+            throw new IllegalStateException(e);
+        }
+        var mailSender = spy(new JavaMailSenderImpl());
+        mailSender.setHost("localhost");
+        mailSender.setPort(2525);
+        mailSender.setUsername("username");
+        mailSender.setPassword("password");
+        doReturn(session).when(mailSender).getSession();
+        return mailSender;
+    }
+
+    private static MimeMessage message(String... recipients) {
+        try {
+            var message = new MimeMessage(Session.getInstance(new Properties()));
+            message.setFrom("test@acs.com");
+            message.setRecipients(MimeMessage.RecipientType.TO, String.join(",", recipients));
+            message.setSubject("Test Subject");
+            message.setText("Test Body");
+            return message;
+        } catch (MessagingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
@@ -0,0 +1,259 @@
+package com.github.acs.file.email.internal;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Session;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ActiveProfiles("test")
+class SmtpRelayGuardTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private final EmailProperties properties = new EmailProperties();
+
+    private final AtomicLong nanoTime = new AtomicLong();
+
+    private final AtomicInteger sent = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        this.properties.setCircuitBreakerFailureThreshold(3);
+        this.properties.setCircuitBreakerOpenDuration(Duration.ofSeconds(30));
+    }
+
+    @Test
+    void circuitOpensAfterConsecutiveFailuresAndFailsFast() {
+        var guard = guard();
+
+        for (int i = 0; i < 3; i++) {
+            assertThrows(MailSendException.class, () -> guard.send(messages(1), this::failToConnect));
+        }
+        assertEquals(SmtpRelayGuard.State.OPEN, guard.getState());
+
+        assertThrows(SmtpRelayUnavailableException.class, () -> guard.send(messages(1), this::send));
+        assertEquals(0, this.sent.get());
+        assertEquals(1.0, this.registry.counter("email.relay.rejected", "reason", "circuit_open").count());
+        assertEquals(2.0, this.registry.get("email.relay.circuit.state").gauge().value());
+        assertEquals(Status.DOWN, new SmtpRelayHealthIndicator(guard).health().getStatus());
+    }
+
+    @Test
+    void circuitClosesWhenTheProbeSucceeds() {
+        var guard = guard();
+        for (int i = 0; i < 3; i++) {
+            assertThrows(MailSendException.class, () -> guard.send(messages(1), this::failToConnect));
+        }
+
+        this.nanoTime.addAndGet(Duration.ofSeconds(30).toNanos());
+        assertEquals(SmtpRelayGuard.State.HALF_OPEN, guard.getState());
+        guard.send(messages(1), this::send);
+
+        assertEquals(SmtpRelayGuard.State.CLOSED, guard.getState());
+        assertEquals(0, guard.getFailures());
+        assertEquals(Status.UP, new SmtpRelayHealthIndicator(guard).health().getStatus());
+    }
+
+    @Test
+    void circuitOpensAgainWhenTheProbeFails() {
+        var guard = guard();
+        for (int i = 0; i < 3; i++) {
+            assertThrows(MailSendException.class, () -> guard.send(messages(1), this::failToConnect));
+        }
+        this.nanoTime.addAndGet(Duration.ofSeconds(30).toNanos());
+
+        assertThrows(MailSendException.class, () -> guard.send(messages(1), this::failToConnect));
+
+        assertEquals(SmtpRelayGuard.State.OPEN, guard.getState());
+        assertThrows(SmtpRelayUnavailableException.class, () -> guard.send(messages(1), this::send));
+    }
+
+    @Test
+    void rejectedRecipientsAreNotFailuresOfTheRelay() throws MessagingException {
+        var guard = guard();
+        var message = messages(1);
+
+        for (int i = 0; i < 5; i++) {
+            assertThrows(SendFailedException.class, () -> guard.send(message, () -> {
+                throw new SendFailedException("Mailbox unavailable");
+            }));
+            assertThrows(MailSendException.class, () -> guard.send(message, () -> {
+                throw new MailSendException(Map.of(message[0], new SendFailedException("Mailbox unavailable")));
+            }));
+        }
+
+        assertEquals(SmtpRelayGuard.State.CLOSED, guard.getState());
+        assertFalse(SmtpRelayGuard.isRelayFailure(new SendFailedException("Mailbox unavailable")));
+        assertTrue(SmtpRelayGuard.isRelayFailure(new MessagingException("Connection refused")));
+    }
+
+    @Test
+    void rateLimitRefusesSendsThatWouldWaitTooLong() {
+        this.properties.setSendRateLimit(10);
+        this.properties.setSendRateLimitBurst(5);
+        this.properties.setSendRateLimitTimeout(Duration.ZERO);
+        var guard = guard();
+
+        guard.send(messages(5), this::send);
+
+        assertThrows(SmtpRelayUnavailableException.class, () -> guard.send(messages(1), this::send));
+        assertEquals(1.0, this.registry.counter("email.relay.rejected", "reason", "rate_limited").count());
+        this.nanoTime.addAndGet(Duration.ofMillis(100).toNanos());
+        guard.send(messages(1), this::send);
+        assertEquals(2, this.sent.get());
+        assertEquals(SmtpRelayGuard.State.CLOSED, guard.getState());
+    }
+
+    @Test
+    void senderRateLimitIsPerSender() {
+        this.properties.setSenderRateLimit(1);
+        this.properties.setSendRateLimitBurst(1);
+        this.properties.setSendRateLimitTimeout(Duration.ZERO);
+        var guard = guard();
+
+        guard.send(messages(1, "first@acs.com"), this::send);
+        guard.send(messages(1, "second@acs.com"), this::send);
+
+        assertThrows(SmtpRelayUnavailableException.class, () -> guard.send(messages(1, "first@acs.com"), this::send));
+    }
+
+    @Test
+    void globalPermitsAreReturnedWhenSenderRateLimitRefuses() {
+        this.properties.setSendRateLimit(10);
+        this.properties.setSenderRateLimit(1);
+        this.properties.setSendRateLimitBurst(2);
+        this.properties.setSendRateLimitTimeout(Duration.ZERO);
+        var guard = guard();
+        guard.send(messages(2, "first@acs.com"), this::send);
+        this.nanoTime.addAndGet(Duration.ofMillis(100).toNanos());
+
+        assertThrows(SmtpRelayUnavailableException.class, () -> guard.send(messages(1, "first@acs.com"), this::send));
+        guard.send(messages(1, "second@acs.com"), this::send);
+
+        assertEquals(2, this.sent.get());
+    }
+
+    @Test
+    void sendEachSendsBatchLargerThanBurstOverOneConnection() throws MessagingException {
+        this.properties.setSendRateLimit(1000);
+        this.properties.setSendRateLimitBurst(2);
+        var transport = mock(Transport.class);
+        when(transport.isConnected()).thenReturn(true);
+        var guard = guard();
+
+        var errors = guard.sendEach(mailSenderWith(transport), List.of(messages(5)));
+
+        assertTrue(errors.isEmpty());
+        verify(transport, times(1)).connect("localhost", 2525, "username", "password");
+        verify(transport, times(5)).sendMessage(any(MimeMessage.class), any());
+        verify(transport, times(1)).close();
+    }
+
+    @Test
+    void sendEachKeepsConnectionForRejectedRecipientsAndReconnectsAfterFailure() throws MessagingException {
+        var transport = mock(Transport.class);
+        when(transport.isConnected()).thenReturn(true);
+        var messages = messages(3);
+        var rejected = new SendFailedException("Mailbox unavailable");
+        doThrow(rejected).when(transport).sendMessage(eq(messages[0]), any());
+        doThrow(new MessagingException("Connection reset")).when(transport).sendMessage(eq(messages[1]), any());
+        var guard = guard();
+
+        var errors = guard.sendEach(mailSenderWith(transport), List.of(messages));
+
+        assertEquals(2, errors.size());
+        assertSame(rejected, errors.get(messages[0]));
+        assertEquals("Connection reset", errors.get(messages[1]).getMessage());
+        assertFalse(errors.containsKey(messages[2]));
+        verify(transport, times(2)).connect("localhost", 2525, "username", "password");
+        assertEquals(SmtpRelayGuard.State.CLOSED, guard.getState());
+    }
+
+    @Test
+    void tokenBucketHandsOutEveryPermitOnceUnderContention() throws InterruptedException {
+        var bucket = new TokenBucket(1000, 100, 0);
+        var granted = new AtomicInteger();
+        var threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = Thread.ofPlatform().start(() -> {
+                for (int j = 0; j < 1000; j++) {
+                    if (bucket.reserve(1, 0, 0) == 0) {
+                        granted.incrementAndGet();
+                    }
+                }
+            });
+        }
+        for (var thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(100, granted.get());
+        assertEquals(Duration.ofMillis(1).toNanos(), bucket.reserve(1, 0, Long.MAX_VALUE));
+    }
+
+    private SmtpRelayGuard guard() {
+        return new SmtpRelayGuard(this.properties, this.registry, this.nanoTime::get);
+    }
+
+    private void send() {
+        this.sent.incrementAndGet();
+    }
+
+    private void failToConnect() {
+        throw new MailSendException("Connection refused");
+    }
+
+    private static JavaMailSenderImpl mailSenderWith(Transport transport) {
+        var session = mock(Session.class);
+        try {
+            when(session.getTransport("smtp")).thenReturn(transport);
+        } catch (MessagingException e) {
+            throw new IllegalStateException(e);
+        }
+        var mailSender = spy(new JavaMailSenderImpl());
+        mailSender.setHost("localhost");
+        mailSender.setPort(2525);
+        mailSender.setUsername("username");
+        mailSender.setPassword("password");
+        doReturn(session).when(mailSender).getSession();
+        return mailSender;
+    }
+
+    private static MimeMessage[] messages(int count) {
+        return messages(count, "test@acs.com");
+    }
+
+    private static MimeMessage[] messages(int count, String from) {
+        var messages = new MimeMessage[count];
+        try {
+            for (int i = 0; i < count; i++) {
+                messages[i] = new MimeMessage(Session.getInstance(new Properties()));
+                messages[i].setFrom(from);
+            }
+        } catch (MessagingException e) {
+            throw new IllegalStateException(e);
+        }
+        return messages;
+    }
+
+}
@@ -0,0 +1,54 @@
+package com.github.acs.file.email.internal.template;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.context.ActiveProfiles;
+import org.thymeleaf.cache.TemplateCacheKey;
+import org.thymeleaf.templatemode.TemplateMode;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ActiveProfiles("test")
+class EmailTemplateCacheManagerTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private final EmailTemplateCacheManager.TemplateCache cache = new EmailTemplateCacheManager.TemplateCache(10, null, this.registry);
+
+    @Test
+    void putRecordsParseTimeOfMiss() {
+        assertNull(this.cache.get(key("greeting")));
+        this.cache.put(key("greeting"), null);
+        this.cache.put(key("greeting"), null);
+
+        assertEquals(1, this.registry.timer("email.template.parse").count());
+        assertEquals(1.0, this.registry.counter("email.template.cache.misses").count());
+    }
+
+    @Test
+    void missWithoutPutIsDroppedByNextAccess() {
+        // A template that is not cacheable is missed and never put
+        this.cache.get(key("uncacheable"));
+        this.cache.get(key("greeting"));
+        this.cache.put(key("greeting"), null);
+        this.cache.put(key("uncacheable"), null);
+
+        assertEquals(1, this.registry.timer("email.template.parse").count());
+    }
+
+    @Test
+    void putRecordsOnlyMissOfItsThread() {
+        this.cache.get(key("greeting"));
+
+        CompletableFuture.runAsync(() -> this.cache.put(key("greeting"), null)).join();
+
+        assertEquals(0, this.registry.timer("email.template.parse").count());
+    }
+
+    private static TemplateCacheKey key(String template) {
+        return new TemplateCacheKey(null, template, null, 0, 0, TemplateMode.HTML, null);
+    }
+
+}
@@ -0,0 +1,190 @@
+package com.github.acs.file.email.internal.template;
+
+import com.github.acs.file.email.internal.EmailProperties;
+import com.github.acs.file.email.util.TestEmailTemplate;
+import com.github.acs.file.email.util.TestTemplateVariables;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.autoconfigure.thymeleaf.ThymeleafProperties;
+import org.springframework.test.context.ActiveProfiles;
+import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+import org.thymeleaf.templateresolver.FileTemplateResolver;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ActiveProfiles("test")
+class EmailTemplateCacheTest {
+
+    @TempDir
+    private Path directory;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private final EmailProperties emailProperties = new EmailProperties();
+
+    private EmailTemplateCache templateCache;
+
+    @AfterEach
+    void tearDown() throws IOException, InterruptedException {
+        if (this.templateCache != null) {
+            this.templateCache.close();
+        }
+    }
+
+    @Test
+    void startParsesEveryTemplate() throws IOException {
+        var templateEngine = classpathTemplateEngine();
+        this.templateCache = new EmailTemplateCache(templateEngine, new EmailTemplateProcessor(templateEngine, this.emailProperties, this.registry), new ThymeleafProperties(), this.emailProperties, this.registry);
+
+        this.templateCache.start();
+
+        var templateNames = this.templateCache.findTemplateNames();
+        assertTrue(templateNames.containsAll(List.of("batch-complete-email", "batch-error-email", "email-template")));
+        assertEquals(templateNames.size(), misses());
+        assertEquals(templateNames.size(), this.registry.timer("email.template.parse").count());
+
+        templateEngine.process("batch-error-email", new Context());
+
+        assertEquals(templateNames.size(), misses());
+        assertEquals(1.0, this.registry.counter("email.template.cache.hits").count());
+    }
+
+    @Test
+    void cacheEvictsLeastRecentlyUsedTemplate() throws IOException {
+        this.emailProperties.setTemplateCacheSize(1);
+        this.emailProperties.setTemplateWarmUp(false);
+        var templateEngine = classpathTemplateEngine();
+        this.templateCache = new EmailTemplateCache(templateEngine, new EmailTemplateProcessor(templateEngine, this.emailProperties, this.registry), new ThymeleafProperties(), this.emailProperties, this.registry);
+        this.templateCache.start();
+
+        templateEngine.process("email-template", new Context());
+        templateEngine.process("email-template", new Context());
+        templateEngine.process("batch-error-email", new Context());
+        templateEngine.process("email-template", new Context());
+
+        assertEquals(3, misses());
+        assertEquals(1.0, this.registry.counter("email.template.cache.hits").count());
+        assertEquals(2.0, this.registry.counter("email.template.cache.evictions").count());
+        assertEquals(1.0, this.registry.get("email.template.cache.size").gauge().value());
+    }
+
+    @Test
+    void changedTemplateIsReloaded() throws IOException, InterruptedException {
+        var template = Files.writeString(this.directory.resolve("greeting.html"), "<p th:text=\"'Hello'\"></p>");
+        var templateEngine = startWatching();
+        assertEquals("<p>Hello</p>", templateEngine.process("greeting", new Context()));
+
+        Files.writeString(template, "<p th:text=\"'Goodbye'\"></p>");
+
+        assertEquals("<p>Goodbye</p>", awaitReload(templateEngine, "greeting", "<p>Goodbye</p>"));
+    }
+
+    @Test
+    void changedTemplateInSubdirectoryIsReloaded() throws IOException, InterruptedException {
+        var template = Files.writeString(Files.createDirectories(this.directory.resolve("mail")).resolve("greeting.html"), "<p th:text=\"'Hello'\"></p>");
+        var templateEngine = startWatching();
+        assertEquals("<p>Hello</p>", templateEngine.process("mail/greeting", new Context()));
+
+        Files.writeString(template, "<p th:text=\"'Goodbye'\"></p>");
+
+        assertEquals("<p>Goodbye</p>", awaitReload(templateEngine, "mail/greeting", "<p>Goodbye</p>"));
+    }
+
+    @Test
+    void startRejectsReloadDirectoryTemplatesAreNotResolvedFrom() {
+        var templateEngine = classpathTemplateEngine();
+        this.emailProperties.setTemplateReloadDirectory(this.directory);
+        this.templateCache = new EmailTemplateCache(templateEngine, new EmailTemplateProcessor(templateEngine, this.emailProperties, this.registry), new ThymeleafProperties(), this.emailProperties, this.registry);
+
+        assertThrows(IllegalStateException.class, this.templateCache::start);
+    }
+
+    @Test
+    void reloadEvictsBodiesRenderedWithTemplate() throws IOException {
+        var template = Files.writeString(this.directory.resolve("greeting.html"), "<p th:text=\"'Hello ' + ${name}\"></p>");
+        var resolver = new FileTemplateResolver();
+        resolver.setPrefix(this.directory + "/");
+        resolver.setSuffix(".html");
+        var templateEngine = new SpringTemplateEngine();
+        templateEngine.setTemplateResolver(resolver);
+        var thymeleafProperties = new ThymeleafProperties();
+        thymeleafProperties.setPrefix("file:" + this.directory + "/");
+        this.emailProperties.setRenderCacheEnabled(true);
+        var templateProcessor = new EmailTemplateProcessor(templateEngine, this.emailProperties, this.registry);
+        this.templateCache = new EmailTemplateCache(templateEngine, templateProcessor, thymeleafProperties, this.emailProperties, this.registry);
+        this.templateCache.start();
+        var request = EmailTemplateRequest.builder()
+                .template(TestEmailTemplate.builder()
+                        .templateName("greeting")
+                        .templateVariables(new TestTemplateVariables(Map.of("name", "John Snow")))
+                        .build())
+                .build();
+        assertEquals("<p>Hello John Snow</p>", templateProcessor.setEmailText(request));
+        assertEquals("<p>Hello John Snow</p>", templateProcessor.setEmailText(request));
+        assertEquals(1.0, this.registry.counter("email.render.cache.hits").count());
+
+        Files.writeString(template, "<p th:text=\"'Goodbye ' + ${name}\"></p>");
+        this.templateCache.reload("greeting");
+
+        assertEquals("<p>Goodbye John Snow</p>", templateProcessor.setEmailText(request));
+        assertEquals(2L * "<p>Goodbye John Snow</p>".length(), templateProcessor.getRenderCache().getWeight());
+    }
+
+    /**
+     * Starts the cache with templates resolved from the temporary directory, which is also the reload directory.
+     */
+    private TemplateEngine startWatching() throws IOException {
+        var resolver = new FileTemplateResolver();
+        resolver.setPrefix(this.directory + "/");
+        resolver.setSuffix(".html");
+        var templateEngine = new SpringTemplateEngine();
+        templateEngine.setTemplateResolver(resolver);
+        var thymeleafProperties = new ThymeleafProperties();
+        thymeleafProperties.setPrefix("file:" + this.directory + "/");
+        this.emailProperties.setTemplateReloadDirectory(this.directory);
+        this.templateCache = new EmailTemplateCache(templateEngine, new EmailTemplateProcessor(templateEngine, this.emailProperties, this.registry), thymeleafProperties, this.emailProperties, this.registry);
+        this.templateCache.start();
+        return templateEngine;
+    }
+
+    /**
+     * Renders a template until it was reloaded with the expected content. The file may be seen empty before it is
+     * written, so the template is polled until its last reload.
+     */
+    private String awaitReload(TemplateEngine templateEngine, String templateName, String expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        var rendered = templateEngine.process(templateName, new Context());
+        while (!(rendered.equals(expected) && this.registry.counter("email.template.reloads").count() >= 1) && System.nanoTime() - deadline < 0) {
+            Thread.sleep(10);
+            rendered = templateEngine.process(templateName, new Context());
+        }
+        assertTrue(this.registry.counter("email.template.reloads").count() >= 1);
+        return rendered;
+    }
+
+    private static TemplateEngine classpathTemplateEngine() {
+        var resolver = new ClassLoaderTemplateResolver();
+        resolver.setPrefix("templates/");
+        resolver.setSuffix(".html");
+        var templateEngine = new SpringTemplateEngine();
+        templateEngine.setTemplateResolver(resolver);
+        return templateEngine;
+    }
+
+    private double misses() {
+        return this.registry.counter("email.template.cache.misses").count();
+    }
+
+}
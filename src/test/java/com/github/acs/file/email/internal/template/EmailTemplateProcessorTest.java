@@ -1,7 +1,9 @@
 package com.github.acs.file.email.internal.template;
 
+import com.github.acs.file.email.internal.EmailProperties;
 import com.github.acs.file.email.util.TestEmailTemplate;
 import com.github.acs.file.email.util.TestTemplateVariables;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -16,7 +18,11 @@ import java.util.Map;
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
 
-@SpringBootTest(classes = EmailTemplateProcessor.class)
+@SpringBootTest(classes = {
+        EmailTemplateProcessor.class,
+        EmailProperties.class,
+        SimpleMeterRegistry.class
+})
 @ImportAutoConfiguration(ThymeleafAutoConfiguration.class)
 @ActiveProfiles("test")
 class EmailTemplateProcessorTest {
@@ -88,4 +94,23 @@ class EmailTemplateProcessorTest {
         assertThat(actualResult).isEqualToIgnoringNewLines(expectedResult);
     }
 
-}
\ No newline at end of file
+    @Test
+    void testSendEmailWithThymeleafTemplateWithSameVariablesIsRenderedOnce() {
+        var emailTemplate = TestEmailTemplate.builder()
+                .templateName("email-template")
+                .templateVariables(TestTemplateVariables.builder()
+                        .variables(Map.of("name", "Arya Stark", "message", "Not today"))
+                        .build())
+                .build();
+        var request = EmailTemplateRequest.builder()
+                .template(emailTemplate)
+                .build();
+
+        var first = this.emailTemplateProcessor.setEmailText(request);
+        var second = this.emailTemplateProcessor.setEmailText(request);
+
+        assertSame(first, second);
+        assertThat(first).contains("Arya Stark");
+    }
+
+}
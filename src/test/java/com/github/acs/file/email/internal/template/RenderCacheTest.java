@@ -0,0 +1,88 @@
+package com.github.acs.file.email.internal.template;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ActiveProfiles("test")
+class RenderCacheTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private final AtomicLong nanoTime = new AtomicLong();
+
+    @Test
+    void getReturnsBodyRenderedWithEqualVariables() {
+        var cache = new RenderCache(Duration.ofMinutes(5), 1_000, this.registry, this.nanoTime::get);
+        var variables = new HashMap<String, Object>();
+        variables.put("name", "John Snow");
+        variables.put("completedTime", null);
+        cache.put("email-template", variables, "<p>John Snow</p>");
+
+        variables.put("name", "Arya Stark");
+
+        assertNull(cache.get("email-template", variables));
+        assertNull(cache.get("email-template", Map.of("name", "John Snow")));
+        assertNull(cache.get("other-template", Map.of("name", "John Snow")));
+        var withNull = new HashMap<String, Object>();
+        withNull.put("name", "John Snow");
+        withNull.put("completedTime", null);
+        assertEquals("<p>John Snow</p>", cache.get("email-template", withNull));
+        assertEquals(1.0, this.registry.counter("email.render.cache.hits").count());
+        assertEquals(3.0, this.registry.counter("email.render.cache.misses").count());
+        assertEquals(32.0, this.registry.counter("email.render.cache.bytes.saved").count());
+        assertEquals(0.25, this.registry.get("email.render.cache.hit.ratio").gauge().value());
+    }
+
+    @Test
+    void getDoesNotReturnExpiredBody() {
+        var cache = new RenderCache(Duration.ofSeconds(10), 1_000, this.registry, this.nanoTime::get);
+        cache.put("email-template", Map.of(), "body");
+
+        this.nanoTime.set(Duration.ofSeconds(10).toNanos());
+        assertEquals("body", cache.get("email-template", Map.of()));
+        this.nanoTime.set(Duration.ofSeconds(11).toNanos());
+        assertNull(cache.get("email-template", Map.of()));
+        assertEquals(0, cache.getWeight());
+    }
+
+    @Test
+    void putEvictsLeastRecentlyUsedBodiesOverMaxWeight() {
+        var cache = new RenderCache(Duration.ofMinutes(5), 20, this.registry, this.nanoTime::get);
+        cache.put("first", Map.of(), "12345");
+        cache.put("second", Map.of(), "12345");
+        cache.get("first", Map.of());
+
+        cache.put("third", Map.of(), "12345");
+        cache.put("too-large", Map.of(), "12345678901");
+
+        assertEquals(20, cache.getWeight());
+        assertNotNull(cache.get("first", Map.of()));
+        assertNull(cache.get("second", Map.of()));
+        assertNotNull(cache.get("third", Map.of()));
+        assertNull(cache.get("too-large", Map.of()));
+    }
+
+    @Test
+    void evictRemovesBodiesRenderedWithTemplate() {
+        var cache = new RenderCache(Duration.ofMinutes(5), 1_000, this.registry, this.nanoTime::get);
+        cache.put("email-template", Map.of("name", "John Snow"), "12345");
+        cache.put("email-template", Map.of("name", "Arya Stark"), "12345");
+        cache.put("other-template", Map.of("name", "John Snow"), "12345");
+
+        cache.evict("email-template");
+
+        assertEquals(10, cache.getWeight());
+        assertNull(cache.get("email-template", Map.of("name", "John Snow")));
+        assertNull(cache.get("email-template", Map.of("name", "Arya Stark")));
+        assertNotNull(cache.get("other-template", Map.of("name", "John Snow")));
+    }
+
+}
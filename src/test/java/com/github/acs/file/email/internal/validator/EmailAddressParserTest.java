@@ -0,0 +1,93 @@
+package com.github.acs.file.email.internal.validator;
+
+import com.github.acs.file.email.internal.EmailProperties;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ActiveProfiles("test")
+class EmailAddressParserTest {
+
+    @TempDir
+    private Path directory;
+
+    private final EmailAddressParser parser = new EmailAddressParser(10, null);
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "recipient@example.com",
+            "first.last+tag@mail.example.com",
+            "o'brien@example.co.uk",
+            "x@a",
+            "\"john doe\"@example.com",
+            "\"quoted\\\"quote\"@example.com",
+            "user@[192.0.2.1]",
+            "user@[IPv6:2001:db8::1]",
+            "user@[IPv6:::ffff:192.0.2.1]",
+            "user@xn--bcher-kva.example"
+    })
+    void validAddresses(String address) {
+        assertTrue(this.parser.isValid(address), address);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "",
+            "invalid-email",
+            "@example.com",
+            "user@",
+            "user@@example.com",
+            ".user@example.com",
+            "user.@example.com",
+            "first..last@example.com",
+            "user name@example.com",
+            "\"unterminated@example.com",
+            "user@-example.com",
+            "user@example-.com",
+            "user@example..com",
+            "user@exa_mple.com",
+            "user@[192.0.2.256]",
+            "user@[192.0.2]",
+            "user@[IPv6:2001:db8::1::2]",
+            "user@[IPv6:2001:db8:1]"
+    })
+    void invalidAddresses(String address) {
+        assertFalse(this.parser.isValid(address), address);
+    }
+
+    @Test
+    void partsLongerThanTheLimitsAreInvalid() {
+        assertTrue(this.parser.isValid("a".repeat(64) + "@example.com"));
+        assertFalse(this.parser.isValid("a".repeat(65) + "@example.com"));
+        assertFalse(this.parser.isValid("user@" + "a".repeat(64) + ".com"));
+        assertFalse(this.parser.isValid("user@" + "a.".repeat(125) + "com"));
+    }
+
+    @Test
+    void onlyListedDomainsAndTheirSubdomainsAreAccepted() throws IOException {
+        var domainsFile = Files.writeString(this.directory.resolve("domains.txt"), """
+                # Domains with a mail exchanger
+                Example.com
+                acs.com
+                """);
+        var emailProperties = new EmailProperties();
+        emailProperties.setAddressDomainsFile(domainsFile);
+        var parser = new EmailAddressParser(emailProperties);
+
+        assertTrue(parser.isValid("recipient@example.com"));
+        assertTrue(parser.isValid("recipient@EXAMPLE.COM"));
+        assertTrue(parser.isValid("recipient@mail.example.com"));
+        assertTrue(parser.isValid("test@acs.com"));
+        assertFalse(parser.isValid("recipient@example.org"));
+        assertFalse(parser.isValid("recipient@notexample.com"));
+    }
+
+}
@@ -69,6 +69,20 @@ class EmailRequestValidatorTest {
 
     }
 
+    @Test
+    void testSendEmailWithOneInvalidBccRecipientEmailAddress() {
+        var emailRequest = EmailRequest.builder()
+                .to(Set.of("test@acs.com"))
+                .bcc(Set.of("first@example.com", "invalid-address", "second@example.com"))
+                .subject("Test Subject")
+                .body("Test Body")
+                .build();
+
+        var violations = this.validator.validate(emailRequest);
+        assertEquals(1, violations.size());
+        assertEquals("The 'bcc' recipient field has one or more invalid email(s)", violations.iterator().next().getMessage());
+    }
+
     @Test
     void testSendEmailWithMissingSubjectField() {
         var emailRequest = EmailRequest.builder()
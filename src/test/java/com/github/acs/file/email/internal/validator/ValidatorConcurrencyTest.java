@@ -0,0 +1,116 @@
+package com.github.acs.file.email.internal.validator;
+
+import com.github.acs.file.email.EmailRequest;
+import com.github.acs.file.email.internal.template.EmailTemplateRequest;
+import com.github.acs.file.email.util.TestEmailTemplate;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ActiveProfiles("test")
+class ValidatorConcurrencyTest {
+
+    private static final int THREADS = 8;
+
+    private static final int ITERATIONS = 2_000;
+
+    private Validator validator;
+
+    @BeforeEach
+    void setUp() {
+        this.validator = Validation.buildDefaultValidatorFactory().getValidator();
+    }
+
+    @Test
+    void concurrentValidationsDoNotShareViolations() throws Exception {
+        var valid = EmailRequest.builder()
+                .to(Set.of("recipient@example.com"))
+                .subject("Test Subject")
+                .body("Test Body")
+                .build();
+        var missingSubject = EmailRequest.builder()
+                .to(Set.of("recipient@example.com"))
+                .subject("")
+                .body("Test Body")
+                .build();
+        var invalidRecipients = EmailRequest.builder()
+                .to(Set.of())
+                .cc(Set.of("invalid-email"))
+                .subject("Test Subject")
+                .body("Test Body")
+                .build();
+        var bodyAndTemplate = EmailTemplateRequest.builder()
+                .body("Test Body")
+                .template(TestEmailTemplate.builder().build())
+                .build();
+
+        var barrier = new CyclicBarrier(THREADS);
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int thread = 0; thread < THREADS; thread++) {
+            int offset = thread;
+            tasks.add(() -> {
+                barrier.await();
+                for (int i = 0; i < ITERATIONS; i++) {
+                    switch ((i + offset) % 4) {
+                        case 0 -> assertEquals(Set.of(), messages(this.validator.validate(valid)));
+                        case 1 -> assertEquals(Set.of("The 'subject' field is required"),
+                                messages(this.validator.validate(missingSubject)));
+                        case 2 -> assertEquals(Set.of("At least one valid 'to' recipient is required",
+                                        "The 'cc' recipient field has one or more invalid email(s)"),
+                                messages(this.validator.validate(invalidRecipients)));
+                        default -> assertEquals(Set.of("Only the 'body' or 'template' can be set, not both"),
+                                messages(this.validator.validate(bodyAndTemplate)));
+                    }
+                }
+                return null;
+            });
+        }
+
+        try (var executor = Executors.newFixedThreadPool(THREADS)) {
+            for (var result : executor.invokeAll(tasks)) {
+                result.get();
+            }
+        }
+    }
+
+    @Test
+    void validRequestReportsNoViolation() {
+        var validator = new EmailRequestValidator();
+
+        int violated = validator.validate(EmailRequest.builder()
+                .to(Set.of("recipient@example.com"))
+                .subject("Test Subject")
+                .build());
+
+        assertEquals(0, violated);
+    }
+
+    @Test
+    void invalidRequestReportsEachViolatedRule() {
+        var validator = new EmailRequestValidator();
+
+        int violated = validator.validate(EmailRequest.builder().subject(" ").build());
+
+        assertEquals(BaseValidator.violation(EmailRequestValidator.Rule.TO_REQUIRED)
+                | BaseValidator.violation(EmailRequestValidator.Rule.SUBJECT_REQUIRED), violated);
+        assertEquals("The 'to' field is required", EmailRequestValidator.Rule.TO_REQUIRED.message());
+    }
+
+    private static Set<String> messages(Set<? extends ConstraintViolation<?>> violations) {
+        return violations.stream().map(ConstraintViolation::getMessage).collect(Collectors.toSet());
+    }
+
+}
@@ -2,12 +2,18 @@ package com.github.acs.file.email.util;
 
 import jakarta.mail.BodyPart;
 import jakarta.mail.MessagingException;
+import jakarta.mail.Part;
 import jakarta.mail.internet.MimeMultipart;
 
 import java.io.IOException;
 
 public class MimeMultipartUtils {
 
+    public static String getText(Part part) throws MessagingException, IOException {
+        var content = part.getContent();
+        return content instanceof MimeMultipart mimeMultipart ? getTextFromMimeMultipart(mimeMultipart) : content.toString();
+    }
+
     public static String getTextFromMimeMultipart(MimeMultipart mimeMultipart) throws MessagingException, IOException {
         StringBuilder result = new StringBuilder();
         for (int i = 0; i < mimeMultipart.getCount(); i++) {